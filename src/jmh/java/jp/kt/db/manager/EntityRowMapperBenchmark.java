@@ -0,0 +1,280 @@
+package jp.kt.db.manager;
+
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import jp.kt.db.entity.BaseEntity;
+
+import org.h2.tools.SimpleResultSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * ResultSetからentityへの格納のベンチマーク.
+ * <p>
+ * {@link EntityRowMapper}と、setterメソッドを{@link Method#invoke(Object, Object...)}で呼び出す格納、<br>
+ * 手書きのcreateEntityを比較します.<br>
+ * DBアクセスの時間を含めないため、メモリ上のResultSet（H2の{@link SimpleResultSet}）を使用します.
+ * </p>
+ *
+ * @author tatsuya.kumon
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityRowMapperBenchmark {
+	/** 行数 */
+	private static final int ROWS = 10000;
+
+	/** メモリ上のResultSet */
+	private SimpleResultSet rs;
+
+	/** MethodHandleによる格納 */
+	private EntityRowMapper<Row> mapper;
+
+	/** カラムごとのsetterメソッド（リフレクションによる格納） */
+	private Method[] setters;
+
+	/**
+	 * テストデータを生成する.
+	 *
+	 * @throws SQLException
+	 *             メタデータの取得に失敗した場合
+	 */
+	@Setup
+	public void setUp() throws SQLException {
+		rs = new SimpleResultSet();
+		rs.setAutoClose(false);
+		rs.addColumn("ID", Types.BIGINT, 19, 0);
+		rs.addColumn("AGE", Types.INTEGER, 10, 0);
+		rs.addColumn("RATE", Types.DOUBLE, 17, 0);
+		rs.addColumn("ACTIVE", Types.BOOLEAN, 1, 0);
+		rs.addColumn("USER_NAME", Types.VARCHAR, 100, 0);
+		rs.addColumn("SCORE", Types.INTEGER, 10, 0);
+		rs.addColumn("AMOUNT", Types.DECIMAL, 20, 2);
+		rs.addColumn("CREATED", Types.TIMESTAMP, 26, 0);
+		Timestamp now = new Timestamp(System.currentTimeMillis());
+		for (int i = 0; i < ROWS; i++) {
+			rs.addRow(Long.valueOf(i), Integer.valueOf(i % 100),
+					Double.valueOf(i / 3.0), Boolean.valueOf(i % 2 == 0),
+					"name" + i, (i % 10 == 0 ? null : Integer.valueOf(i)),
+					BigDecimal.valueOf(i, 2), now);
+		}
+		mapper = EntityRowMapper.getInstance(Row.class);
+		setters = resolveSetters(rs.getMetaData());
+	}
+
+	/**
+	 * {@link EntityRowMapper}で全行を格納する.
+	 *
+	 * @param bh
+	 *            Blackhole
+	 * @throws SQLException
+	 *             値の取得に失敗した場合
+	 */
+	@Benchmark
+	public void methodHandle(Blackhole bh) throws SQLException {
+		rs.beforeFirst();
+		while (rs.next()) {
+			bh.consume(mapper.map(rs));
+		}
+	}
+
+	/**
+	 * setterメソッドをリフレクションで呼び出して全行を格納する.
+	 *
+	 * @param bh
+	 *            Blackhole
+	 * @throws Exception
+	 *             値の取得、格納に失敗した場合
+	 */
+	@Benchmark
+	public void reflection(Blackhole bh) throws Exception {
+		rs.beforeFirst();
+		while (rs.next()) {
+			Row row = new Row();
+			for (int i = 0; i < setters.length; i++) {
+				Object value = rs.getObject(i + 1);
+				// プリミティブ型のsetterにはNULLを格納しない
+				if (value != null
+						|| !setters[i].getParameterTypes()[0].isPrimitive()) {
+					setters[i].invoke(row, value);
+				}
+			}
+			bh.consume(row);
+		}
+	}
+
+	/**
+	 * 手書きのcreateEntityで全行を格納する.
+	 *
+	 * @param bh
+	 *            Blackhole
+	 * @throws SQLException
+	 *             値の取得に失敗した場合
+	 */
+	@Benchmark
+	public void handWritten(Blackhole bh) throws SQLException {
+		rs.beforeFirst();
+		while (rs.next()) {
+			Row row = new Row();
+			row.setId(rs.getLong(1));
+			row.setAge(rs.getInt(2));
+			row.setRate(rs.getDouble(3));
+			row.setActive(rs.getBoolean(4));
+			row.setUserName(rs.getString(5));
+			int score = rs.getInt(6);
+			row.setScore(rs.wasNull() ? null : Integer.valueOf(score));
+			row.setAmount(rs.getBigDecimal(7));
+			row.setCreated(rs.getTimestamp(8));
+			bh.consume(row);
+		}
+	}
+
+	/**
+	 * カラム名に対応するsetterメソッドを取得する.
+	 *
+	 * @param meta
+	 *            ResultSetのメタデータ
+	 * @return カラムごとのsetterメソッド
+	 * @throws SQLException
+	 *             メタデータの取得に失敗した場合
+	 */
+	private static Method[] resolveSetters(ResultSetMetaData meta)
+			throws SQLException {
+		Method[] result = new Method[meta.getColumnCount()];
+		for (int i = 0; i < result.length; i++) {
+			String name = "set"
+					+ meta.getColumnLabel(i + 1).replace("_", "")
+							.toLowerCase(Locale.ENGLISH);
+			for (Method method : Row.class.getMethods()) {
+				if (method.getName().toLowerCase(Locale.ENGLISH).equals(name)) {
+					result[i] = method;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * ベンチマーク用のentity.
+	 */
+	public static final class Row implements BaseEntity {
+		/** serialVersionUID */
+		private static final long serialVersionUID = 1L;
+
+		/** ID */
+		private long id;
+
+		/** 年齢 */
+		private int age;
+
+		/** 比率 */
+		private double rate;
+
+		/** 有効フラグ */
+		private boolean active;
+
+		/** ユーザ名 */
+		private String userName;
+
+		/** 点数 */
+		private Integer score;
+
+		/** 金額 */
+		private BigDecimal amount;
+
+		/** 作成日時 */
+		private Timestamp created;
+
+		/**
+		 * @param id
+		 *            ID
+		 */
+		public void setId(long id) {
+			this.id = id;
+		}
+
+		/**
+		 * @param age
+		 *            年齢
+		 */
+		public void setAge(int age) {
+			this.age = age;
+		}
+
+		/**
+		 * @param rate
+		 *            比率
+		 */
+		public void setRate(double rate) {
+			this.rate = rate;
+		}
+
+		/**
+		 * @param active
+		 *            有効フラグ
+		 */
+		public void setActive(boolean active) {
+			this.active = active;
+		}
+
+		/**
+		 * @param userName
+		 *            ユーザ名
+		 */
+		public void setUserName(String userName) {
+			this.userName = userName;
+		}
+
+		/**
+		 * @param score
+		 *            点数
+		 */
+		public void setScore(Integer score) {
+			this.score = score;
+		}
+
+		/**
+		 * @param amount
+		 *            金額
+		 */
+		public void setAmount(BigDecimal amount) {
+			this.amount = amount;
+		}
+
+		/**
+		 * @param created
+		 *            作成日時
+		 */
+		public void setCreated(Timestamp created) {
+			this.created = created;
+		}
+
+		/**
+		 * @return ID
+		 */
+		public long getId() {
+			return id;
+		}
+	}
+}
@@ -0,0 +1,179 @@
+package jp.kt.text;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import jp.kt.tool.StringUtil;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * CSVの行分割のベンチマーク.
+ * <p>
+ * {@link CsvTokenizer}と、置き換える前のsplitとダブルクォート数による連結での分割を比較します.<br>
+ * quotedRatioは値をダブルクォートで囲む割合（%）です.
+ * </p>
+ *
+ * @author tatsuya.kumon
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CsvParseBenchmark {
+	/** 行数 */
+	private static final int ROWS = 10000;
+
+	/** 1行の値の数 */
+	private static final int FIELDS = 7;
+
+	/** 値をダブルクォートで囲む割合（%） */
+	@Param({ "0", "50" })
+	public int quotedRatio;
+
+	/** 各行のテキスト */
+	private String[] lines;
+
+	/** 全行のテキスト */
+	private String allText;
+
+	/**
+	 * テストデータを生成する.
+	 */
+	@Setup
+	public void setUp() {
+		Random random = new Random(1);
+		lines = new String[ROWS];
+		StringBuilder all = new StringBuilder();
+		for (int i = 0; i < ROWS; i++) {
+			StringBuilder line = new StringBuilder();
+			for (int j = 0; j < FIELDS; j++) {
+				if (j > 0) {
+					line.append(',');
+				}
+				String value = "value" + random.nextInt(100000);
+				if (random.nextInt(100) < quotedRatio) {
+					// 区切り文字とダブルクォートを含む値
+					line.append("\"").append(value).append(",\"\"")
+							.append(j).append("\"\"\"");
+				} else {
+					line.append(value);
+				}
+			}
+			lines[i] = line.toString();
+			all.append(line).append("\r\n");
+		}
+		allText = all.toString();
+	}
+
+	/**
+	 * {@link CsvTokenizer#parseLine(String)}で1行ずつ分割する.
+	 *
+	 * @param bh
+	 *            Blackhole
+	 */
+	@Benchmark
+	public void tokenizer(Blackhole bh) {
+		for (String line : lines) {
+			bh.consume(CsvTokenizer.parseLine(line));
+		}
+	}
+
+	/**
+	 * {@link CsvTokenizer}でReaderから全行を分割する.
+	 *
+	 * @param bh
+	 *            Blackhole
+	 * @throws IOException
+	 *             読み込みに失敗した場合
+	 */
+	@Benchmark
+	public void tokenizerReader(Blackhole bh) throws IOException {
+		CsvTokenizer tokenizer = new CsvTokenizer(new StringReader(allText));
+		String[] lineData;
+		while ((lineData = tokenizer.next()) != null) {
+			bh.consume(lineData);
+		}
+	}
+
+	/**
+	 * 置き換える前の方法で1行ずつ分割する.
+	 *
+	 * @param bh
+	 *            Blackhole
+	 */
+	@Benchmark
+	public void legacy(Blackhole bh) {
+		for (String line : lines) {
+			bh.consume(legacyParseLine(line));
+		}
+	}
+
+	/**
+	 * 置き換える前のCsvBaseText#parseLineの処理.
+	 *
+	 * @param lineText
+	 *            行全体のテキスト
+	 * @return 行データ
+	 */
+	private static String[] legacyParseLine(String lineText) {
+		String[] lineData = lineText.split(",", -1);
+		List<String> list = new ArrayList<String>();
+		for (int i = 0; i < lineData.length; i++) {
+			if (lineData[i].startsWith("\"")) {
+				StringBuffer sb = new StringBuffer(lineData[i]);
+				if (!isDoubleQuoteCountEven(lineData[i])) {
+					sb.append(",");
+					sb.append(lineData[++i]);
+					while (isDoubleQuoteCountEven(lineData[i])) {
+						sb.append(",");
+						sb.append(lineData[++i]);
+					}
+				}
+				String word = sb.substring(1, sb.length() - 1);
+				word = StringUtil.replaceAll(word, "\"\"", "\"");
+				list.add(word);
+			} else {
+				list.add(lineData[i]);
+			}
+		}
+		lineData = new String[list.size()];
+		list.toArray(lineData);
+		return lineData;
+	}
+
+	/**
+	 * ダブルクォートの数が偶数個ならtrueを返す.
+	 *
+	 * @param text
+	 *            テキスト
+	 * @return ダブルクォートの数が偶数個ならtrue
+	 */
+	private static boolean isDoubleQuoteCountEven(String text) {
+		char[] cArray = text.toCharArray();
+		int count = 0;
+		for (int i = 0; i < cArray.length; i++) {
+			if (String.valueOf(cArray[i]).equals("\"")) {
+				count++;
+			}
+		}
+		return (count % 2 == 0);
+	}
+}
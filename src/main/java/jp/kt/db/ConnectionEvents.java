@@ -0,0 +1,103 @@
+package jp.kt.db;
+
+import java.sql.Connection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * {@link ConnectionListener}の登録と通知.
+ * <p>
+ * {@link ConnectionPool}、{@link RoutingConnectionProvider}から取得したConnectionの<br>
+ * commit、rollback、closeと、物理接続のクローズを登録された{@link ConnectionListener}に通知します.<br>
+ * {@link jp.kt.db.manager.BaseManager}がトランザクションの状態などを区切るために登録します.
+ * </p>
+ *
+ * @author tatsuya.kumon
+ */
+public final class ConnectionEvents {
+	/** 登録されたリスナー */
+	private static final List<ConnectionListener> LISTENERS = new CopyOnWriteArrayList<ConnectionListener>();
+
+	/**
+	 * privateコンストラクタ.
+	 */
+	private ConnectionEvents() {
+	}
+
+	/**
+	 * リスナーを登録する.
+	 *
+	 * @param listener
+	 *            {@link ConnectionListener}オブジェクト
+	 */
+	public static void addListener(ConnectionListener listener) {
+		LISTENERS.add(listener);
+	}
+
+	/**
+	 * 物理接続のキーを取得する.
+	 * <p>
+	 * {@link ConnectionPool}から取得したConnectionは、返却して再取得しても<br>
+	 * 同じ物理接続であれば同じキーを返します.<br>
+	 * キーは物理接続そのものではなく、比較にのみ使用できるオブジェクトです.<br>
+	 * それ以外のConnectionは、指定Connectionをそのまま返します.
+	 * </p>
+	 *
+	 * @param con
+	 *            DB接続
+	 * @return 物理接続のキー
+	 */
+	public static Object getPhysicalKey(Connection con) {
+		Connection target = RoutingConnectionProvider.getPrimary(con);
+		Object key = ConnectionPool.getPhysicalKey(target);
+		return (key != null ? key : target);
+	}
+
+	/**
+	 * コミットを通知する.
+	 *
+	 * @param con
+	 *            コミットしたConnection
+	 */
+	static void fireCommitted(Connection con) {
+		for (ConnectionListener listener : LISTENERS) {
+			listener.committed(con);
+		}
+	}
+
+	/**
+	 * ロールバックを通知する.
+	 *
+	 * @param con
+	 *            ロールバックしたConnection
+	 */
+	static void fireRolledBack(Connection con) {
+		for (ConnectionListener listener : LISTENERS) {
+			listener.rolledBack(con);
+		}
+	}
+
+	/**
+	 * クローズを通知する.
+	 *
+	 * @param con
+	 *            クローズするConnection
+	 */
+	static void fireClosing(Connection con) {
+		for (ConnectionListener listener : LISTENERS) {
+			listener.closing(con);
+		}
+	}
+
+	/**
+	 * 物理接続のクローズを通知する.
+	 *
+	 * @param physicalKey
+	 *            物理接続のキー
+	 */
+	static void firePhysicalClosing(Object physicalKey) {
+		for (ConnectionListener listener : LISTENERS) {
+			listener.physicalClosing(physicalKey);
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package jp.kt.db;
+
+import java.sql.Connection;
+
+/**
+ * {@link ConnectionPool}、{@link RoutingConnectionProvider}から取得したConnectionのイベントを受け取るインタフェース.
+ * <p>
+ * {@link ConnectionEvents#addListener(ConnectionListener)}で登録します.<br>
+ * Connection単位の状態を保持する処理が、トランザクションの区切りで状態を区切るために使用します.<br>
+ * 複数スレッドから同時に呼ばれるため、スレッドセーフに実装してください.
+ * </p>
+ *
+ * @author tatsuya.kumon
+ */
+public interface ConnectionListener {
+	/**
+	 * コミットした後に呼ばれる.
+	 *
+	 * @param con
+	 *            コミットしたConnection
+	 */
+	void committed(Connection con);
+
+	/**
+	 * ロールバックした後に呼ばれる.
+	 * <p>
+	 * セーブポイントへのロールバックでは呼ばれません.
+	 * </p>
+	 *
+	 * @param con
+	 *            ロールバックしたConnection
+	 */
+	void rolledBack(Connection con);
+
+	/**
+	 * クローズする前に呼ばれる.
+	 * <p>
+	 * {@link ConnectionPool}のConnectionは、この後プールに返却されます.
+	 * </p>
+	 *
+	 * @param con
+	 *            クローズするConnection
+	 */
+	void closing(Connection con);
+
+	/**
+	 * 物理接続をクローズする前に呼ばれる.
+	 *
+	 * @param physicalKey
+	 *            物理接続のキー（{@link ConnectionEvents#getPhysicalKey(Connection)}）
+	 */
+	void physicalClosing(Object physicalKey);
+}
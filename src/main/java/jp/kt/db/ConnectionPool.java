@@ -0,0 +1,733 @@
+package jp.kt.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jp.kt.logger.ApplicationLogger;
+
+/**
+ * DriverManagerを使った軽量なConnectionプール.
+ * <p>
+ * 主にバッチ用.<br>
+ * {@link #getConnection()}で取得したConnectionはオートコミットOFFで、<br>
+ * closeするとコミットされていない更新をロールバックした上でプールに返却されます.<br>
+ * <br>
+ * 以下の機能を持ちます.<br>
+ * ・最小/最大接続数<br>
+ * ・取得待ちのタイムアウト<br>
+ * ・取得時の接続検証（{@link Connection#isValid(int)}）<br>
+ * ・アイドル状態が続いた接続の破棄<br>
+ * ・返却されない接続（リーク）の検出とログ出力<br>
+ * <br>
+ * commit、rollback、closeと物理接続のクローズは{@link ConnectionEvents}に通知します.<br>
+ * 物理接続は取得したConnectionの{@link Connection#unwrap(Class)}でも取得できません.
+ * </p>
+ *
+ * @author tatsuya.kumon
+ */
+public final class ConnectionPool implements ConnectionProvider {
+	/** logger名 */
+	private static final String LOGGER_NAME = "ktConnectionPool";
+
+	/** メンテナンス処理の実行間隔（ミリ秒） */
+	private static final long MAINTENANCE_INTERVAL_MILLIS = 10000;
+
+	/** 独自ログのLogger */
+	private final ApplicationLogger logger;
+
+	/** 接続URL */
+	private final String url;
+
+	/** ログインユーザ */
+	private final String user;
+
+	/** ログインパスワード */
+	private final String password;
+
+	/** 最小接続数 */
+	private final int minSize;
+
+	/** 最大接続数 */
+	private final int maxSize;
+
+	/** 取得待ちのタイムアウト（ミリ秒） */
+	private volatile long borrowTimeoutMillis = 30000;
+
+	/** 取得時に接続検証を行うか */
+	private volatile boolean validateOnBorrow = true;
+
+	/** 接続検証のタイムアウト（秒） */
+	private volatile int validationTimeoutSec = 5;
+
+	/** アイドル接続を破棄するまでの時間（ミリ秒） */
+	private volatile long idleTimeoutMillis = 600000;
+
+	/** リークとみなすまでの貸出時間（ミリ秒） */
+	private volatile long leakDetectionMillis;
+
+	/** 貸出可能数を制御するセマフォ */
+	private final Semaphore permits;
+
+	/** アイドル状態の接続（先頭が最後に返却されたもの） */
+	private final LinkedBlockingDeque<PooledConnection> idleConnections;
+
+	/** 貸出中の接続 */
+	private final Set<PooledConnection> activeConnections;
+
+	/** 物理接続数 */
+	private final AtomicInteger totalCount = new AtomicInteger();
+
+	/** 貸出回数 */
+	private final AtomicLong borrowCount = new AtomicLong();
+
+	/** 物理接続の生成回数 */
+	private final AtomicLong createCount = new AtomicLong();
+
+	/** 物理接続の破棄回数 */
+	private final AtomicLong destroyCount = new AtomicLong();
+
+	/** 取得待ちタイムアウト回数 */
+	private final AtomicLong timeoutCount = new AtomicLong();
+
+	/** 接続検証の失敗回数 */
+	private final AtomicLong validationFailureCount = new AtomicLong();
+
+	/** リーク検出回数 */
+	private final AtomicLong leakCount = new AtomicLong();
+
+	/** メンテナンス処理のスレッド */
+	private final ScheduledExecutorService maintenance;
+
+	/** クローズ済みフラグ */
+	private volatile boolean closed;
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * @param driver
+	 *            接続Driver
+	 * @param url
+	 *            接続URL
+	 * @param user
+	 *            ログインユーザ
+	 * @param password
+	 *            ログインパスワード
+	 * @param minSize
+	 *            最小接続数
+	 * @param maxSize
+	 *            最大接続数
+	 * @throws ClassNotFoundException
+	 *             接続Driverが見つからない場合
+	 */
+	public ConnectionPool(String driver, String url, String user,
+			String password, int minSize, int maxSize)
+			throws ClassNotFoundException {
+		if (maxSize <= 0 || minSize < 0 || minSize > maxSize) {
+			throw new IllegalArgumentException("接続数の指定が不正です [min=" + minSize
+					+ ", max=" + maxSize + "]");
+		}
+		// Driverのロードは最初の1回のみ
+		Class.forName(driver);
+		this.logger = new ApplicationLogger(LOGGER_NAME, ConnectionPool.class);
+		this.url = url;
+		this.user = user;
+		this.password = password;
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		this.permits = new Semaphore(maxSize, true);
+		this.idleConnections = new LinkedBlockingDeque<PooledConnection>();
+		this.activeConnections = ConcurrentHashMap.newKeySet();
+		// メンテナンス処理の開始
+		this.maintenance = Executors
+				.newSingleThreadScheduledExecutor(new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, LOGGER_NAME + "-maintenance");
+						t.setDaemon(true);
+						return t;
+					}
+				});
+		this.maintenance.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				maintain();
+			}
+		}, 0, MAINTENANCE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * 取得待ちのタイムアウトを設定する.
+	 * <p>
+	 * デフォルトは30000ミリ秒です.
+	 * </p>
+	 *
+	 * @param borrowTimeoutMillis
+	 *            取得待ちのタイムアウト（ミリ秒）
+	 */
+	public void setBorrowTimeoutMillis(long borrowTimeoutMillis) {
+		this.borrowTimeoutMillis = borrowTimeoutMillis;
+	}
+
+	/**
+	 * 取得時に接続検証を行うかを設定する.
+	 * <p>
+	 * デフォルトはtrueです.
+	 * </p>
+	 *
+	 * @param validateOnBorrow
+	 *            取得時に接続検証を行う場合はtrue
+	 */
+	public void setValidateOnBorrow(boolean validateOnBorrow) {
+		this.validateOnBorrow = validateOnBorrow;
+	}
+
+	/**
+	 * 接続検証のタイムアウトを設定する.
+	 * <p>
+	 * デフォルトは5秒です.
+	 * </p>
+	 *
+	 * @param validationTimeoutSec
+	 *            接続検証のタイムアウト（秒）
+	 */
+	public void setValidationTimeoutSec(int validationTimeoutSec) {
+		this.validationTimeoutSec = validationTimeoutSec;
+	}
+
+	/**
+	 * アイドル接続を破棄するまでの時間を設定する.
+	 * <p>
+	 * 最小接続数を超えている分のみ破棄します.<br>
+	 * 0以下の場合は破棄しません.デフォルトは600000ミリ秒です.
+	 * </p>
+	 *
+	 * @param idleTimeoutMillis
+	 *            アイドル接続を破棄するまでの時間（ミリ秒）
+	 */
+	public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+		this.idleTimeoutMillis = idleTimeoutMillis;
+	}
+
+	/**
+	 * リークとみなすまでの貸出時間を設定する.
+	 * <p>
+	 * この時間を超えて返却されない接続は、取得元のスタックトレースと共にWARNログ出力されます.<br>
+	 * 0以下の場合は検出しません.デフォルトは0です.
+	 * </p>
+	 *
+	 * @param leakDetectionMillis
+	 *            リークとみなすまでの貸出時間（ミリ秒）
+	 */
+	public void setLeakDetectionMillis(long leakDetectionMillis) {
+		this.leakDetectionMillis = leakDetectionMillis;
+	}
+
+	/**
+	 * プールからConnectionを取得する.
+	 * <p>
+	 * オートコミットはOFFになります.<br>
+	 * 使用後は必ずcloseしてください.closeするとプールに返却されます.
+	 * </p>
+	 *
+	 * @return {@link Connection}オブジェクト
+	 * @throws SQLException
+	 *             取得待ちがタイムアウトした場合、もしくはDB接続時に例外発生した場合
+	 * @throws InterruptedException
+	 *             取得待ち中に割り込まれた場合
+	 */
+	@Override
+	public Connection getConnection() throws SQLException,
+			InterruptedException {
+		if (closed) {
+			throw new SQLException("コネクションプールはクローズされています [" + url + "]");
+		}
+		long deadline = System.nanoTime()
+				+ TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMillis);
+		if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+			timeoutCount.incrementAndGet();
+			throw new SQLTransientConnectionException(
+					"コネクションプールから接続を取得できませんでした（タイムアウト） [" + toString() + "]");
+		}
+		PooledConnection pc = null;
+		try {
+			while (pc == null) {
+				pc = idleConnections.pollFirst();
+				if (pc == null) {
+					if (reserve()) {
+						// 空きがあれば新規に物理接続を生成
+						pc = create();
+						break;
+					}
+					// 返却途中の接続を待つ
+					long remaining = deadline - System.nanoTime();
+					pc = idleConnections.pollFirst(Math.max(remaining, 0),
+							TimeUnit.NANOSECONDS);
+					if (pc == null) {
+						timeoutCount.incrementAndGet();
+						throw new SQLTransientConnectionException(
+								"コネクションプールから接続を取得できませんでした（タイムアウト） ["
+										+ toString() + "]");
+					}
+				}
+				if (validateOnBorrow && !isValid(pc)) {
+					// 接続検証に失敗した場合は破棄して次を探す
+					validationFailureCount.incrementAndGet();
+					destroy(pc);
+					pc = null;
+				}
+			}
+		} catch (SQLException | InterruptedException | RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+		// 貸出
+		pc.borrowedAt = System.nanoTime();
+		pc.borrowStack = (leakDetectionMillis > 0 ? new Throwable(
+				"Connection取得元") : null);
+		pc.leakReported = false;
+		activeConnections.add(pc);
+		borrowCount.incrementAndGet();
+		return pc.newProxy();
+	}
+
+	/**
+	 * 物理接続のキーを取得する.
+	 * <p>
+	 * {@link ConnectionEvents#getPhysicalKey(Connection)}で使用します.
+	 * </p>
+	 *
+	 * @param con
+	 *            DB接続
+	 * @return プールから取得したConnectionの場合は物理接続のキー.<br>
+	 *         それ以外の場合はnull.
+	 */
+	static Object getPhysicalKey(Connection con) {
+		if (!Proxy.isProxyClass(con.getClass())) {
+			return null;
+		}
+		InvocationHandler handler = Proxy.getInvocationHandler(con);
+		if (handler instanceof ConnectionHandler) {
+			return ((ConnectionHandler) handler).pc;
+		}
+		return null;
+	}
+
+	/**
+	 * 物理接続数の枠を確保する.
+	 *
+	 * @return 確保できた場合はtrue
+	 */
+	private boolean reserve() {
+		while (true) {
+			int current = totalCount.get();
+			if (current >= maxSize) {
+				return false;
+			}
+			if (totalCount.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * 物理接続を生成する.
+	 * <p>
+	 * 事前に {@link #reserve()} で枠を確保しておくこと.
+	 * </p>
+	 *
+	 * @return {@link PooledConnection}オブジェクト
+	 * @throws SQLException
+	 *             DB接続時に例外発生した場合
+	 */
+	private PooledConnection create() throws SQLException {
+		try {
+			Connection con = DriverManager.getConnection(url, user, password);
+			con.setAutoCommit(false);
+			createCount.incrementAndGet();
+			return new PooledConnection(con);
+		} catch (SQLException | RuntimeException e) {
+			totalCount.decrementAndGet();
+			throw e;
+		}
+	}
+
+	/**
+	 * 接続検証.
+	 *
+	 * @param pc
+	 *            {@link PooledConnection}オブジェクト
+	 * @return 有効な接続であればtrue
+	 */
+	private boolean isValid(PooledConnection pc) {
+		try {
+			return pc.physical.isValid(validationTimeoutSec);
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * 物理接続を破棄する.
+	 *
+	 * @param pc
+	 *            {@link PooledConnection}オブジェクト
+	 */
+	private void destroy(PooledConnection pc) {
+		totalCount.decrementAndGet();
+		destroyCount.incrementAndGet();
+		// 物理接続に紐付くPreparedStatementキャッシュなどを破棄
+		ConnectionEvents.firePhysicalClosing(pc);
+		try {
+			pc.physical.close();
+		} catch (SQLException e) {
+			logger.warnLog("A071", "物理接続のクローズに失敗しました [" + url + "]", e);
+		}
+	}
+
+	/**
+	 * 貸し出していた接続を返却する.
+	 *
+	 * @param pc
+	 *            {@link PooledConnection}オブジェクト
+	 */
+	private void giveBack(PooledConnection pc) {
+		activeConnections.remove(pc);
+		boolean reusable = !closed;
+		try {
+			if (reusable && pc.physical.isClosed()) {
+				reusable = false;
+			}
+			if (reusable) {
+				// コミットされていない更新は破棄し、オートコミットOFFに戻す
+				if (!pc.physical.getAutoCommit()) {
+					pc.physical.rollback();
+				} else {
+					pc.physical.setAutoCommit(false);
+				}
+				pc.physical.clearWarnings();
+			}
+		} catch (SQLException e) {
+			reusable = false;
+		}
+		if (reusable) {
+			pc.lastUsedAt = System.nanoTime();
+			idleConnections.offerFirst(pc);
+		} else {
+			destroy(pc);
+		}
+		permits.release();
+	}
+
+	/**
+	 * メンテナンス処理.
+	 * <p>
+	 * アイドル接続の破棄、最小接続数の確保、リークの検出を行います.
+	 * </p>
+	 */
+	private void maintain() {
+		try {
+			long now = System.nanoTime();
+			// アイドル接続の破棄（古いものから）
+			long idleTimeoutNanos = TimeUnit.MILLISECONDS
+					.toNanos(idleTimeoutMillis);
+			if (idleTimeoutMillis > 0) {
+				Iterator<PooledConnection> it = idleConnections
+						.descendingIterator();
+				while (it.hasNext() && totalCount.get() > minSize) {
+					PooledConnection pc = it.next();
+					if (now - pc.lastUsedAt > idleTimeoutNanos
+							&& idleConnections.remove(pc)) {
+						destroy(pc);
+					}
+				}
+			}
+			// 最小接続数の確保
+			while (!closed && totalCount.get() < minSize && reserve()) {
+				PooledConnection pc = create();
+				pc.lastUsedAt = System.nanoTime();
+				idleConnections.offerLast(pc);
+			}
+			// リークの検出
+			long leakNanos = TimeUnit.MILLISECONDS.toNanos(leakDetectionMillis);
+			if (leakDetectionMillis > 0) {
+				for (PooledConnection pc : activeConnections) {
+					if (!pc.leakReported && now - pc.borrowedAt > leakNanos) {
+						pc.leakReported = true;
+						leakCount.incrementAndGet();
+						logger.warnLog("A072", "Connectionが返却されていません（リークの可能性） ["
+								+ TimeUnit.NANOSECONDS.toMillis(now
+										- pc.borrowedAt) + "ms][" + url + "]",
+								pc.borrowStack);
+					}
+				}
+			}
+		} catch (Exception e) {
+			logger.warnLog("A071", "コネクションプールのメンテナンスに失敗しました [" + url + "]",
+					e);
+		}
+	}
+
+	/**
+	 * コネクションプールをクローズする.
+	 * <p>
+	 * アイドル状態の接続は即座に、貸出中の接続は返却時に破棄されます.
+	 * </p>
+	 */
+	public void close() {
+		closed = true;
+		maintenance.shutdownNow();
+		PooledConnection pc;
+		while ((pc = idleConnections.pollFirst()) != null) {
+			destroy(pc);
+		}
+	}
+
+	/**
+	 * 貸出中の接続数を取得する.
+	 *
+	 * @return 貸出中の接続数
+	 */
+	public int getActiveCount() {
+		return activeConnections.size();
+	}
+
+	/**
+	 * アイドル状態の接続数を取得する.
+	 *
+	 * @return アイドル状態の接続数
+	 */
+	public int getIdleCount() {
+		return idleConnections.size();
+	}
+
+	/**
+	 * 物理接続数を取得する.
+	 *
+	 * @return 物理接続数
+	 */
+	public int getTotalCount() {
+		return totalCount.get();
+	}
+
+	/**
+	 * 取得待ちのスレッド数（概算）を取得する.
+	 *
+	 * @return 取得待ちのスレッド数
+	 */
+	public int getWaitingCount() {
+		return permits.getQueueLength();
+	}
+
+	/**
+	 * 貸出回数を取得する.
+	 *
+	 * @return 貸出回数
+	 */
+	public long getBorrowCount() {
+		return borrowCount.get();
+	}
+
+	/**
+	 * 物理接続の生成回数を取得する.
+	 *
+	 * @return 物理接続の生成回数
+	 */
+	public long getCreateCount() {
+		return createCount.get();
+	}
+
+	/**
+	 * 物理接続の破棄回数を取得する.
+	 *
+	 * @return 物理接続の破棄回数
+	 */
+	public long getDestroyCount() {
+		return destroyCount.get();
+	}
+
+	/**
+	 * 取得待ちタイムアウト回数を取得する.
+	 *
+	 * @return 取得待ちタイムアウト回数
+	 */
+	public long getTimeoutCount() {
+		return timeoutCount.get();
+	}
+
+	/**
+	 * 接続検証の失敗回数を取得する.
+	 *
+	 * @return 接続検証の失敗回数
+	 */
+	public long getValidationFailureCount() {
+		return validationFailureCount.get();
+	}
+
+	/**
+	 * リーク検出回数を取得する.
+	 *
+	 * @return リーク検出回数
+	 */
+	public long getLeakCount() {
+		return leakCount.get();
+	}
+
+	/**
+	 * プールの統計情報を文字列で返す.
+	 *
+	 * @return 統計情報
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("url=").append(url);
+		sb.append(", min=").append(minSize);
+		sb.append(", max=").append(maxSize);
+		sb.append(", total=").append(getTotalCount());
+		sb.append(", active=").append(getActiveCount());
+		sb.append(", idle=").append(getIdleCount());
+		sb.append(", waiting=").append(getWaitingCount());
+		sb.append(", borrow=").append(getBorrowCount());
+		sb.append(", create=").append(getCreateCount());
+		sb.append(", destroy=").append(getDestroyCount());
+		sb.append(", timeout=").append(getTimeoutCount());
+		sb.append(", validationFailure=").append(getValidationFailureCount());
+		sb.append(", leak=").append(getLeakCount());
+		return sb.toString();
+	}
+
+	/**
+	 * プールで管理する物理接続.
+	 *
+	 * @author tatsuya.kumon
+	 */
+	private final class PooledConnection {
+		/** 物理接続 */
+		private final Connection physical;
+
+		/** 貸出日時（System.nanoTime） */
+		private volatile long borrowedAt;
+
+		/** 最終返却日時（System.nanoTime） */
+		private volatile long lastUsedAt;
+
+		/** 取得元のスタックトレース */
+		private volatile Throwable borrowStack;
+
+		/** リーク報告済みフラグ */
+		private volatile boolean leakReported;
+
+		/**
+		 * コンストラクタ.
+		 *
+		 * @param physical
+		 *            物理接続
+		 */
+		private PooledConnection(Connection physical) {
+			this.physical = physical;
+		}
+
+		/**
+		 * 貸出用のConnectionを生成する.
+		 * <p>
+		 * closeするとプールに返却されるConnectionです.
+		 * </p>
+		 *
+		 * @return {@link Connection}オブジェクト
+		 */
+		private Connection newProxy() {
+			return (Connection) Proxy.newProxyInstance(
+					Connection.class.getClassLoader(),
+					new Class<?>[] { Connection.class },
+					new ConnectionHandler(this));
+		}
+	}
+
+	/**
+	 * 貸出用Connectionの処理.
+	 *
+	 * @author tatsuya.kumon
+	 */
+	private final class ConnectionHandler implements InvocationHandler {
+		/** 物理接続 */
+		private final PooledConnection pc;
+
+		/** 返却済みフラグ */
+		private boolean returned;
+
+		/**
+		 * コンストラクタ.
+		 *
+		 * @param pc
+		 *            {@link PooledConnection}オブジェクト
+		 */
+		private ConnectionHandler(PooledConnection pc) {
+			this.pc = pc;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args)
+				throws Throwable {
+			String name = method.getName();
+			if ("equals".equals(name)) {
+				return proxy == args[0];
+			} else if ("hashCode".equals(name)) {
+				return System.identityHashCode(proxy);
+			} else if ("toString".equals(name)) {
+				return "Pooled[" + pc.physical + "]";
+			} else if ("isClosed".equals(name)) {
+				return returned || pc.physical.isClosed();
+			} else if ("close".equals(name)) {
+				synchronized (this) {
+					if (returned) {
+						return null;
+					}
+					returned = true;
+				}
+				// このConnectionの状態を破棄して返却
+				// （PreparedStatementキャッシュは物理接続の破棄まで保持する）
+				ConnectionEvents.fireClosing((Connection) proxy);
+				giveBack(pc);
+				return null;
+			}
+			if (returned) {
+				throw new SQLException("Connectionはクローズされています");
+			}
+			if (("unwrap".equals(name) || "isWrapperFor".equals(name))
+					&& ((Class<?>) args[0]).isInstance(proxy)) {
+				// 物理接続を返却後も操作できないよう、Connectionとしては物理接続を返さない
+				return ("unwrap".equals(name) ? proxy : Boolean.TRUE);
+			}
+			Object result;
+			try {
+				result = method.invoke(pc.physical, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+			if ("commit".equals(name)) {
+				ConnectionEvents.fireCommitted((Connection) proxy);
+			} else if ("rollback".equals(name) && args == null) {
+				// セーブポイントへのロールバックは除く
+				ConnectionEvents.fireRolledBack((Connection) proxy);
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,27 @@
+package jp.kt.db;
+
+import java.sql.Connection;
+
+/**
+ * Connectionを取得するためのインタフェース.
+ * <p>
+ * 処理ごとにConnectionを取得し、使用後にcloseする用途で使用します.<br>
+ * {@link ConnectionPool}などが実装しています.
+ * </p>
+ *
+ * @author tatsuya.kumon
+ */
+public interface ConnectionProvider {
+	/**
+	 * Connectionを取得する.
+	 * <p>
+	 * オートコミットはOFFになります.<br>
+	 * 使用後は呼び出し側でcloseしてください.
+	 * </p>
+	 *
+	 * @return {@link Connection}オブジェクト
+	 * @throws Exception
+	 *             DB接続時に例外発生した場合
+	 */
+	Connection getConnection() throws Exception;
+}
@@ -2,16 +2,24 @@ package jp.kt.db;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.naming.InitialContext;
 import javax.sql.DataSource;
 
+import jp.kt.prop.KtProperties;
+import jp.kt.security.Digest;
+
 /**
  * DB接続クラス.
  *
  * @author tatsuya.kumon
  */
 public final class DbConnectManager {
+	/** 接続先ごとのコネクションプール */
+	private static final Map<String, ConnectionPool> POOL_MAP = new HashMap<String, ConnectionPool>();
+
 	/**
 	 * DataSourceを使ったConnectionの取得.
 	 * <p>
@@ -34,6 +42,27 @@ public final class DbConnectManager {
 		return con;
 	}
 
+	/**
+	 * DataSourceからConnectionを取得する{@link ConnectionProvider}の生成.
+	 * <p>
+	 * 主にWebアプリで{@link RoutingConnectionProvider}のプライマリやレプリカに指定する場合に使用します.<br>
+	 * 取得するConnectionは{@link #createConnection(String)}と同じです.
+	 * </p>
+	 *
+	 * @param jndiName
+	 *            接続先JNDI名
+	 * @return {@link ConnectionProvider}オブジェクト
+	 */
+	public static ConnectionProvider createConnectionProvider(
+			final String jndiName) {
+		return new ConnectionProvider() {
+			@Override
+			public Connection getConnection() throws Exception {
+				return createConnection(jndiName);
+			}
+		};
+	}
+
 	/**
 	 * DriverManagerを使ったConnectionの取得.
 	 * <p>
@@ -60,4 +89,90 @@ public final class DbConnectManager {
 		con.setAutoCommit(false);
 		return con;
 	}
+
+	/**
+	 * コネクションプールを使ったConnectionの取得.
+	 * <p>
+	 * 主にバッチ用.<br>
+	 * 接続Driver、接続URL、ログインユーザの組ごとに{@link ConnectionPool}を生成し、そこから取得します.<br>
+	 * プールの設定はkt.propertiesの kt.core.db.pool.* の値となります.<br>
+	 * オートコミットはOFFになります.<br>
+	 * 使用後にcloseするとプールに返却されます.
+	 * </p>
+	 *
+	 * @param driver
+	 *            接続Driver
+	 * @param url
+	 *            接続URL
+	 * @param user
+	 *            ログインユーザ
+	 * @param password
+	 *            ログインパスワード
+	 * @return {@link Connection}オブジェクト
+	 * @throws Exception
+	 *             DB接続時に例外発生した場合
+	 */
+	public static Connection createPooledConnection(String driver, String url,
+			String user, String password) throws Exception {
+		return getConnectionPool(driver, url, user, password).getConnection();
+	}
+
+	/**
+	 * 接続先の{@link ConnectionPool}を取得する.
+	 * <p>
+	 * 存在しない場合はkt.propertiesの設定で生成します.<br>
+	 * 接続Driver、接続URL、ログインユーザ、ログインパスワードの組ごとに別のプールとなります.<br>
+	 * プールの統計情報を参照する場合などに使用してください.
+	 * </p>
+	 *
+	 * @param driver
+	 *            接続Driver
+	 * @param url
+	 *            接続URL
+	 * @param user
+	 *            ログインユーザ
+	 * @param password
+	 *            ログインパスワード
+	 * @return {@link ConnectionPool}オブジェクト
+	 * @throws Exception
+	 *             接続Driverが見つからない場合
+	 */
+	public static ConnectionPool getConnectionPool(String driver, String url,
+			String user, String password) throws Exception {
+		// 別のパスワードで取得した場合に同じプールを返さないよう、パスワードのハッシュ値もキーに含める
+		String key = driver + "\t" + url + "\t" + user + "\t"
+				+ (password == null ? "" : Digest.sha256Hex(password));
+		synchronized (POOL_MAP) {
+			ConnectionPool pool = POOL_MAP.get(key);
+			if (pool == null) {
+				KtProperties prop = KtProperties.getInstance();
+				pool = new ConnectionPool(driver, url, user, password,
+						prop.getInt("kt.core.db.pool.min", 0),
+						prop.getInt("kt.core.db.pool.max", 10));
+				pool.setBorrowTimeoutMillis(prop.getInt(
+						"kt.core.db.pool.borrow.timeout.millisec", 30000));
+				pool.setIdleTimeoutMillis(prop.getInt(
+						"kt.core.db.pool.idle.timeout.millisec", 600000));
+				pool.setLeakDetectionMillis(prop.getInt(
+						"kt.core.db.pool.leak.detection.millisec", 0));
+				POOL_MAP.put(key, pool);
+			}
+			return pool;
+		}
+	}
+
+	/**
+	 * 生成した全ての{@link ConnectionPool}をクローズする.
+	 * <p>
+	 * バッチの終了時などに呼び出してください.
+	 * </p>
+	 */
+	public static void closeConnectionPools() {
+		synchronized (POOL_MAP) {
+			for (ConnectionPool pool : POOL_MAP.values()) {
+				pool.close();
+			}
+			POOL_MAP.clear();
+		}
+	}
 }
@@ -0,0 +1,362 @@
+package jp.kt.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jp.kt.logger.ApplicationLogger;
+
+/**
+ * 更新用のプライマリと参照用のレプリカにConnectionを振り分けるプロバイダ.
+ * <p>
+ * {@link #getConnection()}は常にプライマリのConnectionを返します.<br>
+ * 更新やトランザクションにはこちらを使用してください.<br>
+ * {@link #getReadConnectionProvider()}で取得したプロバイダは、<br>
+ * 登録したレプリカの中から{@link Strategy}に従って選んだConnectionを返します.<br>
+ * {@link jp.kt.db.manager.BaseManager#setReadConnectionProvider(ConnectionProvider)}
+ * に設定すると、SELECTがレプリカで実行されます.<br>
+ * レプリカのConnectionは、プライマリのConnectionのcommit、rollback、closeまで同じものが使用されます.<br>
+ * <br>
+ * RoutingConnectionProvider routing = new RoutingConnectionProvider(primaryPool);<br>
+ * routing.addReplica(replicaPool1);<br>
+ * routing.addReplica(replicaPool2);<br>
+ * UserManager manager = new UserManager(routing.getConnection());<br>
+ * manager.setConnectionProvider(routing);<br>
+ * manager.setReadConnectionProvider(routing.getReadConnectionProvider());<br>
+ * <br>
+ * レプリカからの取得に失敗した場合は、他のレプリカ、プライマリの順に取得を試みます.<br>
+ * レプリカが1つも登録されていない場合はプライマリから取得します.<br>
+ * レプリカへの反映遅延があるため、直前の更新結果を参照する必要があるSELECTはプライマリで実行してください.
+ * </p>
+ *
+ * @author tatsuya.kumon
+ */
+public class RoutingConnectionProvider implements ConnectionProvider {
+	/**
+	 * レプリカの選択方法.
+	 *
+	 * @author tatsuya.kumon
+	 */
+	public static enum Strategy {
+		/** 順番に選択する */
+		ROUND_ROBIN,
+		/** 使用中のConnectionが最も少ないレプリカを選択する */
+		LEAST_BUSY;
+	}
+
+	/** ログ出力用Logger名 */
+	private static final String LOGGER_NAME = "ktConnectionPool";
+
+	/** プライマリ */
+	private final ConnectionProvider primary;
+
+	/** レプリカ */
+	private final List<Replica> replicas = new CopyOnWriteArrayList<Replica>();
+
+	/** ラウンドロビンの順番 */
+	private final AtomicInteger sequence = new AtomicInteger();
+
+	/** レプリカの選択方法 */
+	private volatile Strategy strategy = Strategy.ROUND_ROBIN;
+
+	/** 参照用のプロバイダ */
+	private final ConnectionProvider readConnectionProvider = new ConnectionProvider() {
+		@Override
+		public Connection getConnection() throws Exception {
+			return getReadConnection();
+		}
+	};
+
+	/** Logger */
+	private final ApplicationLogger logger = new ApplicationLogger(
+			LOGGER_NAME, RoutingConnectionProvider.class);
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * @param primary
+	 *            プライマリのプロバイダ
+	 */
+	public RoutingConnectionProvider(ConnectionProvider primary) {
+		this.primary = primary;
+	}
+
+	/**
+	 * レプリカを追加する.
+	 *
+	 * @param replica
+	 *            レプリカのプロバイダ
+	 */
+	public void addReplica(ConnectionProvider replica) {
+		replicas.add(new Replica(replica));
+	}
+
+	/**
+	 * レプリカの選択方法を設定する.
+	 * <p>
+	 * デフォルトは{@link Strategy#ROUND_ROBIN}です.
+	 * </p>
+	 *
+	 * @param strategy
+	 *            レプリカの選択方法
+	 */
+	public void setStrategy(Strategy strategy) {
+		this.strategy = strategy;
+	}
+
+	/**
+	 * プライマリのConnectionを取得する.
+	 * <p>
+	 * オートコミットはOFFになります.<br>
+	 * commit、rollback、closeを{@link ConnectionEvents}に通知し、<br>
+	 * {@link jp.kt.db.manager.TransactionState}の状態を区切って、SELECTに使用していたレプリカのConnectionを解放します.<br>
+	 * 使用後は呼び出し側でcloseしてください.
+	 * </p>
+	 *
+	 * @return {@link Connection}オブジェクト
+	 * @throws Exception
+	 *             DB接続時に例外発生した場合
+	 */
+	@Override
+	public Connection getConnection() throws Exception {
+		Connection con = primary.getConnection();
+		return (Connection) Proxy.newProxyInstance(
+				Connection.class.getClassLoader(),
+				new Class<?>[] { Connection.class }, new PrimaryHandler(con));
+	}
+
+	/**
+	 * プライマリのConnectionを取得する.
+	 * <p>
+	 * {@link ConnectionEvents#getPhysicalKey(Connection)}で使用します.
+	 * </p>
+	 *
+	 * @param con
+	 *            DB接続
+	 * @return {@link #getConnection()}で取得したConnectionの場合は、プライマリのConnection.<br>
+	 *         それ以外の場合は指定Connection.
+	 */
+	static Connection getPrimary(Connection con) {
+		if (!Proxy.isProxyClass(con.getClass())) {
+			return con;
+		}
+		InvocationHandler handler = Proxy.getInvocationHandler(con);
+		if (handler instanceof PrimaryHandler) {
+			return ((PrimaryHandler) handler).con;
+		}
+		return con;
+	}
+
+	/**
+	 * 参照用のプロバイダを取得する.
+	 * <p>
+	 * getConnectionでレプリカのConnectionを返すプロバイダです.
+	 * </p>
+	 *
+	 * @return {@link ConnectionProvider}オブジェクト
+	 */
+	public ConnectionProvider getReadConnectionProvider() {
+		return readConnectionProvider;
+	}
+
+	/**
+	 * レプリカのConnectionを取得する.
+	 *
+	 * @return {@link Connection}オブジェクト
+	 * @throws Exception
+	 *             プライマリへのDB接続時に例外発生した場合
+	 */
+	private Connection getReadConnection() throws Exception {
+		Replica[] array = replicas.toArray(new Replica[0]);
+		if (array.length == 0) {
+			return primary.getConnection();
+		}
+		int first = selectReplica(array);
+		for (int i = 0; i < array.length; i++) {
+			Replica replica = array[(first + i) % array.length];
+			try {
+				return replica.getConnection();
+			} catch (Exception e) {
+				logger.warnLog("A079", "レプリカからのConnection取得に失敗しました", e);
+			}
+		}
+		// 全てのレプリカで失敗した場合はプライマリ
+		return primary.getConnection();
+	}
+
+	/**
+	 * 最初に取得を試みるレプリカを選択する.
+	 *
+	 * @param array
+	 *            レプリカ
+	 * @return レプリカのインデックス
+	 */
+	private int selectReplica(Replica[] array) {
+		int start = (sequence.getAndIncrement() & Integer.MAX_VALUE)
+				% array.length;
+		if (strategy == Strategy.ROUND_ROBIN) {
+			return start;
+		}
+		// 使用中が同数の場合に偏らないよう、ラウンドロビンの位置から探す
+		int selected = start;
+		for (int i = 1; i < array.length; i++) {
+			int index = (start + i) % array.length;
+			if (array[index].busy.get() < array[selected].busy.get()) {
+				selected = index;
+			}
+		}
+		return selected;
+	}
+
+	/**
+	 * レプリカ.
+	 *
+	 * @author tatsuya.kumon
+	 */
+	private static final class Replica {
+		/** プロバイダ */
+		private final ConnectionProvider provider;
+
+		/** 使用中のConnection数 */
+		private final AtomicInteger busy = new AtomicInteger();
+
+		/**
+		 * コンストラクタ.
+		 *
+		 * @param provider
+		 *            プロバイダ
+		 */
+		private Replica(ConnectionProvider provider) {
+			this.provider = provider;
+		}
+
+		/**
+		 * 使用中の数を数えるConnectionを取得する.
+		 *
+		 * @return {@link Connection}オブジェクト
+		 * @throws Exception
+		 *             DB接続時に例外発生した場合
+		 */
+		private Connection getConnection() throws Exception {
+			Connection con = provider.getConnection();
+			busy.incrementAndGet();
+			return (Connection) Proxy.newProxyInstance(
+					Connection.class.getClassLoader(),
+					new Class<?>[] { Connection.class }, new ReplicaHandler(
+							this, con));
+		}
+	}
+
+	/**
+	 * プライマリのConnectionの処理.
+	 * <p>
+	 * トランザクションの区切りでConnection単位の状態を区切ります.
+	 * </p>
+	 *
+	 * @author tatsuya.kumon
+	 */
+	private static final class PrimaryHandler implements InvocationHandler {
+		/** プライマリのConnection */
+		private final Connection con;
+
+		/**
+		 * コンストラクタ.
+		 *
+		 * @param con
+		 *            プライマリのConnection
+		 */
+		private PrimaryHandler(Connection con) {
+			this.con = con;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args)
+				throws Throwable {
+			String name = method.getName();
+			if ("equals".equals(name)) {
+				return proxy == args[0];
+			} else if ("hashCode".equals(name)) {
+				return System.identityHashCode(proxy);
+			} else if ("close".equals(name)) {
+				// レプリカのConnectionを解放してからクローズ
+				ConnectionEvents.fireClosing((Connection) proxy);
+			} else if (("unwrap".equals(name) || "isWrapperFor".equals(name))
+					&& ((Class<?>) args[0]).isInstance(proxy)) {
+				return ("unwrap".equals(name) ? proxy : Boolean.TRUE);
+			}
+			Object result;
+			try {
+				result = method.invoke(con, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+			if ("commit".equals(name)) {
+				ConnectionEvents.fireCommitted((Connection) proxy);
+			} else if ("rollback".equals(name) && args == null) {
+				// セーブポイントへのロールバックは除く
+				ConnectionEvents.fireRolledBack((Connection) proxy);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * レプリカのConnectionの処理.
+	 * <p>
+	 * closeした時点で使用中の数を減らします.
+	 * </p>
+	 *
+	 * @author tatsuya.kumon
+	 */
+	private static final class ReplicaHandler implements InvocationHandler {
+		/** レプリカ */
+		private final Replica replica;
+
+		/** レプリカのConnection */
+		private final Connection con;
+
+		/** クローズ済みフラグ */
+		private boolean closed;
+
+		/**
+		 * コンストラクタ.
+		 *
+		 * @param replica
+		 *            レプリカ
+		 * @param con
+		 *            レプリカのConnection
+		 */
+		private ReplicaHandler(Replica replica, Connection con) {
+			this.replica = replica;
+			this.con = con;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args)
+				throws Throwable {
+			String name = method.getName();
+			if ("equals".equals(name)) {
+				return proxy == args[0];
+			} else if ("hashCode".equals(name)) {
+				return System.identityHashCode(proxy);
+			} else if ("close".equals(name)) {
+				synchronized (this) {
+					if (!closed) {
+						closed = true;
+						replica.busy.decrementAndGet();
+					}
+				}
+			}
+			try {
+				return method.invoke(con, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package jp.kt.db.manager;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jp.kt.prop.KtProperties;
+
+/**
+ * {@link BaseManager}の非同期SQL実行で使用するスレッドプール.
+ * <p>
+ * スレッド数とキューサイズはkt.propertiesの kt.core.sql.async.threads と<br>
+ * kt.core.sql.async.queue.size の値となります（未指定の場合は8と100）.<br>
+ * キューが一杯の場合は呼び出し元スレッドで実行されるため、<br>
+ * 大量に投入しても実行待ちのタスクが際限なく増えることはありません.
+ * </p>
+ *
+ * @author tatsuya.kumon
+ */
+public final class AsyncSqlExecutor {
+	/** 使用するExecutorService */
+	private static ExecutorService executor;
+
+	/**
+	 * インスタンス生成不可.
+	 */
+	private AsyncSqlExecutor() {
+	}
+
+	/**
+	 * 非同期SQL実行で使用するExecutorServiceを取得する.
+	 * <p>
+	 * 未設定の場合はkt.propertiesの設定で生成します.
+	 * </p>
+	 *
+	 * @return {@link ExecutorService}オブジェクト
+	 */
+	public static synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			int threads = KtProperties.getInstance().getInt(
+					"kt.core.sql.async.threads", 8);
+			int queueSize = KtProperties.getInstance().getInt(
+					"kt.core.sql.async.queue.size", 100);
+			final AtomicInteger threadNo = new AtomicInteger();
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads,
+					60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(
+							queueSize), new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread t = new Thread(r, "ktAsyncSql-"
+									+ threadNo.incrementAndGet());
+							t.setDaemon(true);
+							return t;
+						}
+					}, new ThreadPoolExecutor.CallerRunsPolicy());
+			pool.allowCoreThreadTimeOut(true);
+			executor = pool;
+		}
+		return executor;
+	}
+
+	/**
+	 * 非同期SQL実行で使用するExecutorServiceを設定する.
+	 * <p>
+	 * アプリケーション側で管理しているスレッドプールを使う場合に設定してください.
+	 * </p>
+	 *
+	 * @param executorService
+	 *            {@link ExecutorService}オブジェクト
+	 */
+	public static synchronized void setExecutor(ExecutorService executorService) {
+		executor = executorService;
+	}
+
+	/**
+	 * スレッドプールを終了する.
+	 * <p>
+	 * 実行中のタスクの終了は待ちません.
+	 * </p>
+	 */
+	public static synchronized void shutdown() {
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+	}
+}
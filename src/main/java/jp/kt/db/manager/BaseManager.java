@@ -1,21 +1,54 @@
 package jp.kt.db.manager;
 
+import java.io.InputStream;
+import java.io.Reader;
 import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import jp.kt.db.ConnectionEvents;
+import jp.kt.db.ConnectionListener;
+import jp.kt.db.ConnectionProvider;
 import jp.kt.db.entity.BaseEntity;
+import jp.kt.exception.KtException;
 import jp.kt.logger.ApplicationLogger;
 import jp.kt.prop.KtProperties;
+import jp.kt.text.TextReader;
+import jp.kt.text.TextWriter;
 import jp.kt.tool.StringUtil;
+import jp.kt.tool.ThreadUtil;
 import jp.kt.tool.Validator;
 
 /**
@@ -43,21 +76,52 @@ public abstract class BaseManager<T extends BaseEntity> {
 		/** 小数型 */
 		DOUBLE,
 		/** DECIMAL型 */
-		DECIMAL;
+		DECIMAL,
+		/** 長整数型 */
+		LONG,
+		/** バイナリ型 */
+		BINARY,
+		/** 長い文字列型 */
+		CLOB;
 	}
 
 	/** DB接続 */
 	private Connection con;
 
+	/** 非同期実行時にSQLごとのDB接続を取得するためのプロバイダ */
+	private ConnectionProvider connectionProvider;
+
+	/** SELECTをレプリカで実行するためのプロバイダ */
+	private ConnectionProvider readConnectionProvider;
+
+	/** 主キーをキーにしたentityのキャッシュ */
+	private EntityCache entityCache;
+
 	/** SELECT時のフェッチサイズ */
 	private Integer fetchSize;
 
+	/** PreparedStatementキャッシュの最大数（0以下の場合はキャッシュしない） */
+	private int stmtCacheSize;
+
+	/** 処理中のResultSetごとのカラム名とカラムインデックスの対応 */
+	private final Map<ResultSet, Map<String, Integer>> columnIndexes = Collections
+			.synchronizedMap(new IdentityHashMap<ResultSet, Map<String, Integer>>());
+
+	/** 処理中以外のResultSetに対して最後に生成したカラムインデックス */
+	private volatile ColumnIndex lastColumnIndex;
+
 	/** SQL文のデバッグ出力するためのLogger */
 	private ApplicationLogger sqlDebugLogger;
 
 	/** SQLスローログのためのLogger */
 	private ApplicationLogger sqlSlowLogger;
 
+	/** 同じ形のSQLの繰り返し実行を警告するためのLogger */
+	private ApplicationLogger sqlRepeatLogger;
+
+	/** 同じ形のSQLの繰り返し実行を警告する回数（0以下の場合は検知しない） */
+	private int repeatThreshold;
+
 	/** SQLデバッグログの出力可否 */
 	private boolean isOutputSqlDebuglog = KtProperties.getInstance()
 			.getBoolean("kt.core.sql.debuglog.enabled");
@@ -66,12 +130,52 @@ public abstract class BaseManager<T extends BaseEntity> {
 	private long borderMillisec = KtProperties.getInstance().getInt(
 			"kt.core.sql.slowlog.border.millisec");
 
+	/** ロック付きのSELECT（レプリカに振り分けない） */
+	private static final Pattern LOCKING_READ_PATTERN = Pattern.compile(
+			"\\bFOR\\s+(UPDATE|SHARE|NO\\s+KEY\\s+UPDATE|KEY\\s+SHARE)\\b"
+					+ "|\\bLOCK\\s+IN\\s+SHARE\\s+MODE\\b",
+			Pattern.CASE_INSENSITIVE);
+
 	/** SQLデバッグログ出力用Logger名 */
 	private static final String SQL_DEBUG_LOGGER_NAME = "sqlDebug";
 
 	/** SQLスローログ出力用Logger名 */
 	private static final String SQL_SLOW_LOGGER_NAME = "sqlSlow";
 
+	/** SQL繰り返し実行の警告ログ出力用Logger名 */
+	private static final String SQL_REPEAT_LOGGER_NAME = "sqlRepeat";
+
+	/** 一括ロードの進捗ログ出力用Logger名 */
+	private static final String BULK_LOAD_LOGGER_NAME = "bulkLoad";
+
+	static {
+		// プールなどから取得したConnectionのトランザクションの区切りで、Connection単位の状態を区切る
+		ConnectionEvents.addListener(new ConnectionListener() {
+			@Override
+			public void committed(Connection con) {
+				RepeatedQueryDetector.reset(con);
+				TransactionState.commit(con);
+			}
+
+			@Override
+			public void rolledBack(Connection con) {
+				RepeatedQueryDetector.reset(con);
+				TransactionState.rollback(con);
+			}
+
+			@Override
+			public void closing(Connection con) {
+				RepeatedQueryDetector.close(con);
+				TransactionState.close(con);
+			}
+
+			@Override
+			public void physicalClosing(Object physicalKey) {
+				StatementCache.close(physicalKey);
+			}
+		});
+	}
+
 	/**
 	 * コンストラクタ.
 	 *
@@ -99,6 +203,16 @@ public abstract class BaseManager<T extends BaseEntity> {
 				fetchSize = Integer.parseInt(fetchSizeStr);
 			}
 		}
+		// PreparedStatementキャッシュの最大数をプロパティファイルから取得
+		stmtCacheSize = KtProperties.getInstance().getInt(
+				"kt.core.sql.stmtcache.size", 0);
+		// 同じ形のSQLの繰り返し実行を警告する回数をプロパティファイルから取得
+		repeatThreshold = KtProperties.getInstance().getInt(
+				"kt.core.sql.repeat.threshold", 0);
+		if (repeatThreshold > 0) {
+			sqlRepeatLogger = new ApplicationLogger(SQL_REPEAT_LOGGER_NAME,
+					this.getClass());
+		}
 	}
 
 	/**
@@ -110,6 +224,99 @@ public abstract class BaseManager<T extends BaseEntity> {
 		return this.con;
 	}
 
+	/**
+	 * 非同期実行時にSQLごとのDB接続を取得するためのプロバイダを設定する.
+	 * <p>
+	 * executeQueryAsync、executeUpdateAsyncを使用する場合は必ず設定してください.<br>
+	 * {@link jp.kt.db.ConnectionPool}などを想定しています.
+	 * </p>
+	 *
+	 * @param connectionProvider
+	 *            {@link ConnectionProvider}オブジェクト
+	 */
+	public void setConnectionProvider(ConnectionProvider connectionProvider) {
+		this.connectionProvider = connectionProvider;
+	}
+
+	/**
+	 * SELECTをレプリカで実行するためのプロバイダを設定する.
+	 * <p>
+	 * 設定すると、コンストラクタで指定したDB接続で実行するSELECTを、<br>
+	 * このプロバイダから取得したDB接続で実行します.<br>
+	 * 取得したDB接続は、コンストラクタで指定したDB接続のトランザクションの区切り<br>
+	 * （commit、rollback、close）まで、同じDB接続を使う全てのManagerで使用し、<br>
+	 * 区切りでロールバックしてcloseします（{@link TransactionState}）.<br>
+	 * {@link jp.kt.db.ConnectionPool}以外から取得したDB接続は、{@link #commit()}、{@link #rollback()}で<br>
+	 * トランザクションを区切ってください.<br>
+	 * オートコミットONのDB接続は、更新後の一定時間のみSELECTをプライマリで実行します.<br>
+	 * executeQueryAsyncと並列SELECTも{@link #setConnectionProvider(ConnectionProvider)}<br>
+	 * の代わりにこのプロバイダを使用します.<br>
+	 * 更新はコンストラクタで指定したDB接続で実行します.<br>
+	 * 以下のSELECTはコンストラクタで指定したDB接続で実行します.<br>
+	 * ・ロック付きのSELECT（FOR UPDATE、FOR SHARE、LOCK IN SHARE MODE など）<br>
+	 * ・同じトランザクションで更新、もしくはロック付きのSELECTを実行した後のSELECT<br>
+	 * {@link jp.kt.db.RoutingConnectionProvider#getReadConnectionProvider()}などを想定しています.
+	 * </p>
+	 *
+	 * @param readConnectionProvider
+	 *            {@link ConnectionProvider}オブジェクト.nullの場合は振り分けない.
+	 */
+	public void setReadConnectionProvider(
+			ConnectionProvider readConnectionProvider) {
+		if (readConnectionProvider != null) {
+			// 更新後のSELECTをプライマリで実行するため、更新の記録を開始
+			TransactionState.enable();
+		}
+		this.readConnectionProvider = readConnectionProvider;
+	}
+
+	/**
+	 * 主キーをキーにしたentityのキャッシュを設定する.
+	 * <p>
+	 * {@link #executeQueryByKey(CharSequence, EntityKey)}で使用します.<br>
+	 * デフォルトはキャッシュしません（{@link #executeQueryByKey(CharSequence, EntityKey)}は毎回SELECTします）.<br>
+	 * JVM内で共有する場合は{@link LruEntityCache#getInstance()}を設定してください.
+	 * </p>
+	 *
+	 * @param entityCache
+	 *            {@link EntityCache}オブジェクト.nullの場合はキャッシュしない.
+	 */
+	public void setEntityCache(EntityCache entityCache) {
+		this.entityCache = entityCache;
+	}
+
+	/**
+	 * コミット処理.
+	 * <p>
+	 * コンストラクタで指定したDB接続をコミットし、トランザクションを区切ります（{@link TransactionState}）.<br>
+	 * 更新したテーブルを参照しているキャッシュを破棄し、レプリカのDB接続をクローズします.<br>
+	 * {@link jp.kt.db.ConnectionPool}以外（JNDIなど）から取得したDB接続は、<br>
+	 * このメソッドでコミットしてください.
+	 * </p>
+	 *
+	 * @throws SQLException
+	 *             コミット時に例外発生した場合
+	 */
+	public void commit() throws SQLException {
+		commit(con);
+	}
+
+	/**
+	 * ロールバック処理.
+	 * <p>
+	 * コンストラクタで指定したDB接続をロールバックし、トランザクションを区切ります（{@link TransactionState}）.<br>
+	 * レプリカのDB接続をクローズします.<br>
+	 * {@link jp.kt.db.ConnectionPool}以外（JNDIなど）から取得したDB接続は、<br>
+	 * このメソッドでロールバックしてください.
+	 * </p>
+	 *
+	 * @throws SQLException
+	 *             ロールバック時に例外発生した場合
+	 */
+	public void rollback() throws SQLException {
+		rollback(con);
+	}
+
 	/**
 	 * 共通SELECT処理.
 	 *
@@ -170,183 +377,1636 @@ public abstract class BaseManager<T extends BaseEntity> {
 	 */
 	protected List<T> executeQuery(CharSequence sql, Object[] values,
 			int timeoutSec) throws Exception {
-		List<T> list = new ArrayList<T>();
+		final List<T> list = new ArrayList<T>();
+		executeQuery(sql, values, timeoutSec, new RowHandler<T>() {
+			@Override
+			public void handle(T entity) {
+				list.add(entity);
+			}
+		});
+		return list;
+	}
+
+	/**
+	 * コンストラクタで指定したDB接続での共通SELECT処理.
+	 * <p>
+	 * レプリカに振り分けません.キャッシュに登録する結果の取得に使用します.
+	 * </p>
+	 *
+	 * @param sql
+	 *            SQL文
+	 * @param values
+	 *            プレースホルダーの値
+	 * @return SELECTした結果のList
+	 * @throws Exception
+	 *             SQL実行時に例外発生した場合
+	 */
+	private List<T> executeQueryOnPrimary(CharSequence sql, Object[] values)
+			throws Exception {
+		final List<T> list = new ArrayList<T>();
+		doExecuteQuery(con, sql, values, 0, 0, new RowHandler<T>() {
+			@Override
+			public void handle(T entity) {
+				list.add(entity);
+			}
+		});
+		return list;
+	}
+
+	/**
+	 * キャッシュを使った共通SELECT処理.
+	 * <p>
+	 * 有効期間はkt.propertiesの kt.core.sql.resultcache.ttl.millisec の値となります.
+	 * </p>
+	 *
+	 * @param sql
+	 *            SQL文
+	 * @param values
+	 *            プレースホルダーの値
+	 * @return SELECTした結果のList
+	 * @throws Exception
+	 *             SQL実行時に例外発生した場合
+	 * @see #executeQueryWithCache(CharSequence, Object[], long)
+	 */
+	protected List<T> executeQueryWithCache(CharSequence sql, Object[] values)
+			throws Exception {
+		return executeQueryWithCache(sql, values, -1);
+	}
+
+	/**
+	 * キャッシュを使った共通SELECT処理.
+	 * <p>
+	 * 同じManagerクラス、SQL文、プレースホルダーの値の組で実行済みであれば、<br>
+	 * DBにアクセスせず{@link QueryResultCache}に保持している結果を返します.<br>
+	 * 参照しているテーブルがBaseManager経由で更新された場合、キャッシュは破棄されます.<br>
+	 * マスタデータなど、更新頻度が低く繰り返し参照されるSELECTで使用してください.<br>
+	 * <br>
+	 * DB接続にコミットされていない更新が有る場合は、キャッシュを使用せずにSELECTします（{@link TransactionState}）.<br>
+	 * 反映遅延のある結果をキャッシュしないよう、キャッシュに無い場合のSELECTはレプリカに振り分けません.<br>
+	 * 返却するList、entityは毎回新しいインスタンスのため、変更してもキャッシュには影響しません.
+	 * </p>
+	 *
+	 * @param sql
+	 *            SQL文
+	 * @param values
+	 *            プレースホルダーの値
+	 * @param ttlMillis
+	 *            有効期間（ミリ秒）.0の場合は無期限、負の場合はデフォルトの有効期間.
+	 * @return SELECTした結果のList
+	 * @throws Exception
+	 *             SQL実行時に例外発生した場合
+	 */
+	@SuppressWarnings("unchecked")
+	protected List<T> executeQueryWithCache(CharSequence sql, Object[] values,
+			long ttlMillis) throws Exception {
+		TransactionState.enable();
+		if (TransactionState.isUpdated(con)) {
+			// コミット前の値をキャッシュしない
+			return executeQuery(sql, values);
+		}
+		QueryResultCache cache = QueryResultCache.getInstance();
+		QueryResultCache.Key key = cache.createKey(this.getClass(),
+				sql.toString(), values);
+		if (key == null) {
+			// 参照テーブルが不明なためキャッシュしない
+			return executeQuery(sql, values);
+		}
+		List<T> cached = (List<T>) cache.get(key);
+		if (cached != null) {
+			return cached;
+		}
+		long generation = cache.getGeneration(key);
+		List<T> list = executeQueryOnPrimary(sql, values);
+		cache.put(key, list, ttlMillis, generation);
+		return list;
+	}
+
+	/**
+	 * 主キーによる1件のSELECT処理（キャッシュ有り）.
+	 * <p>
+	 * 同じキーのentityが{@link #setEntityCache(EntityCache)}のキャッシュにあれば、<br>
+	 * SELECTを実行せずにキャッシュのentityを返します.<br>
+	 * 無い場合はキーの値をプレースホルダーにセットしてSELECTし、結果をキャッシュします.<br>
+	 * 該当する行が無い場合はキャッシュしません.<br>
+	 * キャッシュが設定されていない場合（デフォルト）は毎回SELECTします.<br>
+	 * <br>
+	 * キャッシュは主キーごとで、テーブルの更新を検知しません.<br>
+	 * 該当entityを更新する場合は{@link #executeUpdate(CharSequence, Object[], EntityKey)}<br>
+	 * もしくは{@link #evictEntity(EntityKey)}でキャッシュを破棄してください.<br>
+	 * 破棄したentityは、トランザクションのコミット後にもう一度破棄するため（{@link TransactionState}）、<br>
+	 * コミットまでの間に他のスレッドがキャッシュした更新前の行も残りません.<br>
+	 * DB接続にコミットされていない更新が有る場合は、コミット前の値をキャッシュしないようキャッシュを使用しません.<br>
+	 * 反映遅延のある行をキャッシュしないよう、キャッシュを使用する場合のSELECTはレプリカに振り分けません.<br>
+	 * 返すentityは毎回新しいインスタンスのため、変更してもキャッシュには影響しません.
+	 * </p>
+	 *
+	 * @param sql
+	 *            主キーをプレースホルダーにした1件のSELECT文
+	 * @param key
+	 *            entityクラスと主キーの値
+	 * @return entity.<br>
+	 *         該当する行が無い場合はnull.
+	 * @throws Exception
+	 *             SQL実行時に例外発生した場合
+	 */
+	@SuppressWarnings("unchecked")
+	protected T executeQueryByKey(CharSequence sql, EntityKey key)
+			throws Exception {
+		if (entityCache != null) {
+			TransactionState.enable();
+		}
+		EntityCache cache = (TransactionState.isUpdated(con) ? null
+				: entityCache);
+		if (cache != null) {
+			BaseEntity cached = cache.get(key);
+			if (cached != null) {
+				return (T) cached;
+			}
+		}
+		List<T> list = (cache != null ? executeQueryOnPrimary(sql,
+				key.getValues()) : executeQuery(sql, key.getValues()));
+		if (list.isEmpty()) {
+			return null;
+		}
+		if (list.size() > 1) {
+			throw new KtException("A080", "主キーによるSELECTで複数件取得されました. key="
+					+ key);
+		}
+		T entity = list.get(0);
+		if (cache != null) {
+			cache.put(key, entity);
+		}
+		return entity;
+	}
+
+	/**
+	 * 主キーをキーにしたentityのキャッシュを破棄する.
+	 * <p>
+	 * DB接続にコミットされていない更新が有る場合は、コミット後にもう一度破棄します.
+	 * </p>
+	 *
+	 * @param key
+	 *            entityクラスと主キーの値
+	 */
+	protected void evictEntity(EntityKey key) {
+		if (entityCache != null) {
+			TransactionState.enable();
+			entityCache.remove(key);
+			TransactionState.addEviction(con, entityCache, key);
+		}
+	}
+
+	/**
+	 * 指定entityクラスのキャッシュを全て破棄する.
+	 * <p>
+	 * 複数行を更新した場合などに使用します.<br>
+	 * DB接続にコミットされていない更新が有る場合は、コミット後にもう一度破棄します.
+	 * </p>
+	 *
+	 * @param entityClass
+	 *            entityクラス
+	 */
+	protected void evictEntities(Class<? extends BaseEntity> entityClass) {
+		if (entityCache != null) {
+			TransactionState.enable();
+			entityCache.removeAll(entityClass);
+			TransactionState.addEviction(con, entityCache, entityClass);
+		}
+	}
+
+	/**
+	 * カーソル形式の共通SELECT処理.
+	 * <p>
+	 * 1行フェッチするごとに{@link #createEntity(ResultSet)}でentityを生成し、<br>
+	 * {@link RowHandler}に渡します.<br>
+	 * 結果をListに保持しないため、大量件数のSELECTでもメモリを消費しません.
+	 * </p>
+	 *
+	 * @param sql
+	 *            SQL文
+	 * @param handler
+	 *            1件ごとの処理を行うハンドラ
+	 * @return 処理した件数
+	 * @throws Exception
+	 *             SQL実行時、もしくはハンドラで例外発生した場合
+	 */
+	protected long executeQuery(CharSequence sql, RowHandler<T> handler)
+			throws Exception {
+		return executeQuery(sql, new Object[0], handler);
+	}
+
+	/**
+	 * カーソル形式の共通SELECT処理.
+	 *
+	 * @param sql
+	 *            SQL文
+	 * @param values
+	 *            プレースホルダーの値
+	 * @param handler
+	 *            1件ごとの処理を行うハンドラ
+	 * @return 処理した件数
+	 * @throws Exception
+	 *             SQL実行時、もしくはハンドラで例外発生した場合
+	 * @see #executeQuery(CharSequence, RowHandler)
+	 */
+	protected long executeQuery(CharSequence sql, Object[] values,
+			RowHandler<T> handler) throws Exception {
+		return executeQuery(sql, values, 0, handler);
+	}
+
+	/**
+	 * カーソル形式の共通SELECT処理.
+	 * <p>
+	 * SQLスローログの実行時間は、SQL実行から全件の処理が終わるまでの時間となります.<br>
+	 * ハンドラから例外がスローされた場合は、その時点で処理を中断し、<br>
+	 * PreparedStatementとResultSetをクローズします.
+	 * </p>
+	 *
+	 * @param sql
+	 *            SQL文
+	 * @param values
+	 *            プレースホルダーの値
+	 * @param timeoutSec
+	 *            タイムアウト値（秒）
+	 * @param handler
+	 *            1件ごとの処理を行うハンドラ
+	 * @return 処理した件数
+	 * @throws Exception
+	 *             SQL実行時、もしくはハンドラで例外発生した場合
+	 * @see #executeQuery(CharSequence, RowHandler)
+	 */
+	protected long executeQuery(CharSequence sql, Object[] values,
+			int timeoutSec, RowHandler<T> handler) throws Exception {
+		return doExecuteQuery(getReadConnection(sql), sql, values, timeoutSec,
+				0, handler);
+	}
+
+	/**
+	 * 取得件数の上限を指定したカーソル形式の共通SELECT処理.
+	 * <p>
+	 * {@link PreparedStatement#setMaxRows(int)}で上限を指定するため、<br>
+	 * 上限を超える行はDBから転送されません.
+	 * </p>
+	 *
+	 * @param sql
+	 *            SQL文
+	 * @param values
+	 *            プレースホルダーの値
+	 * @param timeoutSec
+	 *            タイムアウト値（秒）
+	 * @param maxRows
+	 *            取得件数の上限.0の場合は無制限.
+	 * @param handler
+	 *            1件ごとの処理を行うハンドラ
+	 * @return 処理した件数
+	 * @throws Exception
+	 *             SQL実行時、もしくはハンドラで例外発生した場合
+	 * @see #executeQuery(CharSequence, Object[], int, RowHandler)
+	 */
+	protected long executeQuery(CharSequence sql, Object[] values,
+			int timeoutSec, int maxRows, RowHandler<T> handler)
+			throws Exception {
+		return doExecuteQuery(getReadConnection(sql), sql, values, timeoutSec,
+				maxRows, handler);
+	}
+
+	/**
+	 * 指定したDB接続でのSELECT処理.
+	 *
+	 * @param con
+	 *            DB接続
+	 * @param sql
+	 *            SQL文
+	 * @param values
+	 *            プレースホルダーの値
+	 * @param timeoutSec
+	 *            タイムアウト値（秒）
+	 * @param maxRows
+	 *            取得件数の上限.0の場合は無制限.
+	 * @param handler
+	 *            1件ごとの処理を行うハンドラ
+	 * @return 処理した件数
+	 * @throws Exception
+	 *             SQL実行時、もしくはハンドラで例外発生した場合
+	 */
+	private long doExecuteQuery(Connection con, CharSequence sql,
+			Object[] values, int timeoutSec, int maxRows,
+			final RowHandler<T> handler) throws Exception {
+		return doReadQuery(con, sql, values, timeoutSec, maxRows,
+				new ResultSetReader() {
+					@Override
+					public long read(ResultSet rs) throws Exception {
+						long count = 0;
+						// カラム名とインデックスの対応をクエリごとに1回だけ解決する
+						columnIndexes.put(rs, createColumnIndexMap(rs));
+						try {
+							// 1件ずつentityクラスに格納してハンドラに渡す
+							while (rs.next()) {
+								handler.handle(createEntity(rs));
+								count++;
+							}
+						} finally {
+							columnIndexes.remove(rs);
+						}
+						return count;
+					}
+				});
+	}
+
+	/**
+	 * 指定したDB接続でResultSetを直接読み込むSELECT処理.
+	 *
+	 * @param con
+	 *            DB接続
+	 * @param sql
+	 *            SQL文
+	 * @param values
+	 *            プレースホルダーの値
+	 * @param timeoutSec
+	 *            タイムアウト値（秒）
+	 * @param maxRows
+	 *            取得件数の上限.0の場合は無制限.
+	 * @param reader
+	 *            ResultSetを読み込む処理
+	 * @return 処理した件数
+	 * @throws Exception
+	 *             SQL実行時、もしくは読み込み処理で例外発生した場合
+	 */
+	private long doReadQuery(Connection con, CharSequence sql,
+			Object[] values, int timeoutSec, int maxRows,
+			ResultSetReader reader) throws Exception {
+		long count = 0;
 		long start = 0;
 		long end = 0;
-		try (PreparedStatement pstmt = con.prepareStatement(sql.toString())) {
+		PreparedStatement pstmt = prepareStatement(con, sql.toString());
+		try {
 			// タイムアウト値の設定
 			pstmt.setQueryTimeout(timeoutSec);
 			if (sqlDebugLogger != null) {
 				sqlDebugLogger.debugLog("[SQL]"
 						+ createSqlForLog(sql.toString(), values));
 			}
+			// 同じ形のSQLの繰り返し実行を検知
+			detectRepeatedQuery(con, sql.toString());
 			// プレースホルダーのセット
 			setPlaceHolder(pstmt, values);
 			// フェッチサイズのセット
 			if (fetchSize != null) {
 				pstmt.setFetchSize(fetchSize);
 			}
+			// 取得件数上限のセット
+			if (maxRows > 0) {
+				pstmt.setMaxRows(maxRows);
+			}
 			// SQL実行
 			start = System.nanoTime();
 			try (ResultSet rs = pstmt.executeQuery()) {
-				end = System.nanoTime();
-				// entityクラスに格納
-				while (rs.next()) {
-					list.add(createEntity(rs));
-				}
+				count = reader.read(rs);
 			}
+			end = System.nanoTime();
+			// SQL統計の記録
+			SqlMetrics.record(SqlMetrics.Type.QUERY, sql.toString(), start,
+					end, count);
 			// SQLスローログ出力
 			outputSqlSlowLog(sql.toString(), values, start, end);
+		} finally {
+			releaseStatement(con, pstmt);
 		}
-		return list;
+		return count;
 	}
 
 	/**
-	 * 共通更新（INSERT、UPDATE、DELETE）処理.
+	 * 列指向形式の共通SELECT処理.
 	 *
 	 * @param sql
 	 *            SQL文
-	 * @return 更新したレコード数
+	 * @param values
+	 *            プレースホルダーの値
+	 * @return SELECTした結果
 	 * @throws Exception
 	 *             SQL実行時に例外発生した場合
+	 * @see #executeColumnarQuery(CharSequence, Object[], int)
 	 */
-	protected int executeUpdate(CharSequence sql) throws Exception {
-		return executeUpdate(sql, new Object[0]);
+	protected ColumnarResult executeColumnarQuery(CharSequence sql,
+			Object[] values) throws Exception {
+		return executeColumnarQuery(sql, values, 0);
 	}
 
 	/**
-	 * 共通更新（INSERT、UPDATE、DELETE）処理.
+	 * 列指向形式の共通SELECT処理.
+	 * <p>
+	 * entityを生成せず、カラムごとにプリミティブ型の配列へ格納します.<br>
+	 * 数値のカラムは int[]、long[]、double[]、文字列のカラムは辞書とコードの配列となるため、<br>
+	 * 数十万件の集計でも1行ごとのオブジェクト生成が発生しません.<br>
+	 * 詳細は{@link ColumnarResult}を参照してください.
+	 * </p>
 	 *
 	 * @param sql
 	 *            SQL文
+	 * @param values
+	 *            プレースホルダーの値
 	 * @param timeoutSec
 	 *            タイムアウト値（秒）
-	 * @return 更新したレコード数
+	 * @return SELECTした結果
 	 * @throws Exception
 	 *             SQL実行時に例外発生した場合
 	 */
-	protected int executeUpdate(CharSequence sql, int timeoutSec)
-			throws Exception {
-		return executeUpdate(sql, new Object[0], timeoutSec);
+	protected ColumnarResult executeColumnarQuery(CharSequence sql,
+			Object[] values, int timeoutSec) throws Exception {
+		final ColumnarResult[] result = new ColumnarResult[1];
+		doReadQuery(getReadConnection(sql), sql, values, timeoutSec, 0,
+				new ResultSetReader() {
+					@Override
+					public long read(ResultSet rs) throws Exception {
+						result[0] = ColumnarResult.create(rs);
+						return result[0].getRowCount();
+					}
+				});
+		return result[0];
+	}
+
+	/**
+	 * SELECT結果をテキスト出力する.
+	 * <p>
+	 * entityを生成せず、ResultSetの1行ごとに{@link TextWriter}へ出力します.<br>
+	 * 全行をメモリに保持しないため、大量件数の出力でもメモリ使用量は一定です.<br>
+	 * 値はResultSet#getString()で取得した文字列をそのまま出力し、NULLは空文字とします.<br>
+	 * TextWriterのcloseは呼び出し側で行ってください.
+	 * </p>
+	 *
+	 * @param sql
+	 *            SQL文
+	 * @param values
+	 *            プレースホルダーの値
+	 * @param writer
+	 *            出力先
+	 * @param header
+	 *            1行目にカラム名を出力する場合はtrue
+	 * @return 出力したデータの行数（カラム名の行は含まない）
+	 * @throws Exception
+	 *             SQL実行時、もしくは出力時に例外発生した場合
+	 */
+	protected long exportText(CharSequence sql, Object[] values,
+			final TextWriter writer, final boolean header) throws Exception {
+		return doReadQuery(getReadConnection(sql), sql, values, 0, 0,
+				new ResultSetReader() {
+					@Override
+					public long read(ResultSet rs) throws Exception {
+						ResultSetMetaData meta = rs.getMetaData();
+						int columnCount = meta.getColumnCount();
+						String[] lineData = new String[columnCount];
+						if (header) {
+							for (int i = 0; i < columnCount; i++) {
+								lineData[i] = meta.getColumnLabel(i + 1);
+							}
+							writer.writeLine(lineData);
+						}
+						long count = 0;
+						while (rs.next()) {
+							for (int i = 0; i < columnCount; i++) {
+								lineData[i] = rs.getString(i + 1);
+							}
+							writer.writeLine(lineData);
+							count++;
+						}
+						return count;
+					}
+				});
+	}
+
+	/**
+	 * キーセット方式のページングによるSELECT処理.
+	 * <p>
+	 * 前ページ最終行のキーより後ろの行をWHERE句で絞り込んで1ページ分取得します.<br>
+	 * OFFSETを使わないため、ページが深くなっても取得コストは変わりません.<br>
+	 * 次ページの有無を判定するため1ページの件数＋1件まで取得します.
+	 * </p>
+	 *
+	 * @param pagination
+	 *            ページング条件
+	 * @param values
+	 *            WHERE句のプレースホルダーの値
+	 * @param token
+	 *            前ページの{@link KeysetPage#getNextToken()}.<br>
+	 *            1ページ目の場合はnull.
+	 * @return 1ページ分の結果
+	 * @throws Exception
+	 *             SQL実行時に例外発生した場合
+	 */
+	protected KeysetPage<T> executeKeysetQuery(
+			final KeysetPagination pagination, Object[] values, String token)
+			throws Exception {
+		Object[] lastKey = pagination.decodeToken(token);
+		final int pageSize = pagination.getPageSize();
+		final List<T> list = new ArrayList<T>();
+		final Object[][] nextKey = new Object[1][];
+		final boolean[] hasNext = new boolean[1];
+		String sql = pagination.createSql(lastKey != null);
+		doReadQuery(getReadConnection(sql), sql,
+				pagination.createValues(values, lastKey),
+				pagination.getTimeoutSec(), pageSize + 1,
+				new ResultSetReader() {
+					@Override
+					public long read(ResultSet rs) throws Exception {
+						columnIndexes.put(rs, createColumnIndexMap(rs));
+						try {
+							while (rs.next()) {
+								if (list.size() == pageSize) {
+									// 次ページが存在する
+									hasNext[0] = true;
+									break;
+								}
+								list.add(createEntity(rs));
+								if (list.size() == pageSize) {
+									// ページ最終行のキーを保持
+									nextKey[0] = pagination.readKey(rs);
+								}
+							}
+						} finally {
+							columnIndexes.remove(rs);
+						}
+						return list.size();
+					}
+				});
+		String nextToken = null;
+		if (hasNext[0]) {
+			nextToken = pagination.encodeToken(nextKey[0]);
+		}
+		return new KeysetPage<T>(list, nextToken);
+	}
+
+	/**
+	 * 共通更新（INSERT、UPDATE、DELETE）処理.
+	 *
+	 * @param sql
+	 *            SQL文
+	 * @return 更新したレコード数
+	 * @throws Exception
+	 *             SQL実行時に例外発生した場合
+	 */
+	protected int executeUpdate(CharSequence sql) throws Exception {
+		return executeUpdate(sql, new Object[0]);
+	}
+
+	/**
+	 * 共通更新（INSERT、UPDATE、DELETE）処理.
+	 *
+	 * @param sql
+	 *            SQL文
+	 * @param timeoutSec
+	 *            タイムアウト値（秒）
+	 * @return 更新したレコード数
+	 * @throws Exception
+	 *             SQL実行時に例外発生した場合
+	 */
+	protected int executeUpdate(CharSequence sql, int timeoutSec)
+			throws Exception {
+		return executeUpdate(sql, new Object[0], timeoutSec);
+	}
+
+	/**
+	 * 共通更新（INSERT、UPDATE、DELETE）処理.
+	 *
+	 * @param sql
+	 *            SQL文
+	 * @param values
+	 *            プレースホルダーの値
+	 * @return 更新したレコード数
+	 * @throws Exception
+	 *             SQL実行時に例外発生した場合
+	 */
+	protected int executeUpdate(CharSequence sql, Object[] values)
+			throws Exception {
+		return executeUpdate(sql, values, 0);
+	}
+
+	/**
+	 * 共通更新（INSERT、UPDATE、DELETE）処理.
+	 *
+	 * @param sql
+	 *            SQL文
+	 * @param values
+	 *            プレースホルダーの値
+	 * @param timeoutSec
+	 *            タイムアウト値（秒）
+	 * @return 更新したレコード数
+	 * @throws Exception
+	 *             SQL実行時に例外発生した場合
+	 */
+	protected int executeUpdate(CharSequence sql, Object[] values,
+			int timeoutSec) throws Exception {
+		return doExecuteUpdate(con, sql, values, timeoutSec);
+	}
+
+	/**
+	 * 主キーで特定した1件の更新（UPDATE、DELETE）処理.
+	 * <p>
+	 * 更新後に、{@link #executeQueryByKey(CharSequence, EntityKey)}でキャッシュした<br>
+	 * 該当entityを破棄します.<br>
+	 * 例外が発生した場合も破棄します.<br>
+	 * コミット後にももう一度破棄します.
+	 * </p>
+	 *
+	 * @param sql
+	 *            SQL文
+	 * @param values
+	 *            プレースホルダーの値
+	 * @param key
+	 *            破棄するentityクラスと主キーの値
+	 * @return 更新したレコード数
+	 * @throws Exception
+	 *             SQL実行時に例外発生した場合
+	 */
+	protected int executeUpdate(CharSequence sql, Object[] values,
+			EntityKey key) throws Exception {
+		try {
+			return doExecuteUpdate(con, sql, values, 0);
+		} finally {
+			evictEntity(key);
+		}
+	}
+
+	/**
+	 * 指定したDB接続での更新（INSERT、UPDATE、DELETE）処理.
+	 *
+	 * @param con
+	 *            DB接続
+	 * @param sql
+	 *            SQL文
+	 * @param values
+	 *            プレースホルダーの値
+	 * @param timeoutSec
+	 *            タイムアウト値（秒）
+	 * @return 更新したレコード数
+	 * @throws Exception
+	 *             SQL実行時に例外発生した場合
+	 */
+	private int doExecuteUpdate(Connection con, CharSequence sql,
+			Object[] values, int timeoutSec) throws Exception {
+		// コミット後にもキャッシュを破棄するよう記録
+		TransactionState.beginUpdate(con, sql.toString());
+		int updateCnt = 0;
+		PreparedStatement pstmt = prepareStatement(con, sql.toString());
+		try {
+			// タイムアウト値の設定
+			pstmt.setQueryTimeout(timeoutSec);
+			if (sqlDebugLogger != null) {
+				sqlDebugLogger.debugLog("[SQL]"
+						+ createSqlForLog(sql.toString(), values));
+			}
+			// 同じ形のSQLの繰り返し実行を検知
+			detectRepeatedQuery(con, sql.toString());
+			// プレースホルダーのセット
+			setPlaceHolder(pstmt, values);
+			// SQL実行
+			long start = System.nanoTime();
+			updateCnt = pstmt.executeUpdate();
+			long end = System.nanoTime();
+			// 更新したテーブルを参照しているSELECT結果のキャッシュを破棄
+			QueryResultCache.getInstance().invalidate(sql.toString());
+			// SQL統計の記録
+			SqlMetrics.record(SqlMetrics.Type.UPDATE, sql.toString(), start,
+					end, updateCnt);
+			// SQLスローログ出力
+			outputSqlSlowLog(sql.toString(), values, start, end);
+		} finally {
+			releaseStatement(con, pstmt);
+		}
+		return updateCnt;
+	}
+
+	/**
+	 * 共通更新（INSERT、UPDATE、DELETE）処理.
+	 * <p>
+	 * 同じSQLで複数のプレースホルダーのパターンを実行する.
+	 * </p>
+	 *
+	 * @param sql
+	 *            SQL文
+	 * @param valuesList
+	 *            プレースホルダーの値のリスト
+	 * @return 更新したレコード数
+	 * @throws Exception
+	 *             SQL実行時に例外発生した場合
+	 */
+	protected int executeUpdate(CharSequence sql, List<Object[]> valuesList)
+			throws Exception {
+		return executeUpdate(sql, valuesList, 0);
+	}
+
+	/**
+	 * 共通更新（INSERT、UPDATE、DELETE）処理.
+	 * <p>
+	 * 同じSQLで複数のプレースホルダーのパターンを実行する.<br>
+	 * kt.propertiesの kt.core.sql.batch.chunksize の件数ごとに分割してexecuteBatchします.
+	 * </p>
+	 *
+	 * @param sql
+	 *            SQL文
+	 * @param valuesList
+	 *            プレースホルダーの値のリスト
+	 * @param timeoutSec
+	 *            タイムアウト値（秒）
+	 * @return 更新したレコード数.<br>
+	 *         件数が不明（{@link Statement#SUCCESS_NO_INFO}）の行は含みません.
+	 * @throws Exception
+	 *             SQL実行時に例外発生した場合
+	 * @see #executeBatch(CharSequence, List, BatchCondition)
+	 */
+	protected int executeUpdate(CharSequence sql, List<Object[]> valuesList,
+			int timeoutSec) throws Exception {
+		BatchCondition condition = new BatchCondition();
+		condition.setTimeoutSec(timeoutSec);
+		int[] results = executeBatch(sql, valuesList, condition);
+		int updateCnt = 0;
+		for (int result : results) {
+			if (result > 0) {
+				updateCnt += result;
+			}
+		}
+		return updateCnt;
+	}
+
+	/**
+	 * 共通バッチ更新（INSERT、UPDATE、DELETE）処理.
+	 * <p>
+	 * 同じSQLで複数のプレースホルダーのパターンを実行する.<br>
+	 * チャンクサイズはkt.propertiesの kt.core.sql.batch.chunksize の値となります.
+	 * </p>
+	 *
+	 * @param sql
+	 *            SQL文
+	 * @param valuesList
+	 *            プレースホルダーの値のリスト
+	 * @return 行ごとの更新結果（{@link PreparedStatement#executeBatch()}の結果を連結したもの）
+	 * @throws Exception
+	 *             SQL実行時に例外発生した場合
+	 * @see #executeBatch(CharSequence, List, BatchCondition)
+	 */
+	protected int[] executeBatch(CharSequence sql, List<Object[]> valuesList)
+			throws Exception {
+		return executeBatch(sql, valuesList, new BatchCondition());
+	}
+
+	/**
+	 * 共通バッチ更新（INSERT、UPDATE、DELETE）処理.
+	 * <p>
+	 * 同じSQLで複数のプレースホルダーのパターンを、チャンクサイズごとに分割してexecuteBatchします.<br>
+	 * 1度にドライバに渡すパラメータセットがチャンクサイズまでに制限されるため、<br>
+	 * 大量件数でもドライバのメモリ使用量を抑えられます.<br>
+	 * コミット間隔を指定した場合は、その数のチャンクを実行するごとにコミットします.<br>
+	 * SQLスローログはチャンクごとの実行時間で判定します.<br>
+	 * {@link BatchCondition#setMultiRowInsert(boolean)}でtrueを指定した場合、<br>
+	 * INSERT文は複数行INSERTに書き換えて実行します.
+	 * </p>
+	 *
+	 * @param sql
+	 *            SQL文
+	 * @param valuesList
+	 *            プレースホルダーの値のリスト
+	 * @param condition
+	 *            バッチ更新の実行条件
+	 * @return 行ごとの更新結果（{@link PreparedStatement#executeBatch()}の結果を連結したもの）
+	 * @throws Exception
+	 *             SQL実行時に例外発生した場合
+	 */
+	protected int[] executeBatch(CharSequence sql, List<Object[]> valuesList,
+			BatchCondition condition) throws Exception {
+		int[] results = new int[valuesList.size()];
+		int chunkSize = condition.getChunkSize();
+		if (chunkSize <= 0) {
+			chunkSize = Math.max(valuesList.size(), 1);
+		}
+		if (condition.isMultiRowInsert()) {
+			MultiRowInsert insert = MultiRowInsert.parse(sql.toString());
+			if (insert != null
+					&& condition.getMaxParameters()
+							/ insert.getParameterCount() > 1) {
+				// 複数行INSERTに書き換えて実行
+				executeMultiRowInsert(sql.toString(), insert, valuesList,
+						condition, chunkSize, results);
+				return results;
+			}
+		}
+		PreparedStatement pstmt = prepareStatement(con, sql.toString());
+		try {
+			// タイムアウト値の設定
+			pstmt.setQueryTimeout(condition.getTimeoutSec());
+			int chunkNo = 0;
+			for (int from = 0; from < valuesList.size(); from += chunkSize) {
+				int to = Math.min(from + chunkSize, valuesList.size());
+				for (int i = from; i < to; i++) {
+					Object[] values = valuesList.get(i);
+					if (sqlDebugLogger != null) {
+						sqlDebugLogger.debugLog("[SQL]"
+								+ createSqlForLog(sql.toString(), values));
+					}
+					// プレースホルダーのセット
+					setPlaceHolder(pstmt, values);
+					// バッチ処理にパラメータセットを追加
+					pstmt.addBatch();
+				}
+				// コミット後にもキャッシュを破棄するよう記録
+				TransactionState.beginUpdate(con, sql.toString());
+				// SQL実行
+				long start = System.nanoTime();
+				int[] chunkResults = pstmt.executeBatch();
+				long end = System.nanoTime();
+				// 更新したテーブルを参照しているSELECT結果のキャッシュを破棄
+				QueryResultCache.getInstance().invalidate(sql.toString());
+				System.arraycopy(chunkResults, 0, results, from,
+						Math.min(chunkResults.length, to - from));
+				chunkNo++;
+				// SQL統計の記録
+				SqlMetrics.record(SqlMetrics.Type.BATCH, sql.toString(), start,
+						end, to - from);
+				// SQLスローログ出力
+				outputSqlSlowLog(sql.toString() + " [chunk=" + chunkNo
+						+ ", rows=" + (to - from) + "]", null, start, end);
+				// 指定チャンク数ごとにコミット
+				if (condition.getCommitInterval() > 0
+						&& chunkNo % condition.getCommitInterval() == 0) {
+					commit(con);
+				}
+			}
+		} finally {
+			releaseStatement(con, pstmt);
+		}
+		return results;
+	}
+
+	/**
+	 * 複数行INSERTに書き換えたバッチ更新処理.
+	 * <p>
+	 * チャンクごとに、プレースホルダー数上限に収まる行数の複数行INSERTをexecuteBatchし、<br>
+	 * 端数の行は元のSQL文（1行のINSERT）でexecuteBatchします.<br>
+	 * 端数の行数ごとに異なるSQL文を生成しないため、PreparedStatementキャッシュや<br>
+	 * DB側の実行計画キャッシュに使い捨てのSQL文が残りません.
+	 * </p>
+	 *
+	 * @param sql
+	 *            元のSQL文
+	 * @param insert
+	 *            複数行INSERTへの書き換え
+	 * @param valuesList
+	 *            プレースホルダーの値のリスト
+	 * @param condition
+	 *            バッチ更新の実行条件
+	 * @param chunkSize
+	 *            チャンクサイズ
+	 * @param results
+	 *            行ごとの更新結果を格納する配列
+	 * @throws Exception
+	 *             SQL実行時に例外発生した場合
+	 */
+	private void executeMultiRowInsert(String sql, MultiRowInsert insert,
+			List<Object[]> valuesList, BatchCondition condition,
+			int chunkSize, int[] results) throws Exception {
+		int parameterCount = insert.getParameterCount();
+		int rowsPerStatement = Math.min(condition.getMaxParameters()
+				/ parameterCount, chunkSize);
+		String fullSql = insert.createSql(rowsPerStatement);
+		PreparedStatement pstmt = prepareStatement(con, fullSql);
+		// 端数の行を実行する元のSQL文（必要になった時点で生成）
+		PreparedStatement restPstmt = null;
+		try {
+			// タイムアウト値の設定
+			pstmt.setQueryTimeout(condition.getTimeoutSec());
+			int chunkNo = 0;
+			for (int from = 0; from < valuesList.size(); from += chunkSize) {
+				int to = Math.min(from + chunkSize, valuesList.size());
+				// コミット後にもキャッシュを破棄するよう記録
+				TransactionState.beginUpdate(con, sql);
+				long start = System.nanoTime();
+				// 上限行数の複数行INSERT
+				int restFrom = to - (to - from) % rowsPerStatement;
+				if (restFrom > from) {
+					for (int i = from; i < restFrom; i += rowsPerStatement) {
+						setPlaceHolder(pstmt, joinValues(sql, valuesList, i,
+								i + rowsPerStatement, parameterCount));
+						pstmt.addBatch();
+					}
+					int[] statementResults = pstmt.executeBatch();
+					for (int i = 0; i < statementResults.length; i++) {
+						int rowFrom = from + i * rowsPerStatement;
+						fillRowResults(results, rowFrom, rowFrom
+								+ rowsPerStatement, statementResults[i]);
+					}
+				}
+				// 端数の行は元のSQL文でバッチ実行
+				if (restFrom < to) {
+					if (restPstmt == null) {
+						restPstmt = prepareStatement(con, sql);
+						restPstmt.setQueryTimeout(condition.getTimeoutSec());
+					}
+					for (int i = restFrom; i < to; i++) {
+						Object[] values = valuesList.get(i);
+						if (sqlDebugLogger != null) {
+							sqlDebugLogger.debugLog("[SQL]"
+									+ createSqlForLog(sql, values));
+						}
+						setPlaceHolder(restPstmt, values);
+						restPstmt.addBatch();
+					}
+					int[] restResults = restPstmt.executeBatch();
+					System.arraycopy(restResults, 0, results, restFrom,
+							Math.min(restResults.length, to - restFrom));
+				}
+				long end = System.nanoTime();
+				// 更新したテーブルを参照しているSELECT結果のキャッシュを破棄
+				QueryResultCache.getInstance().invalidate(sql);
+				chunkNo++;
+				// SQL統計の記録
+				SqlMetrics.record(SqlMetrics.Type.BATCH, sql, start, end, to
+						- from);
+				// SQLスローログ出力
+				outputSqlSlowLog(sql + " [chunk=" + chunkNo + ", rows="
+						+ (to - from) + ", multirow=" + rowsPerStatement + "]",
+						null, start, end);
+				// 指定チャンク数ごとにコミット
+				if (condition.getCommitInterval() > 0
+						&& chunkNo % condition.getCommitInterval() == 0) {
+					commit(con);
+				}
+			}
+		} finally {
+			try {
+				releaseStatement(con, pstmt);
+			} finally {
+				if (restPstmt != null) {
+					releaseStatement(con, restPstmt);
+				}
+			}
+		}
+	}
+
+	/**
+	 * CSV、TSVなどのテキストからの一括ロード処理.
+	 * <p>
+	 * テキストを1行ずつ読み込み、{@link BulkLoadCondition}の列指定に従って型変換した値を<br>
+	 * チャンクサイズごとにexecuteBatchします.<br>
+	 * テキストの読み込みと型変換は別スレッドで行い、DBへの更新と並行して実行します.<br>
+	 * 読み込み済みで未実行の行は{@link BulkLoadCondition#setQueueSize(int)}のチャンク数までしか保持しないため、<br>
+	 * 大量件数でもメモリを消費しません.<br>
+	 * コミット間隔を指定した場合は、その数のチャンクを実行するごとにコミットします.<br>
+	 * 最後にコミットした以降の更新は、呼び出し側でコミットしてください.<br>
+	 * 進捗（件数と1秒あたりの件数）は{@link BulkLoadCondition#setProgressInterval(int)}の行数ごとと、<br>
+	 * 完了時にログ出力します.<br>
+	 * 読み込み、型変換、更新のいずれかで例外が発生した場合は、読み込みを中断して例外をスローします.<br>
+	 * readerのcloseは呼び出し側で行ってください.
+	 * </p>
+	 *
+	 * @param sql
+	 *            SQL文
+	 * @param reader
+	 *            読み込むテキスト
+	 * @param condition
+	 *            一括ロードの実行条件
+	 * @return 更新に使用した行数
+	 * @throws Exception
+	 *             テキストの読み込み時、もしくはSQL実行時に例外発生した場合
+	 */
+	protected long executeBulkLoad(CharSequence sql, final TextReader reader,
+			final BulkLoadCondition condition) throws Exception {
+		final int chunkSize = condition.getChunkSize();
+		final BlockingQueue<List<Object[]>> queue = new ArrayBlockingQueue<List<Object[]>>(
+				Math.max(condition.getQueueSize(), 1));
+		// 読み込みの終了を示す値
+		final List<Object[]> end = new ArrayList<Object[]>(0);
+		// チャンクごとのバッチ更新の条件（コミットはここで行う）
+		BatchCondition chunkCondition = new BatchCondition(chunkSize);
+		chunkCondition.setTimeoutSec(condition.getTimeoutSec());
+		chunkCondition.setMultiRowInsert(condition.isMultiRowInsert());
+		chunkCondition.setMaxParameters(condition.getMaxParameters());
+		ExecutorService executor = Executors
+				.newSingleThreadExecutor(new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "ktBulkLoadReader");
+						t.setDaemon(true);
+						return t;
+					}
+				});
+		try {
+			// テキストの読み込みと型変換
+			Future<Void> future = executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					boolean interrupted = false;
+					try {
+						BulkLoadCondition.LineConverter converter = condition
+								.createConverter();
+						List<Object[]> chunk = new ArrayList<Object[]>(chunkSize);
+						String[] lineData;
+						while ((lineData = reader.readLine()) != null) {
+							if (reader.getLineCount() <= condition.getSkipLines()) {
+								continue;
+							}
+							chunk.add(converter.convert(lineData,
+									reader.getLineCount()));
+							if (chunk.size() >= chunkSize) {
+								queue.put(chunk);
+								chunk = new ArrayList<Object[]>(chunkSize);
+							}
+						}
+						if (!chunk.isEmpty()) {
+							queue.put(chunk);
+						}
+						return null;
+					} catch (InterruptedException e) {
+						// 更新側で中断された
+						interrupted = true;
+						return null;
+					} finally {
+						if (!interrupted) {
+							try {
+								queue.put(end);
+							} catch (InterruptedException e) {
+								Thread.currentThread().interrupt();
+							}
+						}
+					}
+				}
+			});
+			// DBへの更新
+			ApplicationLogger logger = new ApplicationLogger(
+					BULK_LOAD_LOGGER_NAME, this.getClass());
+			int progressInterval = condition.getProgressInterval();
+			long start = System.nanoTime();
+			long count = 0;
+			int chunkNo = 0;
+			List<Object[]> chunk;
+			while ((chunk = queue.take()) != end) {
+				executeBatch(sql, chunk, chunkCondition);
+				long before = count;
+				count += chunk.size();
+				chunkNo++;
+				// 指定チャンク数ごとにコミット
+				if (condition.getCommitInterval() > 0
+						&& chunkNo % condition.getCommitInterval() == 0) {
+					commit(con);
+				}
+				// 指定行数ごとに進捗をログ出力
+				if (progressInterval > 0
+						&& count / progressInterval > before / progressInterval) {
+					outputBulkLoadLog(logger, "進捗", count, start);
+				}
+			}
+			try {
+				// 読み込み側の例外をスロー
+				future.get();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof Exception) {
+					throw (Exception) e.getCause();
+				}
+				throw e;
+			}
+			outputBulkLoadLog(logger, "完了", count, start);
+			return count;
+		} finally {
+			// 更新側で例外が発生した場合は読み込みを中断
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * 一括ロードの進捗をログ出力する.
+	 *
+	 * @param logger
+	 *            Logger
+	 * @param label
+	 *            進捗もしくは完了
+	 * @param count
+	 *            更新に使用した行数
+	 * @param start
+	 *            開始したシステム時刻
+	 */
+	private void outputBulkLoadLog(ApplicationLogger logger, String label,
+			long count, long start) {
+		long millis = Math.max((System.nanoTime() - start) / 1000000, 1);
+		StringBuilder msg = new StringBuilder();
+		msg.append("[BULK LOAD] ");
+		msg.append(label);
+		msg.append(" rows=");
+		msg.append(new DecimalFormat().format(count));
+		msg.append(", time=");
+		msg.append(new DecimalFormat().format(millis));
+		msg.append("ms, throughput=");
+		msg.append(new DecimalFormat().format(count * 1000 / millis));
+		msg.append("rows/sec");
+		logger.infoLog("A077", msg.toString());
+	}
+
+	/**
+	 * 複数行分のプレースホルダーの値を連結する.
+	 *
+	 * @param sql
+	 *            元のSQL文（デバッグログ出力用）
+	 * @param valuesList
+	 *            プレースホルダーの値のリスト
+	 * @param from
+	 *            開始行（この行を含む）
+	 * @param to
+	 *            終了行（この行を含まない）
+	 * @param parameterCount
+	 *            1行分のプレースホルダーの数
+	 * @return 連結したプレースホルダーの値
+	 */
+	private Object[] joinValues(String sql, List<Object[]> valuesList,
+			int from, int to, int parameterCount) {
+		Object[] joined = new Object[(to - from) * parameterCount];
+		for (int i = from; i < to; i++) {
+			Object[] values = valuesList.get(i);
+			if (values.length != parameterCount) {
+				throw new IllegalArgumentException(
+						"プレースホルダーの数と値の数が一致しません. row=" + i + ", placeholders="
+								+ parameterCount + ", values=" + values.length);
+			}
+			if (sqlDebugLogger != null) {
+				sqlDebugLogger.debugLog("[SQL]" + createSqlForLog(sql, values));
+			}
+			System.arraycopy(values, 0, joined, (i - from) * parameterCount,
+					parameterCount);
+		}
+		return joined;
+	}
+
+	/**
+	 * 複数行INSERTの更新件数を行ごとの更新結果に展開する.
+	 *
+	 * @param results
+	 *            行ごとの更新結果を格納する配列
+	 * @param from
+	 *            開始行（この行を含む）
+	 * @param to
+	 *            終了行（この行を含まない）
+	 * @param count
+	 *            複数行INSERTの更新件数
+	 */
+	private void fillRowResults(int[] results, int from, int to, int count) {
+		int result = (count == to - from ? 1 : Statement.SUCCESS_NO_INFO);
+		for (int i = from; i < to; i++) {
+			results[i] = result;
+		}
+	}
+
+	/**
+	 * 非同期SELECT処理.
+	 *
+	 * @param sql
+	 *            SQL文
+	 * @param values
+	 *            プレースホルダーの値
+	 * @return SELECTした結果のListを返す{@link CompletableFuture}
+	 * @see #executeQueryAsync(CharSequence, Object[], int)
+	 */
+	protected CompletableFuture<List<T>> executeQueryAsync(CharSequence sql,
+			Object[] values) {
+		return executeQueryAsync(sql, values, 0);
+	}
+
+	/**
+	 * 非同期SELECT処理.
+	 * <p>
+	 * {@link AsyncSqlExecutor}のスレッドで、{@link #setConnectionProvider(ConnectionProvider)}<br>
+	 * で設定したプロバイダから取得したDB接続を使って実行します.<br>
+	 * 互いに依存しない複数のSELECTを並列に実行する場合に使用してください.<br>
+	 * DB接続は実行後にロールバックしてcloseします.
+	 * </p>
+	 *
+	 * @param sql
+	 *            SQL文
+	 * @param values
+	 *            プレースホルダーの値
+	 * @param timeoutSec
+	 *            タイムアウト値（秒）.{@link PreparedStatement#setQueryTimeout(int)}に設定されます.
+	 * @return SELECTした結果のListを返す{@link CompletableFuture}
+	 */
+	protected CompletableFuture<List<T>> executeQueryAsync(
+			final CharSequence sql, final Object[] values, final int timeoutSec) {
+		final ConnectionProvider provider = getConnectionProviderForRead();
+		return CompletableFuture.supplyAsync(new Supplier<List<T>>() {
+			@Override
+			public List<T> get() {
+				try (Connection asyncCon = provider.getConnection()) {
+					try {
+						final List<T> list = new ArrayList<T>();
+						doExecuteQuery(asyncCon, sql, values, timeoutSec, 0,
+								new RowHandler<T>() {
+									@Override
+									public void handle(T entity) {
+										list.add(entity);
+									}
+								});
+						return list;
+					} finally {
+						try {
+							asyncCon.rollback();
+						} finally {
+							closeState(asyncCon);
+						}
+					}
+				} catch (Exception e) {
+					throw new CompletionException(e);
+				}
+			}
+		}, AsyncSqlExecutor.getExecutor());
+	}
+
+	/**
+	 * 非同期更新（INSERT、UPDATE、DELETE）処理.
+	 *
+	 * @param sql
+	 *            SQL文
+	 * @param values
+	 *            プレースホルダーの値
+	 * @return 更新したレコード数を返す{@link CompletableFuture}
+	 * @see #executeUpdateAsync(CharSequence, Object[], int)
+	 */
+	protected CompletableFuture<Integer> executeUpdateAsync(CharSequence sql,
+			Object[] values) {
+		return executeUpdateAsync(sql, values, 0);
+	}
+
+	/**
+	 * 非同期更新（INSERT、UPDATE、DELETE）処理.
+	 * <p>
+	 * {@link AsyncSqlExecutor}のスレッドで、{@link #setConnectionProvider(ConnectionProvider)}<br>
+	 * で設定したプロバイダから取得したDB接続を使って実行します.<br>
+	 * このManagerのDB接続とは別トランザクションとなり、成功した場合はコミット、<br>
+	 * 失敗した場合はロールバックしてcloseします.
+	 * </p>
+	 *
+	 * @param sql
+	 *            SQL文
+	 * @param values
+	 *            プレースホルダーの値
+	 * @param timeoutSec
+	 *            タイムアウト値（秒）.{@link PreparedStatement#setQueryTimeout(int)}に設定されます.
+	 * @return 更新したレコード数を返す{@link CompletableFuture}
+	 */
+	protected CompletableFuture<Integer> executeUpdateAsync(
+			final CharSequence sql, final Object[] values, final int timeoutSec) {
+		final ConnectionProvider provider = getConnectionProviderForAsync();
+		return CompletableFuture.supplyAsync(new Supplier<Integer>() {
+			@Override
+			public Integer get() {
+				try (Connection asyncCon = provider.getConnection()) {
+					boolean committed = false;
+					try {
+						int updateCnt = doExecuteUpdate(asyncCon, sql, values,
+								timeoutSec);
+						commit(asyncCon);
+						committed = true;
+						return updateCnt;
+					} finally {
+						try {
+							if (!committed) {
+								asyncCon.rollback();
+							}
+						} finally {
+							closeState(asyncCon);
+						}
+					}
+				} catch (Exception e) {
+					throw new CompletionException(e);
+				}
+			}
+		}, AsyncSqlExecutor.getExecutor());
+	}
+
+	/**
+	 * 範囲分割による並列SELECT処理.
+	 * <p>
+	 * {@link ParallelScan}の設定に従いキーの範囲ごとにSQL文を分割し、<br>
+	 * {@link #setConnectionProvider(ConnectionProvider)}で設定したプロバイダから<br>
+	 * 範囲ごとに取得したDB接続で並列に実行します.<br>
+	 * ハンドラは複数のスレッドから同時に呼ばれるため、スレッドセーフにしてください.<br>
+	 * 処理順は範囲をまたいで不定です.<br>
+	 * いずれかの範囲で例外が発生した場合は、他の範囲の処理を中断して例外をスローします.<br>
+	 * 範囲ごとのDB接続は実行後にロールバックしてcloseします.
+	 * </p>
+	 *
+	 * @param scan
+	 *            並列SELECTの条件
+	 * @param values
+	 *            WHERE句のプレースホルダーの値
+	 * @param handler
+	 *            1件ごとの処理を行うハンドラ
+	 * @return 処理した件数
+	 * @throws Exception
+	 *             SQL実行時、もしくはハンドラで例外発生した場合
+	 */
+	protected long executeParallelScan(ParallelScan scan, Object[] values,
+			RowHandler<T> handler) throws Exception {
+		List<Object[]> partitions = createScanPartitions(scan, values);
+		ExecutorService executor = createScanExecutor(partitions.size());
+		try {
+			List<Future<Long>> futures = new ArrayList<Future<Long>>();
+			for (Object[] partition : partitions) {
+				futures.add(executor.submit(createScanTask(scan, partition,
+						handler)));
+			}
+			long count = 0;
+			for (Future<Long> future : futures) {
+				try {
+					count += future.get();
+				} catch (ExecutionException e) {
+					// 他の範囲の処理を中断
+					executor.shutdownNow();
+					if (e.getCause() instanceof Exception) {
+						throw (Exception) e.getCause();
+					}
+					throw e;
+				}
+			}
+			return count;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * 範囲分割による並列SELECT処理.
+	 * <p>
+	 * {@link #executeParallelScan(ParallelScan, Object[], RowHandler)}と同様に並列に実行し、<br>
+	 * 結果を1つのStreamにまとめて返します.<br>
+	 * 読み出されていないentityは{@link ParallelScan#setQueueSize(int)}の件数までしか保持しないため、<br>
+	 * 大量件数でもメモリを消費しません.<br>
+	 * 順序は範囲をまたいで不定です.<br>
+	 * 範囲のSELECTで例外が発生した場合は、読み出し時に{@link jp.kt.exception.KtException}がスローされます.<br>
+	 * <br>
+	 * 途中で読み出しを止める場合に備え、必ずtry-with-resourcesなどでcloseしてください.
+	 * </p>
+	 *
+	 * @param scan
+	 *            並列SELECTの条件
+	 * @param values
+	 *            WHERE句のプレースホルダーの値
+	 * @return entityのStream
+	 * @throws Exception
+	 *             範囲の取得時に例外発生した場合
+	 */
+	protected Stream<T> executeParallelScanStream(ParallelScan scan,
+			Object[] values) throws Exception {
+		List<Object[]> partitions = createScanPartitions(scan, values);
+		final ExecutorService executor = createScanExecutor(partitions.size());
+		final ScanQueue<T> queue = new ScanQueue<T>(scan.getQueueSize(),
+				partitions.size());
+		final RowHandler<T> handler = new RowHandler<T>() {
+			@Override
+			public void handle(T entity) throws Exception {
+				queue.put(entity);
+			}
+		};
+		for (Object[] partition : partitions) {
+			final Callable<Long> task = createScanTask(scan, partition, handler);
+			executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						task.call();
+					} catch (Throwable e) {
+						queue.fail(e);
+					} finally {
+						try {
+							queue.finish();
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+					}
+				}
+			});
+		}
+		executor.shutdown();
+		return StreamSupport.stream(
+				Spliterators.spliteratorUnknownSize(queue, Spliterator.NONNULL),
+				false).onClose(new Runnable() {
+			@Override
+			public void run() {
+				queue.close();
+				executor.shutdownNow();
+			}
+		});
+	}
+
+	/**
+	 * 並列SELECTの範囲ごとのSQL文とプレースホルダーの値を生成する.
+	 *
+	 * @param scan
+	 *            並列SELECTの条件
+	 * @param values
+	 *            WHERE句のプレースホルダーの値
+	 * @return 範囲ごとの [SQL文, プレースホルダーの値] のList
+	 * @throws Exception
+	 *             キーの最小値と最大値の取得時に例外発生した場合
+	 */
+	private List<Object[]> createScanPartitions(ParallelScan scan,
+			Object[] values) throws Exception {
+		getConnectionProviderForRead();
+		final Object[] range = new Object[] { scan.getMin(), scan.getMax() };
+		if (range[0] == null || range[1] == null) {
+			// キーの最小値と最大値をSELECT
+			String rangeSql = scan.createRangeSql();
+			doReadQuery(getReadConnection(rangeSql), rangeSql,
+					(values == null ? new Object[0] : values),
+					scan.getTimeoutSec(), 0, new ResultSetReader() {
+						@Override
+						public long read(ResultSet rs) throws Exception {
+							if (rs.next()) {
+								range[0] = rs.getObject(1);
+								range[1] = rs.getObject(2);
+								return 1;
+							}
+							return 0;
+						}
+					});
+		}
+		return scan.createPartitions(values, range[0], range[1]);
+	}
+
+	/**
+	 * 並列SELECT用のスレッドプールを生成する.
+	 *
+	 * @param threads
+	 *            スレッド数
+	 * @return {@link ExecutorService}オブジェクト
+	 */
+	private ExecutorService createScanExecutor(int threads) {
+		final AtomicInteger threadNo = new AtomicInteger();
+		return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "ktParallelScan-"
+						+ threadNo.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * 並列SELECTの1つの範囲を実行する処理を生成する.
+	 *
+	 * @param scan
+	 *            並列SELECTの条件
+	 * @param partition
+	 *            [SQL文, プレースホルダーの値]
+	 * @param handler
+	 *            1件ごとの処理を行うハンドラ
+	 * @return 処理した件数を返す{@link Callable}
+	 */
+	private Callable<Long> createScanTask(final ParallelScan scan,
+			final Object[] partition, final RowHandler<T> handler) {
+		final ConnectionProvider provider = getConnectionProviderForRead();
+		return new Callable<Long>() {
+			@Override
+			public Long call() throws Exception {
+				try (Connection scanCon = provider.getConnection()) {
+					try {
+						return doExecuteQuery(scanCon, (String) partition[0],
+								(Object[]) partition[1], scan.getTimeoutSec(),
+								0, handler);
+					} finally {
+						try {
+							scanCon.rollback();
+						} finally {
+							closeState(scanCon);
+						}
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * 別のDB接続のConnection単位の状態を破棄する.
+	 * <p>
+	 * 非同期実行、並列SELECTで取得したDB接続をcloseする前に呼び出します.<br>
+	 * プール以外から取得したDB接続でも、SQL実行回数の集計とトランザクションの状態が残らないようにします.
+	 * </p>
+	 *
+	 * @param con
+	 *            DB接続
+	 */
+	private static void closeState(Connection con) {
+		RepeatedQueryDetector.close(con);
+		TransactionState.close(con);
+	}
+
+	/**
+	 * 別のDB接続で実行するためのプロバイダを取得する.
+	 *
+	 * @return {@link ConnectionProvider}オブジェクト
+	 */
+	private ConnectionProvider getConnectionProviderForAsync() {
+		if (connectionProvider == null) {
+			throw new IllegalStateException(
+					"別のDB接続での実行にはsetConnectionProviderでConnectionProviderを設定してください");
+		}
+		return connectionProvider;
 	}
 
 	/**
-	 * 共通更新（INSERT、UPDATE、DELETE）処理.
+	 * SELECTを実行するDB接続を取得する.
+	 * <p>
+	 * SELECTをレプリカで実行するためのプロバイダが設定されていなければ、<br>
+	 * コンストラクタで指定したDB接続を返します.<br>
+	 * ロック付きのSELECTの場合と、同じトランザクションで更新、<br>
+	 * もしくはロック付きのSELECTを実行済みの場合も、コンストラクタで指定したDB接続を返します.<br>
+	 * それ以外はトランザクションの区切りまで同じレプリカのDB接続を返します.
+	 * </p>
 	 *
 	 * @param sql
 	 *            SQL文
-	 * @param values
-	 *            プレースホルダーの値
-	 * @return 更新したレコード数
+	 * @return {@link Connection}オブジェクト
 	 * @throws Exception
-	 *             SQL実行時に例外発生した場合
+	 *             レプリカへのDB接続時に例外発生した場合
 	 */
-	protected int executeUpdate(CharSequence sql, Object[] values)
-			throws Exception {
-		return executeUpdate(sql, values, 0);
+	private Connection getReadConnection(CharSequence sql) throws Exception {
+		if (readConnectionProvider == null) {
+			return con;
+		}
+		if (LOCKING_READ_PATTERN.matcher(sql).find()) {
+			// ロックはプライマリで取得し、以降もプライマリで実行
+			TransactionState.beginLockingRead(con);
+			return con;
+		}
+		if (TransactionState.isPrimaryOnly(con)) {
+			return con;
+		}
+		return TransactionState.getReplicaConnection(con,
+				readConnectionProvider);
 	}
 
 	/**
-	 * 共通更新（INSERT、UPDATE、DELETE）処理.
+	 * 別のDB接続でSELECTを実行するためのプロバイダを取得する.
+	 * <p>
+	 * SELECTをレプリカで実行するためのプロバイダが設定されている場合はそちらを返します.
+	 * </p>
 	 *
-	 * @param sql
-	 *            SQL文
-	 * @param values
-	 *            プレースホルダーの値
-	 * @param timeoutSec
-	 *            タイムアウト値（秒）
-	 * @return 更新したレコード数
-	 * @throws Exception
-	 *             SQL実行時に例外発生した場合
+	 * @return {@link ConnectionProvider}オブジェクト
 	 */
-	protected int executeUpdate(CharSequence sql, Object[] values,
-			int timeoutSec) throws Exception {
-		int updateCnt = 0;
-		try (PreparedStatement pstmt = con.prepareStatement(sql.toString())) {
-			// タイムアウト値の設定
-			pstmt.setQueryTimeout(timeoutSec);
-			if (sqlDebugLogger != null) {
-				sqlDebugLogger.debugLog("[SQL]"
-						+ createSqlForLog(sql.toString(), values));
-			}
-			// プレースホルダーのセット
-			setPlaceHolder(pstmt, values);
-			// SQL実行
-			long start = System.nanoTime();
-			updateCnt = pstmt.executeUpdate();
-			long end = System.nanoTime();
-			// SQLスローログ出力
-			outputSqlSlowLog(sql.toString(), values, start, end);
+	private ConnectionProvider getConnectionProviderForRead() {
+		if (readConnectionProvider != null) {
+			return readConnectionProvider;
 		}
-		return updateCnt;
+		return getConnectionProviderForAsync();
 	}
 
 	/**
-	 * 共通更新（INSERT、UPDATE、DELETE）処理.
+	 * PreparedStatementを取得する.
 	 * <p>
-	 * 同じSQLで複数のプレースホルダーのパターンを実行する.
+	 * PreparedStatementキャッシュが有効な場合はキャッシュから取得します.<br>
+	 * 使用後は必ず {@link #releaseStatement(Connection, PreparedStatement)} を呼び出してください.
 	 * </p>
 	 *
+	 * @param con
+	 *            DB接続
 	 * @param sql
 	 *            SQL文
-	 * @param valuesList
-	 *            プレースホルダーの値のリスト
-	 * @return 更新したレコード数
-	 * @throws Exception
-	 *             SQL実行時に例外発生した場合
+	 * @return {@link PreparedStatement}オブジェクト
+	 * @throws SQLException
+	 *             PreparedStatement生成時に例外発生した場合
 	 */
-	protected int executeUpdate(CharSequence sql, List<Object[]> valuesList)
-			throws Exception {
-		return executeUpdate(sql, valuesList, 0);
+	private PreparedStatement prepareStatement(Connection con, String sql)
+			throws SQLException {
+		if (stmtCacheSize > 0) {
+			return StatementCache.getInstance(con, stmtCacheSize).prepare(sql);
+		}
+		return con.prepareStatement(sql);
 	}
 
 	/**
-	 * 共通更新（INSERT、UPDATE、DELETE）処理.
+	 * 使用が終わったPreparedStatementを解放する.
 	 * <p>
-	 * 同じSQLで複数のプレースホルダーのパターンを実行する.
+	 * キャッシュ対象の場合はキャッシュに戻し、それ以外の場合はクローズします.
 	 * </p>
 	 *
-	 * @param sql
-	 *            SQL文
-	 * @param valuesList
-	 *            プレースホルダーの値のリスト
-	 * @param timeoutSec
-	 *            タイムアウト値（秒）
-	 * @return 更新したレコード数
-	 * @throws Exception
-	 *             SQL実行時に例外発生した場合
+	 * @param con
+	 *            DB接続
+	 * @param pstmt
+	 *            {@link PreparedStatement}オブジェクト
+	 * @throws SQLException
+	 *             クローズ時に例外発生した場合
 	 */
-	protected int executeUpdate(CharSequence sql, List<Object[]> valuesList,
-			int timeoutSec) throws Exception {
-		int updateCnt;
-		long start = 0;
-		long end = 0;
-		try (PreparedStatement pstmt = con.prepareStatement(sql.toString())) {
-			// タイムアウト値の設定
-			pstmt.setQueryTimeout(timeoutSec);
-			for (Object[] values : valuesList) {
-				if (sqlDebugLogger != null) {
-					sqlDebugLogger.debugLog("[SQL]"
-							+ createSqlForLog(sql.toString(), values));
-				}
-				// プレースホルダーのセット
-				setPlaceHolder(pstmt, values);
-				// バッチ処理にパラメータセットを追加
-				pstmt.addBatch();
-			}
-			// SQL実行
-			start = System.nanoTime();
-			pstmt.executeBatch();
-			end = System.nanoTime();
-			updateCnt = pstmt.getUpdateCount();
-			// SQLスローログ出力
-			outputSqlSlowLog(sql.toString(), null, start, end);
+	private void releaseStatement(Connection con, PreparedStatement pstmt)
+			throws SQLException {
+		if (stmtCacheSize > 0) {
+			StatementCache.getInstance(con, stmtCacheSize).release(pstmt);
+		} else {
+			pstmt.close();
 		}
-		return updateCnt;
 	}
 
 	/**
 	 * プレースホルダーへの値のセット.
+	 * <p>
+	 * byte[]、InputStream、Readerはそれぞれ setBytes、setBinaryStream、
+	 * setCharacterStream でセットするため、<br>
+	 * 大きなバイナリや文字列をStringに変換せずに登録できます.<br>
+	 * ストリームはSQL実行時にJDBCドライバが読み込むため、実行後に呼び出し側でクローズしてください.
+	 * </p>
 	 *
 	 * @param pstmt
 	 *            {@link PreparedStatement}オブジェクト
@@ -380,6 +2040,17 @@ public abstract class BaseManager<T extends BaseEntity> {
 				case TIMESTAMP:
 					pstmt.setTimestamp(parameterIndex, null);
 					break;
+				case LONG:
+					pstmt.setNull(parameterIndex, Types.BIGINT);
+					break;
+				case BINARY:
+					// BLOBだとBYTEA型などを受け付けないドライバがあるためVARBINARYを指定
+					pstmt.setNull(parameterIndex, Types.VARBINARY);
+					break;
+				case CLOB:
+					// nullのReaderを受け付けないドライバがあるため型を指定してセット
+					pstmt.setNull(parameterIndex, Types.CLOB);
+					break;
 				}
 			} else if (value instanceof String) {
 				// 文字列
@@ -391,16 +2062,32 @@ public abstract class BaseManager<T extends BaseEntity> {
 			} else if (value instanceof Integer) {
 				// 整数値
 				pstmt.setInt(parameterIndex, (Integer) value);
+			} else if (value instanceof Long) {
+				// 長整数値
+				pstmt.setLong(parameterIndex, (Long) value);
 			} else if (value instanceof Double) {
 				// 小数
-				pstmt.setDouble(parameterIndex, (Integer) value);
+				pstmt.setDouble(parameterIndex, (Double) value);
 			} else if (value instanceof BigDecimal) {
 				// DECIMAL
 				pstmt.setBigDecimal(parameterIndex, (BigDecimal) value);
 			} else if (value instanceof Date) {
 				// 日時
-				Timestamp timestamp = new Timestamp(((Date) value).getTime());
+				Timestamp timestamp = (value instanceof Timestamp ? (Timestamp) value
+						: new Timestamp(((Date) value).getTime()));
 				pstmt.setTimestamp(parameterIndex, timestamp);
+			} else if (value instanceof byte[]) {
+				// バイナリ
+				pstmt.setBytes(parameterIndex, (byte[]) value);
+			} else if (value instanceof InputStream) {
+				// バイナリ（ストリーム）
+				pstmt.setBinaryStream(parameterIndex, (InputStream) value);
+			} else if (value instanceof Reader) {
+				// 長い文字列（ストリーム）
+				pstmt.setCharacterStream(parameterIndex, (Reader) value);
+			} else if (value != null) {
+				// その他の型はJDBCドライバの変換に任せる
+				pstmt.setObject(parameterIndex, value);
 			}
 		}
 	}
@@ -442,7 +2129,7 @@ public abstract class BaseManager<T extends BaseEntity> {
 			}
 			msg.append(i + 1);
 			msg.append("=");
-			msg.append(values[i] == null ? "[null]" : values[i].toString());
+			msg.append(toLogValue(values[i]));
 			if (i != values.length - 1) {
 				msg.append(",");
 			} else {
@@ -452,6 +2139,102 @@ public abstract class BaseManager<T extends BaseEntity> {
 		return msg.toString();
 	}
 
+	/**
+	 * プレースホルダーの値をログ出力用の文字列にする.
+	 * <p>
+	 * バイナリとストリームは内容を出力しません.
+	 * </p>
+	 *
+	 * @param value
+	 *            プレースホルダーの値
+	 * @return ログ出力用の文字列
+	 */
+	private String toLogValue(Object value) {
+		if (value == null) {
+			return "[null]";
+		} else if (value instanceof byte[]) {
+			return "[byte[" + ((byte[]) value).length + "]]";
+		} else if (value instanceof InputStream) {
+			return "[InputStream]";
+		} else if (value instanceof Reader) {
+			return "[Reader]";
+		}
+		return value.toString();
+	}
+
+	/**
+	 * 同じ形のSQLの繰り返し実行を検知する.
+	 * <p>
+	 * 1つの処理単位で同じ形のSQLを実行した回数が閾値を超えた時点で、<br>
+	 * このManagerクラスの外の呼び出し元と共に警告ログを出力します.<br>
+	 * 詳細は{@link RepeatedQueryDetector}を参照してください.
+	 * </p>
+	 *
+	 * @param con
+	 *            DB接続
+	 * @param sql
+	 *            SQL文
+	 */
+	private void detectRepeatedQuery(Connection con, String sql) {
+		if (sqlRepeatLogger == null) {
+			return;
+		}
+		int count = RepeatedQueryDetector.record(con, sql);
+		if (count != repeatThreshold + 1) {
+			return;
+		}
+		// このクラスから子クラスまでを除外した呼び出し元
+		List<Class<?>> excludeClasses = new ArrayList<Class<?>>();
+		for (Class<?> c = getClass(); c != null && c != Object.class; c = c
+				.getSuperclass()) {
+			excludeClasses.add(c);
+		}
+		StringBuilder msg = new StringBuilder();
+		msg.append("同じ形のSQLが");
+		msg.append(repeatThreshold);
+		msg.append("回を超えて実行されました.一括取得できないか確認してください.");
+		msg.append("[SQL]");
+		msg.append(SqlFingerprint.get(sql));
+		msg.append(System.getProperty("line.separator"));
+		msg.append(ThreadUtil.calledFrom(excludeClasses
+				.toArray(new Class<?>[excludeClasses.size()])));
+		sqlRepeatLogger.warnLog("A078", msg.toString());
+	}
+
+	/**
+	 * コミット処理.
+	 * <p>
+	 * コミット後に、更新したテーブルを参照しているキャッシュを破棄します.
+	 * </p>
+	 *
+	 * @param con
+	 *            DB接続
+	 * @throws SQLException
+	 *             コミット時に例外発生した場合
+	 */
+	private static void commit(Connection con) throws SQLException {
+		con.commit();
+		TransactionState.commit(con);
+		RepeatedQueryDetector.reset(con);
+	}
+
+	/**
+	 * ロールバック処理.
+	 * <p>
+	 * ロールバック後に、コミットされていない更新が無い状態に戻します.
+	 * </p>
+	 *
+	 * @param con
+	 *            DB接続
+	 * @throws SQLException
+	 *             ロールバック時に例外発生した場合
+	 */
+	private static void rollback(Connection con) throws SQLException {
+		con.rollback();
+		TransactionState.rollback(con);
+		RepeatedQueryDetector.reset(con);
+	}
+
 	/**
 	 * SQLスローログ出力.
 	 *
@@ -493,24 +2276,79 @@ public abstract class BaseManager<T extends BaseEntity> {
 	protected abstract T createEntity(ResultSet rs) throws SQLException;
 
 	/**
-	 * ResultSet中に指定カラムがあるか判定.
+	 * ResultSetのメタデータからカラム名とカラムインデックスの対応を生成する.
+	 * <p>
+	 * 同名のカラムが複数ある場合は、{@link ResultSet#findColumn(String)}と同様に最初のカラムを採用します.<br>
+	 * カラム名の大文字小文字を区別せずに検索できるよう、大文字に変換したカラム名も登録します.
+	 * </p>
+	 *
+	 * @param rs
+	 *            {@link ResultSet}オブジェクト
+	 * @return カラム名とカラムインデックスの対応
+	 * @throws SQLException
+	 *             メタデータ取得時に例外発生した場合
+	 */
+	private Map<String, Integer> createColumnIndexMap(ResultSet rs)
+			throws SQLException {
+		ResultSetMetaData meta = rs.getMetaData();
+		int columnCount = meta.getColumnCount();
+		Map<String, Integer> map = new HashMap<String, Integer>(
+				columnCount * 4);
+		for (int i = 1; i <= columnCount; i++) {
+			String label = meta.getColumnLabel(i);
+			if (label == null) {
+				continue;
+			}
+			if (!map.containsKey(label)) {
+				map.put(label, i);
+			}
+			String upperLabel = label.toUpperCase(Locale.ENGLISH);
+			if (!map.containsKey(upperLabel)) {
+				map.put(upperLabel, i);
+			}
+		}
+		return map;
+	}
+
+	/**
+	 * ResultSet中の指定カラムのインデックスを取得.
+	 * <p>
+	 * カラム名とインデックスの対応はクエリ実行時に1回だけ解決されたものを使用します.<br>
+	 * 一度検索したカラム名は存在しない場合も含めて記憶するため、2行目以降は検索を行いません.
+	 * </p>
 	 *
 	 * @param rs
 	 *            {@link ResultSet}オブジェクト
 	 * @param columnName
 	 *            カラム名
-	 * @return 指定カラムがあればtrue
+	 * @return カラムインデックス（最初は1）.<br>
+	 *         指定カラムが無い場合は0.
+	 * @throws SQLException
+	 *             メタデータ取得時に例外発生した場合
 	 */
-	private boolean existColumn(ResultSet rs, String columnName) {
-		boolean result = false;
-		try {
-			// 指定名称のカラムがなかった場合はSQLException発生
-			rs.findColumn(columnName);
-			result = true;
-		} catch (SQLException e) {
-			result = false;
+	private int findColumnIndex(ResultSet rs, String columnName)
+			throws SQLException {
+		Map<String, Integer> map = columnIndexes.get(rs);
+		if (map == null) {
+			// このManagerで実行中のResultSet以外の場合
+			ColumnIndex last = lastColumnIndex;
+			if (last != null && last.rs == rs) {
+				map = last.map;
+			} else {
+				map = createColumnIndexMap(rs);
+				lastColumnIndex = new ColumnIndex(rs, map);
+			}
 		}
-		return result;
+		Integer index = map.get(columnName);
+		if (index == null) {
+			index = map.get(columnName.toUpperCase(Locale.ENGLISH));
+			if (index == null) {
+				// 存在しないカラム
+				index = 0;
+			}
+			map.put(columnName, index);
+		}
+		return index;
 	}
 
 	/**
@@ -528,9 +2366,10 @@ public abstract class BaseManager<T extends BaseEntity> {
 	protected Integer getInt(ResultSet rs, String columnName)
 			throws SQLException {
 		Integer result = null;
-		if (existColumn(rs, columnName)) {
+		int index = findColumnIndex(rs, columnName);
+		if (index > 0) {
 			// カラム名が存在した場合は値取得
-			result = rs.getInt(columnName);
+			result = rs.getInt(index);
 			// 取得した値がnullか判定
 			if (rs.wasNull()) {
 				result = null;
@@ -554,9 +2393,37 @@ public abstract class BaseManager<T extends BaseEntity> {
 	protected Double getDouble(ResultSet rs, String columnName)
 			throws SQLException {
 		Double result = null;
-		if (existColumn(rs, columnName)) {
+		int index = findColumnIndex(rs, columnName);
+		if (index > 0) {
+			// カラム名が存在した場合は値取得
+			result = rs.getDouble(index);
+			// 取得した値がnullか判定
+			if (rs.wasNull()) {
+				result = null;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * ResultSetから指定カラムの値を取得.<br>
+	 * 長整数値の場合.
+	 *
+	 * @param rs
+	 *            {@link ResultSet}オブジェクト
+	 * @param columnName
+	 *            カラム名
+	 * @return ResultSetから取得した値
+	 * @throws SQLException
+	 *             値取得時に例外発生した場合
+	 */
+	protected Long getLong(ResultSet rs, String columnName)
+			throws SQLException {
+		Long result = null;
+		int index = findColumnIndex(rs, columnName);
+		if (index > 0) {
 			// カラム名が存在した場合は値取得
-			result = rs.getDouble(columnName);
+			result = rs.getLong(index);
 			// 取得した値がnullか判定
 			if (rs.wasNull()) {
 				result = null;
@@ -565,6 +2432,85 @@ public abstract class BaseManager<T extends BaseEntity> {
 		return result;
 	}
 
+	/**
+	 * ResultSetから指定カラムの値を取得.<br>
+	 * バイナリの場合.
+	 *
+	 * @param rs
+	 *            {@link ResultSet}オブジェクト
+	 * @param columnName
+	 *            カラム名
+	 * @return ResultSetから取得した値
+	 * @throws SQLException
+	 *             値取得時に例外発生した場合
+	 */
+	protected byte[] getBytes(ResultSet rs, String columnName)
+			throws SQLException {
+		byte[] result = null;
+		int index = findColumnIndex(rs, columnName);
+		if (index > 0) {
+			// カラム名が存在した場合は値取得
+			result = rs.getBytes(index);
+		}
+		return result;
+	}
+
+	/**
+	 * ResultSetから指定カラムの値をストリームで取得.<br>
+	 * BLOBなどのバイナリの場合.
+	 * <p>
+	 * 値全体をメモリに展開せずに読み込めます.<br>
+	 * ストリームはResultSetが次の行に移動するまでの間のみ有効なため、<br>
+	 * {@link #createEntity(ResultSet)}もしくは{@link RowHandler}の中で読み終えてください.
+	 * </p>
+	 *
+	 * @param rs
+	 *            {@link ResultSet}オブジェクト
+	 * @param columnName
+	 *            カラム名
+	 * @return ResultSetから取得したストリーム（値がNULLの場合はnull）
+	 * @throws SQLException
+	 *             値取得時に例外発生した場合
+	 */
+	protected InputStream getBinaryStream(ResultSet rs, String columnName)
+			throws SQLException {
+		InputStream result = null;
+		int index = findColumnIndex(rs, columnName);
+		if (index > 0) {
+			// カラム名が存在した場合は値取得
+			result = rs.getBinaryStream(index);
+		}
+		return result;
+	}
+
+	/**
+	 * ResultSetから指定カラムの値をストリームで取得.<br>
+	 * CLOBなどの長い文字列の場合.
+	 * <p>
+	 * 値全体をメモリに展開せずに読み込めます.<br>
+	 * ストリームはResultSetが次の行に移動するまでの間のみ有効なため、<br>
+	 * {@link #createEntity(ResultSet)}もしくは{@link RowHandler}の中で読み終えてください.
+	 * </p>
+	 *
+	 * @param rs
+	 *            {@link ResultSet}オブジェクト
+	 * @param columnName
+	 *            カラム名
+	 * @return ResultSetから取得したストリーム（値がNULLの場合はnull）
+	 * @throws SQLException
+	 *             値取得時に例外発生した場合
+	 */
+	protected Reader getCharacterStream(ResultSet rs, String columnName)
+			throws SQLException {
+		Reader result = null;
+		int index = findColumnIndex(rs, columnName);
+		if (index > 0) {
+			// カラム名が存在した場合は値取得
+			result = rs.getCharacterStream(index);
+		}
+		return result;
+	}
+
 	/**
 	 * ResultSetから指定カラムの値を取得.<br>
 	 * DECIMAL値の場合.
@@ -580,9 +2526,10 @@ public abstract class BaseManager<T extends BaseEntity> {
 	protected BigDecimal getBigDecimal(ResultSet rs, String columnName)
 			throws SQLException {
 		BigDecimal result = null;
-		if (existColumn(rs, columnName)) {
+		int index = findColumnIndex(rs, columnName);
+		if (index > 0) {
 			// カラム名が存在した場合は値取得
-			result = rs.getBigDecimal(columnName);
+			result = rs.getBigDecimal(index);
 		}
 		return result;
 	}
@@ -602,9 +2549,10 @@ public abstract class BaseManager<T extends BaseEntity> {
 	protected String getString(ResultSet rs, String columnName)
 			throws SQLException {
 		String result = null;
-		if (existColumn(rs, columnName)) {
+		int index = findColumnIndex(rs, columnName);
+		if (index > 0) {
 			// カラム名が存在した場合は値取得
-			result = rs.getString(columnName);
+			result = rs.getString(index);
 		}
 		return result;
 	}
@@ -624,9 +2572,10 @@ public abstract class BaseManager<T extends BaseEntity> {
 	protected Character getChar(ResultSet rs, String columnName)
 			throws SQLException {
 		Character result = null;
-		if (existColumn(rs, columnName)) {
+		int index = findColumnIndex(rs, columnName);
+		if (index > 0) {
 			// カラム名が存在した場合は値取得
-			String str = rs.getString(columnName);
+			String str = rs.getString(index);
 			if (!Validator.isEmpty(str)) {
 				result = str.charAt(0);
 			}
@@ -649,10 +2598,55 @@ public abstract class BaseManager<T extends BaseEntity> {
 	protected Timestamp getTimestamp(ResultSet rs, String columnName)
 			throws SQLException {
 		Timestamp result = null;
-		if (existColumn(rs, columnName)) {
+		int index = findColumnIndex(rs, columnName);
+		if (index > 0) {
 			// カラム名が存在した場合は値取得
-			result = rs.getTimestamp(columnName);
+			result = rs.getTimestamp(index);
 		}
 		return result;
 	}
+
+	/**
+	 * ResultSetを読み込む処理.
+	 *
+	 * @author tatsuya.kumon
+	 */
+	private static interface ResultSetReader {
+		/**
+		 * ResultSetを読み込む.
+		 *
+		 * @param rs
+		 *            {@link ResultSet}オブジェクト
+		 * @return 読み込んだ件数
+		 * @throws Exception
+		 *             読み込み時に例外発生した場合
+		 */
+		long read(ResultSet rs) throws Exception;
+	}
+
+	/**
+	 * ResultSetとカラムインデックスの対応の組.
+	 *
+	 * @author tatsuya.kumon
+	 */
+	private static final class ColumnIndex {
+		/** ResultSet */
+		private final ResultSet rs;
+
+		/** カラム名とカラムインデックスの対応 */
+		private final Map<String, Integer> map;
+
+		/**
+		 * コンストラクタ.
+		 *
+		 * @param rs
+		 *            {@link ResultSet}オブジェクト
+		 * @param map
+		 *            カラム名とカラムインデックスの対応
+		 */
+		private ColumnIndex(ResultSet rs, Map<String, Integer> map) {
+			this.rs = rs;
+			this.map = map;
+		}
+	}
 }
@@ -0,0 +1,181 @@
+package jp.kt.db.manager;
+
+import jp.kt.prop.KtProperties;
+
+/**
+ * バッチ更新の実行条件設定クラス.
+ * <p>
+ * {@link BaseManager#executeBatch(CharSequence, java.util.List, BatchCondition)}
+ * への引数に使用する.
+ * </p>
+ *
+ * @author tatsuya.kumon
+ */
+public class BatchCondition {
+	/** チャンクサイズのデフォルト値 */
+	private static final int DEFAULT_CHUNK_SIZE = 1000;
+
+	/** 複数行INSERTの1文あたりのプレースホルダー数上限のデフォルト値 */
+	private static final int DEFAULT_MAX_PARAMETERS = 1000;
+
+	/** 1回のexecuteBatchで実行する件数 */
+	private int chunkSize;
+
+	/** コミットするチャンク数の間隔 */
+	private int commitInterval;
+
+	/** タイムアウト値（秒） */
+	private int timeoutSec;
+
+	/** INSERT文を複数行INSERTに書き換えるか */
+	private boolean multiRowInsert;
+
+	/** 複数行INSERTの1文あたりのプレースホルダー数上限 */
+	private int maxParameters;
+
+	/**
+	 * コンストラクタ.
+	 * <p>
+	 * チャンクサイズはkt.propertiesの kt.core.sql.batch.chunksize の値となります.<br>
+	 * 未指定の場合は1000件です.
+	 * </p>
+	 */
+	public BatchCondition() {
+		this(getDefaultChunkSize());
+	}
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * @param chunkSize
+	 *            1回のexecuteBatchで実行する件数.<br>
+	 *            0以下の場合は全件を1回で実行します.
+	 */
+	public BatchCondition(int chunkSize) {
+		this.chunkSize = chunkSize;
+		this.maxParameters = KtProperties.getInstance().getInt(
+				"kt.core.sql.batch.multirow.max.parameters",
+				DEFAULT_MAX_PARAMETERS);
+	}
+
+	/**
+	 * kt.propertiesからチャンクサイズのデフォルト値を取得する.
+	 *
+	 * @return チャンクサイズ
+	 */
+	private static int getDefaultChunkSize() {
+		return KtProperties.getInstance().getInt("kt.core.sql.batch.chunksize",
+				DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * 1回のexecuteBatchで実行する件数を取得する.
+	 *
+	 * @return チャンクサイズ
+	 */
+	int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * コミットするチャンク数の間隔を設定する.
+	 * <p>
+	 * 例えば 10 を設定すると、10チャンク実行するごとにコミットします.<br>
+	 * 最後にコミットした以降の更新は、呼び出し側でコミットしてください.<br>
+	 * デフォルトは0で、途中でコミットしません.
+	 * </p>
+	 *
+	 * @param commitInterval
+	 *            コミットするチャンク数の間隔
+	 */
+	public void setCommitInterval(int commitInterval) {
+		this.commitInterval = commitInterval;
+	}
+
+	/**
+	 * コミットするチャンク数の間隔を取得する.
+	 *
+	 * @return コミットするチャンク数の間隔
+	 */
+	int getCommitInterval() {
+		return commitInterval;
+	}
+
+	/**
+	 * タイムアウト値を設定する.
+	 * <p>
+	 * チャンクごとのexecuteBatchに対するタイムアウト値です.<br>
+	 * デフォルトは0で、タイムアウトしません.
+	 * </p>
+	 *
+	 * @param timeoutSec
+	 *            タイムアウト値（秒）
+	 */
+	public void setTimeoutSec(int timeoutSec) {
+		this.timeoutSec = timeoutSec;
+	}
+
+	/**
+	 * タイムアウト値を取得する.
+	 *
+	 * @return タイムアウト値（秒）
+	 */
+	int getTimeoutSec() {
+		return timeoutSec;
+	}
+
+	/**
+	 * INSERT文を複数行INSERTに書き換えるか設定する.
+	 * <p>
+	 * trueを指定すると、INSERT INTO X (A, B) VALUES (?, ?) のようなINSERT文を<br>
+	 * VALUES (?, ?), (?, ?), ... の複数行INSERTに書き換え、<br>
+	 * 複数のパラメータセットを1回のSQLで実行します.<br>
+	 * 1文あたりの行数はプレースホルダー数が{@link #setMaxParameters(int)}を超えない範囲で決まります.<br>
+	 * チャンクの行数がその行数で割り切れない場合、端数の行は元のINSERT文でバッチ更新します.<br>
+	 * 複数行INSERTに対応していないDBでは使用しないでください.<br>
+	 * 書き換えできないSQL文の場合は通常のバッチ更新となります.<br>
+	 * <br>
+	 * 複数行INSERTの行ごとの更新結果は、1文の更新件数が行数と一致した場合は各行1、<br>
+	 * 一致しない場合は{@link java.sql.Statement#SUCCESS_NO_INFO}となります.<br>
+	 * デフォルトはfalseです.
+	 * </p>
+	 *
+	 * @param multiRowInsert
+	 *            書き換える場合はtrue
+	 */
+	public void setMultiRowInsert(boolean multiRowInsert) {
+		this.multiRowInsert = multiRowInsert;
+	}
+
+	/**
+	 * INSERT文を複数行INSERTに書き換えるか取得する.
+	 *
+	 * @return 書き換える場合はtrue
+	 */
+	boolean isMultiRowInsert() {
+		return multiRowInsert;
+	}
+
+	/**
+	 * 複数行INSERTの1文あたりのプレースホルダー数上限を設定する.
+	 * <p>
+	 * デフォルトはkt.propertiesの kt.core.sql.batch.multirow.max.parameters の値です.<br>
+	 * 未指定の場合は1000です.
+	 * </p>
+	 *
+	 * @param maxParameters
+	 *            プレースホルダー数上限
+	 */
+	public void setMaxParameters(int maxParameters) {
+		this.maxParameters = maxParameters;
+	}
+
+	/**
+	 * 複数行INSERTの1文あたりのプレースホルダー数上限を取得する.
+	 *
+	 * @return プレースホルダー数上限
+	 */
+	int getMaxParameters() {
+		return maxParameters;
+	}
+}
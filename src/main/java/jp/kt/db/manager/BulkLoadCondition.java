@@ -0,0 +1,375 @@
+package jp.kt.db.manager;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+import jp.kt.db.manager.BaseManager.NullData;
+import jp.kt.exception.KtException;
+import jp.kt.prop.KtProperties;
+
+/**
+ * CSV、TSVなどのテキストからの一括ロードの実行条件設定クラス.
+ * <p>
+ * {@link BaseManager#executeBulkLoad(CharSequence, jp.kt.text.TextReader, BulkLoadCondition)}
+ * への引数に使用する.<br>
+ * {@link #addColumn(int, NullData)}で、プレースホルダーの順にテキストの列番号と型を指定します.<br>
+ * 列を1つも指定しない場合は、テキストの全列を先頭から順に文字列としてセットします.<br>
+ * 空文字の値は、指定した型のNULL値としてセットします.<br>
+ * <br>
+ * BulkLoadCondition condition = new BulkLoadCondition();<br>
+ * condition.addColumn(0, NullData.LONG);<br>
+ * condition.addColumn(2, NullData.STRING);<br>
+ * condition.addColumn(1, NullData.TIMESTAMP, "yyyy/MM/dd HH:mm:ss");<br>
+ * condition.setSkipLines(1);<br>
+ * condition.setCommitInterval(10);
+ * </p>
+ *
+ * @author tatsuya.kumon
+ */
+public class BulkLoadCondition extends BatchCondition {
+	/** 読み込み済みで未実行のチャンクを保持する数のデフォルト値 */
+	private static final int DEFAULT_QUEUE_SIZE = 4;
+
+	/** 進捗をログ出力する行数の間隔のデフォルト値 */
+	private static final int DEFAULT_PROGRESS_INTERVAL = 100000;
+
+	/** プレースホルダーの順の列指定 */
+	private final List<Column> columns = new ArrayList<Column>();
+
+	/** 読み飛ばす先頭行数 */
+	private int skipLines;
+
+	/** 読み込み済みで未実行のチャンクを保持する数 */
+	private int queueSize = DEFAULT_QUEUE_SIZE;
+
+	/** 進捗をログ出力する行数の間隔 */
+	private int progressInterval;
+
+	/**
+	 * コンストラクタ.
+	 * <p>
+	 * チャンクサイズはkt.propertiesの kt.core.sql.batch.chunksize の値となります.<br>
+	 * 未指定の場合は1000件です.
+	 * </p>
+	 */
+	public BulkLoadCondition() {
+		super();
+		checkChunkSize();
+		this.progressInterval = loadProgressInterval();
+	}
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * @param chunkSize
+	 *            1回のexecuteBatchで実行する件数
+	 */
+	public BulkLoadCondition(int chunkSize) {
+		super(chunkSize);
+		checkChunkSize();
+		this.progressInterval = loadProgressInterval();
+	}
+
+	/**
+	 * チャンクサイズのチェック.
+	 */
+	private void checkChunkSize() {
+		if (getChunkSize() <= 0) {
+			throw new IllegalArgumentException("chunkSizeが0以下です. chunkSize="
+					+ getChunkSize());
+		}
+	}
+
+	/**
+	 * 進捗をログ出力する行数の間隔をkt.propertiesから取得する.
+	 *
+	 * @return kt.core.sql.bulkload.progress.interval の値（未指定の場合は
+	 *         {@value #DEFAULT_PROGRESS_INTERVAL}）
+	 */
+	private static int loadProgressInterval() {
+		return KtProperties.getInstance().getInt(
+				"kt.core.sql.bulkload.progress.interval",
+				DEFAULT_PROGRESS_INTERVAL);
+	}
+
+	/**
+	 * 次のプレースホルダーにセットする列を追加する.
+	 * <p>
+	 * 型には{@link NullData}の STRING、CHAR、CLOB、INTEGER、LONG、DOUBLE、DECIMAL を指定できます.<br>
+	 * 日時の場合は{@link #addColumn(int, NullData, String)}を使用してください.
+	 * </p>
+	 *
+	 * @param textIndex
+	 *            テキストの列番号（0始まり）
+	 * @param type
+	 *            プレースホルダーにセットする型
+	 */
+	public void addColumn(int textIndex, NullData type) {
+		if (type == NullData.TIMESTAMP) {
+			throw new IllegalArgumentException("日時の場合は日時の形式を指定してください");
+		}
+		addColumn(textIndex, type, null);
+	}
+
+	/**
+	 * 次のプレースホルダーにセットする列を追加する.
+	 *
+	 * @param textIndex
+	 *            テキストの列番号（0始まり）
+	 * @param type
+	 *            プレースホルダーにセットする型
+	 * @param datePattern
+	 *            日時の形式（{@link SimpleDateFormat}の形式）.<br>
+	 *            型がTIMESTAMPの場合のみ使用し、必須です.
+	 * @throws IllegalArgumentException
+	 *             列番号がマイナス、テキストから設定できない型、日時の形式が未指定または不正な場合
+	 */
+	public void addColumn(int textIndex, NullData type, String datePattern) {
+		if (textIndex < 0) {
+			throw new IllegalArgumentException("textIndexがマイナスです. textIndex="
+					+ textIndex);
+		}
+		if (type == NullData.BINARY) {
+			throw new IllegalArgumentException("テキストからは設定できない型です. type="
+					+ type);
+		}
+		if (type == NullData.TIMESTAMP) {
+			if (datePattern == null) {
+				throw new IllegalArgumentException("日時の場合は日時の形式を指定してください");
+			}
+			// 形式が不正な場合はここで例外とする
+			new SimpleDateFormat(datePattern);
+		}
+		columns.add(new Column(textIndex, type, datePattern));
+	}
+
+	/**
+	 * 読み飛ばす先頭行数を設定する.
+	 * <p>
+	 * 見出し行がある場合などに指定します.<br>
+	 * デフォルトは0です.
+	 * </p>
+	 *
+	 * @param skipLines
+	 *            読み飛ばす行数
+	 */
+	public void setSkipLines(int skipLines) {
+		this.skipLines = skipLines;
+	}
+
+	/**
+	 * 読み飛ばす先頭行数を取得する.
+	 *
+	 * @return 読み飛ばす行数
+	 */
+	int getSkipLines() {
+		return skipLines;
+	}
+
+	/**
+	 * 読み込み済みで未実行のチャンクを保持する数を設定する.
+	 * <p>
+	 * テキストの読み込みはDBへの更新と別スレッドで並行して行います.<br>
+	 * 読み込みが更新より速い場合、この数のチャンクが溜まると読み込みは待機します.<br>
+	 * デフォルトは4です.
+	 * </p>
+	 *
+	 * @param queueSize
+	 *            保持するチャンク数
+	 */
+	public void setQueueSize(int queueSize) {
+		this.queueSize = queueSize;
+	}
+
+	/**
+	 * 読み込み済みで未実行のチャンクを保持する数を取得する.
+	 *
+	 * @return 保持するチャンク数
+	 */
+	int getQueueSize() {
+		return queueSize;
+	}
+
+	/**
+	 * 進捗をログ出力する行数の間隔を設定する.
+	 * <p>
+	 * デフォルトはkt.propertiesの kt.core.sql.bulkload.progress.interval の値です.<br>
+	 * 未指定の場合は100000行です.<br>
+	 * 0以下の場合は完了時のみ出力します.
+	 * </p>
+	 *
+	 * @param progressInterval
+	 *            進捗をログ出力する行数の間隔
+	 */
+	public void setProgressInterval(int progressInterval) {
+		this.progressInterval = progressInterval;
+	}
+
+	/**
+	 * 進捗をログ出力する行数の間隔を取得する.
+	 *
+	 * @return 進捗をログ出力する行数の間隔
+	 */
+	int getProgressInterval() {
+		return progressInterval;
+	}
+
+	/**
+	 * 行データをプレースホルダーの値に変換するオブジェクトを生成する.
+	 * <p>
+	 * 日時の変換に使用する{@link SimpleDateFormat}はスレッドセーフではないため、<br>
+	 * 一括ロードごとに生成します.
+	 * </p>
+	 *
+	 * @return 変換オブジェクト
+	 */
+	LineConverter createConverter() {
+		return new LineConverter(columns);
+	}
+
+	/**
+	 * 列の指定.
+	 *
+	 * @author tatsuya.kumon
+	 */
+	private static final class Column {
+		/** テキストの列番号 */
+		private final int textIndex;
+
+		/** プレースホルダーにセットする型 */
+		private final NullData type;
+
+		/** 日時の形式 */
+		private final String datePattern;
+
+		/**
+		 * コンストラクタ.
+		 *
+		 * @param textIndex
+		 *            テキストの列番号
+		 * @param type
+		 *            プレースホルダーにセットする型
+		 * @param datePattern
+		 *            日時の形式
+		 */
+		private Column(int textIndex, NullData type, String datePattern) {
+			this.textIndex = textIndex;
+			this.type = type;
+			this.datePattern = datePattern;
+		}
+	}
+
+	/**
+	 * 行データをプレースホルダーの値に変換するクラス.
+	 *
+	 * @author tatsuya.kumon
+	 */
+	static final class LineConverter {
+		/** 列の指定 */
+		private final Column[] columns;
+
+		/** 列ごとの日時の形式（日時以外の列はnull） */
+		private final SimpleDateFormat[] dateFormats;
+
+		/**
+		 * コンストラクタ.
+		 *
+		 * @param columns
+		 *            列の指定
+		 */
+		private LineConverter(List<Column> columns) {
+			this.columns = columns.toArray(new Column[columns.size()]);
+			this.dateFormats = new SimpleDateFormat[this.columns.length];
+			for (int i = 0; i < this.columns.length; i++) {
+				if (this.columns[i].type == NullData.TIMESTAMP) {
+					dateFormats[i] = new SimpleDateFormat(
+							this.columns[i].datePattern);
+					dateFormats[i].setLenient(false);
+				}
+			}
+		}
+
+		/**
+		 * 行データをプレースホルダーの値に変換する.
+		 *
+		 * @param lineData
+		 *            行データ
+		 * @param lineNo
+		 *            行番号（エラーメッセージ用）
+		 * @return プレースホルダーの値
+		 */
+		Object[] convert(String[] lineData, int lineNo) {
+			if (columns.length == 0) {
+				// 列指定が無い場合は全列を文字列とする
+				Object[] values = new Object[lineData.length];
+				for (int i = 0; i < lineData.length; i++) {
+					values[i] = (lineData[i].length() == 0 ? NullData.STRING
+							: lineData[i]);
+				}
+				return values;
+			}
+			Object[] values = new Object[columns.length];
+			for (int i = 0; i < columns.length; i++) {
+				Column column = columns[i];
+				if (column.textIndex >= lineData.length) {
+					throw new KtException("A076", "列が不足しています. line=" + lineNo
+							+ ", column=" + column.textIndex + ", columns="
+							+ lineData.length);
+				}
+				String text = lineData[column.textIndex];
+				if (text.length() == 0) {
+					values[i] = column.type;
+					continue;
+				}
+				try {
+					values[i] = convertValue(text, column.type, dateFormats[i]);
+				} catch (NumberFormatException e) {
+					throw new KtException("A076", "値を変換できません. line=" + lineNo
+							+ ", column=" + column.textIndex + ", value="
+							+ text, e);
+				} catch (ParseException e) {
+					throw new KtException("A076", "値を変換できません. line=" + lineNo
+							+ ", column=" + column.textIndex + ", value="
+							+ text, e);
+				}
+			}
+			return values;
+		}
+
+		/**
+		 * 1つの値を変換する.
+		 *
+		 * @param text
+		 *            テキストの値（空文字以外）
+		 * @param type
+		 *            プレースホルダーにセットする型
+		 * @param dateFormat
+		 *            日時の形式
+		 * @return 変換した値
+		 * @throws ParseException
+		 *             日時に変換できない場合
+		 */
+		private static Object convertValue(String text, NullData type,
+				SimpleDateFormat dateFormat) throws ParseException {
+			switch (type) {
+			case INTEGER:
+				return Integer.valueOf(text.trim());
+			case LONG:
+				return Long.valueOf(text.trim());
+			case DOUBLE:
+				return Double.valueOf(text.trim());
+			case DECIMAL:
+				return new BigDecimal(text.trim());
+			case TIMESTAMP:
+				return new Timestamp(dateFormat.parse(text).getTime());
+			default:
+				// STRING、CHAR、CLOBは文字列のまま
+				return text;
+			}
+		}
+	}
+}
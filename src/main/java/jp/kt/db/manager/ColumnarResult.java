@@ -0,0 +1,707 @@
+package jp.kt.db.manager;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 列指向形式のSELECT結果.
+ * <p>
+ * {@link BaseManager#executeColumnarQuery(CharSequence, Object[])}の戻り値です.<br>
+ * カラムごとに下記の形式で保持します.<br>
+ * <br>
+ * ■{@link Type#INT}（INTEGER、SMALLINT、精度9桁以下の整数のDECIMAL、BOOLEANなど）<br>
+ * int[]<br>
+ * ■{@link Type#LONG}（BIGINT、精度18桁以下の整数のDECIMAL）<br>
+ * long[]<br>
+ * ■{@link Type#DOUBLE}（DOUBLE、FLOAT、上記以外のDECIMALなど）<br>
+ * double[]<br>
+ * ■{@link Type#TIMESTAMP}（DATE、TIME、TIMESTAMP）<br>
+ * long[]（エポックミリ秒）<br>
+ * ■{@link Type#STRING}（上記以外）<br>
+ * 重複を除いた文字列の辞書と、行ごとの辞書のインデックス（int[]）<br>
+ * <br>
+ * NULLはカラムごとのビットマップで保持し、配列の値は0となります.<br>
+ * カラムのインデックスは0始まりです.<br>
+ * 配列は内部で保持しているものをそのまま返すため、内容を変更しないでください.
+ * </p>
+ *
+ * @author tatsuya.kumon
+ */
+public final class ColumnarResult {
+	/**
+	 * カラムの格納形式.
+	 *
+	 * @author tatsuya.kumon
+	 */
+	public static enum Type {
+		/** int型 */
+		INT,
+		/** long型 */
+		LONG,
+		/** double型 */
+		DOUBLE,
+		/** 日時型（エポックミリ秒のlong型） */
+		TIMESTAMP,
+		/** 辞書エンコードした文字列型 */
+		STRING;
+	}
+
+	/** 配列の初期サイズ */
+	private static final int INITIAL_CAPACITY = 1024;
+
+	/** カラム */
+	private final Column[] columns;
+
+	/** 行数 */
+	private final int rowCount;
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * @param columns
+	 *            カラム
+	 * @param rowCount
+	 *            行数
+	 */
+	private ColumnarResult(Column[] columns, int rowCount) {
+		this.columns = columns;
+		this.rowCount = rowCount;
+	}
+
+	/**
+	 * ResultSetの全行を読み込んで生成する.
+	 *
+	 * @param rs
+	 *            {@link ResultSet}オブジェクト
+	 * @return {@link ColumnarResult}オブジェクト
+	 * @throws SQLException
+	 *             値の取得に失敗した場合
+	 */
+	static ColumnarResult create(ResultSet rs) throws SQLException {
+		ResultSetMetaData meta = rs.getMetaData();
+		int columnCount = meta.getColumnCount();
+		Column[] columns = new Column[columnCount];
+		for (int i = 0; i < columnCount; i++) {
+			String name = meta.getColumnLabel(i + 1);
+			switch (toType(meta, i + 1)) {
+			case INT:
+				columns[i] = new IntColumn(name);
+				break;
+			case LONG:
+				columns[i] = new LongColumn(name, Type.LONG);
+				break;
+			case TIMESTAMP:
+				columns[i] = new LongColumn(name, Type.TIMESTAMP);
+				break;
+			case DOUBLE:
+				columns[i] = new DoubleColumn(name);
+				break;
+			default:
+				columns[i] = new StringColumn(name);
+				break;
+			}
+		}
+		int capacity = INITIAL_CAPACITY;
+		for (Column column : columns) {
+			column.grow(capacity);
+		}
+		int row = 0;
+		while (rs.next()) {
+			if (row == capacity) {
+				capacity *= 2;
+				for (Column column : columns) {
+					column.grow(capacity);
+				}
+			}
+			for (int i = 0; i < columnCount; i++) {
+				columns[i].read(rs, i + 1, row);
+			}
+			row++;
+		}
+		for (Column column : columns) {
+			column.grow(row);
+			column.complete();
+		}
+		return new ColumnarResult(columns, row);
+	}
+
+	/**
+	 * JDBCの型から格納形式を決定する.
+	 *
+	 * @param meta
+	 *            {@link ResultSetMetaData}オブジェクト
+	 * @param index
+	 *            カラムのインデックス（1始まり）
+	 * @return 格納形式
+	 * @throws SQLException
+	 *             メタデータの取得に失敗した場合
+	 */
+	private static Type toType(ResultSetMetaData meta, int index)
+			throws SQLException {
+		switch (meta.getColumnType(index)) {
+		case Types.INTEGER:
+		case Types.SMALLINT:
+		case Types.TINYINT:
+		case Types.BOOLEAN:
+		case Types.BIT:
+			return Type.INT;
+		case Types.BIGINT:
+			return Type.LONG;
+		case Types.NUMERIC:
+		case Types.DECIMAL:
+			int precision = meta.getPrecision(index);
+			if (meta.getScale(index) == 0 && precision > 0) {
+				if (precision <= 9) {
+					return Type.INT;
+				} else if (precision <= 18) {
+					return Type.LONG;
+				}
+			}
+			return Type.DOUBLE;
+		case Types.REAL:
+		case Types.FLOAT:
+		case Types.DOUBLE:
+			return Type.DOUBLE;
+		case Types.DATE:
+		case Types.TIME:
+		case Types.TIMESTAMP:
+		case Types.TIME_WITH_TIMEZONE:
+		case Types.TIMESTAMP_WITH_TIMEZONE:
+			return Type.TIMESTAMP;
+		default:
+			return Type.STRING;
+		}
+	}
+
+	/**
+	 * 行数を取得する.
+	 *
+	 * @return 行数
+	 */
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * カラム数を取得する.
+	 *
+	 * @return カラム数
+	 */
+	public int getColumnCount() {
+		return columns.length;
+	}
+
+	/**
+	 * カラム名を取得する.
+	 *
+	 * @param column
+	 *            カラムのインデックス
+	 * @return カラム名
+	 */
+	public String getColumnName(int column) {
+		return columns[column].name;
+	}
+
+	/**
+	 * カラム名からカラムのインデックスを取得する.
+	 * <p>
+	 * 大文字小文字は区別しません.
+	 * </p>
+	 *
+	 * @param columnName
+	 *            カラム名
+	 * @return カラムのインデックス.<br>
+	 *         存在しない場合は-1.
+	 */
+	public int getColumnIndex(String columnName) {
+		String upperName = columnName.toUpperCase(Locale.ENGLISH);
+		for (int i = 0; i < columns.length; i++) {
+			if (columns[i].name != null
+					&& columns[i].name.toUpperCase(Locale.ENGLISH).equals(
+							upperName)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * カラムの格納形式を取得する.
+	 *
+	 * @param column
+	 *            カラムのインデックス
+	 * @return 格納形式
+	 */
+	public Type getColumnType(int column) {
+		return columns[column].type;
+	}
+
+	/**
+	 * 値がNULLか判定する.
+	 *
+	 * @param column
+	 *            カラムのインデックス
+	 * @param row
+	 *            行のインデックス
+	 * @return NULLの場合はtrue
+	 */
+	public boolean isNull(int column, int row) {
+		return columns[column].isNull(row);
+	}
+
+	/**
+	 * カラムにNULLが含まれているか判定する.
+	 *
+	 * @param column
+	 *            カラムのインデックス
+	 * @return NULLが含まれている場合はtrue
+	 */
+	public boolean hasNull(int column) {
+		return columns[column].hasNull;
+	}
+
+	/**
+	 * {@link Type#INT}のカラムの配列を取得する.
+	 *
+	 * @param column
+	 *            カラムのインデックス
+	 * @return 値の配列（NULLは0）
+	 */
+	public int[] getIntColumn(int column) {
+		return ((IntColumn) getColumn(column, Type.INT)).values;
+	}
+
+	/**
+	 * {@link Type#LONG}、{@link Type#TIMESTAMP}のカラムの配列を取得する.
+	 *
+	 * @param column
+	 *            カラムのインデックス
+	 * @return 値の配列（NULLは0）
+	 */
+	public long[] getLongColumn(int column) {
+		Column c = columns[column];
+		if (!(c instanceof LongColumn)) {
+			throw new IllegalStateException("long型のカラムではありません. column="
+					+ c.name + ", type=" + c.type);
+		}
+		return ((LongColumn) c).values;
+	}
+
+	/**
+	 * {@link Type#DOUBLE}のカラムの配列を取得する.
+	 *
+	 * @param column
+	 *            カラムのインデックス
+	 * @return 値の配列（NULLは0）
+	 */
+	public double[] getDoubleColumn(int column) {
+		return ((DoubleColumn) getColumn(column, Type.DOUBLE)).values;
+	}
+
+	/**
+	 * {@link Type#STRING}のカラムの辞書を取得する.
+	 *
+	 * @param column
+	 *            カラムのインデックス
+	 * @return 重複を除いた文字列（出現順）
+	 */
+	public String[] getDictionary(int column) {
+		return ((StringColumn) getColumn(column, Type.STRING)).dictionary;
+	}
+
+	/**
+	 * {@link Type#STRING}のカラムの辞書のインデックスの配列を取得する.
+	 * <p>
+	 * GROUP BYのような集計は、このインデックスを添字にした配列で行えます.
+	 * </p>
+	 *
+	 * @param column
+	 *            カラムのインデックス
+	 * @return 辞書のインデックスの配列（NULLは-1）
+	 */
+	public int[] getStringCodes(int column) {
+		return ((StringColumn) getColumn(column, Type.STRING)).codes;
+	}
+
+	/**
+	 * int値を取得する.
+	 *
+	 * @param column
+	 *            カラムのインデックス
+	 * @param row
+	 *            行のインデックス
+	 * @return 値（NULLは0）
+	 */
+	public int getInt(int column, int row) {
+		return getIntColumn(column)[row];
+	}
+
+	/**
+	 * long値を取得する.
+	 * <p>
+	 * {@link Type#INT}のカラムにも使用できます.
+	 * </p>
+	 *
+	 * @param column
+	 *            カラムのインデックス
+	 * @param row
+	 *            行のインデックス
+	 * @return 値（NULLは0）
+	 */
+	public long getLong(int column, int row) {
+		if (columns[column].type == Type.INT) {
+			return getIntColumn(column)[row];
+		}
+		return getLongColumn(column)[row];
+	}
+
+	/**
+	 * double値を取得する.
+	 * <p>
+	 * {@link Type#INT}、{@link Type#LONG}のカラムにも使用できます.
+	 * </p>
+	 *
+	 * @param column
+	 *            カラムのインデックス
+	 * @param row
+	 *            行のインデックス
+	 * @return 値（NULLは0）
+	 */
+	public double getDouble(int column, int row) {
+		Type type = columns[column].type;
+		if (type == Type.INT) {
+			return getIntColumn(column)[row];
+		} else if (type == Type.LONG) {
+			return getLongColumn(column)[row];
+		}
+		return getDoubleColumn(column)[row];
+	}
+
+	/**
+	 * 文字列を取得する.
+	 * <p>
+	 * {@link Type#STRING}以外のカラムは値を文字列に変換します.
+	 * </p>
+	 *
+	 * @param column
+	 *            カラムのインデックス
+	 * @param row
+	 *            行のインデックス
+	 * @return 値（NULLはnull）
+	 */
+	public String getString(int column, int row) {
+		Column c = columns[column];
+		if (c.isNull(row)) {
+			return null;
+		}
+		switch (c.type) {
+		case INT:
+			return String.valueOf(getIntColumn(column)[row]);
+		case LONG:
+			return String.valueOf(getLongColumn(column)[row]);
+		case DOUBLE:
+			return String.valueOf(getDoubleColumn(column)[row]);
+		case TIMESTAMP:
+			return new Timestamp(getLongColumn(column)[row]).toString();
+		default:
+			StringColumn sc = (StringColumn) c;
+			return sc.dictionary[sc.codes[row]];
+		}
+	}
+
+	/**
+	 * 格納形式を確認してカラムを取得する.
+	 *
+	 * @param column
+	 *            カラムのインデックス
+	 * @param type
+	 *            格納形式
+	 * @return カラム
+	 */
+	private Column getColumn(int column, Type type) {
+		Column c = columns[column];
+		if (c.type != type) {
+			throw new IllegalStateException(type + "のカラムではありません. column="
+					+ c.name + ", type=" + c.type);
+		}
+		return c;
+	}
+
+	/**
+	 * カラムの基底クラス.
+	 *
+	 * @author tatsuya.kumon
+	 */
+	private abstract static class Column {
+		/** カラム名 */
+		private final String name;
+
+		/** 格納形式 */
+		private final Type type;
+
+		/** NULLのビットマップ */
+		private long[] nulls = new long[0];
+
+		/** NULLを含むか */
+		private boolean hasNull;
+
+		/**
+		 * コンストラクタ.
+		 *
+		 * @param name
+		 *            カラム名
+		 * @param type
+		 *            格納形式
+		 */
+		Column(String name, Type type) {
+			this.name = name;
+			this.type = type;
+		}
+
+		/**
+		 * 配列のサイズを変更する.
+		 *
+		 * @param capacity
+		 *            サイズ
+		 */
+		void grow(int capacity) {
+			int words = (capacity + 63) >>> 6;
+			if (words != nulls.length) {
+				nulls = Arrays.copyOf(nulls, words);
+			}
+			resize(capacity);
+		}
+
+		/**
+		 * NULLを記録する.
+		 *
+		 * @param row
+		 *            行のインデックス
+		 */
+		void setNull(int row) {
+			nulls[row >>> 6] |= 1L << row;
+			hasNull = true;
+		}
+
+		/**
+		 * NULLか判定する.
+		 *
+		 * @param row
+		 *            行のインデックス
+		 * @return NULLの場合はtrue
+		 */
+		boolean isNull(int row) {
+			return hasNull && (nulls[row >>> 6] & (1L << row)) != 0;
+		}
+
+		/**
+		 * 全行の読み込み完了時の処理.
+		 */
+		void complete() {
+		}
+
+		/**
+		 * 値の配列のサイズを変更する.
+		 *
+		 * @param capacity
+		 *            サイズ
+		 */
+		abstract void resize(int capacity);
+
+		/**
+		 * 値を読み込む.
+		 *
+		 * @param rs
+		 *            {@link ResultSet}オブジェクト
+		 * @param index
+		 *            カラムのインデックス（1始まり）
+		 * @param row
+		 *            行のインデックス
+		 * @throws SQLException
+		 *             値の取得に失敗した場合
+		 */
+		abstract void read(ResultSet rs, int index, int row)
+				throws SQLException;
+	}
+
+	/**
+	 * int型のカラム.
+	 *
+	 * @author tatsuya.kumon
+	 */
+	private static final class IntColumn extends Column {
+		/** 値 */
+		private int[] values = new int[0];
+
+		/**
+		 * コンストラクタ.
+		 *
+		 * @param name
+		 *            カラム名
+		 */
+		private IntColumn(String name) {
+			super(name, Type.INT);
+		}
+
+		@Override
+		void resize(int capacity) {
+			values = Arrays.copyOf(values, capacity);
+		}
+
+		@Override
+		void read(ResultSet rs, int index, int row) throws SQLException {
+			values[row] = rs.getInt(index);
+			if (rs.wasNull()) {
+				setNull(row);
+			}
+		}
+	}
+
+	/**
+	 * long型のカラム.
+	 *
+	 * @author tatsuya.kumon
+	 */
+	private static final class LongColumn extends Column {
+		/** 値 */
+		private long[] values = new long[0];
+
+		/** 日時型か */
+		private final boolean timestamp;
+
+		/**
+		 * コンストラクタ.
+		 *
+		 * @param name
+		 *            カラム名
+		 * @param type
+		 *            格納形式（{@link Type#LONG}もしくは{@link Type#TIMESTAMP}）
+		 */
+		private LongColumn(String name, Type type) {
+			super(name, type);
+			this.timestamp = (type == Type.TIMESTAMP);
+		}
+
+		@Override
+		void resize(int capacity) {
+			values = Arrays.copyOf(values, capacity);
+		}
+
+		@Override
+		void read(ResultSet rs, int index, int row) throws SQLException {
+			if (timestamp) {
+				Timestamp ts = rs.getTimestamp(index);
+				if (ts == null) {
+					setNull(row);
+				} else {
+					values[row] = ts.getTime();
+				}
+			} else {
+				values[row] = rs.getLong(index);
+				if (rs.wasNull()) {
+					setNull(row);
+				}
+			}
+		}
+	}
+
+	/**
+	 * double型のカラム.
+	 *
+	 * @author tatsuya.kumon
+	 */
+	private static final class DoubleColumn extends Column {
+		/** 値 */
+		private double[] values = new double[0];
+
+		/**
+		 * コンストラクタ.
+		 *
+		 * @param name
+		 *            カラム名
+		 */
+		private DoubleColumn(String name) {
+			super(name, Type.DOUBLE);
+		}
+
+		@Override
+		void resize(int capacity) {
+			values = Arrays.copyOf(values, capacity);
+		}
+
+		@Override
+		void read(ResultSet rs, int index, int row) throws SQLException {
+			values[row] = rs.getDouble(index);
+			if (rs.wasNull()) {
+				setNull(row);
+			}
+		}
+	}
+
+	/**
+	 * 辞書エンコードした文字列型のカラム.
+	 *
+	 * @author tatsuya.kumon
+	 */
+	private static final class StringColumn extends Column {
+		/** 辞書のインデックス */
+		private int[] codes = new int[0];
+
+		/** 読み込み中の文字列と辞書のインデックスの対応 */
+		private Map<String, Integer> codeMap = new HashMap<String, Integer>();
+
+		/** 読み込み中の辞書 */
+		private List<String> words = new ArrayList<String>();
+
+		/** 辞書 */
+		private String[] dictionary;
+
+		/**
+		 * コンストラクタ.
+		 *
+		 * @param name
+		 *            カラム名
+		 */
+		private StringColumn(String name) {
+			super(name, Type.STRING);
+		}
+
+		@Override
+		void resize(int capacity) {
+			codes = Arrays.copyOf(codes, capacity);
+		}
+
+		@Override
+		void read(ResultSet rs, int index, int row) throws SQLException {
+			String value = rs.getString(index);
+			if (value == null) {
+				codes[row] = -1;
+				setNull(row);
+				return;
+			}
+			Integer code = codeMap.get(value);
+			if (code == null) {
+				code = words.size();
+				codeMap.put(value, code);
+				words.add(value);
+			}
+			codes[row] = code;
+		}
+
+		@Override
+		void complete() {
+			dictionary = words.toArray(new String[words.size()]);
+			codeMap = null;
+			words = null;
+		}
+	}
+}
@@ -3,7 +3,10 @@ package jp.kt.db.manager;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import jp.kt.db.entity.BaseEntity;
 import jp.kt.db.manager.CountManager.Count;
@@ -21,7 +24,12 @@ import jp.kt.db.manager.CountManager.Count;
  * <br>
  * ■FROM句＆WHERE句<br>
  * FROM ADMIN_USER<br>
- * FROM ADMIN_USER WHERE STATUS = ?
+ * FROM ADMIN_USER WHERE STATUS = ?<br>
+ * <br>
+ * ■条件（{@link #getCounts(Map, String, Object[])}）<br>
+ * STATUS = 1<br>
+ * CREATE_DATE &gt;= ?<br>
+ * 条件を指定しない（nullもしくは空文字）場合は全件のカウントとなります.
  * </p>
  *
  * @author tatsuya.kumon
@@ -71,38 +79,257 @@ public final class CountManager extends BaseManager<Count> {
 	 */
 	public int getCount(String selectBlock, String fromWhereBlock,
 			Object[] values) throws Exception {
-		// SQL文生成
-		StringBuilder sql = new StringBuilder();
-		sql.append(selectBlock);
-		sql.append(" AS ");
-		sql.append(COUNT_OTHER_NAME);
-		sql.append(" ");
-		sql.append(fromWhereBlock);
 		// SQL実行
 		List<Count> list = null;
 		if (values == null) {
-			list = executeQuery(sql.toString());
+			list = executeQuery(createSql(selectBlock, fromWhereBlock));
 		} else {
-			list = executeQuery(sql.toString(), values);
+			list = executeQuery(createSql(selectBlock, fromWhereBlock), values);
 		}
 		Count entity = list.get(0);
 		return entity.getCount();
 	}
 
+	/**
+	 * キャッシュを使ってcount値を取得する.
+	 * <p>
+	 * 同じSQL文とプレースホルダーの値で取得済みであれば、有効期間内はDBにアクセスせず<br>
+	 * {@link QueryResultCache}に保持している値を返します.<br>
+	 * 参照しているテーブルがBaseManager経由で更新された場合、キャッシュは破棄されます.<br>
+	 * 件数が多く、多少古い値でも問題の無いカウントで使用してください.
+	 * </p>
+	 *
+	 * @param selectBlock
+	 *            SELECT句
+	 * @param fromWhereBlock
+	 *            FROM句とWHERE句
+	 * @param values
+	 *            プレースホルダーにセットする値
+	 * @param ttlMillis
+	 *            有効期間（ミリ秒）.0の場合は無期限、負の場合はデフォルトの有効期間.
+	 * @return カウント
+	 * @throws Exception
+	 *             SQL実行時に例外発生した場合
+	 */
+	public int getCount(String selectBlock, String fromWhereBlock,
+			Object[] values, long ttlMillis) throws Exception {
+		List<Count> list = executeQueryWithCache(
+				createSql(selectBlock, fromWhereBlock), toValues(values),
+				ttlMillis);
+		Count entity = list.get(0);
+		return entity.getCount();
+	}
+
+	/**
+	 * 複数の条件のcount値を1回のSQLで取得する.
+	 * <p>
+	 * 条件ごとに COUNT(CASE WHEN 条件 THEN 1 END) を並べたSELECTを実行するため、<br>
+	 * 画面のタブごとの件数などを1回のテーブル走査で取得できます.<br>
+	 * 条件にプレースホルダーを使う場合、valuesには条件のMapの順序で条件の値を並べ、<br>
+	 * その後にFROM句とWHERE句の値を並べてください.<br>
+	 * そのため条件にはLinkedHashMapなど順序が決まっているMapを指定してください.
+	 * </p>
+	 *
+	 * @param conditions
+	 *            カウント名と条件のMap
+	 * @param fromWhereBlock
+	 *            FROM句とWHERE句
+	 * @param values
+	 *            プレースホルダーにセットする値
+	 * @return カウント名とカウントのMap（条件の順序）
+	 * @throws Exception
+	 *             SQL実行時に例外発生した場合
+	 */
+	public Map<String, Integer> getCounts(Map<String, String> conditions,
+			String fromWhereBlock, Object[] values) throws Exception {
+		List<Count> list = executeQuery(
+				createMultiCountSql(conditions, fromWhereBlock),
+				toValues(values));
+		return toCountMap(conditions, list.get(0));
+	}
+
+	/**
+	 * キャッシュを使って複数の条件のcount値を1回のSQLで取得する.
+	 *
+	 * @param conditions
+	 *            カウント名と条件のMap
+	 * @param fromWhereBlock
+	 *            FROM句とWHERE句
+	 * @param values
+	 *            プレースホルダーにセットする値
+	 * @param ttlMillis
+	 *            有効期間（ミリ秒）.0の場合は無期限、負の場合はデフォルトの有効期間.
+	 * @return カウント名とカウントのMap（条件の順序）
+	 * @throws Exception
+	 *             SQL実行時に例外発生した場合
+	 * @see #getCounts(Map, String, Object[])
+	 * @see #getCount(String, String, Object[], long)
+	 */
+	public Map<String, Integer> getCounts(Map<String, String> conditions,
+			String fromWhereBlock, Object[] values, long ttlMillis)
+			throws Exception {
+		List<Count> list = executeQueryWithCache(
+				createMultiCountSql(conditions, fromWhereBlock),
+				toValues(values), ttlMillis);
+		return toCountMap(conditions, list.get(0));
+	}
+
+	/**
+	 * 上限付きでcount値を取得する.
+	 * <p>
+	 * 「1000件以上」のように、一定件数を超えた場合は概数表示で構わない画面向けです.<br>
+	 * COUNTを使わず、SELECT 1 の結果を最大で threshold + 1 件までフェッチして数えるため、<br>
+	 * 該当件数が非常に多いテーブルでも全件を数える必要がありません.<br>
+	 * 戻り値がthresholdより大きい場合は「threshold件を超えている」ことを表し、<br>
+	 * 実際の件数ではありません.
+	 * </p>
+	 *
+	 * @param fromWhereBlock
+	 *            FROM句とWHERE句
+	 * @param values
+	 *            プレースホルダーにセットする値
+	 * @param threshold
+	 *            正確に数える件数の上限
+	 * @return カウント.<br>
+	 *         thresholdを超えている場合は threshold + 1.
+	 * @throws Exception
+	 *             SQL実行時に例外発生した場合
+	 */
+	public int getEstimatedCount(String fromWhereBlock, Object[] values,
+			int threshold) throws Exception {
+		if (threshold < 0) {
+			throw new IllegalArgumentException("thresholdが負の値です. threshold="
+					+ threshold);
+		}
+		long count = executeQuery(createSql("SELECT 1", fromWhereBlock),
+				toValues(values), 0, threshold + 1, new RowHandler<Count>() {
+					@Override
+					public void handle(Count entity) {
+						// 件数のみ数える
+					}
+				});
+		return (int) Math.min(count, threshold + 1L);
+	}
+
+	/**
+	 * count値取得のSQL文を生成する.
+	 *
+	 * @param selectBlock
+	 *            SELECT句
+	 * @param fromWhereBlock
+	 *            FROM句とWHERE句
+	 * @return SQL文
+	 */
+	private String createSql(String selectBlock, String fromWhereBlock) {
+		StringBuilder sql = new StringBuilder();
+		sql.append(selectBlock);
+		sql.append(" AS ");
+		sql.append(COUNT_OTHER_NAME);
+		sql.append(" ");
+		sql.append(fromWhereBlock);
+		return sql.toString();
+	}
+
+	/**
+	 * 複数の条件のcount値を取得するSQL文を生成する.
+	 *
+	 * @param conditions
+	 *            カウント名と条件のMap
+	 * @param fromWhereBlock
+	 *            FROM句とWHERE句
+	 * @return SQL文
+	 */
+	private String createMultiCountSql(Map<String, String> conditions,
+			String fromWhereBlock) {
+		if (conditions.isEmpty()) {
+			throw new IllegalArgumentException("条件が指定されていません.");
+		}
+		StringBuilder sql = new StringBuilder();
+		sql.append("SELECT ");
+		int i = 0;
+		for (String condition : conditions.values()) {
+			if (i > 0) {
+				sql.append(", ");
+			}
+			if (condition == null || condition.trim().length() == 0) {
+				sql.append("COUNT(*)");
+			} else {
+				sql.append("COUNT(CASE WHEN ");
+				sql.append(condition);
+				sql.append(" THEN 1 END)");
+			}
+			i++;
+			sql.append(" AS ");
+			sql.append(COUNT_OTHER_NAME);
+			sql.append("_");
+			sql.append(i);
+		}
+		sql.append(" ");
+		sql.append(fromWhereBlock);
+		return sql.toString();
+	}
+
+	/**
+	 * カウント名とカウントのMapに変換する.
+	 *
+	 * @param conditions
+	 *            カウント名と条件のMap
+	 * @param entity
+	 *            SELECT結果
+	 * @return カウント名とカウントのMap
+	 */
+	private Map<String, Integer> toCountMap(Map<String, String> conditions,
+			Count entity) {
+		Map<String, Integer> map = new LinkedHashMap<String, Integer>();
+		int i = 0;
+		for (String name : conditions.keySet()) {
+			map.put(name, entity.getCounts().get(i));
+			i++;
+		}
+		return map;
+	}
+
+	/**
+	 * プレースホルダーの値がnullの場合は空の配列にする.
+	 *
+	 * @param values
+	 *            プレースホルダーの値
+	 * @return プレースホルダーの値
+	 */
+	private Object[] toValues(Object[] values) {
+		return (values == null ? new Object[0] : values);
+	}
+
 	@Override
 	protected Count createEntity(ResultSet rs) throws SQLException {
 		Count entity = new Count();
-		entity.setCount(getInt(rs, COUNT_OTHER_NAME));
+		Integer count = getInt(rs, COUNT_OTHER_NAME);
+		if (count != null) {
+			entity.setCount(count);
+		} else {
+			// 複数条件のカウント
+			List<Integer> counts = new ArrayList<Integer>();
+			Integer value;
+			while ((value = getInt(rs, COUNT_OTHER_NAME + "_"
+					+ (counts.size() + 1))) != null) {
+				counts.add(value);
+			}
+			entity.setCounts(counts);
+		}
 		return entity;
 	}
 
 	/**
 	 * CountManager用Entity.
+	 * <p>
+	 * SELECT結果のキャッシュでシリアライズするため、外側のManagerを参照しないstaticクラスとしています.
+	 * </p>
 	 *
 	 * @author tatsuya.kumon
 	 */
-	final class Count implements BaseEntity {
+	static final class Count implements BaseEntity {
 		private int count;
+		private List<Integer> counts;
 
 		public int getCount() {
 			return count;
@@ -111,5 +338,13 @@ public final class CountManager extends BaseManager<Count> {
 		public void setCount(int count) {
 			this.count = count;
 		}
+
+		public List<Integer> getCounts() {
+			return counts;
+		}
+
+		public void setCounts(List<Integer> counts) {
+			this.counts = counts;
+		}
 	}
 }
@@ -0,0 +1,58 @@
+package jp.kt.db.manager;
+
+import jp.kt.db.entity.BaseEntity;
+
+/**
+ * 主キーをキーにしたentityのキャッシュのインタフェース.
+ * <p>
+ * {@link BaseManager#setEntityCache(EntityCache)}で差し替えられます.<br>
+ * デフォルトはキャッシュしません.JVM内で共有する場合は{@link LruEntityCache#getInstance()}を設定してください.<br>
+ * 複数スレッドから同時に呼ばれるため、スレッドセーフに実装してください.<br>
+ * 呼び出し元は取得したentityを変更するため、登録されたインスタンスを保持して返さず、<br>
+ * 複製を保持して、取得のたびに新しいインスタンスを返してください.
+ * </p>
+ *
+ * @author tatsuya.kumon
+ */
+public interface EntityCache {
+	/**
+	 * entityを取得する.
+	 *
+	 * @param key
+	 *            キー
+	 * @return entity（キャッシュとは別のインスタンス）.<br>
+	 *         キャッシュに無い場合はnull.
+	 */
+	BaseEntity get(EntityKey key);
+
+	/**
+	 * entityを登録する.
+	 *
+	 * @param key
+	 *            キー
+	 * @param entity
+	 *            entity
+	 */
+	void put(EntityKey key, BaseEntity entity);
+
+	/**
+	 * entityを破棄する.
+	 *
+	 * @param key
+	 *            キー
+	 */
+	void remove(EntityKey key);
+
+	/**
+	 * 指定entityクラスのentityを全て破棄する.
+	 *
+	 * @param entityClass
+	 *            entityクラス
+	 */
+	void removeAll(Class<? extends BaseEntity> entityClass);
+
+	/**
+	 * 全件破棄する.
+	 */
+	void clear();
+}
@@ -0,0 +1,85 @@
+package jp.kt.db.manager;
+
+import java.util.Arrays;
+
+import jp.kt.db.entity.BaseEntity;
+
+/**
+ * {@link EntityCache}のキーとなる、entityクラスと主キーの値の組.
+ * <p>
+ * 主キーの値は、{@link BaseManager#executeQueryByKey(CharSequence, EntityKey)}で<br>
+ * プレースホルダーにセットする値を兼ねます.<br>
+ * 値は{@link Object#equals(Object)}で比較するため、同じ主キーには常に同じ型（IntegerとLongなど）を指定してください.
+ * </p>
+ *
+ * @author tatsuya.kumon
+ */
+public final class EntityKey {
+	/** entityクラス */
+	private final Class<? extends BaseEntity> entityClass;
+
+	/** 主キーの値 */
+	private final Object[] values;
+
+	/** ハッシュ値 */
+	private final int hash;
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * @param entityClass
+	 *            entityクラス
+	 * @param values
+	 *            主キーの値.複合主キーの場合はプレースホルダーの順に指定してください.
+	 */
+	public EntityKey(Class<? extends BaseEntity> entityClass, Object... values) {
+		if (values == null || values.length == 0) {
+			throw new IllegalArgumentException("主キーの値が指定されていません");
+		}
+		this.entityClass = entityClass;
+		this.values = values.clone();
+		this.hash = entityClass.hashCode() * 31
+				+ Arrays.deepHashCode(this.values);
+	}
+
+	/**
+	 * entityクラスを取得する.
+	 *
+	 * @return entityクラス
+	 */
+	public Class<? extends BaseEntity> getEntityClass() {
+		return entityClass;
+	}
+
+	/**
+	 * 主キーの値を取得する.
+	 *
+	 * @return 主キーの値
+	 */
+	public Object[] getValues() {
+		return values.clone();
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof EntityKey)) {
+			return false;
+		}
+		EntityKey other = (EntityKey) obj;
+		return hash == other.hash && entityClass == other.entityClass
+				&& Arrays.deepEquals(values, other.values);
+	}
+
+	@Override
+	public String toString() {
+		return entityClass.getName() + Arrays.deepToString(values);
+	}
+}
@@ -0,0 +1,719 @@
+package jp.kt.db.manager;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jp.kt.db.entity.BaseEntity;
+import jp.kt.exception.KtException;
+
+/**
+ * ResultSetの1行をentityに格納するクラス.
+ * <p>
+ * {@link BaseManager#createEntity(ResultSet)}を手書きする代わりに使用できます.<br>
+ * <br>
+ * private static final EntityRowMapper&lt;UserEntity&gt; MAPPER =
+ * EntityRowMapper.getInstance(UserEntity.class);<br>
+ * <br>
+ * protected UserEntity createEntity(ResultSet rs) throws SQLException {<br>
+ * &nbsp;&nbsp;return MAPPER.map(rs);<br>
+ * }<br>
+ * <br>
+ * カラム名とプロパティ名は、アンダースコアを除いて大文字小文字を区別せずに比較します.<br>
+ * （USER_ID カラムは setUserId メソッド、もしくは userId フィールドに格納されます）<br>
+ * setterメソッドが存在しない場合はフィールドに直接格納します.<br>
+ * 同じプロパティのsetterメソッドが複数ある場合（オーバーロード）は、以下の順に1つを選択します.<br>
+ * ・引数の型がgetterメソッド（getXxx、isXxx）の戻り値の型と同じもの<br>
+ * ・引数の型が同名のフィールドの型と同じもの<br>
+ * ・引数の型のクラス名、メソッド名の辞書順で最初のもの<br>
+ * 対応するプロパティが存在しないカラムは無視します.<br>
+ * <br>
+ * カラムとプロパティの対応はentityクラスとResultSetのカラム構成ごとに1回だけ解決し、<br>
+ * 以降はカラムごとの格納処理を連結した1つの{@link MethodHandle}で格納します.<br>
+ * プリミティブ型のプロパティはボクシングせずに格納し、値がNULLの場合は格納しません.<br>
+ * <br>
+ * entityクラスには引数無しのコンストラクタが必要です.<br>
+ * 非staticの内部クラスは使用できません.
+ * </p>
+ *
+ * @author tatsuya.kumon
+ * @param <T>
+ *            entityの型
+ */
+public final class EntityRowMapper<T extends BaseEntity> {
+	/** カラム構成ごとの格納手順の最大保持数 */
+	private static final int MAX_PLAN_SIZE = 1000;
+
+	/** entityクラスとインスタンスの対応 */
+	private static final ConcurrentHashMap<Class<?>, EntityRowMapper<?>> MAPPERS = new ConcurrentHashMap<Class<?>, EntityRowMapper<?>>();
+
+	/** entityクラス */
+	private final Class<T> entityClass;
+
+	/** コンストラクタのMethodHandle（型は ()Object） */
+	private final MethodHandle constructor;
+
+	/** 正規化したプロパティ名とプロパティの対応 */
+	private final Map<String, Property> properties;
+
+	/** カラム構成と格納手順の対応 */
+	private final ConcurrentHashMap<String, MethodHandle> plans = new ConcurrentHashMap<String, MethodHandle>();
+
+	/** 直前に使用したResultSetと格納手順 */
+	private volatile LastPlan lastPlan;
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * @param entityClass
+	 *            entityクラス
+	 */
+	private EntityRowMapper(Class<T> entityClass) {
+		this.entityClass = entityClass;
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		try {
+			Constructor<T> c = entityClass.getDeclaredConstructor();
+			c.setAccessible(true);
+			this.constructor = lookup.unreflectConstructor(c).asType(
+					MethodType.methodType(Object.class));
+		} catch (NoSuchMethodException e) {
+			throw new KtException("A074", "引数無しのコンストラクタが存在しません:"
+					+ entityClass.getName(), e);
+		} catch (IllegalAccessException e) {
+			throw new KtException("A074", "コンストラクタにアクセスできません:"
+					+ entityClass.getName(), e);
+		}
+		this.properties = createProperties(entityClass, lookup);
+	}
+
+	/**
+	 * インスタンスを取得する.
+	 * <p>
+	 * インスタンスはentityクラスごとに1つで、複数スレッドから同時に使用できます.
+	 * </p>
+	 *
+	 * @param <T>
+	 *            entityの型
+	 * @param entityClass
+	 *            entityクラス
+	 * @return {@link EntityRowMapper}オブジェクト
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T extends BaseEntity> EntityRowMapper<T> getInstance(
+			Class<T> entityClass) {
+		EntityRowMapper<?> mapper = MAPPERS.get(entityClass);
+		if (mapper == null) {
+			mapper = new EntityRowMapper<T>(entityClass);
+			EntityRowMapper<?> old = MAPPERS.putIfAbsent(entityClass, mapper);
+			if (old != null) {
+				mapper = old;
+			}
+		}
+		return (EntityRowMapper<T>) mapper;
+	}
+
+	/**
+	 * ResultSetの現在行をentityに格納する.
+	 *
+	 * @param rs
+	 *            ResultSetオブジェクト
+	 * @return entity
+	 * @throws SQLException
+	 *             値の取得に失敗した場合
+	 */
+	public T map(ResultSet rs) throws SQLException {
+		MethodHandle plan;
+		LastPlan last = lastPlan;
+		if (last != null && last.rs == rs) {
+			plan = last.plan;
+		} else {
+			plan = getPlan(rs);
+			lastPlan = new LastPlan(rs, plan);
+		}
+		try {
+			Object entity = constructor.invokeExact();
+			plan.invokeExact(entity, rs);
+			return entityClass.cast(entity);
+		} catch (SQLException e) {
+			throw e;
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new KtException("A074", "entityへの格納に失敗しました:"
+					+ entityClass.getName(), e);
+		}
+	}
+
+	/**
+	 * ResultSetのカラム構成に対応する格納手順を取得する.
+	 *
+	 * @param rs
+	 *            ResultSetオブジェクト
+	 * @return 格納手順
+	 * @throws SQLException
+	 *             メタデータの取得に失敗した場合
+	 */
+	private MethodHandle getPlan(ResultSet rs) throws SQLException {
+		ResultSetMetaData meta = rs.getMetaData();
+		int columnCount = meta.getColumnCount();
+		String[] labels = new String[columnCount];
+		StringBuilder shape = new StringBuilder();
+		for (int i = 0; i < columnCount; i++) {
+			labels[i] = meta.getColumnLabel(i + 1);
+			shape.append(labels[i]).append('\t');
+		}
+		String key = shape.toString();
+		MethodHandle plan = plans.get(key);
+		if (plan == null) {
+			plan = createPlan(labels);
+			if (plans.size() >= MAX_PLAN_SIZE) {
+				plans.clear();
+			}
+			plans.put(key, plan);
+		}
+		return plan;
+	}
+
+	/**
+	 * 格納手順を生成する.
+	 * <p>
+	 * カラムごとの格納処理を{@link MethodHandles#foldArguments(MethodHandle, MethodHandle)}で
+	 * 1つのMethodHandleに連結します.<br>
+	 * 1つのMethodHandleとして呼び出すことで、JITコンパイラがsetterまでインライン展開できます.
+	 * </p>
+	 *
+	 * @param labels
+	 *            カラム名
+	 * @return (Object entity, ResultSet rs)void 型の格納手順
+	 */
+	private MethodHandle createPlan(String[] labels) {
+		List<MethodHandle> list = new ArrayList<MethodHandle>();
+		Set<String> used = new HashSet<String>();
+		for (int i = 0; i < labels.length; i++) {
+			if (labels[i] == null) {
+				continue;
+			}
+			String name = normalize(labels[i]);
+			Property property = properties.get(name);
+			// 同名のカラムは先頭のものを使う
+			if (property != null && used.add(name)) {
+				list.add(createColumnSetter(property.type, i + 1,
+						property.setter));
+			}
+		}
+		MethodHandle plan = findSetMethod("noop", MethodType.methodType(
+				void.class, Object.class, ResultSet.class));
+		// 先頭のカラムから順に格納されるよう、末尾から連結する
+		for (int i = list.size() - 1; i >= 0; i--) {
+			plan = MethodHandles.foldArguments(plan, list.get(i));
+		}
+		return plan;
+	}
+
+	/**
+	 * entityクラスのプロパティを取得する.
+	 *
+	 * @param entityClass
+	 *            entityクラス
+	 * @param lookup
+	 *            Lookupオブジェクト
+	 * @return 正規化したプロパティ名とプロパティの対応
+	 */
+	private static Map<String, Property> createProperties(
+			Class<?> entityClass, MethodHandles.Lookup lookup) {
+		Map<String, Property> map = new HashMap<String, Property>();
+		try {
+			// setterメソッド（getMethodsの順序は不定のため、プロパティごとに候補を集めて選択する）
+			Map<String, List<Method>> setters = new HashMap<String, List<Method>>();
+			Map<String, Class<?>> getterTypes = new HashMap<String, Class<?>>();
+			for (Method method : entityClass.getMethods()) {
+				String name = method.getName();
+				if (Modifier.isStatic(method.getModifiers())
+						|| method.isBridge()) {
+					continue;
+				}
+				int paramCount = method.getParameterTypes().length;
+				if (name.length() > 3 && name.startsWith("set")
+						&& paramCount == 1) {
+					String key = normalize(name.substring(3));
+					List<Method> list = setters.get(key);
+					if (list == null) {
+						list = new ArrayList<Method>();
+						setters.put(key, list);
+					}
+					list.add(method);
+				} else if (paramCount == 0
+						&& method.getReturnType() != void.class) {
+					if (name.length() > 3 && name.startsWith("get")) {
+						getterTypes.put(normalize(name.substring(3)),
+								method.getReturnType());
+					} else if (name.length() > 2 && name.startsWith("is")) {
+						getterTypes.put(normalize(name.substring(2)),
+								method.getReturnType());
+					}
+				}
+			}
+			Map<String, Class<?>> fieldTypes = getFieldTypes(entityClass);
+			for (Map.Entry<String, List<Method>> entry : setters.entrySet()) {
+				String key = entry.getKey();
+				Method method = selectSetter(entry.getValue(),
+						getterTypes.get(key), fieldTypes.get(key));
+				method.setAccessible(true);
+				map.put(key, new Property(method.getParameterTypes()[0],
+						lookup.unreflect(method)));
+			}
+			// setterメソッドの無いフィールド
+			for (Class<?> c = entityClass; c != null && c != Object.class; c = c
+					.getSuperclass()) {
+				for (Field field : c.getDeclaredFields()) {
+					int modifiers = field.getModifiers();
+					if (Modifier.isStatic(modifiers)
+							|| Modifier.isFinal(modifiers)
+							|| field.isSynthetic()) {
+						continue;
+					}
+					String key = normalize(field.getName());
+					if (!map.containsKey(key)) {
+						field.setAccessible(true);
+						map.put(key, new Property(field.getType(),
+								lookup.unreflectSetter(field)));
+					}
+				}
+			}
+		} catch (IllegalAccessException e) {
+			throw new KtException("A074", "プロパティにアクセスできません:"
+					+ entityClass.getName(), e);
+		}
+		return map;
+	}
+
+	/**
+	 * entityクラスのフィールドの型を取得する.
+	 * <p>
+	 * 親クラスと同名のフィールドは子クラスのものを優先します.
+	 * </p>
+	 *
+	 * @param entityClass
+	 *            entityクラス
+	 * @return 正規化したフィールド名とフィールドの型の対応
+	 */
+	private static Map<String, Class<?>> getFieldTypes(Class<?> entityClass) {
+		Map<String, Class<?>> map = new HashMap<String, Class<?>>();
+		for (Class<?> c = entityClass; c != null && c != Object.class; c = c
+				.getSuperclass()) {
+			for (Field field : c.getDeclaredFields()) {
+				String key = normalize(field.getName());
+				if (!Modifier.isStatic(field.getModifiers())
+						&& !map.containsKey(key)) {
+					map.put(key, field.getType());
+				}
+			}
+		}
+		return map;
+	}
+
+	/**
+	 * 同じプロパティのsetterメソッドから格納に使用するものを選択する.
+	 * <p>
+	 * getterメソッドの戻り値の型、フィールドの型と引数の型が同じものを優先し、<br>
+	 * それ以外は引数の型のクラス名、メソッド名の辞書順で最初のものを選択します.
+	 * </p>
+	 *
+	 * @param candidates
+	 *            setterメソッド
+	 * @param getterType
+	 *            getterメソッドの戻り値の型.無い場合はnull.
+	 * @param fieldType
+	 *            フィールドの型.無い場合はnull.
+	 * @return setterメソッド
+	 */
+	private static Method selectSetter(List<Method> candidates,
+			Class<?> getterType, Class<?> fieldType) {
+		Method selected = null;
+		int selectedRank = 0;
+		for (Method method : candidates) {
+			Class<?> type = method.getParameterTypes()[0];
+			int rank = (type == getterType ? 0 : (type == fieldType ? 1 : 2));
+			if (selected == null || rank < selectedRank
+					|| (rank == selectedRank && compare(method, selected) < 0)) {
+				selected = method;
+				selectedRank = rank;
+			}
+		}
+		return selected;
+	}
+
+	/**
+	 * setterメソッドを引数の型のクラス名、メソッド名の辞書順で比較する.
+	 *
+	 * @param m1
+	 *            比較対象の最初のメソッド
+	 * @param m2
+	 *            比較対象の 2 番目のメソッド
+	 * @return 最初のメソッドが前の場合は負の整数、同じ場合は 0、後の場合は正の整数
+	 */
+	private static int compare(Method m1, Method m2) {
+		int result = m1.getParameterTypes()[0].getName().compareTo(
+				m2.getParameterTypes()[0].getName());
+		if (result == 0) {
+			result = m1.getName().compareTo(m2.getName());
+		}
+		return result;
+	}
+
+	/**
+	 * カラム名・プロパティ名を比較用に正規化する.
+	 *
+	 * @param name
+	 *            カラム名・プロパティ名
+	 * @return アンダースコアを除いて小文字にした名前
+	 */
+	private static String normalize(String name) {
+		StringBuilder sb = new StringBuilder(name.length());
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (c != '_') {
+				sb.append(c);
+			}
+		}
+		return sb.toString().toLowerCase(Locale.ENGLISH);
+	}
+
+	/**
+	 * 何もしない格納処理（格納手順の初期値）.
+	 *
+	 * @param entity
+	 *            entity
+	 * @param rs
+	 *            ResultSetオブジェクト
+	 */
+	private static void noop(Object entity, ResultSet rs) {
+	}
+
+	/**
+	 * プロパティの型に応じた1カラムの格納処理を生成する.
+	 * <p>
+	 * 型ごとの格納メソッドにsetterとカラムのインデックスを束縛し、<br>
+	 * (Object entity, ResultSet rs)void 型のMethodHandleとします.
+	 * </p>
+	 *
+	 * @param type
+	 *            プロパティの型
+	 * @param index
+	 *            カラムのインデックス
+	 * @param handle
+	 *            setterメソッドもしくはフィールドのMethodHandle
+	 * @return 1カラムの格納処理
+	 */
+	private static MethodHandle createColumnSetter(Class<?> type, int index,
+			MethodHandle handle) {
+		String name;
+		if (type.isPrimitive()) {
+			name = "set" + Character.toUpperCase(type.getName().charAt(0))
+					+ type.getName().substring(1);
+			return bind(name, handle.asType(MethodType.methodType(void.class,
+					Object.class, type)), index);
+		}
+		MethodHandle mh = handle.asType(MethodType.methodType(void.class,
+				Object.class, Object.class));
+		if (type == String.class) {
+			name = "setString";
+		} else if (type == Integer.class) {
+			name = "setIntegerObject";
+		} else if (type == Long.class) {
+			name = "setLongObject";
+		} else if (type == Double.class) {
+			name = "setDoubleObject";
+		} else if (type == Boolean.class) {
+			name = "setBooleanObject";
+		} else if (type == Character.class) {
+			name = "setCharacterObject";
+		} else if (type == BigDecimal.class) {
+			name = "setBigDecimal";
+		} else if (type == Timestamp.class || type == java.util.Date.class) {
+			name = "setTimestamp";
+		} else if (type == java.sql.Date.class) {
+			name = "setDate";
+		} else if (type == LocalDateTime.class) {
+			name = "setLocalDateTime";
+		} else if (type == LocalDate.class) {
+			name = "setLocalDate";
+		} else if (type == byte[].class) {
+			name = "setBytes";
+		} else if (type == Object.class) {
+			name = "setObject";
+		} else {
+			// その他の型はJDBCドライバの変換に任せる
+			MethodHandle target = findSetMethod("setConverted",
+					MethodType.methodType(void.class, MethodHandle.class,
+							int.class, Class.class, Object.class,
+							ResultSet.class));
+			return MethodHandles.insertArguments(target, 0, mh, index, type);
+		}
+		return bind(name, mh, index);
+	}
+
+	/**
+	 * 型ごとの格納メソッドにsetterとカラムのインデックスを束縛する.
+	 *
+	 * @param name
+	 *            格納メソッド名
+	 * @param mh
+	 *            (Object, プロパティの型)void 型のsetter
+	 * @param index
+	 *            カラムのインデックス
+	 * @return (Object entity, ResultSet rs)void 型のMethodHandle
+	 */
+	private static MethodHandle bind(String name, MethodHandle mh, int index) {
+		MethodHandle target = findSetMethod(name, MethodType.methodType(
+				void.class, MethodHandle.class, int.class, Object.class,
+				ResultSet.class));
+		return MethodHandles.insertArguments(target, 0, mh, index);
+	}
+
+	/**
+	 * 型ごとの格納メソッドを取得する.
+	 *
+	 * @param name
+	 *            格納メソッド名
+	 * @param type
+	 *            格納メソッドの型
+	 * @return 格納メソッドのMethodHandle
+	 */
+	private static MethodHandle findSetMethod(String name, MethodType type) {
+		try {
+			return MethodHandles.lookup().findStatic(EntityRowMapper.class,
+					name, type);
+		} catch (NoSuchMethodException e) {
+			throw new KtException("A074", "格納メソッドが存在しません:" + name, e);
+		} catch (IllegalAccessException e) {
+			throw new KtException("A074", "格納メソッドにアクセスできません:" + name, e);
+		}
+	}
+
+	/*
+	 * 以下は型ごとの格納メソッド.
+	 * 引数は (setter, カラムのインデックス, entity, ResultSet) の順で、
+	 * プリミティブ型はボクシングせずに格納し、値がNULLの場合は格納しません.
+	 */
+
+	private static void setInt(MethodHandle mh, int index, Object entity,
+			ResultSet rs) throws Throwable {
+		int value = rs.getInt(index);
+		if (!rs.wasNull()) {
+			mh.invokeExact(entity, value);
+		}
+	}
+
+	private static void setLong(MethodHandle mh, int index, Object entity,
+			ResultSet rs) throws Throwable {
+		long value = rs.getLong(index);
+		if (!rs.wasNull()) {
+			mh.invokeExact(entity, value);
+		}
+	}
+
+	private static void setDouble(MethodHandle mh, int index, Object entity,
+			ResultSet rs) throws Throwable {
+		double value = rs.getDouble(index);
+		if (!rs.wasNull()) {
+			mh.invokeExact(entity, value);
+		}
+	}
+
+	private static void setFloat(MethodHandle mh, int index, Object entity,
+			ResultSet rs) throws Throwable {
+		float value = rs.getFloat(index);
+		if (!rs.wasNull()) {
+			mh.invokeExact(entity, value);
+		}
+	}
+
+	private static void setShort(MethodHandle mh, int index, Object entity,
+			ResultSet rs) throws Throwable {
+		short value = rs.getShort(index);
+		if (!rs.wasNull()) {
+			mh.invokeExact(entity, value);
+		}
+	}
+
+	private static void setByte(MethodHandle mh, int index, Object entity,
+			ResultSet rs) throws Throwable {
+		byte value = rs.getByte(index);
+		if (!rs.wasNull()) {
+			mh.invokeExact(entity, value);
+		}
+	}
+
+	private static void setBoolean(MethodHandle mh, int index, Object entity,
+			ResultSet rs) throws Throwable {
+		boolean value = rs.getBoolean(index);
+		if (!rs.wasNull()) {
+			mh.invokeExact(entity, value);
+		}
+	}
+
+	private static void setChar(MethodHandle mh, int index, Object entity,
+			ResultSet rs) throws Throwable {
+		String value = rs.getString(index);
+		if (value != null && value.length() > 0) {
+			mh.invokeExact(entity, value.charAt(0));
+		}
+	}
+
+	private static void setString(MethodHandle mh, int index, Object entity,
+			ResultSet rs) throws Throwable {
+		mh.invokeExact(entity, (Object) rs.getString(index));
+	}
+
+	private static void setIntegerObject(MethodHandle mh, int index,
+			Object entity, ResultSet rs) throws Throwable {
+		int value = rs.getInt(index);
+		mh.invokeExact(entity, (Object) (rs.wasNull() ? null : Integer
+				.valueOf(value)));
+	}
+
+	private static void setLongObject(MethodHandle mh, int index,
+			Object entity, ResultSet rs) throws Throwable {
+		long value = rs.getLong(index);
+		mh.invokeExact(entity, (Object) (rs.wasNull() ? null : Long
+				.valueOf(value)));
+	}
+
+	private static void setDoubleObject(MethodHandle mh, int index,
+			Object entity, ResultSet rs) throws Throwable {
+		double value = rs.getDouble(index);
+		mh.invokeExact(entity, (Object) (rs.wasNull() ? null : Double
+				.valueOf(value)));
+	}
+
+	private static void setBooleanObject(MethodHandle mh, int index,
+			Object entity, ResultSet rs) throws Throwable {
+		boolean value = rs.getBoolean(index);
+		mh.invokeExact(entity, (Object) (rs.wasNull() ? null : Boolean
+				.valueOf(value)));
+	}
+
+	private static void setCharacterObject(MethodHandle mh, int index,
+			Object entity, ResultSet rs) throws Throwable {
+		String value = rs.getString(index);
+		mh.invokeExact(entity, (Object) (value == null || value.length() == 0 ? null
+				: Character.valueOf(value.charAt(0))));
+	}
+
+	private static void setBigDecimal(MethodHandle mh, int index,
+			Object entity, ResultSet rs) throws Throwable {
+		mh.invokeExact(entity, (Object) rs.getBigDecimal(index));
+	}
+
+	private static void setTimestamp(MethodHandle mh, int index,
+			Object entity, ResultSet rs) throws Throwable {
+		mh.invokeExact(entity, (Object) rs.getTimestamp(index));
+	}
+
+	private static void setDate(MethodHandle mh, int index, Object entity,
+			ResultSet rs) throws Throwable {
+		mh.invokeExact(entity, (Object) rs.getDate(index));
+	}
+
+	private static void setLocalDateTime(MethodHandle mh, int index,
+			Object entity, ResultSet rs) throws Throwable {
+		Timestamp value = rs.getTimestamp(index);
+		mh.invokeExact(entity, (Object) (value == null ? null : value
+				.toLocalDateTime()));
+	}
+
+	private static void setLocalDate(MethodHandle mh, int index,
+			Object entity, ResultSet rs) throws Throwable {
+		java.sql.Date value = rs.getDate(index);
+		mh.invokeExact(entity, (Object) (value == null ? null : value
+				.toLocalDate()));
+	}
+
+	private static void setBytes(MethodHandle mh, int index, Object entity,
+			ResultSet rs) throws Throwable {
+		mh.invokeExact(entity, (Object) rs.getBytes(index));
+	}
+
+	private static void setObject(MethodHandle mh, int index, Object entity,
+			ResultSet rs) throws Throwable {
+		mh.invokeExact(entity, rs.getObject(index));
+	}
+
+	private static void setConverted(MethodHandle mh, int index,
+			Class<?> type, Object entity, ResultSet rs) throws Throwable {
+		mh.invokeExact(entity, (Object) rs.getObject(index, type));
+	}
+	/**
+	 * entityのプロパティ.
+	 *
+	 * @author tatsuya.kumon
+	 */
+	private static final class Property {
+		/** プロパティの型 */
+		private final Class<?> type;
+
+		/** setterメソッドもしくはフィールドのMethodHandle */
+		private final MethodHandle setter;
+
+		/**
+		 * コンストラクタ.
+		 *
+		 * @param type
+		 *            プロパティの型
+		 * @param setter
+		 *            setterメソッドもしくはフィールドのMethodHandle
+		 */
+		private Property(Class<?> type, MethodHandle setter) {
+			this.type = type;
+			this.setter = setter;
+		}
+	}
+
+	/**
+	 * 直前に使用したResultSetと格納手順の組.
+	 *
+	 * @author tatsuya.kumon
+	 */
+	private static final class LastPlan {
+		/** ResultSet */
+		private final ResultSet rs;
+
+		/** 格納手順 */
+		private final MethodHandle plan;
+
+		/**
+		 * コンストラクタ.
+		 *
+		 * @param rs
+		 *            ResultSet
+		 * @param plan
+		 *            格納手順
+		 */
+		private LastPlan(ResultSet rs, MethodHandle plan) {
+			this.rs = rs;
+			this.plan = plan;
+		}
+	}
+}
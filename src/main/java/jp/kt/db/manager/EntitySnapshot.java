@@ -0,0 +1,136 @@
+package jp.kt.db.manager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+
+import jp.kt.exception.KtException;
+import jp.kt.logger.ApplicationLogger;
+
+/**
+ * キャッシュに保持するentityの複製元.
+ * <p>
+ * entityをシリアライズしたバイト列で保持し、取得するたびに新しいインスタンスを復元します.<br>
+ * 呼び出し元がキャッシュから取得したentityを変更しても、<br>
+ * キャッシュや他のスレッドが取得したentityには影響しません.
+ * </p>
+ *
+ * @author tatsuya.kumon
+ */
+final class EntitySnapshot {
+	/** ログ出力用Logger名 */
+	private static final String LOGGER_NAME = "sqlCache";
+
+	/** シリアライズしたバイト列 */
+	private final byte[] bytes;
+
+	/** 復元に使用するClassLoader */
+	private final ClassLoader classLoader;
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * @param bytes
+	 *            シリアライズしたバイト列
+	 * @param classLoader
+	 *            復元に使用するClassLoader
+	 */
+	private EntitySnapshot(byte[] bytes, ClassLoader classLoader) {
+		this.bytes = bytes;
+		this.classLoader = classLoader;
+	}
+
+	/**
+	 * 複製元を生成する.
+	 * <p>
+	 * シリアライズできないオブジェクトを含む場合は警告ログを出力し、nullを返します.<br>
+	 * その場合はキャッシュしないでください.
+	 * </p>
+	 *
+	 * @param obj
+	 *            entity、またはentityのList
+	 * @param classLoader
+	 *            entityクラスのClassLoader
+	 * @return {@link EntitySnapshot}オブジェクト.<br>
+	 *         シリアライズできない場合はnull.
+	 */
+	static EntitySnapshot create(Serializable obj, ClassLoader classLoader) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			ObjectOutputStream oos = new ObjectOutputStream(out);
+			oos.writeObject(obj);
+			oos.close();
+		} catch (IOException e) {
+			new ApplicationLogger(LOGGER_NAME, EntitySnapshot.class).warnLog(
+					"A081", "シリアライズできないためキャッシュしません", e);
+			return null;
+		}
+		return new EntitySnapshot(out.toByteArray(), classLoader);
+	}
+
+	/**
+	 * 新しいインスタンスを復元する.
+	 *
+	 * @return 復元したオブジェクト
+	 */
+	Object restore() {
+		try {
+			ObjectInputStream ois = new LoaderObjectInputStream(
+					new ByteArrayInputStream(bytes), classLoader);
+			try {
+				return ois.readObject();
+			} finally {
+				ois.close();
+			}
+		} catch (IOException e) {
+			throw new KtException("A081", "キャッシュからの復元に失敗しました", e);
+		} catch (ClassNotFoundException e) {
+			throw new KtException("A081", "キャッシュからの復元に失敗しました", e);
+		}
+	}
+
+	/**
+	 * 指定したClassLoaderでクラスを解決するObjectInputStream.
+	 *
+	 * @author tatsuya.kumon
+	 */
+	private static final class LoaderObjectInputStream extends
+			ObjectInputStream {
+		/** ClassLoader */
+		private final ClassLoader classLoader;
+
+		/**
+		 * コンストラクタ.
+		 *
+		 * @param in
+		 *            入力元
+		 * @param classLoader
+		 *            ClassLoader
+		 * @throws IOException
+		 *             ヘッダの読み込みに失敗した場合
+		 */
+		private LoaderObjectInputStream(InputStream in, ClassLoader classLoader)
+				throws IOException {
+			super(in);
+			this.classLoader = classLoader;
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc)
+				throws IOException, ClassNotFoundException {
+			if (classLoader != null) {
+				try {
+					return Class.forName(desc.getName(), false, classLoader);
+				} catch (ClassNotFoundException e) {
+					// 標準の解決を試みる
+				}
+			}
+			return super.resolveClass(desc);
+		}
+	}
+}
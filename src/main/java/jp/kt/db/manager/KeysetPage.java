@@ -0,0 +1,67 @@
+package jp.kt.db.manager;
+
+import java.util.List;
+
+import jp.kt.db.entity.BaseEntity;
+
+/**
+ * キーセット方式のページングで取得した1ページ分の結果.
+ *
+ * @author tatsuya.kumon
+ * @param <T>
+ *            {@link BaseEntity}の子クラス
+ * @see BaseManager#executeKeysetQuery(KeysetPagination, Object[], String)
+ */
+public final class KeysetPage<T extends BaseEntity> {
+	/** 1ページ分のentity */
+	private final List<T> list;
+
+	/** 次ページの継続トークン */
+	private final String nextToken;
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * @param list
+	 *            1ページ分のentity
+	 * @param nextToken
+	 *            次ページの継続トークン.最終ページの場合はnull.
+	 */
+	KeysetPage(List<T> list, String nextToken) {
+		this.list = list;
+		this.nextToken = nextToken;
+	}
+
+	/**
+	 * 1ページ分のentityを取得する.
+	 *
+	 * @return entityのList
+	 */
+	public List<T> getList() {
+		return list;
+	}
+
+	/**
+	 * 次ページの継続トークンを取得する.
+	 * <p>
+	 * 次ページ取得時に{@link BaseManager#executeKeysetQuery(KeysetPagination, Object[], String)}
+	 * へ渡してください.<br>
+	 * 内容は前ページ最終行のキーの値をエンコードしたもので、URLにそのまま使用できます.
+	 * </p>
+	 *
+	 * @return 継続トークン.<br>
+	 *         最終ページの場合はnull.
+	 */
+	public String getNextToken() {
+		return nextToken;
+	}
+
+	/**
+	 * 次ページが存在するか判定する.
+	 *
+	 * @return 次ページが存在する場合はtrue
+	 */
+	public boolean hasNext() {
+		return nextToken != null;
+	}
+}
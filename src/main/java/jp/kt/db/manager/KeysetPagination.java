@@ -0,0 +1,445 @@
+package jp.kt.db.manager;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * キーセット方式のページング条件設定クラス.
+ * <p>
+ * {@link BaseManager#executeKeysetQuery(KeysetPagination, Object[], String)}
+ * への引数に使用する.<br>
+ * OFFSETで読み飛ばす代わりに、前ページ最終行のキーより後ろの行を<br>
+ * WHERE句で絞り込んで取得するため、何ページ目でも1ページ目と同じコストで取得できます.<br>
+ * <br>
+ * 例えば下記の設定の場合、<br>
+ * <br>
+ * KeysetPagination pagination = new KeysetPagination("SELECT * FROM ADMIN_USER",
+ * "STATUS = ?", 50);<br>
+ * pagination.addKey("CREATE_DATE", false);<br>
+ * pagination.addKey("USER_ID", true);<br>
+ * <br>
+ * 2ページ目以降は下記のSQL文となります.<br>
+ * <br>
+ * SELECT * FROM ADMIN_USER WHERE (STATUS = ?) AND ((CREATE_DATE &lt; ?) OR
+ * (CREATE_DATE = ? AND USER_ID &gt; ?)) ORDER BY CREATE_DATE DESC, USER_ID ASC<br>
+ * <br>
+ * キーのカラムはNOT NULLで、全てのキーの組で行が一意になるよう指定してください.<br>
+ * （最後のキーに主キーを指定するのが確実です）<br>
+ * またキーのカラムはSELECT句で取得している必要があります.<br>
+ * <br>
+ * 取得件数は{@link java.sql.PreparedStatement#setMaxRows(int)}で制限します.<br>
+ * {@link #setLimitClause(boolean)}でtrueを指定した場合は LIMIT 句も付加します.
+ * </p>
+ *
+ * @author tatsuya.kumon
+ */
+public class KeysetPagination {
+	/** 継続トークン内の値の区切り文字 */
+	private static final char SEPARATOR = ':';
+
+	/** SELECT句とFROM句 */
+	private final String selectFromBlock;
+
+	/** WHERE句（WHEREは含まない） */
+	private final String whereBlock;
+
+	/** 1ページの件数 */
+	private final int pageSize;
+
+	/** キー */
+	private final List<Key> keys = new ArrayList<Key>();
+
+	/** LIMIT句を付加するか */
+	private boolean limitClause;
+
+	/** タイムアウト値（秒） */
+	private int timeoutSec;
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * @param selectFromBlock
+	 *            SELECT句とFROM句
+	 * @param whereBlock
+	 *            WHERE句（WHEREは含まない）.条件が無い場合はnull.
+	 * @param pageSize
+	 *            1ページの件数
+	 */
+	public KeysetPagination(String selectFromBlock, String whereBlock,
+			int pageSize) {
+		if (pageSize <= 0) {
+			throw new IllegalArgumentException("pageSizeが0以下です. pageSize="
+					+ pageSize);
+		}
+		this.selectFromBlock = selectFromBlock;
+		this.whereBlock = whereBlock;
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * キーを追加する.
+	 * <p>
+	 * ResultSetからはカラム名の「.」より後ろの部分で値を取得します.
+	 * </p>
+	 *
+	 * @param column
+	 *            カラム名（A.USER_ID のような指定も可）
+	 * @param ascending
+	 *            昇順の場合はtrue、降順の場合はfalse
+	 */
+	public void addKey(String column, boolean ascending) {
+		addKey(column, column.substring(column.lastIndexOf('.') + 1), ascending);
+	}
+
+	/**
+	 * キーを追加する.
+	 *
+	 * @param column
+	 *            SQL文で使用するカラム名
+	 * @param label
+	 *            ResultSetから値を取得する時のカラム名
+	 * @param ascending
+	 *            昇順の場合はtrue、降順の場合はfalse
+	 */
+	public void addKey(String column, String label, boolean ascending) {
+		keys.add(new Key(column, label, ascending));
+	}
+
+	/**
+	 * LIMIT句を付加するか設定する.
+	 * <p>
+	 * LIMIT句に対応しているDBで、SQL文の実行計画に件数を反映させたい場合に指定します.<br>
+	 * デフォルトはfalseです.
+	 * </p>
+	 *
+	 * @param limitClause
+	 *            LIMIT句を付加する場合はtrue
+	 */
+	public void setLimitClause(boolean limitClause) {
+		this.limitClause = limitClause;
+	}
+
+	/**
+	 * タイムアウト値を設定する.
+	 *
+	 * @param timeoutSec
+	 *            タイムアウト値（秒）
+	 */
+	public void setTimeoutSec(int timeoutSec) {
+		this.timeoutSec = timeoutSec;
+	}
+
+	/**
+	 * 1ページの件数を取得する.
+	 *
+	 * @return 1ページの件数
+	 */
+	int getPageSize() {
+		return pageSize;
+	}
+
+	/**
+	 * タイムアウト値を取得する.
+	 *
+	 * @return タイムアウト値（秒）
+	 */
+	int getTimeoutSec() {
+		return timeoutSec;
+	}
+
+	/**
+	 * SQL文を生成する.
+	 *
+	 * @param seek
+	 *            前ページのキーで絞り込む場合はtrue
+	 * @return SQL文
+	 */
+	String createSql(boolean seek) {
+		checkKeys();
+		StringBuilder sql = new StringBuilder();
+		sql.append(selectFromBlock);
+		boolean hasWhere = (whereBlock != null && whereBlock.trim().length() > 0);
+		if (hasWhere || seek) {
+			sql.append(" WHERE ");
+		}
+		if (hasWhere) {
+			sql.append("(");
+			sql.append(whereBlock);
+			sql.append(")");
+		}
+		if (seek) {
+			if (hasWhere) {
+				sql.append(" AND ");
+			}
+			// (K1 > ?) OR (K1 = ? AND K2 > ?) OR ...
+			sql.append("(");
+			for (int i = 0; i < keys.size(); i++) {
+				if (i > 0) {
+					sql.append(" OR ");
+				}
+				sql.append("(");
+				for (int j = 0; j < i; j++) {
+					sql.append(keys.get(j).column);
+					sql.append(" = ? AND ");
+				}
+				Key key = keys.get(i);
+				sql.append(key.column);
+				sql.append(key.ascending ? " > ?" : " < ?");
+				sql.append(")");
+			}
+			sql.append(")");
+		}
+		sql.append(" ORDER BY ");
+		for (int i = 0; i < keys.size(); i++) {
+			if (i > 0) {
+				sql.append(", ");
+			}
+			Key key = keys.get(i);
+			sql.append(key.column);
+			sql.append(key.ascending ? " ASC" : " DESC");
+		}
+		if (limitClause) {
+			// 次ページの有無を判定するため1件多く取得する
+			sql.append(" LIMIT ");
+			sql.append(pageSize + 1);
+		}
+		return sql.toString();
+	}
+
+	/**
+	 * プレースホルダーの値を生成する.
+	 *
+	 * @param values
+	 *            WHERE句のプレースホルダーの値
+	 * @param lastKey
+	 *            前ページ最終行のキーの値.1ページ目の場合はnull.
+	 * @return プレースホルダーの値
+	 */
+	Object[] createValues(Object[] values, Object[] lastKey) {
+		List<Object> list = new ArrayList<Object>();
+		if (values != null) {
+			for (Object value : values) {
+				list.add(value);
+			}
+		}
+		if (lastKey != null) {
+			for (int i = 0; i < keys.size(); i++) {
+				for (int j = 0; j <= i; j++) {
+					list.add(lastKey[j]);
+				}
+			}
+		}
+		return list.toArray();
+	}
+
+	/**
+	 * ResultSetの現在行からキーの値を取得する.
+	 *
+	 * @param rs
+	 *            {@link ResultSet}オブジェクト
+	 * @return キーの値
+	 * @throws SQLException
+	 *             値の取得に失敗した場合
+	 */
+	Object[] readKey(ResultSet rs) throws SQLException {
+		Object[] lastKey = new Object[keys.size()];
+		for (int i = 0; i < lastKey.length; i++) {
+			Key key = keys.get(i);
+			Object value = rs.getObject(rs.findColumn(key.label));
+			if (value == null) {
+				throw new IllegalStateException("キーの値がNULLです. column="
+						+ key.column);
+			}
+			lastKey[i] = normalize(value);
+		}
+		return lastKey;
+	}
+
+	/**
+	 * キーの値をプレースホルダーにセットできる型に変換する.
+	 *
+	 * @param value
+	 *            ResultSetから取得した値
+	 * @return 変換した値
+	 */
+	private static Object normalize(Object value) {
+		if (value instanceof String || value instanceof Integer
+				|| value instanceof BigDecimal || value instanceof Timestamp) {
+			return value;
+		} else if (value instanceof Short || value instanceof Byte) {
+			return ((Number) value).intValue();
+		} else if (value instanceof Long) {
+			return BigDecimal.valueOf((Long) value);
+		} else if (value instanceof BigInteger) {
+			return new BigDecimal((BigInteger) value);
+		} else if (value instanceof Double || value instanceof Float) {
+			return new BigDecimal(value.toString());
+		} else if (value instanceof Date) {
+			return new Timestamp(((Date) value).getTime());
+		} else if (value instanceof Character) {
+			return value.toString();
+		}
+		throw new IllegalStateException("キーに使用できない型です. type="
+				+ value.getClass().getName());
+	}
+
+	/**
+	 * キーの値から継続トークンを生成する.
+	 *
+	 * @param lastKey
+	 *            ページ最終行のキーの値
+	 * @return 継続トークン
+	 */
+	String encodeToken(Object[] lastKey) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(Integer.toHexString(getFingerprint()));
+		for (Object value : lastKey) {
+			String text;
+			char type;
+			if (value instanceof Integer) {
+				type = 'I';
+				text = value.toString();
+			} else if (value instanceof BigDecimal) {
+				type = 'D';
+				text = ((BigDecimal) value).toString();
+			} else if (value instanceof Timestamp) {
+				Timestamp ts = (Timestamp) value;
+				type = 'T';
+				text = ts.getTime() + "." + ts.getNanos();
+			} else {
+				type = 'S';
+				text = value.toString();
+			}
+			// 型、文字数、値の順に並べる
+			sb.append(SEPARATOR);
+			sb.append(type);
+			sb.append(text.length());
+			sb.append(SEPARATOR);
+			sb.append(text);
+		}
+		return java.util.Base64.getUrlEncoder().withoutPadding()
+				.encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * 継続トークンからキーの値を復元する.
+	 *
+	 * @param token
+	 *            継続トークン
+	 * @return キーの値.<br>
+	 *         トークンがnullもしくは空文字の場合はnull.
+	 */
+	Object[] decodeToken(String token) {
+		if (token == null || token.length() == 0) {
+			return null;
+		}
+		try {
+			String text = new String(java.util.Base64.getUrlDecoder().decode(
+					token), StandardCharsets.UTF_8);
+			int pos = text.indexOf(SEPARATOR);
+			if (pos < 0
+					|| Integer.parseUnsignedInt(text.substring(0, pos), 16) != getFingerprint()) {
+				throw new IllegalArgumentException("別の条件の継続トークンです.");
+			}
+			Object[] lastKey = new Object[keys.size()];
+			for (int i = 0; i < lastKey.length; i++) {
+				char type = text.charAt(pos + 1);
+				int lengthEnd = text.indexOf(SEPARATOR, pos + 2);
+				int length = Integer.parseInt(text.substring(pos + 2, lengthEnd));
+				String value = text.substring(lengthEnd + 1, lengthEnd + 1
+						+ length);
+				pos = lengthEnd + 1 + length;
+				switch (type) {
+				case 'I':
+					lastKey[i] = Integer.valueOf(value);
+					break;
+				case 'D':
+					lastKey[i] = new BigDecimal(value);
+					break;
+				case 'T':
+					int dot = value.indexOf('.');
+					Timestamp ts = new Timestamp(Long.parseLong(value
+							.substring(0, dot)));
+					ts.setNanos(Integer.parseInt(value.substring(dot + 1)));
+					lastKey[i] = ts;
+					break;
+				case 'S':
+					lastKey[i] = value;
+					break;
+				default:
+					throw new IllegalArgumentException("不明な型です. type=" + type);
+				}
+			}
+			if (pos != text.length()) {
+				throw new IllegalArgumentException("キーの数が一致しません.");
+			}
+			return lastKey;
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("継続トークンが不正です. token=" + token,
+					e);
+		}
+	}
+
+	/**
+	 * 継続トークンが同じ条件で生成されたか確認するための値を取得する.
+	 *
+	 * @return SQL文とキーから計算したハッシュ値
+	 */
+	private int getFingerprint() {
+		int hash = selectFromBlock.hashCode();
+		hash = hash * 31 + (whereBlock == null ? 0 : whereBlock.hashCode());
+		for (Key key : keys) {
+			hash = hash * 31 + key.column.hashCode();
+			hash = hash * 31 + (key.ascending ? 1 : 0);
+		}
+		return hash;
+	}
+
+	/**
+	 * キーが設定されているか確認する.
+	 */
+	private void checkKeys() {
+		if (keys.isEmpty()) {
+			throw new IllegalStateException("キーが設定されていません.");
+		}
+	}
+
+	/**
+	 * ページングのキー.
+	 *
+	 * @author tatsuya.kumon
+	 */
+	private static final class Key {
+		/** SQL文で使用するカラム名 */
+		private final String column;
+
+		/** ResultSetから値を取得する時のカラム名 */
+		private final String label;
+
+		/** 昇順か */
+		private final boolean ascending;
+
+		/**
+		 * コンストラクタ.
+		 *
+		 * @param column
+		 *            SQL文で使用するカラム名
+		 * @param label
+		 *            ResultSetから値を取得する時のカラム名
+		 * @param ascending
+		 *            昇順の場合はtrue
+		 */
+		private Key(String column, String label, boolean ascending) {
+			this.column = column;
+			this.label = label;
+			this.ascending = ascending;
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package jp.kt.db.manager;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 実行時間のヒストグラム.
+ * <p>
+ * マイクロ秒単位の値を、2のべき乗ごとに16分割したバケットで集計します.<br>
+ * パーセンタイル値の誤差は約6%以内です.<br>
+ * 複数スレッドから同時に記録できます.
+ * </p>
+ *
+ * @author tatsuya.kumon
+ */
+final class LatencyHistogram {
+	/** 2のべき乗ごとの分割数のビット数 */
+	private static final int SUB_BITS = 4;
+
+	/** 2のべき乗ごとの分割数 */
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+
+	/** 最大の指数（2^35マイクロ秒 ≒ 9.5時間） */
+	private static final int MAX_EXPONENT = 35;
+
+	/** バケット数 */
+	private static final int BUCKET_COUNT = SUB_COUNT
+			+ (MAX_EXPONENT - SUB_BITS + 1) * SUB_COUNT;
+
+	/** バケットごとの件数 */
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+	/** 件数 */
+	private final AtomicLong count = new AtomicLong();
+
+	/** 合計（マイクロ秒） */
+	private final AtomicLong total = new AtomicLong();
+
+	/** 最大値（マイクロ秒） */
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * 値を記録する.
+	 *
+	 * @param micros
+	 *            実行時間（マイクロ秒）
+	 */
+	void record(long micros) {
+		if (micros < 0) {
+			micros = 0;
+		}
+		buckets.incrementAndGet(toIndex(micros));
+		count.incrementAndGet();
+		total.addAndGet(micros);
+		long current;
+		while ((current = max.get()) < micros) {
+			if (max.compareAndSet(current, micros)) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * 値からバケットのインデックスを求める.
+	 *
+	 * @param micros
+	 *            実行時間（マイクロ秒）
+	 * @return バケットのインデックス
+	 */
+	private static int toIndex(long micros) {
+		if (micros < SUB_COUNT) {
+			return (int) micros;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(micros);
+		if (exponent > MAX_EXPONENT) {
+			return BUCKET_COUNT - 1;
+		}
+		int sub = (int) ((micros >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1));
+		return SUB_COUNT + (exponent - SUB_BITS) * SUB_COUNT + sub;
+	}
+
+	/**
+	 * バケットの上限値を求める.
+	 *
+	 * @param index
+	 *            バケットのインデックス
+	 * @return バケットの上限値（マイクロ秒）
+	 */
+	private static long toUpperBound(int index) {
+		if (index < SUB_COUNT) {
+			return index;
+		}
+		int exponent = (index - SUB_COUNT) / SUB_COUNT + SUB_BITS;
+		int sub = (index - SUB_COUNT) % SUB_COUNT;
+		long lower = ((long) (SUB_COUNT + sub)) << (exponent - SUB_BITS);
+		return lower + (1L << (exponent - SUB_BITS)) - 1;
+	}
+
+	/**
+	 * パーセンタイル値を取得する.
+	 *
+	 * @param percentile
+	 *            パーセンタイル（0～100）
+	 * @return パーセンタイル値（マイクロ秒）
+	 */
+	long getPercentile(double percentile) {
+		long totalCount = count.get();
+		if (totalCount == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(totalCount * percentile / 100.0);
+		if (rank < 1) {
+			rank = 1;
+		}
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += buckets.get(i);
+			if (seen >= rank) {
+				return Math.min(toUpperBound(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * 件数を取得する.
+	 *
+	 * @return 件数
+	 */
+	long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * 合計を取得する.
+	 *
+	 * @return 合計（マイクロ秒）
+	 */
+	long getTotal() {
+		return total.get();
+	}
+
+	/**
+	 * 最大値を取得する.
+	 *
+	 * @return 最大値（マイクロ秒）
+	 */
+	long getMax() {
+		return max.get();
+	}
+}
@@ -0,0 +1,205 @@
+package jp.kt.db.manager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import jp.kt.db.entity.BaseEntity;
+import jp.kt.prop.KtProperties;
+
+/**
+ * 有効期限付きのLRUによる{@link EntityCache}の実装.
+ * <p>
+ * 最大件数を超えた場合は最も長く参照されていないものから追い出します.<br>
+ * {@link #getInstance()}で取得するインスタンスはJVM内で共有され、<br>
+ * 最大件数と有効期間はkt.propertiesの kt.core.sql.entitycache.size と<br>
+ * kt.core.sql.entitycache.ttl.millisec の値となります（未指定の場合は1000件と60000ミリ秒）.<br>
+ * <br>
+ * entityはシリアライズして保持し、取得するたびに新しいインスタンスを復元して返します.<br>
+ * シリアライズできないentityはキャッシュしません.<br>
+ * <br>
+ * ヒット率などの統計は{@link #getHitCount()}などで参照できます.
+ * </p>
+ *
+ * @author tatsuya.kumon
+ */
+public class LruEntityCache implements EntityCache {
+	/** JVM内で共有するインスタンス */
+	private static final LruEntityCache INSTANCE = new LruEntityCache(
+			KtProperties.getInstance().getInt("kt.core.sql.entitycache.size",
+					1000), KtProperties.getInstance().getInt(
+					"kt.core.sql.entitycache.ttl.millisec", 60000));
+
+	/** キャッシュ本体 */
+	private final LruTtlCache<EntityKey, EntitySnapshot> cache;
+
+	/** entityクラスとキャッシュのキーの対応 */
+	private final Map<Class<?>, Set<EntityKey>> classIndex;
+
+	/** 有効期間（ミリ秒） */
+	private final long ttlMillis;
+
+	/** 明示的な破棄件数 */
+	private long removeCount;
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * @param maxSize
+	 *            最大件数
+	 * @param ttlMillis
+	 *            有効期間（ミリ秒）.0以下の場合は無期限.
+	 */
+	public LruEntityCache(int maxSize, long ttlMillis) {
+		this.ttlMillis = ttlMillis;
+		this.classIndex = new HashMap<Class<?>, Set<EntityKey>>();
+		this.cache = new LruTtlCache<EntityKey, EntitySnapshot>(maxSize) {
+			@Override
+			void removed(EntityKey key, EntitySnapshot value) {
+				// 索引から除去
+				synchronized (classIndex) {
+					Set<EntityKey> keys = classIndex.get(key.getEntityClass());
+					if (keys != null) {
+						keys.remove(key);
+						if (keys.isEmpty()) {
+							classIndex.remove(key.getEntityClass());
+						}
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * JVM内で共有するインスタンスを取得する.
+	 *
+	 * @return {@link LruEntityCache}オブジェクト
+	 */
+	public static LruEntityCache getInstance() {
+		return INSTANCE;
+	}
+
+	@Override
+	public BaseEntity get(EntityKey key) {
+		EntitySnapshot snapshot = cache.get(key);
+		return (snapshot == null ? null : (BaseEntity) snapshot.restore());
+	}
+
+	@Override
+	public void put(EntityKey key, BaseEntity entity) {
+		EntitySnapshot snapshot = EntitySnapshot.create(entity, key
+				.getEntityClass().getClassLoader());
+		if (snapshot == null) {
+			return;
+		}
+		// 索引への追加と登録の間に、追い出しで索引から除去されないようにする
+		synchronized (cache) {
+			synchronized (classIndex) {
+				Set<EntityKey> keys = classIndex.get(key.getEntityClass());
+				if (keys == null) {
+					keys = new HashSet<EntityKey>();
+					classIndex.put(key.getEntityClass(), keys);
+				}
+				keys.add(key);
+			}
+			cache.put(key, snapshot, ttlMillis);
+		}
+	}
+
+	@Override
+	public void remove(EntityKey key) {
+		if (cache.remove(key)) {
+			synchronized (this) {
+				removeCount++;
+			}
+		}
+	}
+
+	@Override
+	public void removeAll(Class<? extends BaseEntity> entityClass) {
+		List<EntityKey> keys;
+		synchronized (classIndex) {
+			Set<EntityKey> indexed = classIndex.get(entityClass);
+			if (indexed == null) {
+				return;
+			}
+			keys = new ArrayList<EntityKey>(indexed);
+		}
+		for (EntityKey key : keys) {
+			remove(key);
+		}
+	}
+
+	@Override
+	public void clear() {
+		cache.clear();
+	}
+
+	/**
+	 * キャッシュ件数を取得する.
+	 *
+	 * @return キャッシュ件数
+	 */
+	public int size() {
+		return cache.size();
+	}
+
+	/**
+	 * ヒット件数を取得する.
+	 *
+	 * @return ヒット件数
+	 */
+	public long getHitCount() {
+		return cache.getHitCount();
+	}
+
+	/**
+	 * ミス件数を取得する.
+	 *
+	 * @return ミス件数
+	 */
+	public long getMissCount() {
+		return cache.getMissCount();
+	}
+
+	/**
+	 * ヒット率を取得する.
+	 *
+	 * @return ヒット率（0～1）
+	 */
+	public double getHitRate() {
+		long hit = getHitCount();
+		long total = hit + getMissCount();
+		return (total == 0 ? 0 : (double) hit / total);
+	}
+
+	/**
+	 * 最大件数超過による追い出し件数を取得する.
+	 *
+	 * @return 追い出し件数
+	 */
+	public long getEvictionCount() {
+		return cache.getEvictionCount();
+	}
+
+	/**
+	 * 有効期限切れ件数を取得する.
+	 *
+	 * @return 有効期限切れ件数
+	 */
+	public long getExpirationCount() {
+		return cache.getExpirationCount();
+	}
+
+	/**
+	 * 更新などによる明示的な破棄件数を取得する.
+	 *
+	 * @return 破棄件数
+	 */
+	public synchronized long getRemoveCount() {
+		return removeCount;
+	}
+}
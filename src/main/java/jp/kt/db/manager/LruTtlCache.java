@@ -0,0 +1,232 @@
+package jp.kt.db.manager;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 有効期限付きのLRUキャッシュ.
+ * <p>
+ * 最大件数を超えた場合は最も長く参照されていないものから追い出します.<br>
+ * 複数スレッドから同時に使用できます.
+ * </p>
+ *
+ * @author tatsuya.kumon
+ * @param <K>
+ *            キーの型
+ * @param <V>
+ *            値の型
+ */
+class LruTtlCache<K, V> {
+	/** 最大件数 */
+	private final int maxSize;
+
+	/** キャッシュ本体（アクセス順） */
+	private final LinkedHashMap<K, Item<V>> map;
+
+	/** ヒット件数 */
+	private long hitCount;
+
+	/** ミス件数 */
+	private long missCount;
+
+	/** 最大件数超過による追い出し件数 */
+	private long evictionCount;
+
+	/** 有効期限切れ件数 */
+	private long expirationCount;
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * @param maxSize
+	 *            最大件数
+	 */
+	LruTtlCache(int maxSize) {
+		this.maxSize = maxSize;
+		this.map = new LinkedHashMap<K, Item<V>>(16, 0.75f, true);
+	}
+
+	/**
+	 * 値を取得する.
+	 *
+	 * @param key
+	 *            キー
+	 * @return 値.<br>
+	 *         存在しない、もしくは有効期限切れの場合はnull.
+	 */
+	synchronized V get(K key) {
+		Item<V> item = map.get(key);
+		if (item == null) {
+			missCount++;
+			return null;
+		}
+		if (item.isExpired(System.nanoTime())) {
+			map.remove(key);
+			expirationCount++;
+			missCount++;
+			removed(key, item.value);
+			return null;
+		}
+		hitCount++;
+		return item.value;
+	}
+
+	/**
+	 * 値を登録する.
+	 * <p>
+	 * 同じキーが登録済みの場合は値を置き換えます.<br>
+	 * キーは削除されないため、{@link #removed(Object, Object)}は呼ばれません.
+	 * </p>
+	 *
+	 * @param key
+	 *            キー
+	 * @param value
+	 *            値
+	 * @param ttlMillis
+	 *            有効期間（ミリ秒）.0以下の場合は無期限.
+	 */
+	synchronized void put(K key, V value, long ttlMillis) {
+		long expireAt = (ttlMillis > 0 ? System.nanoTime() + ttlMillis
+				* 1000000L : 0);
+		map.put(key, new Item<V>(value, expireAt));
+		// 最大件数を超えた分を古い順に追い出す
+		Iterator<Map.Entry<K, Item<V>>> it = map.entrySet().iterator();
+		while (map.size() > maxSize && it.hasNext()) {
+			Map.Entry<K, Item<V>> eldest = it.next();
+			it.remove();
+			evictionCount++;
+			removed(eldest.getKey(), eldest.getValue().value);
+		}
+	}
+
+	/**
+	 * 値を削除する.
+	 *
+	 * @param key
+	 *            キー
+	 * @return 削除した場合はtrue
+	 */
+	synchronized boolean remove(K key) {
+		Item<V> item = map.remove(key);
+		if (item == null) {
+			return false;
+		}
+		removed(key, item.value);
+		return true;
+	}
+
+	/**
+	 * 全件削除する.
+	 */
+	synchronized void clear() {
+		List<Map.Entry<K, Item<V>>> list = new ArrayList<Map.Entry<K, Item<V>>>(
+				map.entrySet());
+		map.clear();
+		for (Map.Entry<K, Item<V>> entry : list) {
+			removed(entry.getKey(), entry.getValue().value);
+		}
+	}
+
+	/**
+	 * 件数を取得する.
+	 *
+	 * @return 件数（有効期限切れを含む）
+	 */
+	synchronized int size() {
+		return map.size();
+	}
+
+	/**
+	 * キャッシュからキーが削除された時に呼ばれる.
+	 * <p>
+	 * 子クラスで索引などを管理する場合にオーバーライドします.<br>
+	 * 同じキーへの登録で値を置き換えた場合は呼ばれません.<br>
+	 * ロックを保持した状態で呼ばれます.
+	 * </p>
+	 *
+	 * @param key
+	 *            キー
+	 * @param value
+	 *            値
+	 */
+	void removed(K key, V value) {
+	}
+
+	/**
+	 * ヒット件数を取得する.
+	 *
+	 * @return ヒット件数
+	 */
+	synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * ミス件数を取得する.
+	 *
+	 * @return ミス件数
+	 */
+	synchronized long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * 最大件数超過による追い出し件数を取得する.
+	 *
+	 * @return 追い出し件数
+	 */
+	synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+
+	/**
+	 * 有効期限切れ件数を取得する.
+	 *
+	 * @return 有効期限切れ件数
+	 */
+	synchronized long getExpirationCount() {
+		return expirationCount;
+	}
+
+	/**
+	 * キャッシュの値と有効期限.
+	 *
+	 * @author tatsuya.kumon
+	 * @param <V>
+	 *            値の型
+	 */
+	private static final class Item<V> {
+		/** 値 */
+		private final V value;
+
+		/** 有効期限（System.nanoTime）.0の場合は無期限. */
+		private final long expireAt;
+
+		/**
+		 * コンストラクタ.
+		 *
+		 * @param value
+		 *            値
+		 * @param expireAt
+		 *            有効期限
+		 */
+		private Item(V value, long expireAt) {
+			this.value = value;
+			this.expireAt = expireAt;
+		}
+
+		/**
+		 * 有効期限切れ判定.
+		 *
+		 * @param now
+		 *            現在のシステム時刻（System.nanoTime）
+		 * @return 有効期限切れの場合はtrue
+		 */
+		private boolean isExpired(long now) {
+			return expireAt != 0 && now - expireAt > 0;
+		}
+	}
+}
@@ -0,0 +1,238 @@
+package jp.kt.db.manager;
+
+import java.util.Locale;
+
+/**
+ * INSERT文を複数行のVALUES句を持つINSERT文に書き換えるクラス.
+ * <p>
+ * INSERT INTO USER (ID, NAME) VALUES (?, ?)<br>
+ * を<br>
+ * INSERT INTO USER (ID, NAME) VALUES (?, ?), (?, ?), (?, ?)<br>
+ * のように書き換えます.<br>
+ * VALUES句が1行分のみで、プレースホルダーがVALUES句の中にだけあるINSERT文が対象です.<br>
+ * （VALUES句の後ろの ON CONFLICT などはそのまま残します）
+ * </p>
+ *
+ * @author tatsuya.kumon
+ */
+final class MultiRowInsert {
+	/** VALUES句の括弧より前の部分 */
+	private final String prefix;
+
+	/** VALUES句の1行分（括弧を含む） */
+	private final String row;
+
+	/** VALUES句より後ろの部分 */
+	private final String suffix;
+
+	/** 1行分のプレースホルダーの数 */
+	private final int parameterCount;
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * @param prefix
+	 *            VALUES句の括弧より前の部分
+	 * @param row
+	 *            VALUES句の1行分
+	 * @param suffix
+	 *            VALUES句より後ろの部分
+	 * @param parameterCount
+	 *            1行分のプレースホルダーの数
+	 */
+	private MultiRowInsert(String prefix, String row, String suffix,
+			int parameterCount) {
+		this.prefix = prefix;
+		this.row = row;
+		this.suffix = suffix;
+		this.parameterCount = parameterCount;
+	}
+
+	/**
+	 * INSERT文を解析する.
+	 *
+	 * @param sql
+	 *            SQL文
+	 * @return {@link MultiRowInsert}オブジェクト.<br>
+	 *         書き換えできないSQL文の場合はnull.
+	 */
+	static MultiRowInsert parse(String sql) {
+		String trimmed = sql.trim();
+		if (!trimmed.toUpperCase(Locale.ENGLISH).startsWith("INSERT")) {
+			return null;
+		}
+		int values = findValuesKeyword(trimmed);
+		if (values < 0) {
+			return null;
+		}
+		// VALUES直後の括弧
+		int open = values + "VALUES".length();
+		while (open < trimmed.length()
+				&& Character.isWhitespace(trimmed.charAt(open))) {
+			open++;
+		}
+		if (open >= trimmed.length() || trimmed.charAt(open) != '(') {
+			return null;
+		}
+		int close = findCloseParenthesis(trimmed, open);
+		if (close < 0) {
+			return null;
+		}
+		String prefix = trimmed.substring(0, open);
+		String row = trimmed.substring(open, close + 1);
+		String suffix = trimmed.substring(close + 1);
+		if (suffix.trim().startsWith(",")) {
+			// 既に複数行
+			return null;
+		}
+		int parameterCount = countParameters(row);
+		if (parameterCount == 0 || countParameters(prefix) > 0
+				|| countParameters(suffix) > 0) {
+			return null;
+		}
+		return new MultiRowInsert(prefix, row, suffix, parameterCount);
+	}
+
+	/**
+	 * 1行分のプレースホルダーの数を取得する.
+	 *
+	 * @return プレースホルダーの数
+	 */
+	int getParameterCount() {
+		return parameterCount;
+	}
+
+	/**
+	 * 指定行数分のVALUES句を持つSQL文を生成する.
+	 *
+	 * @param rows
+	 *            行数
+	 * @return SQL文
+	 */
+	String createSql(int rows) {
+		StringBuilder sql = new StringBuilder(prefix.length() + suffix.length()
+				+ (row.length() + 2) * rows);
+		sql.append(prefix);
+		for (int i = 0; i < rows; i++) {
+			if (i > 0) {
+				sql.append(", ");
+			}
+			sql.append(row);
+		}
+		sql.append(suffix);
+		return sql.toString();
+	}
+
+	/**
+	 * 文字列リテラルと括弧の外にあるVALUESキーワードの位置を取得する.
+	 *
+	 * @param sql
+	 *            SQL文
+	 * @return VALUESの位置.<br>
+	 *         存在しない場合は-1.
+	 */
+	private static int findValuesKeyword(String sql) {
+		int depth = 0;
+		for (int i = 0; i < sql.length(); i++) {
+			char c = sql.charAt(i);
+			if (c == '\'' || c == '"') {
+				i = skipQuoted(sql, i);
+			} else if (c == '(') {
+				depth++;
+			} else if (c == ')') {
+				depth--;
+			} else if (depth == 0
+					&& sql.regionMatches(true, i, "VALUES", 0, 6)
+					&& (i == 0 || !isIdentifierPart(sql.charAt(i - 1)))
+					&& (i + 6 == sql.length() || !isIdentifierPart(sql
+							.charAt(i + 6)))) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * 対応する閉じ括弧の位置を取得する.
+	 *
+	 * @param sql
+	 *            SQL文
+	 * @param open
+	 *            開き括弧の位置
+	 * @return 閉じ括弧の位置.<br>
+	 *         存在しない場合は-1.
+	 */
+	private static int findCloseParenthesis(String sql, int open) {
+		int depth = 0;
+		for (int i = open; i < sql.length(); i++) {
+			char c = sql.charAt(i);
+			if (c == '\'' || c == '"') {
+				i = skipQuoted(sql, i);
+			} else if (c == '(') {
+				depth++;
+			} else if (c == ')') {
+				depth--;
+				if (depth == 0) {
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * 文字列リテラルの外にあるプレースホルダーの数を取得する.
+	 *
+	 * @param sql
+	 *            SQL文の一部
+	 * @return プレースホルダーの数
+	 */
+	private static int countParameters(String sql) {
+		int count = 0;
+		for (int i = 0; i < sql.length(); i++) {
+			char c = sql.charAt(i);
+			if (c == '\'' || c == '"') {
+				i = skipQuoted(sql, i);
+			} else if (c == '?') {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * クォートで囲まれた部分を読み飛ばす.
+	 *
+	 * @param sql
+	 *            SQL文
+	 * @param start
+	 *            開始クォートの位置
+	 * @return 終了クォートの位置
+	 */
+	private static int skipQuoted(String sql, int start) {
+		char quote = sql.charAt(start);
+		int i = start + 1;
+		while (i < sql.length()) {
+			if (sql.charAt(i) == quote) {
+				if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+					i += 2;
+					continue;
+				}
+				return i;
+			}
+			i++;
+		}
+		return sql.length();
+	}
+
+	/**
+	 * 識別子の文字か判定する.
+	 *
+	 * @param c
+	 *            文字
+	 * @return 識別子の文字であればtrue
+	 */
+	private static boolean isIdentifierPart(char c) {
+		return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+	}
+}
@@ -0,0 +1,322 @@
+package jp.kt.db.manager;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 範囲分割による並列SELECTの条件設定クラス.
+ * <p>
+ * {@link BaseManager#executeParallelScan(ParallelScan, Object[], RowHandler)}
+ * への引数に使用する.<br>
+ * 数値もしくは日時のキーカラムの最小値から最大値までを指定数の範囲に分割し、<br>
+ * 範囲ごとに別々のDB接続でSELECTします.<br>
+ * <br>
+ * 例えば下記の設定で ORDER_ID が 1～1000 の場合、<br>
+ * <br>
+ * ParallelScan scan = new ParallelScan("SELECT *", "FROM ORDERS", "STATUS = ?",
+ * "ORDER_ID", 4);<br>
+ * <br>
+ * SELECT * FROM ORDERS WHERE (STATUS = ?) AND (ORDER_ID &lt; ? OR ORDER_ID IS
+ * NULL) … ORDER_ID &lt; 251<br>
+ * SELECT * FROM ORDERS WHERE (STATUS = ?) AND ORDER_ID &gt;= ? AND ORDER_ID
+ * &lt; ? … 251～500<br>
+ * SELECT * FROM ORDERS WHERE (STATUS = ?) AND ORDER_ID &gt;= ? AND ORDER_ID
+ * &lt; ? … 501～750<br>
+ * SELECT * FROM ORDERS WHERE (STATUS = ?) AND ORDER_ID &gt;= ? … 751～<br>
+ * <br>
+ * の4つのSQL文を並列に実行します.<br>
+ * 範囲は値の幅で均等に分割するため、キーの値が偏っている場合は範囲ごとの件数も偏ります.<br>
+ * 最小値と最大値を指定しない場合は、事前に MIN と MAX をSELECTして求めます.
+ * </p>
+ *
+ * @author tatsuya.kumon
+ */
+public class ParallelScan {
+	/** 結果を受け渡すキューのサイズのデフォルト値 */
+	private static final int DEFAULT_QUEUE_SIZE = 1000;
+
+	/** SELECT句 */
+	private final String selectBlock;
+
+	/** FROM句 */
+	private final String fromBlock;
+
+	/** WHERE句（WHEREは含まない） */
+	private final String whereBlock;
+
+	/** キーカラム */
+	private final String keyColumn;
+
+	/** 分割数 */
+	private final int partitions;
+
+	/** キーの最小値 */
+	private Object min;
+
+	/** キーの最大値 */
+	private Object max;
+
+	/** タイムアウト値（秒） */
+	private int timeoutSec;
+
+	/** 結果を受け渡すキューのサイズ */
+	private int queueSize = DEFAULT_QUEUE_SIZE;
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * @param selectBlock
+	 *            SELECT句
+	 * @param fromBlock
+	 *            FROM句
+	 * @param whereBlock
+	 *            WHERE句（WHEREは含まない）.条件が無い場合はnull.
+	 * @param keyColumn
+	 *            範囲を分割するキーカラム（数値もしくは日時）
+	 * @param partitions
+	 *            分割数
+	 */
+	public ParallelScan(String selectBlock, String fromBlock,
+			String whereBlock, String keyColumn, int partitions) {
+		if (partitions <= 0) {
+			throw new IllegalArgumentException("partitionsが0以下です. partitions="
+					+ partitions);
+		}
+		this.selectBlock = selectBlock;
+		this.fromBlock = fromBlock;
+		this.whereBlock = whereBlock;
+		this.keyColumn = keyColumn;
+		this.partitions = partitions;
+	}
+
+	/**
+	 * キーの最小値と最大値を設定する.
+	 * <p>
+	 * 設定しない場合は実行時に MIN と MAX をSELECTして求めます.
+	 * </p>
+	 *
+	 * @param min
+	 *            最小値（数値もしくは日時）
+	 * @param max
+	 *            最大値（数値もしくは日時）
+	 */
+	public void setRange(Object min, Object max) {
+		this.min = min;
+		this.max = max;
+	}
+
+	/**
+	 * タイムアウト値を設定する.
+	 * <p>
+	 * 範囲ごとのSELECTに対するタイムアウト値です.<br>
+	 * デフォルトは0で、タイムアウトしません.
+	 * </p>
+	 *
+	 * @param timeoutSec
+	 *            タイムアウト値（秒）
+	 */
+	public void setTimeoutSec(int timeoutSec) {
+		this.timeoutSec = timeoutSec;
+	}
+
+	/**
+	 * 結果を受け渡すキューのサイズを設定する.
+	 * <p>
+	 * {@link BaseManager#executeParallelScanStream(ParallelScan, Object[])}で、<br>
+	 * 読み出されていないentityを保持する最大件数です.<br>
+	 * キューが一杯の場合、SELECTを実行しているスレッドは読み出されるまで待機します.<br>
+	 * デフォルトは1000です.
+	 * </p>
+	 *
+	 * @param queueSize
+	 *            キューのサイズ
+	 */
+	public void setQueueSize(int queueSize) {
+		this.queueSize = queueSize;
+	}
+
+	/**
+	 * タイムアウト値を取得する.
+	 *
+	 * @return タイムアウト値（秒）
+	 */
+	int getTimeoutSec() {
+		return timeoutSec;
+	}
+
+	/**
+	 * 結果を受け渡すキューのサイズを取得する.
+	 *
+	 * @return キューのサイズ
+	 */
+	int getQueueSize() {
+		return queueSize;
+	}
+
+	/**
+	 * キーの最小値を取得する.
+	 *
+	 * @return 最小値.未設定の場合はnull.
+	 */
+	Object getMin() {
+		return min;
+	}
+
+	/**
+	 * キーの最大値を取得する.
+	 *
+	 * @return 最大値.未設定の場合はnull.
+	 */
+	Object getMax() {
+		return max;
+	}
+
+	/**
+	 * キーの最小値と最大値を取得するSQL文を生成する.
+	 *
+	 * @return SQL文
+	 */
+	String createRangeSql() {
+		StringBuilder sql = new StringBuilder();
+		sql.append("SELECT MIN(");
+		sql.append(keyColumn);
+		sql.append("), MAX(");
+		sql.append(keyColumn);
+		sql.append(") ");
+		sql.append(fromBlock);
+		if (hasWhere()) {
+			sql.append(" WHERE ");
+			sql.append(whereBlock);
+		}
+		return sql.toString();
+	}
+
+	/**
+	 * 範囲ごとのSQL文とプレースホルダーの値を生成する.
+	 *
+	 * @param values
+	 *            WHERE句のプレースホルダーの値
+	 * @param rangeMin
+	 *            キーの最小値.対象が無い場合はnull.
+	 * @param rangeMax
+	 *            キーの最大値.対象が無い場合はnull.
+	 * @return 範囲ごとの [SQL文, プレースホルダーの値] のList
+	 */
+	List<Object[]> createPartitions(Object[] values, Object rangeMin, Object rangeMax) {
+		List<Object[]> list = new ArrayList<Object[]>();
+		if (rangeMin == null || rangeMax == null) {
+			// 対象が無い場合は1回のSELECTとする
+			list.add(createPartition(values, null, null));
+			return list;
+		}
+		boolean date = (rangeMin instanceof Date);
+		long lo = toLong(rangeMin, RoundingMode.FLOOR);
+		long hi = toLong(rangeMax, RoundingMode.FLOOR);
+		long span = hi - lo + 1;
+		int n = (int) Math.max(1, Math.min(partitions, span));
+		long step = (span + n - 1) / n;
+		for (int i = 0; i < n; i++) {
+			Object from = (i == 0 ? null : toKey(lo + step * i, date));
+			Object to = (i == n - 1 ? null : toKey(lo + step * (i + 1), date));
+			list.add(createPartition(values, from, to));
+		}
+		return list;
+	}
+
+	/**
+	 * 1つの範囲のSQL文とプレースホルダーの値を生成する.
+	 *
+	 * @param values
+	 *            WHERE句のプレースホルダーの値
+	 * @param from
+	 *            範囲の下限（この値を含む）.最初の範囲の場合はnull.
+	 * @param to
+	 *            範囲の上限（この値を含まない）.最後の範囲の場合はnull.
+	 * @return [SQL文, プレースホルダーの値]
+	 */
+	private Object[] createPartition(Object[] values, Object from, Object to) {
+		List<Object> list = new ArrayList<Object>();
+		if (values != null) {
+			for (Object value : values) {
+				list.add(value);
+			}
+		}
+		StringBuilder sql = new StringBuilder();
+		sql.append(selectBlock);
+		sql.append(" ");
+		sql.append(fromBlock);
+		List<String> conditions = new ArrayList<String>();
+		if (hasWhere()) {
+			conditions.add("(" + whereBlock + ")");
+		}
+		if (from == null && to != null) {
+			// 最初の範囲はキーがNULLの行も含める
+			conditions.add("(" + keyColumn + " < ? OR " + keyColumn
+					+ " IS NULL)");
+			list.add(to);
+		} else {
+			if (from != null) {
+				conditions.add(keyColumn + " >= ?");
+				list.add(from);
+			}
+			if (to != null) {
+				conditions.add(keyColumn + " < ?");
+				list.add(to);
+			}
+		}
+		for (int i = 0; i < conditions.size(); i++) {
+			sql.append(i == 0 ? " WHERE " : " AND ");
+			sql.append(conditions.get(i));
+		}
+		return new Object[] { sql.toString(), list.toArray() };
+	}
+
+	/**
+	 * WHERE句が指定されているか判定する.
+	 *
+	 * @return WHERE句が指定されている場合はtrue
+	 */
+	private boolean hasWhere() {
+		return whereBlock != null && whereBlock.trim().length() > 0;
+	}
+
+	/**
+	 * キーの値をlong値に変換する.
+	 *
+	 * @param value
+	 *            キーの値（数値もしくは日時）
+	 * @param mode
+	 *            小数の丸め方
+	 * @return long値（日時の場合はエポックミリ秒）
+	 */
+	private static long toLong(Object value, RoundingMode mode) {
+		if (value instanceof Date) {
+			return ((Date) value).getTime();
+		} else if (value instanceof Long || value instanceof Integer
+				|| value instanceof Short || value instanceof Byte) {
+			return ((Number) value).longValue();
+		} else if (value instanceof Number) {
+			return new BigDecimal(value.toString()).setScale(0, mode)
+					.longValueExact();
+		}
+		throw new IllegalArgumentException("キーに使用できない型です. type="
+				+ value.getClass().getName());
+	}
+
+	/**
+	 * long値をプレースホルダーにセットするキーの値に変換する.
+	 *
+	 * @param value
+	 *            long値
+	 * @param date
+	 *            日時の場合はtrue
+	 * @return キーの値
+	 */
+	private static Object toKey(long value, boolean date) {
+		return (date ? new Timestamp(value) : Long.valueOf(value));
+	}
+}
@@ -0,0 +1,408 @@
+package jp.kt.db.manager;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import jp.kt.prop.KtProperties;
+
+/**
+ * SELECT結果のキャッシュ.
+ * <p>
+ * {@link BaseManager#executeQueryWithCache(CharSequence, Object[])}で使用します.<br>
+ * Managerクラス、SQL文、プレースホルダーの値の組をキーに、有効期限付きのLRUで保持します.<br>
+ * SELECTが参照しているテーブルを記憶しておき、{@link BaseManager}で<br>
+ * そのテーブルを更新するSQLを実行した時点と、そのトランザクションをコミットした時点で<br>
+ * 該当するキャッシュを破棄します（{@link TransactionState}）.<br>
+ * 結果はシリアライズして保持し、取得するたびに新しいentityを復元して返すため、<br>
+ * 取得したentityを変更してもキャッシュには影響しません.<br>
+ * シリアライズできないentityを含む結果はキャッシュしません.<br>
+ * <br>
+ * 最大件数と有効期間はkt.propertiesの kt.core.sql.resultcache.size と<br>
+ * kt.core.sql.resultcache.ttl.millisec の値となります（未指定の場合は1000件と60000ミリ秒）.<br>
+ * <br>
+ * キャッシュはJVM内で共有されるため、別のアプリケーションやSQLツールから<br>
+ * 更新された場合は有効期限まで古い結果を返すことに注意してください.<br>
+ * また参照テーブルを抽出できなかったSELECTはキャッシュしません.<br>
+ * <br>
+ * 一度もキャッシュを使用していない間は、更新SQLによる破棄を行いません（ロックを取得しません）.
+ * </p>
+ *
+ * @author tatsuya.kumon
+ */
+public final class QueryResultCache {
+	/** インスタンス */
+	private static final QueryResultCache INSTANCE = new QueryResultCache();
+
+	/** キャッシュ本体 */
+	private final LruTtlCache<Key, EntitySnapshot> cache;
+
+	/** テーブル名とそのテーブルを参照しているキャッシュのキーの対応（このインスタンスのロック内で操作する） */
+	private final Map<String, Set<Key>> tableIndex;
+
+	/** デフォルトの有効期間（ミリ秒） */
+	private final long defaultTtlMillis;
+
+	/** テーブル更新による破棄件数 */
+	private long invalidationCount;
+
+	/** 全件破棄が行われるたびに加算される世代番号 */
+	private long generation;
+
+	/** テーブル名と、そのテーブルの破棄が行われるたびに加算される世代番号の対応 */
+	private final Map<String, Long> tableGenerations = new HashMap<String, Long>();
+
+	/** キャッシュを使用したか */
+	private volatile boolean used;
+
+	/**
+	 * コンストラクタ.
+	 */
+	private QueryResultCache() {
+		KtProperties prop = KtProperties.getInstance();
+		int maxSize = prop.getInt("kt.core.sql.resultcache.size", 1000);
+		this.defaultTtlMillis = prop.getInt(
+				"kt.core.sql.resultcache.ttl.millisec", 60000);
+		this.tableIndex = new HashMap<String, Set<Key>>();
+		this.cache = new LruTtlCache<Key, EntitySnapshot>(maxSize) {
+			@Override
+			void removed(Key key, EntitySnapshot value) {
+				// 索引から除去（キャッシュ本体の操作は全てこのインスタンスのロック内で行う）
+				for (String table : key.tables) {
+					Set<Key> keys = tableIndex.get(table);
+					if (keys != null) {
+						keys.remove(key);
+						if (keys.isEmpty()) {
+							tableIndex.remove(table);
+						}
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * インスタンスを取得する.
+	 *
+	 * @return {@link QueryResultCache}オブジェクト
+	 */
+	public static QueryResultCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * キャッシュのキーを生成する.
+	 *
+	 * @param managerClass
+	 *            Managerクラス
+	 * @param sql
+	 *            SQL文
+	 * @param values
+	 *            プレースホルダーの値
+	 * @return キー.<br>
+	 *         参照テーブルを抽出できずキャッシュできない場合はnull.
+	 */
+	Key createKey(Class<?> managerClass, String sql, Object[] values) {
+		used = true;
+		Set<String> tables = SqlTables.get(sql);
+		if (tables.isEmpty()) {
+			return null;
+		}
+		return new Key(managerClass, sql, values, tables);
+	}
+
+	/**
+	 * キャッシュから取得する.
+	 *
+	 * @param key
+	 *            キー
+	 * @return SELECT結果（キャッシュから復元した新しいentityのList）.<br>
+	 *         キャッシュに無い場合はnull.
+	 */
+	List<?> get(Key key) {
+		EntitySnapshot snapshot;
+		synchronized (this) {
+			snapshot = cache.get(key);
+		}
+		return (snapshot == null ? null : (List<?>) snapshot.restore());
+	}
+
+	/**
+	 * 指定キーの現在の世代番号を取得する.
+	 * <p>
+	 * SELECT実行前に取得しておき、{@link #put(Key, List, long, long)}に渡します.<br>
+	 * 全件破棄と、キーの参照テーブルの破棄でのみ変わるため、<br>
+	 * 関係の無いテーブルの更新ではキャッシュへの登録を妨げません.
+	 * </p>
+	 *
+	 * @param key
+	 *            キー
+	 * @return 世代番号
+	 */
+	synchronized long getGeneration(Key key) {
+		// 各世代番号は加算のみのため、合計が変わらなければどれも変わっていない
+		long sum = generation;
+		for (String table : key.tables) {
+			Long tableGeneration = tableGenerations.get(table);
+			if (tableGeneration != null) {
+				sum += tableGeneration.longValue();
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * キャッシュに登録する.
+	 * <p>
+	 * SELECT実行中に参照テーブルの破棄が行われていた場合（世代番号が変わっていた場合）は、<br>
+	 * 更新前の結果である可能性があるため登録しません.<br>
+	 * 世代番号の確認と登録は破棄と同じロック内で行います.<br>
+	 * 登録後に変更されても影響しないよう、シリアライズした複製を保持します.
+	 * </p>
+	 *
+	 * @param key
+	 *            キー
+	 * @param list
+	 *            SELECT結果
+	 * @param ttlMillis
+	 *            有効期間（ミリ秒）.負の場合はデフォルトの有効期間.
+	 * @param queryGeneration
+	 *            SELECT実行前に取得した世代番号
+	 */
+	void put(Key key, List<?> list, long ttlMillis, long queryGeneration) {
+		if (getGeneration(key) != queryGeneration) {
+			return;
+		}
+		// シリアライズはロック外で行う
+		EntitySnapshot snapshot = EntitySnapshot.create(
+				(list instanceof Serializable ? (Serializable) list
+						: new ArrayList<Object>(list)), key.managerClass
+						.getClassLoader());
+		if (snapshot == null) {
+			return;
+		}
+		synchronized (this) {
+			if (getGeneration(key) != queryGeneration) {
+				return;
+			}
+			for (String table : key.tables) {
+				Set<Key> keys = tableIndex.get(table);
+				if (keys == null) {
+					keys = new HashSet<Key>();
+					tableIndex.put(table, keys);
+				}
+				keys.add(key);
+			}
+			cache.put(key, snapshot, (ttlMillis < 0 ? defaultTtlMillis
+					: ttlMillis));
+		}
+	}
+
+	/**
+	 * 更新SQLが更新するテーブルを参照しているキャッシュを破棄する.
+	 * <p>
+	 * 更新対象のテーブルを抽出できなかった場合は全件破棄します.<br>
+	 * 一度もキャッシュを使用していない場合は何もしません.
+	 * </p>
+	 *
+	 * @param sql
+	 *            更新SQL文
+	 */
+	void invalidate(String sql) {
+		if (!used) {
+			return;
+		}
+		Set<String> tables = SqlTables.get(sql);
+		synchronized (this) {
+			if (tables.isEmpty()) {
+				generation++;
+				cache.clear();
+				return;
+			}
+			for (String table : tables) {
+				removeTable(table);
+			}
+		}
+	}
+
+	/**
+	 * 指定テーブルを参照しているキャッシュを破棄する.
+	 * <p>
+	 * {@link BaseManager}以外から更新した場合などに使用してください.
+	 * </p>
+	 *
+	 * @param table
+	 *            テーブル名
+	 */
+	public synchronized void invalidateTable(String table) {
+		removeTable(table);
+	}
+
+	/**
+	 * 指定テーブルを参照しているキャッシュを破棄する.
+	 * <p>
+	 * テーブルの世代番号を加算します.<br>
+	 * このインスタンスのロック内で呼び出してください.
+	 * </p>
+	 *
+	 * @param table
+	 *            テーブル名
+	 */
+	private void removeTable(String table) {
+		String upperTable = table.toUpperCase(Locale.ENGLISH);
+		Long tableGeneration = tableGenerations.get(upperTable);
+		tableGenerations.put(upperTable, Long.valueOf(tableGeneration == null ? 1
+				: tableGeneration.longValue() + 1));
+		Set<Key> indexed = tableIndex.get(upperTable);
+		if (indexed == null) {
+			return;
+		}
+		for (Key key : new ArrayList<Key>(indexed)) {
+			if (cache.remove(key)) {
+				invalidationCount++;
+			}
+		}
+	}
+
+	/**
+	 * 全件破棄する.
+	 */
+	public synchronized void clear() {
+		generation++;
+		cache.clear();
+	}
+
+	/**
+	 * キャッシュ件数を取得する.
+	 *
+	 * @return キャッシュ件数
+	 */
+	public int size() {
+		return cache.size();
+	}
+
+	/**
+	 * ヒット件数を取得する.
+	 *
+	 * @return ヒット件数
+	 */
+	public long getHitCount() {
+		return cache.getHitCount();
+	}
+
+	/**
+	 * ミス件数を取得する.
+	 *
+	 * @return ミス件数
+	 */
+	public long getMissCount() {
+		return cache.getMissCount();
+	}
+
+	/**
+	 * ヒット率を取得する.
+	 *
+	 * @return ヒット率（0～1）
+	 */
+	public double getHitRate() {
+		long hit = getHitCount();
+		long total = hit + getMissCount();
+		return (total == 0 ? 0 : (double) hit / total);
+	}
+
+	/**
+	 * 最大件数超過による追い出し件数を取得する.
+	 *
+	 * @return 追い出し件数
+	 */
+	public long getEvictionCount() {
+		return cache.getEvictionCount();
+	}
+
+	/**
+	 * 有効期限切れ件数を取得する.
+	 *
+	 * @return 有効期限切れ件数
+	 */
+	public long getExpirationCount() {
+		return cache.getExpirationCount();
+	}
+
+	/**
+	 * テーブル更新による破棄件数を取得する.
+	 *
+	 * @return テーブル更新による破棄件数
+	 */
+	public synchronized long getInvalidationCount() {
+		return invalidationCount;
+	}
+
+	/**
+	 * キャッシュのキー.
+	 *
+	 * @author tatsuya.kumon
+	 */
+	static final class Key {
+		/** Managerクラス */
+		private final Class<?> managerClass;
+
+		/** SQL文 */
+		private final String sql;
+
+		/** プレースホルダーの値 */
+		private final Object[] values;
+
+		/** 参照テーブル */
+		private final Set<String> tables;
+
+		/** ハッシュ値 */
+		private final int hash;
+
+		/**
+		 * コンストラクタ.
+		 *
+		 * @param managerClass
+		 *            Managerクラス
+		 * @param sql
+		 *            SQL文
+		 * @param values
+		 *            プレースホルダーの値
+		 * @param tables
+		 *            参照テーブル
+		 */
+		private Key(Class<?> managerClass, String sql, Object[] values,
+				Set<String> tables) {
+			this.managerClass = managerClass;
+			this.sql = sql;
+			this.values = (values == null ? new Object[0] : values.clone());
+			this.tables = tables;
+			this.hash = (managerClass.hashCode() * 31 + sql.hashCode()) * 31
+					+ Arrays.deepHashCode(this.values);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return hash == other.hash && managerClass == other.managerClass
+					&& sql.equals(other.sql)
+					&& Arrays.deepEquals(values, other.values);
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package jp.kt.db.manager;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Connection単位で同じ形のSQLが繰り返し実行されたことを検知するクラス.
+ * <p>
+ * ループの中で1件ずつSELECTするような、いわゆるN+1問題を見つけるための診断用です.<br>
+ * {@link BaseManager}で実行したSELECTと更新のSQLを{@link SqlFingerprint}の形ごとに数え、<br>
+ * kt.propertiesの kt.core.sql.repeat.threshold の回数を超えた時点で、<br>
+ * 呼び出し元の位置と共に logger = sqlRepeat に警告ログを出力します.<br>
+ * 同じ形の警告は、1つの処理単位につき1回のみ出力します.<br>
+ * kt.core.sql.repeat.threshold が0以下もしくは未指定の場合は検知しません.<br>
+ * <br>
+ * 処理単位は{@link #reset(Connection)}を呼び出すまでです.<br>
+ * {@link jp.kt.db.ConnectionPool}から取得したConnectionは、commit、rollback、closeの時点で<br>
+ * 自動的に処理単位を区切ります.<br>
+ * {@link BaseManager#commit()}、{@link BaseManager#rollback()}でも処理単位を区切ります.<br>
+ * それ以外のConnectionは、トランザクションの区切りなどで{@link #reset(Connection)}を、<br>
+ * Connectionをクローズする前に{@link #close(Connection)}を呼び出してください.<br>
+ * 呼び出し忘れた場合も、次に別のConnectionの集計が生成された時点で<br>
+ * クローズ済みのConnectionの集計は破棄されます.
+ * </p>
+ *
+ * @author tatsuya.kumon
+ */
+public final class RepeatedQueryDetector {
+	/** 1つの処理単位で数えるフィンガープリントの最大数 */
+	private static final int MAX_FINGERPRINT_SIZE = 1000;
+
+	/** Connectionごとの集計 */
+	private static final Map<Connection, RepeatedQueryDetector> DETECTOR_MAP = new IdentityHashMap<Connection, RepeatedQueryDetector>();
+
+	/** フィンガープリントごとの実行回数 */
+	private final Map<String, Integer> counts = new HashMap<String, Integer>();
+
+	/**
+	 * privateコンストラクタ.
+	 */
+	private RepeatedQueryDetector() {
+	}
+
+	/**
+	 * SQLの実行を記録する.
+	 *
+	 * @param con
+	 *            DB接続
+	 * @param sql
+	 *            SQL文
+	 * @return 現在の処理単位で同じ形のSQLを実行した回数（今回を含む）.<br>
+	 *         数える形の最大数を超えた場合は0.
+	 */
+	static int record(Connection con, String sql) {
+		RepeatedQueryDetector detector;
+		synchronized (DETECTOR_MAP) {
+			detector = DETECTOR_MAP.get(con);
+			if (detector == null) {
+				// クローズ済みConnectionの集計を破棄
+				removeClosedConnection();
+				detector = new RepeatedQueryDetector();
+				DETECTOR_MAP.put(con, detector);
+			}
+		}
+		return detector.increment(SqlFingerprint.get(sql));
+	}
+
+	/**
+	 * 指定Connectionの処理単位を区切る.
+	 * <p>
+	 * これまでの実行回数を破棄し、以降は新しい処理単位として数えます.
+	 * </p>
+	 *
+	 * @param con
+	 *            DB接続
+	 */
+	public static void reset(Connection con) {
+		RepeatedQueryDetector detector;
+		synchronized (DETECTOR_MAP) {
+			detector = DETECTOR_MAP.get(con);
+		}
+		if (detector != null) {
+			detector.clear();
+		}
+	}
+
+	/**
+	 * 指定Connectionの集計を破棄する.
+	 *
+	 * @param con
+	 *            DB接続
+	 */
+	public static void close(Connection con) {
+		synchronized (DETECTOR_MAP) {
+			DETECTOR_MAP.remove(con);
+		}
+	}
+
+	/**
+	 * クローズ済みConnectionの集計を破棄する.
+	 */
+	private static void removeClosedConnection() {
+		Iterator<Connection> it = DETECTOR_MAP.keySet().iterator();
+		while (it.hasNext()) {
+			boolean closed;
+			try {
+				closed = it.next().isClosed();
+			} catch (SQLException e) {
+				closed = true;
+			}
+			if (closed) {
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * フィンガープリントの実行回数を1増やす.
+	 *
+	 * @param fingerprint
+	 *            フィンガープリント
+	 * @return 今回を含む実行回数.<br>
+	 *         数える形の最大数を超えた場合は0.
+	 */
+	private synchronized int increment(String fingerprint) {
+		Integer count = counts.get(fingerprint);
+		if (count == null) {
+			if (counts.size() >= MAX_FINGERPRINT_SIZE) {
+				// 動的にSQL文を組み立てている場合に際限なく増えないようにする
+				return 0;
+			}
+			count = 0;
+		}
+		counts.put(fingerprint, count + 1);
+		return count + 1;
+	}
+
+	/**
+	 * 実行回数を破棄する.
+	 */
+	private synchronized void clear() {
+		counts.clear();
+	}
+}
@@ -0,0 +1,26 @@
+package jp.kt.db.manager;
+
+import jp.kt.db.entity.BaseEntity;
+
+/**
+ * SELECT結果を1件ずつ受け取るためのハンドラ.
+ * <p>
+ * {@link BaseManager}のカーソル形式のSELECT処理で使用します.<br>
+ * 全件をListに保持しないため、大量件数を扱うバッチ処理などで使用してください.
+ * </p>
+ *
+ * @author tatsuya.kumon
+ * @param <T>
+ *            {@link BaseEntity}の子クラス
+ */
+public interface RowHandler<T extends BaseEntity> {
+	/**
+	 * 1件分のentityを処理する.
+	 *
+	 * @param entity
+	 *            ResultSetの現在行から生成されたentity
+	 * @throws Exception
+	 *             処理中に例外発生した場合
+	 */
+	void handle(T entity) throws Exception;
+}
@@ -0,0 +1,147 @@
+package jp.kt.db.manager;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import jp.kt.exception.KtException;
+
+/**
+ * 並列SELECTの結果を1つにまとめて読み出すためのキュー.
+ * <p>
+ * 範囲ごとのSELECTを実行するスレッドが{@link #put(Object)}でentityを追加し、<br>
+ * 呼び出し側のスレッドが{@link Iterator}として読み出します.<br>
+ * キューが一杯の場合、追加するスレッドは読み出されるまで待機します.
+ * </p>
+ *
+ * @author tatsuya.kumon
+ * @param <T>
+ *            entityの型
+ */
+final class ScanQueue<T> implements Iterator<T> {
+	/** 範囲ごとの終了を示す値 */
+	private static final Object END = new Object();
+
+	/** キュー本体 */
+	private final BlockingQueue<Object> queue;
+
+	/** 終了していない範囲の数（読み出し側のみで使用） */
+	private int remaining;
+
+	/** 次に返すentity */
+	private Object next;
+
+	/** 最初に発生した例外 */
+	private volatile Throwable error;
+
+	/** 読み出し側でクローズされたか */
+	private volatile boolean closed;
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * @param queueSize
+	 *            キューのサイズ
+	 * @param partitions
+	 *            範囲の数
+	 */
+	ScanQueue(int queueSize, int partitions) {
+		this.queue = new ArrayBlockingQueue<Object>(Math.max(queueSize, 1));
+		this.remaining = partitions;
+	}
+
+	/**
+	 * entityを追加する.
+	 *
+	 * @param entity
+	 *            entity
+	 * @throws InterruptedException
+	 *             待機中に割り込まれた場合
+	 */
+	void put(T entity) throws InterruptedException {
+		if (closed) {
+			throw new InterruptedException("読み出し側でクローズされました");
+		}
+		queue.put(entity);
+	}
+
+	/**
+	 * 範囲のSELECTで発生した例外を記録する.
+	 *
+	 * @param e
+	 *            例外
+	 */
+	synchronized void fail(Throwable e) {
+		if (error == null) {
+			error = e;
+		}
+	}
+
+	/**
+	 * 範囲のSELECTの終了を通知する.
+	 *
+	 * @throws InterruptedException
+	 *             待機中に割り込まれた場合
+	 */
+	void finish() throws InterruptedException {
+		if (!closed) {
+			queue.put(END);
+		}
+	}
+
+	/**
+	 * 読み出しを終了する.
+	 * <p>
+	 * 待機しているスレッドが終了できるようキューを空にします.
+	 * </p>
+	 */
+	void close() {
+		closed = true;
+		queue.clear();
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (next == null) {
+			throwIfFailed();
+			if (remaining == 0 || closed) {
+				return false;
+			}
+			Object value;
+			try {
+				value = queue.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new KtException("A075", "並列SELECTの待機中に割り込まれました", e);
+			}
+			if (value == END) {
+				remaining--;
+			} else {
+				next = value;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		T entity = (T) next;
+		next = null;
+		return entity;
+	}
+
+	/**
+	 * 範囲のSELECTで例外が発生していればスローする.
+	 */
+	private void throwIfFailed() {
+		Throwable e = error;
+		if (e != null) {
+			throw new KtException("A075", "並列SELECTに失敗しました", e);
+		}
+	}
+}
@@ -0,0 +1,159 @@
+package jp.kt.db.manager;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SQL文を正規化したフィンガープリントを生成するクラス.
+ * <p>
+ * 文字列リテラルと数値リテラルを ? に置換し、改行・タブ・連続した空白を1つの半角スペースにします.<br>
+ * また IN (?, ?, ?) のようなプレースホルダーの並びは IN (?) にまとめます.<br>
+ * これにより、値だけが異なるSQL文は同じフィンガープリントになります.
+ * </p>
+ *
+ * @author tatsuya.kumon
+ */
+final class SqlFingerprint {
+	/** 生成済みフィンガープリントの最大保持数 */
+	private static final int MAX_CACHE_SIZE = 10000;
+
+	/** SQL文と生成済みフィンガープリントの対応 */
+	private static final ConcurrentHashMap<String, String> CACHE = new ConcurrentHashMap<String, String>();
+
+	/**
+	 * インスタンス生成不可.
+	 */
+	private SqlFingerprint() {
+	}
+
+	/**
+	 * SQL文のフィンガープリントを取得する.
+	 *
+	 * @param sql
+	 *            SQL文
+	 * @return フィンガープリント
+	 */
+	static String get(String sql) {
+		String fingerprint = CACHE.get(sql);
+		if (fingerprint == null) {
+			fingerprint = create(sql);
+			if (CACHE.size() >= MAX_CACHE_SIZE) {
+				// 動的にSQL文を組み立てている場合に際限なく増えないようにする
+				CACHE.clear();
+			}
+			CACHE.put(sql, fingerprint);
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * SQL文を正規化する.
+	 *
+	 * @param sql
+	 *            SQL文
+	 * @return フィンガープリント
+	 */
+	static String create(String sql) {
+		int length = sql.length();
+		StringBuilder sb = new StringBuilder(length);
+		int i = 0;
+		while (i < length) {
+			char c = sql.charAt(i);
+			if (c == '\'') {
+				// 文字列リテラル（'' はエスケープされたクォート）
+				i++;
+				while (i < length) {
+					if (sql.charAt(i) == '\'') {
+						if (i + 1 < length && sql.charAt(i + 1) == '\'') {
+							i += 2;
+							continue;
+						}
+						break;
+					}
+					i++;
+				}
+				i++;
+				appendPlaceHolder(sb);
+			} else if (Character.isWhitespace(c)) {
+				// 連続した空白は1つにする
+				while (i < length && Character.isWhitespace(sql.charAt(i))) {
+					i++;
+				}
+				if (sb.length() > 0) {
+					sb.append(' ');
+				}
+			} else if (isDigit(c) && !isIdentifierPart(sb)) {
+				// 数値リテラル
+				while (i < length
+						&& (isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+					i++;
+				}
+				appendPlaceHolder(sb);
+			} else if (c == '?') {
+				i++;
+				appendPlaceHolder(sb);
+			} else {
+				sb.append(c);
+				i++;
+			}
+		}
+		// 末尾の空白を除去
+		int end = sb.length();
+		while (end > 0 && sb.charAt(end - 1) == ' ') {
+			end--;
+		}
+		sb.setLength(end);
+		return sb.toString();
+	}
+
+	/**
+	 * プレースホルダーを追加する.
+	 * <p>
+	 * 直前が「?,」もしくは「?, 」の場合は、並びをまとめるため追加せずにカンマを除去します.
+	 * </p>
+	 *
+	 * @param sb
+	 *            生成中のフィンガープリント
+	 */
+	private static void appendPlaceHolder(StringBuilder sb) {
+		int end = sb.length();
+		if (end > 0 && sb.charAt(end - 1) == ' ') {
+			end--;
+		}
+		if (end >= 2 && sb.charAt(end - 1) == ','
+				&& sb.charAt(end - 2) == '?') {
+			sb.setLength(end - 1);
+			return;
+		}
+		sb.append('?');
+	}
+
+	/**
+	 * 数字判定.
+	 *
+	 * @param c
+	 *            文字
+	 * @return 半角数字の場合はtrue
+	 */
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	/**
+	 * 直前の文字が識別子の一部か判定する.
+	 * <p>
+	 * TABLE1 のような識別子中の数字をリテラルと判定しないために使用します.
+	 * </p>
+	 *
+	 * @param sb
+	 *            生成中のフィンガープリント
+	 * @return 識別子の一部であればtrue
+	 */
+	private static boolean isIdentifierPart(StringBuilder sb) {
+		if (sb.length() == 0) {
+			return false;
+		}
+		char prev = sb.charAt(sb.length() - 1);
+		return Character.isLetterOrDigit(prev) || prev == '_' || prev == '$'
+				|| prev == '.' || prev == '"' || prev == '`';
+	}
+}
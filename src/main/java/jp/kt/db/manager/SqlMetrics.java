@@ -0,0 +1,251 @@
+package jp.kt.db.manager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jp.kt.logger.ApplicationLogger;
+import jp.kt.prop.KtProperties;
+
+/**
+ * SQLの実行統計を集計するクラス.
+ * <p>
+ * {@link BaseManager}で実行したSQLを、リテラルと空白を正規化したフィンガープリントごとに<br>
+ * 実行回数、処理件数、実行時間のヒストグラム（p50/p95/p99/max）として集計します.<br>
+ * <br>
+ * kt.propertiesの kt.core.sql.metrics.enabled がtrueの場合に集計します.<br>
+ * kt.core.sql.metrics.dump.interval.sec に1以上を指定すると、<br>
+ * その間隔で全統計を logger = sqlMetrics にINFOログ出力します.<br>
+ * 統計をプログラムから参照する場合は {@link #getSnapshot()} を使用してください.
+ * </p>
+ *
+ * @author tatsuya.kumon
+ */
+public final class SqlMetrics {
+	/**
+	 * 実行種別.
+	 *
+	 * @author tatsuya.kumon
+	 */
+	public static enum Type {
+		/** SELECT */
+		QUERY,
+		/** 更新（INSERT、UPDATE、DELETE） */
+		UPDATE,
+		/** バッチ更新 */
+		BATCH;
+	}
+
+	/** SQL統計ログ出力用Logger名 */
+	private static final String SQL_METRICS_LOGGER_NAME = "sqlMetrics";
+
+	/** 集計するフィンガープリントの最大数 */
+	private static final int MAX_ENTRY_SIZE = 5000;
+
+	/** 最大数を超えた場合に集計するフィンガープリント */
+	private static final String OTHER_FINGERPRINT = "(other)";
+
+	/** フィンガープリントごとの集計 */
+	private static final ConcurrentHashMap<String, Entry> ENTRIES = new ConcurrentHashMap<String, Entry>();
+
+	/** 集計の有効/無効 */
+	private static volatile boolean enabled = KtProperties.getInstance()
+			.existKey("kt.core.sql.metrics.enabled")
+			&& KtProperties.getInstance().getBoolean(
+					"kt.core.sql.metrics.enabled");
+
+	/** 定期ログ出力のスレッド */
+	private static ScheduledExecutorService dumpExecutor;
+
+	static {
+		// 定期ログ出力の開始
+		if (enabled) {
+			int interval = KtProperties.getInstance().getInt(
+					"kt.core.sql.metrics.dump.interval.sec", 0);
+			if (interval > 0) {
+				startLogDump(interval);
+			}
+		}
+	}
+
+	/**
+	 * インスタンス生成不可.
+	 */
+	private SqlMetrics() {
+	}
+
+	/**
+	 * 集計が有効か判定する.
+	 *
+	 * @return 集計が有効な場合はtrue
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * 集計の有効/無効を切り替える.
+	 *
+	 * @param enabled
+	 *            集計する場合はtrue
+	 */
+	public static void setEnabled(boolean enabled) {
+		SqlMetrics.enabled = enabled;
+	}
+
+	/**
+	 * SQLの実行結果を記録する.
+	 *
+	 * @param type
+	 *            実行種別
+	 * @param sql
+	 *            SQL文
+	 * @param start
+	 *            開始したシステム時刻（System.nanoTime）
+	 * @param end
+	 *            終了したシステム時刻（System.nanoTime）
+	 * @param rows
+	 *            処理件数
+	 */
+	static void record(Type type, String sql, long start, long end, long rows) {
+		if (!enabled) {
+			return;
+		}
+		String key = type.name() + "\t" + SqlFingerprint.get(sql);
+		Entry entry = ENTRIES.get(key);
+		if (entry == null) {
+			if (ENTRIES.size() >= MAX_ENTRY_SIZE) {
+				key = type.name() + "\t" + OTHER_FINGERPRINT;
+			}
+			Entry newEntry = new Entry(type,
+					key.substring(key.indexOf('\t') + 1));
+			entry = ENTRIES.putIfAbsent(key, newEntry);
+			if (entry == null) {
+				entry = newEntry;
+			}
+		}
+		entry.histogram.record((end - start) / 1000);
+		if (rows > 0) {
+			entry.rowCount.addAndGet(rows);
+		}
+	}
+
+	/**
+	 * 現時点の統計を取得する.
+	 * <p>
+	 * 合計実行時間の降順で返します.
+	 * </p>
+	 *
+	 * @return {@link SqlStatistics}のList
+	 */
+	public static List<SqlStatistics> getSnapshot() {
+		List<SqlStatistics> list = new ArrayList<SqlStatistics>();
+		for (Entry entry : ENTRIES.values()) {
+			list.add(new SqlStatistics(entry.type, entry.fingerprint,
+					entry.rowCount.get(), entry.histogram));
+		}
+		Collections.sort(list, new Comparator<SqlStatistics>() {
+			@Override
+			public int compare(SqlStatistics o1, SqlStatistics o2) {
+				return Double.compare(o2.getTotalMillis(), o1.getTotalMillis());
+			}
+		});
+		return list;
+	}
+
+	/**
+	 * 統計をクリアする.
+	 */
+	public static void reset() {
+		ENTRIES.clear();
+	}
+
+	/**
+	 * 現時点の統計をINFOログ出力する.
+	 */
+	public static void dumpLog() {
+		ApplicationLogger logger = new ApplicationLogger(
+				SQL_METRICS_LOGGER_NAME, SqlMetrics.class);
+		for (SqlStatistics statistics : getSnapshot()) {
+			logger.infoLog("A073", statistics.toString());
+		}
+	}
+
+	/**
+	 * 定期ログ出力を開始する.
+	 * <p>
+	 * 既に開始している場合は、指定した間隔で再開します.
+	 * </p>
+	 *
+	 * @param intervalSec
+	 *            出力間隔（秒）
+	 */
+	public static synchronized void startLogDump(long intervalSec) {
+		stopLogDump();
+		dumpExecutor = Executors
+				.newSingleThreadScheduledExecutor(new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, SQL_METRICS_LOGGER_NAME
+								+ "-dump");
+						t.setDaemon(true);
+						return t;
+					}
+				});
+		dumpExecutor.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				dumpLog();
+			}
+		}, intervalSec, intervalSec, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * 定期ログ出力を停止する.
+	 */
+	public static synchronized void stopLogDump() {
+		if (dumpExecutor != null) {
+			dumpExecutor.shutdownNow();
+			dumpExecutor = null;
+		}
+	}
+
+	/**
+	 * フィンガープリントごとの集計.
+	 *
+	 * @author tatsuya.kumon
+	 */
+	private static final class Entry {
+		/** 実行種別 */
+		private final Type type;
+
+		/** SQLフィンガープリント */
+		private final String fingerprint;
+
+		/** 処理件数 */
+		private final AtomicLong rowCount = new AtomicLong();
+
+		/** 実行時間のヒストグラム */
+		private final LatencyHistogram histogram = new LatencyHistogram();
+
+		/**
+		 * コンストラクタ.
+		 *
+		 * @param type
+		 *            実行種別
+		 * @param fingerprint
+		 *            SQLフィンガープリント
+		 */
+		private Entry(Type type, String fingerprint) {
+			this.type = type;
+			this.fingerprint = fingerprint;
+		}
+	}
+}
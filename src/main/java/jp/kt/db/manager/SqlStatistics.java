@@ -0,0 +1,176 @@
+package jp.kt.db.manager;
+
+import java.io.Serializable;
+
+/**
+ * SQLフィンガープリント単位の実行統計.
+ * <p>
+ * {@link SqlMetrics#getSnapshot()}で取得した時点の値を保持します.
+ * </p>
+ *
+ * @author tatsuya.kumon
+ */
+public final class SqlStatistics implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	/** 実行種別 */
+	private final SqlMetrics.Type type;
+
+	/** SQLフィンガープリント */
+	private final String fingerprint;
+
+	/** 実行回数 */
+	private final long callCount;
+
+	/** 処理件数（SELECTは取得件数、更新は更新件数） */
+	private final long rowCount;
+
+	/** 合計実行時間（マイクロ秒） */
+	private final long totalMicros;
+
+	/** 50パーセンタイル（マイクロ秒） */
+	private final long p50Micros;
+
+	/** 95パーセンタイル（マイクロ秒） */
+	private final long p95Micros;
+
+	/** 99パーセンタイル（マイクロ秒） */
+	private final long p99Micros;
+
+	/** 最大実行時間（マイクロ秒） */
+	private final long maxMicros;
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * @param type
+	 *            実行種別
+	 * @param fingerprint
+	 *            SQLフィンガープリント
+	 * @param rowCount
+	 *            処理件数
+	 * @param histogram
+	 *            実行時間のヒストグラム
+	 */
+	SqlStatistics(SqlMetrics.Type type, String fingerprint, long rowCount,
+			LatencyHistogram histogram) {
+		this.type = type;
+		this.fingerprint = fingerprint;
+		this.callCount = histogram.getCount();
+		this.rowCount = rowCount;
+		this.totalMicros = histogram.getTotal();
+		this.p50Micros = histogram.getPercentile(50);
+		this.p95Micros = histogram.getPercentile(95);
+		this.p99Micros = histogram.getPercentile(99);
+		this.maxMicros = histogram.getMax();
+	}
+
+	/**
+	 * 実行種別を取得する.
+	 *
+	 * @return 実行種別
+	 */
+	public SqlMetrics.Type getType() {
+		return type;
+	}
+
+	/**
+	 * SQLフィンガープリントを取得する.
+	 *
+	 * @return SQLフィンガープリント
+	 */
+	public String getFingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * 実行回数を取得する.
+	 *
+	 * @return 実行回数
+	 */
+	public long getCallCount() {
+		return callCount;
+	}
+
+	/**
+	 * 処理件数を取得する.
+	 * <p>
+	 * SELECTは取得件数、更新は更新件数の合計です.
+	 * </p>
+	 *
+	 * @return 処理件数
+	 */
+	public long getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * 合計実行時間を取得する.
+	 *
+	 * @return 合計実行時間（ミリ秒）
+	 */
+	public double getTotalMillis() {
+		return totalMicros / 1000.0;
+	}
+
+	/**
+	 * 平均実行時間を取得する.
+	 *
+	 * @return 平均実行時間（ミリ秒）
+	 */
+	public double getAverageMillis() {
+		return (callCount == 0 ? 0 : totalMicros / 1000.0 / callCount);
+	}
+
+	/**
+	 * 50パーセンタイルの実行時間を取得する.
+	 *
+	 * @return 50パーセンタイルの実行時間（ミリ秒）
+	 */
+	public double getP50Millis() {
+		return p50Micros / 1000.0;
+	}
+
+	/**
+	 * 95パーセンタイルの実行時間を取得する.
+	 *
+	 * @return 95パーセンタイルの実行時間（ミリ秒）
+	 */
+	public double getP95Millis() {
+		return p95Micros / 1000.0;
+	}
+
+	/**
+	 * 99パーセンタイルの実行時間を取得する.
+	 *
+	 * @return 99パーセンタイルの実行時間（ミリ秒）
+	 */
+	public double getP99Millis() {
+		return p99Micros / 1000.0;
+	}
+
+	/**
+	 * 最大実行時間を取得する.
+	 *
+	 * @return 最大実行時間（ミリ秒）
+	 */
+	public double getMaxMillis() {
+		return maxMicros / 1000.0;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("[").append(type);
+		sb.append("][calls=").append(callCount);
+		sb.append(", rows=").append(rowCount);
+		sb.append(String.format(", total=%.1fms", getTotalMillis()));
+		sb.append(String.format(", avg=%.3fms", getAverageMillis()));
+		sb.append(String.format(", p50=%.3fms", getP50Millis()));
+		sb.append(String.format(", p95=%.3fms", getP95Millis()));
+		sb.append(String.format(", p99=%.3fms", getP99Millis()));
+		sb.append(String.format(", max=%.3fms", getMaxMillis()));
+		sb.append("]").append(fingerprint);
+		return sb.toString();
+	}
+}
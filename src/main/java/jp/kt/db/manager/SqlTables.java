@@ -0,0 +1,176 @@
+package jp.kt.db.manager;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SQL文から参照・更新しているテーブル名を抽出するクラス.
+ * <p>
+ * FROM、JOIN、UPDATE、INTO、TABLE の直後（FROM句はカンマ区切りの各要素）を<br>
+ * テーブル名とみなす簡易的な解析です.<br>
+ * テーブル名は大文字に変換し、スキーマ名は除去します.
+ * </p>
+ *
+ * @author tatsuya.kumon
+ */
+final class SqlTables {
+	/** 解析結果の最大保持数 */
+	private static final int MAX_CACHE_SIZE = 10000;
+
+	/** SQL文と解析結果の対応 */
+	private static final ConcurrentHashMap<String, Set<String>> CACHE = new ConcurrentHashMap<String, Set<String>>();
+
+	/** FROM句の終わりを示すキーワード */
+	private static final Set<String> FROM_END_KEYWORDS = new LinkedHashSet<String>();
+
+	static {
+		Collections.addAll(FROM_END_KEYWORDS, "WHERE", "GROUP", "ORDER",
+				"HAVING", "UNION", "INTERSECT", "EXCEPT", "MINUS", "LIMIT",
+				"OFFSET", "FETCH", "FOR", "JOIN", "INNER", "LEFT", "RIGHT",
+				"FULL", "CROSS", "NATURAL", "ON", "USING", "SET", "VALUES",
+				"SELECT", "WINDOW", "START", "CONNECT");
+	}
+
+	/**
+	 * インスタンス生成不可.
+	 */
+	private SqlTables() {
+	}
+
+	/**
+	 * SQL文からテーブル名を取得する.
+	 *
+	 * @param sql
+	 *            SQL文
+	 * @return テーブル名（大文字）のSet.<br>
+	 *         抽出できなかった場合は空のSet.
+	 */
+	static Set<String> get(String sql) {
+		Set<String> tables = CACHE.get(sql);
+		if (tables == null) {
+			tables = Collections.unmodifiableSet(parse(sql));
+			if (CACHE.size() >= MAX_CACHE_SIZE) {
+				CACHE.clear();
+			}
+			CACHE.put(sql, tables);
+		}
+		return tables;
+	}
+
+	/**
+	 * SQL文を解析する.
+	 *
+	 * @param sql
+	 *            SQL文
+	 * @return テーブル名のSet
+	 */
+	private static Set<String> parse(String sql) {
+		Set<String> tables = new LinkedHashSet<String>();
+		int length = sql.length();
+		int i = 0;
+		// 直前のキーワード（FROM句の中であれば FROM）
+		String context = null;
+		// 直前のトークンがテーブル名を期待する位置か
+		boolean expectTable = false;
+		while (i < length) {
+			char c = sql.charAt(i);
+			if (c == '\'') {
+				// 文字列リテラルを読み飛ばす
+				i++;
+				while (i < length) {
+					if (sql.charAt(i) == '\'') {
+						if (i + 1 < length && sql.charAt(i + 1) == '\'') {
+							i += 2;
+							continue;
+						}
+						break;
+					}
+					i++;
+				}
+				i++;
+				expectTable = false;
+			} else if (isIdentifierStart(c)) {
+				int start = i;
+				while (i < length && isIdentifierPart(sql.charAt(i))) {
+					i++;
+				}
+				String word = sql.substring(start, i);
+				String upperWord = stripQuote(word).toUpperCase(Locale.ENGLISH);
+				if (expectTable) {
+					// スキーマ名を除去
+					int dot = upperWord.lastIndexOf('.');
+					tables.add(dot >= 0 ? upperWord.substring(dot + 1)
+							: upperWord);
+					expectTable = false;
+				} else if ("FROM".equals(upperWord) || "JOIN".equals(upperWord)
+						|| "UPDATE".equals(upperWord)
+						|| "INTO".equals(upperWord)
+						|| "TABLE".equals(upperWord)) {
+					context = upperWord;
+					expectTable = true;
+				} else if (FROM_END_KEYWORDS.contains(upperWord)) {
+					context = null;
+				}
+			} else if (c == ',') {
+				// FROM句のカンマ区切り
+				expectTable = "FROM".equals(context);
+				i++;
+			} else if (c == '(' || c == ')') {
+				// サブクエリや列リスト
+				expectTable = false;
+				if (c == ')') {
+					context = null;
+				}
+				i++;
+			} else {
+				i++;
+			}
+		}
+		return tables;
+	}
+
+	/**
+	 * 識別子の先頭文字か判定する.
+	 *
+	 * @param c
+	 *            文字
+	 * @return 識別子の先頭文字であればtrue
+	 */
+	private static boolean isIdentifierStart(char c) {
+		return Character.isLetter(c) || c == '_' || c == '"' || c == '`'
+				|| c == '[';
+	}
+
+	/**
+	 * 識別子の文字か判定する.
+	 *
+	 * @param c
+	 *            文字
+	 * @return 識別子の文字であればtrue
+	 */
+	private static boolean isIdentifierPart(char c) {
+		return Character.isLetterOrDigit(c) || c == '_' || c == '$'
+				|| c == '.' || c == '"' || c == '`' || c == '[' || c == ']';
+	}
+
+	/**
+	 * 識別子のクォートを除去する.
+	 *
+	 * @param word
+	 *            識別子
+	 * @return クォートを除去した識別子
+	 */
+	private static String stripQuote(String word) {
+		StringBuilder sb = new StringBuilder(word.length());
+		for (int i = 0; i < word.length(); i++) {
+			char c = word.charAt(i);
+			if (c != '"' && c != '`' && c != '[' && c != ']') {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+}
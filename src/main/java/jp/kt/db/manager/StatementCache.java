@@ -0,0 +1,336 @@
+package jp.kt.db.manager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import jp.kt.db.ConnectionEvents;
+
+/**
+ * Connection単位のPreparedStatementキャッシュ.
+ * <p>
+ * SQL文をキーにしたLRUキャッシュで、{@link BaseManager}から使用されます.<br>
+ * kt.propertiesの kt.core.sql.stmtcache.size に1以上を設定した場合のみ有効になります.<br>
+ * <br>
+ * キャッシュは{@link ConnectionEvents#getPhysicalKey(Connection)}で取得した物理接続のキーごとに保持します.<br>
+ * {@link jp.kt.db.ConnectionPool}から取得したConnectionは、返却して再取得しても<br>
+ * 同じ物理接続であれば同じキャッシュを使用し、プールが物理接続をクローズする時点でキャッシュを破棄します.<br>
+ * <br>
+ * キャッシュしたPreparedStatementはConnectionに紐付いているため、<br>
+ * プール以外のConnectionはクローズする前に {@link #close(Connection)} を呼び出してください.<br>
+ * 呼び出し忘れた場合も、次に別のConnectionのキャッシュが生成された時点で<br>
+ * クローズ済みのConnectionのキャッシュは破棄されます.
+ * </p>
+ *
+ * @author tatsuya.kumon
+ */
+public final class StatementCache {
+	/** 物理接続のキーごとのキャッシュ */
+	private static final Map<Object, StatementCache> CACHE_MAP = new IdentityHashMap<Object, StatementCache>();
+
+	/** PreparedStatementを生成するDB接続（最後に取得した時のもの） */
+	private Connection con;
+
+	/** 最大キャッシュ数 */
+	private final int maxSize;
+
+	/** SQL文をキーにしたPreparedStatement（アクセス順） */
+	private final LinkedHashMap<String, PreparedStatement> statements;
+
+	/** 使用中のPreparedStatement */
+	private final Set<PreparedStatement> inUse;
+
+	/** ヒット件数 */
+	private long hitCount;
+
+	/** ミス件数 */
+	private long missCount;
+
+	/** 追い出し件数 */
+	private long evictionCount;
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * @param con
+	 *            DB接続
+	 * @param maxSize
+	 *            最大キャッシュ数
+	 */
+	private StatementCache(Connection con, int maxSize) {
+		this.con = con;
+		this.maxSize = maxSize;
+		this.statements = new LinkedHashMap<String, PreparedStatement>(16,
+				0.75f, true);
+		this.inUse = Collections
+				.newSetFromMap(new IdentityHashMap<PreparedStatement, Boolean>());
+	}
+
+	/**
+	 * 指定Connectionのキャッシュを取得する.
+	 * <p>
+	 * 存在しない場合は生成します.
+	 * </p>
+	 *
+	 * @param con
+	 *            DB接続
+	 * @param maxSize
+	 *            最大キャッシュ数
+	 * @return {@link StatementCache}オブジェクト
+	 */
+	static StatementCache getInstance(Connection con, int maxSize) {
+		Object physical = ConnectionEvents.getPhysicalKey(con);
+		StatementCache cache;
+		synchronized (CACHE_MAP) {
+			cache = CACHE_MAP.get(physical);
+			if (cache == null) {
+				// クローズ済みConnectionのキャッシュを破棄
+				removeClosedConnection();
+				cache = new StatementCache(con, maxSize);
+				CACHE_MAP.put(physical, cache);
+				return cache;
+			}
+		}
+		// プールから再取得した場合は新しいConnectionで生成する
+		cache.setConnection(con);
+		return cache;
+	}
+
+	/**
+	 * PreparedStatementを生成するDB接続を設定する.
+	 *
+	 * @param con
+	 *            DB接続
+	 */
+	private synchronized void setConnection(Connection con) {
+		this.con = con;
+	}
+
+	/**
+	 * 指定Connectionのキャッシュを取得する.
+	 *
+	 * @param con
+	 *            DB接続
+	 * @return {@link StatementCache}オブジェクト.<br>
+	 *         キャッシュが存在しない場合はnull.
+	 */
+	public static StatementCache getCache(Connection con) {
+		Object physical = ConnectionEvents.getPhysicalKey(con);
+		synchronized (CACHE_MAP) {
+			return CACHE_MAP.get(physical);
+		}
+	}
+
+	/**
+	 * 指定Connectionのキャッシュを破棄し、キャッシュしていたPreparedStatementをクローズする.
+	 * <p>
+	 * 物理接続が同じであれば、取得元のConnectionが異なっても同じキャッシュを破棄します.
+	 * </p>
+	 *
+	 * @param con
+	 *            DB接続
+	 */
+	public static void close(Connection con) {
+		close(ConnectionEvents.getPhysicalKey(con));
+	}
+
+	/**
+	 * 指定した物理接続のキーのキャッシュを破棄し、キャッシュしていたPreparedStatementをクローズする.
+	 *
+	 * @param physical
+	 *            物理接続のキー
+	 */
+	static void close(Object physical) {
+		StatementCache cache;
+		synchronized (CACHE_MAP) {
+			cache = CACHE_MAP.remove(physical);
+		}
+		if (cache != null) {
+			cache.closeAll();
+		}
+	}
+
+	/**
+	 * クローズ済みConnectionのキャッシュを破棄する.
+	 * <p>
+	 * プールの物理接続のキャッシュは、プールが物理接続をクローズする時点で破棄されるため対象外です.
+	 * </p>
+	 */
+	private static void removeClosedConnection() {
+		Iterator<Map.Entry<Object, StatementCache>> it = CACHE_MAP.entrySet()
+				.iterator();
+		while (it.hasNext()) {
+			Map.Entry<Object, StatementCache> entry = it.next();
+			if (!(entry.getKey() instanceof Connection)) {
+				continue;
+			}
+			boolean closed;
+			try {
+				closed = ((Connection) entry.getKey()).isClosed();
+			} catch (SQLException e) {
+				closed = true;
+			}
+			if (closed) {
+				it.remove();
+				entry.getValue().closeAll();
+			}
+		}
+	}
+
+	/**
+	 * PreparedStatementを取得する.
+	 * <p>
+	 * キャッシュに存在し、かつ使用中でなければキャッシュから返します.<br>
+	 * 同じSQL文が使用中（ResultSetを処理中など）の場合は、キャッシュしない<br>
+	 * PreparedStatementを新たに生成して返します.
+	 * </p>
+	 *
+	 * @param sql
+	 *            SQL文
+	 * @return {@link PreparedStatement}オブジェクト
+	 * @throws SQLException
+	 *             PreparedStatement生成時に例外発生した場合
+	 */
+	synchronized PreparedStatement prepare(String sql) throws SQLException {
+		PreparedStatement pstmt = statements.get(sql);
+		if (pstmt != null && !inUse.contains(pstmt)) {
+			if (!pstmt.isClosed()) {
+				// キャッシュヒット
+				hitCount++;
+				inUse.add(pstmt);
+				return pstmt;
+			}
+			// クローズされていた場合は破棄
+			statements.remove(sql);
+			pstmt = null;
+		}
+		missCount++;
+		PreparedStatement newPstmt = con.prepareStatement(sql);
+		if (pstmt == null) {
+			// キャッシュに追加
+			statements.put(sql, newPstmt);
+			inUse.add(newPstmt);
+			evict();
+		}
+		return newPstmt;
+	}
+
+	/**
+	 * 使用が終わったPreparedStatementを返却する.
+	 * <p>
+	 * キャッシュ対象であればパラメータをクリアして再利用可能な状態に戻し、<br>
+	 * キャッシュ対象でなければクローズします.
+	 * </p>
+	 *
+	 * @param pstmt
+	 *            {@link PreparedStatement}オブジェクト
+	 * @throws SQLException
+	 *             クローズ時に例外発生した場合
+	 */
+	synchronized void release(PreparedStatement pstmt) throws SQLException {
+		boolean cached = inUse.remove(pstmt)
+				&& statements.containsValue(pstmt);
+		if (!cached) {
+			pstmt.close();
+			return;
+		}
+		try {
+			pstmt.clearParameters();
+			pstmt.clearWarnings();
+			pstmt.setMaxRows(0);
+		} catch (SQLException e) {
+			// 再利用できない状態なので破棄する
+			statements.values().remove(pstmt);
+			pstmt.close();
+		}
+	}
+
+	/**
+	 * 最大キャッシュ数を超えた分を古い順に追い出す.
+	 * <p>
+	 * 使用中のものは返却時にクローズされます.
+	 * </p>
+	 */
+	private void evict() {
+		Iterator<PreparedStatement> it = statements.values().iterator();
+		while (statements.size() > maxSize && it.hasNext()) {
+			PreparedStatement eldest = it.next();
+			it.remove();
+			evictionCount++;
+			if (!inUse.contains(eldest)) {
+				closeQuietly(eldest);
+			}
+		}
+	}
+
+	/**
+	 * キャッシュしている全PreparedStatementをクローズする.
+	 */
+	private synchronized void closeAll() {
+		List<PreparedStatement> list = new ArrayList<PreparedStatement>(
+				statements.values());
+		statements.clear();
+		for (PreparedStatement pstmt : list) {
+			if (!inUse.contains(pstmt)) {
+				closeQuietly(pstmt);
+			}
+		}
+	}
+
+	/**
+	 * 例外を無視してクローズする.
+	 *
+	 * @param pstmt
+	 *            {@link PreparedStatement}オブジェクト
+	 */
+	private static void closeQuietly(PreparedStatement pstmt) {
+		try {
+			pstmt.close();
+		} catch (SQLException e) {
+		}
+	}
+
+	/**
+	 * キャッシュヒット件数を取得する.
+	 *
+	 * @return キャッシュヒット件数
+	 */
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * キャッシュミス件数を取得する.
+	 *
+	 * @return キャッシュミス件数
+	 */
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * 最大キャッシュ数超過による追い出し件数を取得する.
+	 *
+	 * @return 追い出し件数
+	 */
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+
+	/**
+	 * 現在のキャッシュ数を取得する.
+	 *
+	 * @return キャッシュ数
+	 */
+	public synchronized int size() {
+		return statements.size();
+	}
+}
@@ -0,0 +1,537 @@
+package jp.kt.db.manager;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import jp.kt.db.ConnectionProvider;
+import jp.kt.db.entity.BaseEntity;
+import jp.kt.prop.KtProperties;
+
+/**
+ * Connection単位のトランザクションの状態.
+ * <p>
+ * {@link BaseManager}で更新を実行したConnectionを、コミットされていない更新が有る状態として記録します.<br>
+ * 状態はManagerではなくConnectionごとに保持するため、同じConnectionを使う全てのManagerで共有されます.<br>
+ * コミットされていない更新が有る間は、{@link QueryResultCache}などのキャッシュを使用せず、<br>
+ * コミット前の値がキャッシュされないようにします.<br>
+ * また更新したテーブルのキャッシュはSQL実行直後に破棄した上で、コミット後にもう一度破棄します.<br>
+ * コミットまでの間に他のスレッドが更新前の値をキャッシュしても、コミット時点で破棄されます.<br>
+ * {@link EntityCache}も、更新に伴って破棄したentityをコミット後にもう一度破棄します.<br>
+ * <br>
+ * SELECTをレプリカに振り分ける場合（{@link BaseManager#setReadConnectionProvider(ConnectionProvider)}）は、<br>
+ * 更新やロック付きのSELECTを実行した後のSELECTをプライマリで実行し、<br>
+ * それ以外のSELECTはトランザクションの区切りまで同じレプリカのConnectionで実行します.<br>
+ * オートコミットONのConnectionは更新ごとにコミットされるため、更新後のSELECTは<br>
+ * kt.propertiesの kt.core.sql.replica.autocommit.primary.millisec の時間（未指定の場合は1000ミリ秒）のみプライマリで実行し、<br>
+ * その後はレプリカで実行します（レプリカへの反映遅延がその時間より大きい場合は、更新前の値を参照します）.<br>
+ * オートコミットONのConnectionはトランザクションの区切りが無いため、レプリカのConnectionはクローズ時に解放します.<br>
+ * <br>
+ * {@link jp.kt.db.ConnectionPool}、{@link jp.kt.db.RoutingConnectionProvider}から取得したConnectionは、<br>
+ * commit、rollback、closeの時点で<br>
+ * 自動的に状態を区切ります.<br>
+ * それ以外のConnectionは、コミット後に{@link #commit(Connection)}を、ロールバック後に<br>
+ * {@link #rollback(Connection)}を、Connectionをクローズする前に{@link #close(Connection)}を呼び出してください.<br>
+ * 呼び出さない場合、そのConnectionはクローズするまでコミットされていない更新が有る状態となり、キャッシュを使用しません.<br>
+ * {@link BaseManager#commit()}、{@link BaseManager#rollback()}でコミット、ロールバックした場合は、<br>
+ * どのConnectionでも状態を区切ります.<br>
+ * オートコミットONのConnectionの更新は、コミットされていない更新としては記録しません.<br>
+ * <br>
+ * キャッシュとレプリカへの振り分けのいずれも使用していない間は、更新を記録しません（ロックを取得しません）.<br>
+ * 記録は最初に使用した時点から始まるため、その時点で実行中だったトランザクションの更新は記録されません.
+ * </p>
+ *
+ * @author tatsuya.kumon
+ */
+public final class TransactionState {
+	/** コミット後に破棄するキャッシュの最大数（超えた場合は全件破棄） */
+	private static final int MAX_PENDING_SIZE = 1000;
+
+	/** Connectionごとの状態 */
+	private static final Map<Connection, TransactionState> STATE_MAP = new IdentityHashMap<Connection, TransactionState>();
+
+	/** 更新を記録するか（キャッシュ、レプリカへの振り分けを使用済み） */
+	private static volatile boolean enabled;
+
+	/** オートコミットONのConnectionで更新した後、SELECTをプライマリで実行する時間（ナノ秒） */
+	private static final long AUTOCOMMIT_PRIMARY_NANOS = TimeUnit.MILLISECONDS
+			.toNanos(KtProperties.getInstance().getInt(
+					"kt.core.sql.replica.autocommit.primary.millisec", 1000));
+
+	/** コミットされていない更新が有るか */
+	private boolean updated;
+
+	/** SELECTをプライマリで実行するか（更新、ロック付きのSELECTを実行済み） */
+	private boolean primaryOnly;
+
+	/** オートコミットONの更新後にSELECTをプライマリで実行する期限（{@link System#nanoTime()}） */
+	private long primaryOnlyDeadline;
+
+	/** {@link #primaryOnlyDeadline}が有効か */
+	private boolean hasPrimaryOnlyDeadline;
+
+	/** SELECTを実行するレプリカのConnection */
+	private Connection replicaCon;
+
+	/** コミット後にSELECT結果のキャッシュを破棄する更新SQL */
+	private final Set<String> invalidationSqls = new LinkedHashSet<String>();
+
+	/** コミット後にSELECT結果のキャッシュを全件破棄するか */
+	private boolean invalidateAll;
+
+	/** コミット後に破棄するentityのキャッシュと、{@link EntityKey}かentityクラス（nullの場合は全件破棄） */
+	private final Map<EntityCache, Set<Object>> evictions = new IdentityHashMap<EntityCache, Set<Object>>();
+
+	/**
+	 * privateコンストラクタ.
+	 */
+	private TransactionState() {
+	}
+
+	/**
+	 * 更新の記録を開始する.
+	 * <p>
+	 * キャッシュ、レプリカへの振り分けを使用する時点で呼び出します.
+	 * </p>
+	 */
+	static void enable() {
+		enabled = true;
+	}
+
+	/**
+	 * 指定Connectionの状態を取得する.
+	 * <p>
+	 * 存在しない場合は生成します.
+	 * </p>
+	 *
+	 * @param con
+	 *            DB接続
+	 * @return {@link TransactionState}オブジェクト
+	 */
+	static TransactionState get(Connection con) {
+		synchronized (STATE_MAP) {
+			TransactionState state = STATE_MAP.get(con);
+			if (state == null) {
+				// クローズ済みConnectionの状態を破棄
+				removeClosedConnection();
+				state = new TransactionState();
+				STATE_MAP.put(con, state);
+			}
+			return state;
+		}
+	}
+
+	/**
+	 * 指定Connectionの状態を取得する.
+	 *
+	 * @param con
+	 *            DB接続
+	 * @return {@link TransactionState}オブジェクト.<br>
+	 *         状態が存在しない場合はnull.
+	 */
+	private static TransactionState find(Connection con) {
+		synchronized (STATE_MAP) {
+			return STATE_MAP.get(con);
+		}
+	}
+
+	/**
+	 * 指定Connectionにコミットされていない更新が有るか判定する.
+	 *
+	 * @param con
+	 *            DB接続
+	 * @return コミットされていない更新が有る場合はtrue
+	 */
+	public static boolean isUpdated(Connection con) {
+		TransactionState state = find(con);
+		return (state != null && state.isUpdated());
+	}
+
+	/**
+	 * 指定Connectionでトランザクションの区切りまでSELECTをプライマリで実行するか判定する.
+	 *
+	 * @param con
+	 *            DB接続
+	 * @return 更新、ロック付きのSELECTを実行済みの場合はtrue
+	 */
+	static boolean isPrimaryOnly(Connection con) {
+		TransactionState state = find(con);
+		return (state != null && state.isPrimaryOnlyState());
+	}
+
+	/**
+	 * 指定Connectionでのロック付きのSELECTを記録する.
+	 * <p>
+	 * トランザクションの区切りまで、SELECTをプライマリで実行します.<br>
+	 * オートコミットONの場合はロックが残らないため記録しません.<br>
+	 * 更新の記録を開始していない場合も記録しません.
+	 * </p>
+	 *
+	 * @param con
+	 *            DB接続
+	 * @throws SQLException
+	 *             オートコミットの取得に失敗した場合
+	 */
+	static void beginLockingRead(Connection con) throws SQLException {
+		if (!enabled || con.getAutoCommit()) {
+			return;
+		}
+		get(con).setPrimaryOnly();
+	}
+
+	/**
+	 * 指定ConnectionでのSELECTを実行するレプリカのConnectionを取得する.
+	 * <p>
+	 * トランザクションの区切りまで同じConnectionを返します.<br>
+	 * レプリカのConnectionはトランザクションの区切りでロールバックしてクローズします.
+	 * </p>
+	 *
+	 * @param con
+	 *            DB接続
+	 * @param provider
+	 *            レプリカのプロバイダ
+	 * @return レプリカの{@link Connection}オブジェクト
+	 * @throws Exception
+	 *             DB接続時に例外発生した場合
+	 */
+	static Connection getReplicaConnection(Connection con,
+			ConnectionProvider provider) throws Exception {
+		return get(con).getReplica(provider);
+	}
+
+	/**
+	 * 指定Connectionでの更新の開始を記録する.
+	 * <p>
+	 * トランザクションの区切りまで、SELECTをプライマリで実行します.<br>
+	 * オートコミットONの場合は、コミットされていない更新としては記録せず、<br>
+	 * 一定時間のみSELECTをプライマリで実行します.<br>
+	 * 更新の記録を開始していない場合は何もしません.
+	 * </p>
+	 *
+	 * @param con
+	 *            DB接続
+	 * @param sql
+	 *            更新SQL文
+	 * @throws SQLException
+	 *             オートコミットの取得に失敗した場合
+	 */
+	static void beginUpdate(Connection con, String sql) throws SQLException {
+		if (!enabled) {
+			return;
+		}
+		TransactionState state = get(con);
+		if (con.getAutoCommit()) {
+			state.setPrimaryOnlyDeadline(System.nanoTime()
+					+ AUTOCOMMIT_PRIMARY_NANOS);
+			return;
+		}
+		state.addUpdate(sql);
+	}
+
+	/**
+	 * 指定Connectionのコミット後に破棄するentityを記録する.
+	 * <p>
+	 * コミットされていない更新が無い場合は記録しません.
+	 * </p>
+	 *
+	 * @param con
+	 *            DB接続
+	 * @param cache
+	 *            entityのキャッシュ
+	 * @param key
+	 *            entityクラスと主キーの値
+	 */
+	static void addEviction(Connection con, EntityCache cache, EntityKey key) {
+		TransactionState state = find(con);
+		if (state != null) {
+			state.addEntityEviction(cache, key);
+		}
+	}
+
+	/**
+	 * 指定Connectionのコミット後に破棄するentityクラスを記録する.
+	 * <p>
+	 * コミットされていない更新が無い場合は記録しません.
+	 * </p>
+	 *
+	 * @param con
+	 *            DB接続
+	 * @param cache
+	 *            entityのキャッシュ
+	 * @param entityClass
+	 *            entityクラス
+	 */
+	static void addEviction(Connection con, EntityCache cache,
+			Class<? extends BaseEntity> entityClass) {
+		TransactionState state = find(con);
+		if (state != null) {
+			state.addEntityEviction(cache, entityClass);
+		}
+	}
+
+	/**
+	 * 指定Connectionのコミット後の処理.
+	 * <p>
+	 * 更新したテーブルのキャッシュを破棄し、コミットされていない更新が無い状態に戻します.<br>
+	 * レプリカのConnectionはクローズします.
+	 * </p>
+	 *
+	 * @param con
+	 *            DB接続
+	 */
+	public static void commit(Connection con) {
+		TransactionState state = find(con);
+		if (state != null) {
+			state.complete(true);
+		}
+	}
+
+	/**
+	 * 指定Connectionのロールバック後の処理.
+	 * <p>
+	 * コミットされていない更新が無い状態に戻します.<br>
+	 * 更新前の値に戻るため、キャッシュは破棄しません.<br>
+	 * レプリカのConnectionはクローズします.
+	 * </p>
+	 *
+	 * @param con
+	 *            DB接続
+	 */
+	public static void rollback(Connection con) {
+		TransactionState state = find(con);
+		if (state != null) {
+			state.complete(false);
+		}
+	}
+
+	/**
+	 * 指定Connectionの状態を破棄する.
+	 * <p>
+	 * レプリカのConnectionはクローズします.
+	 * </p>
+	 *
+	 * @param con
+	 *            DB接続
+	 */
+	public static void close(Connection con) {
+		TransactionState state;
+		synchronized (STATE_MAP) {
+			state = STATE_MAP.remove(con);
+		}
+		if (state != null) {
+			state.complete(false);
+		}
+	}
+
+	/**
+	 * クローズ済みConnectionの状態を破棄する.
+	 */
+	private static void removeClosedConnection() {
+		Iterator<Map.Entry<Connection, TransactionState>> it = STATE_MAP
+				.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<Connection, TransactionState> entry = it.next();
+			boolean closed;
+			try {
+				closed = entry.getKey().isClosed();
+			} catch (SQLException e) {
+				closed = true;
+			}
+			if (closed) {
+				it.remove();
+				entry.getValue().closeReplica();
+			}
+		}
+	}
+
+	/**
+	 * コミットされていない更新が有るか判定する.
+	 *
+	 * @return コミットされていない更新が有る場合はtrue
+	 */
+	private synchronized boolean isUpdated() {
+		return updated;
+	}
+
+	/**
+	 * SELECTをプライマリで実行するか判定する.
+	 *
+	 * @return 更新、ロック付きのSELECTを実行済みの場合はtrue
+	 */
+	private synchronized boolean isPrimaryOnlyState() {
+		if (primaryOnly) {
+			return true;
+		}
+		if (hasPrimaryOnlyDeadline) {
+			if (System.nanoTime() - primaryOnlyDeadline < 0) {
+				return true;
+			}
+			hasPrimaryOnlyDeadline = false;
+		}
+		return false;
+	}
+
+	/**
+	 * トランザクションの区切りまでSELECTをプライマリで実行する.
+	 */
+	private synchronized void setPrimaryOnly() {
+		primaryOnly = true;
+	}
+
+	/**
+	 * 指定期限までSELECTをプライマリで実行する.
+	 *
+	 * @param deadline
+	 *            期限（{@link System#nanoTime()}）
+	 */
+	private synchronized void setPrimaryOnlyDeadline(long deadline) {
+		primaryOnlyDeadline = deadline;
+		hasPrimaryOnlyDeadline = true;
+	}
+
+	/**
+	 * レプリカのConnectionを取得する.
+	 *
+	 * @param provider
+	 *            レプリカのプロバイダ
+	 * @return レプリカの{@link Connection}オブジェクト
+	 * @throws Exception
+	 *             DB接続時に例外発生した場合
+	 */
+	private synchronized Connection getReplica(ConnectionProvider provider)
+			throws Exception {
+		if (replicaCon == null || replicaCon.isClosed()) {
+			replicaCon = provider.getConnection();
+		}
+		return replicaCon;
+	}
+
+	/**
+	 * 更新を記録する.
+	 *
+	 * @param sql
+	 *            更新SQL文
+	 */
+	private synchronized void addUpdate(String sql) {
+		updated = true;
+		primaryOnly = true;
+		if (!invalidateAll && !invalidationSqls.contains(sql)) {
+			if (invalidationSqls.size() >= MAX_PENDING_SIZE) {
+				// 動的にSQL文を組み立てている場合に際限なく増えないようにする
+				invalidationSqls.clear();
+				invalidateAll = true;
+			} else {
+				invalidationSqls.add(sql);
+			}
+		}
+	}
+
+	/**
+	 * 破棄するentityを記録する.
+	 *
+	 * @param cache
+	 *            entityのキャッシュ
+	 * @param target
+	 *            {@link EntityKey}かentityクラス
+	 */
+	private synchronized void addEntityEviction(EntityCache cache,
+			Object target) {
+		if (!updated) {
+			return;
+		}
+		if (!evictions.containsKey(cache)) {
+			evictions.put(cache, new LinkedHashSet<Object>());
+		}
+		Set<Object> targets = evictions.get(cache);
+		if (targets != null && !targets.contains(target)) {
+			if (targets.size() >= MAX_PENDING_SIZE) {
+				// 大量に更新した場合は全件破棄
+				evictions.put(cache, null);
+			} else {
+				targets.add(target);
+			}
+		}
+	}
+
+	/**
+	 * トランザクションの終了.
+	 *
+	 * @param committed
+	 *            コミットした場合はtrue
+	 */
+	private void complete(boolean committed) {
+		List<String> sqls;
+		boolean all;
+		Map<EntityCache, Set<Object>> entities;
+		synchronized (this) {
+			sqls = new ArrayList<String>(invalidationSqls);
+			all = invalidateAll;
+			entities = new IdentityHashMap<EntityCache, Set<Object>>(evictions);
+			updated = false;
+			primaryOnly = false;
+			hasPrimaryOnlyDeadline = false;
+			invalidationSqls.clear();
+			invalidateAll = false;
+			evictions.clear();
+		}
+		closeReplica();
+		if (!committed) {
+			return;
+		}
+		// コミットまでの間にキャッシュされた更新前の値を破棄
+		QueryResultCache cache = QueryResultCache.getInstance();
+		if (all) {
+			cache.clear();
+		} else {
+			for (String sql : sqls) {
+				cache.invalidate(sql);
+			}
+		}
+		for (Map.Entry<EntityCache, Set<Object>> entry : entities.entrySet()) {
+			EntityCache entityCache = entry.getKey();
+			if (entry.getValue() == null) {
+				entityCache.clear();
+				continue;
+			}
+			for (Object target : entry.getValue()) {
+				if (target instanceof EntityKey) {
+					entityCache.remove((EntityKey) target);
+				} else {
+					@SuppressWarnings("unchecked")
+					Class<? extends BaseEntity> entityClass = (Class<? extends BaseEntity>) target;
+					entityCache.removeAll(entityClass);
+				}
+			}
+		}
+	}
+
+	/**
+	 * レプリカのConnectionをロールバックしてクローズする.
+	 */
+	private void closeReplica() {
+		Connection replica;
+		synchronized (this) {
+			replica = replicaCon;
+			replicaCon = null;
+		}
+		if (replica == null) {
+			return;
+		}
+		try {
+			try {
+				replica.rollback();
+			} finally {
+				replica.close();
+			}
+		} catch (SQLException e) {
+			// 参照のみのため、失敗しても影響は無い
+		}
+	}
+}
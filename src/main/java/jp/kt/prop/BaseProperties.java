@@ -45,6 +45,29 @@ public abstract class BaseProperties {
 		return Integer.parseInt(getString(key));
 	}
 
+	/**
+	 * プロパティファイルから指定キーの値をintで取得する.
+	 * <p>
+	 * キーが存在しない場合と、値が空の場合はデフォルト値を返します.<br>
+	 * 値の前後の空白は無視します.
+	 * </p>
+	 * 
+	 * @param key
+	 *            キー
+	 * @param defaultValue
+	 *            キーが存在しない場合の値
+	 * @return キーにマッピングされたint値
+	 */
+	public final int getInt(String key, int defaultValue) {
+		if (existKey(key)) {
+			String value = getString(key).trim();
+			if (!Validator.isEmpty(value)) {
+				return Integer.parseInt(value);
+			}
+		}
+		return defaultValue;
+	}
+
 	/**
 	 * プロパティファイルから指定キーの値をbooleanで取得する.
 	 * 
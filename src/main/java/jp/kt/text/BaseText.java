@@ -1,8 +1,8 @@
 package jp.kt.text;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.StringReader;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -43,13 +43,24 @@ public abstract class BaseText {
 	 *            セットするデータ
 	 */
 	public final void addLineData(Object[] lineData) {
+		content.add(toLineData(lineData));
+	}
+
+	/**
+	 * 行データを文字列の配列に変換する.
+	 *
+	 * @param lineData
+	 *            行データ
+	 * @return 文字列の配列（nullは空文字）
+	 */
+	static String[] toLineData(Object[] lineData) {
 		String[] lineDataArray = new String[lineData.length];
 		// nullの場合は空文字に変換してセット
 		for (int i = 0; i < lineData.length; i++) {
 			lineDataArray[i] = (lineData[i] == null ? "" : lineData[i]
 					.toString());
 		}
-		content.add(lineDataArray);
+		return lineDataArray;
 	}
 
 	/**
@@ -62,7 +73,19 @@ public abstract class BaseText {
 	 * @param lineText
 	 *            行全体のテキスト
 	 */
-	public abstract void addLineText(String lineText);
+	public void addLineText(String lineText) {
+		// 行データとしてセットする
+		addLineData(parseLine(lineText));
+	}
+
+	/**
+	 * 行テキストを行データに変換する.
+	 *
+	 * @param lineText
+	 *            行全体のテキスト
+	 * @return 行データ
+	 */
+	abstract String[] parseLine(String lineText);
 
 	/**
 	 * 現在の行数を返す.
@@ -80,7 +103,21 @@ public abstract class BaseText {
 	 *            指定行番号
 	 * @return 指定行の出力テキスト
 	 */
-	public abstract String getLineText(int rowIndex);
+	public String getLineText(int rowIndex) {
+		return formatLine(getLineData(rowIndex));
+	}
+
+	/**
+	 * 行データを行テキストに変換する.
+	 * <p>
+	 * 保持しているデータを介さずに変換するため、{@link TextWriter}からも使用します.
+	 * </p>
+	 *
+	 * @param lineData
+	 *            行データ
+	 * @return 行テキスト
+	 */
+	abstract String formatLine(String[] lineData);
 
 	/**
 	 * 指定行のデータを返す.
@@ -114,6 +151,48 @@ public abstract class BaseText {
 		return sb.toString();
 	}
 
+	/**
+	 * テキスト全文を出力する.
+	 * <p>
+	 * {@link #getAllText()}と同じ内容を、全文の文字列を生成せずに1行ずつ出力します.<br>
+	 * writerのcloseは呼び出し側で行ってください.<br>
+	 * 保持している行データ自体が不要な大量件数の出力には{@link TextWriter}を使用してください.
+	 * </p>
+	 *
+	 * @param writer
+	 *            出力先
+	 * @throws IOException
+	 *             出力に失敗した場合
+	 */
+	public final void writeAllText(Writer writer) throws IOException {
+		TextWriter textWriter = new TextWriter(this, writer);
+		for (int i = 0; i < getLineCount(); i++) {
+			textWriter.writeLine(getLineData(i));
+		}
+		textWriter.flush();
+	}
+
+	/**
+	 * 行データを全て読み込んで追加する.
+	 * <p>
+	 * {@link #setAllText(String)}と異なり全文の文字列を必要としないため、<br>
+	 * ファイルなどから読み込む場合のメモリ使用量を抑えられます.<br>
+	 * 保持している行データに追加します.<br>
+	 * readerの読み込み形式はこのインスタンスと同じ形式にしてください.
+	 * </p>
+	 *
+	 * @param reader
+	 *            読み込み元
+	 * @throws IOException
+	 *             読み込みに失敗した場合
+	 */
+	public final void addAllLines(TextReader reader) throws IOException {
+		String[] lineData;
+		while ((lineData = reader.readLine()) != null) {
+			content.add(lineData);
+		}
+	}
+
 	/**
 	 * テキスト全文をセットする.
 	 * <p>
@@ -136,22 +215,11 @@ public abstract class BaseText {
 		// ファイル内容をクリア
 		this.content = new ArrayList<String[]>();
 		// 1行ごとに分割してセット
-		StringReader sr = null;
-		BufferedReader br = null;
+		TextReader reader = new TextReader(this, new StringReader(allText));
 		try {
-			sr = new StringReader(allText);
-			br = new BufferedReader(sr);
-			String line;
-			while ((line = br.readLine()) != null) {
-				// 1行分のデータを追加
-				this.addLineText(line);
-			}
+			addAllLines(reader);
 		} finally {
-			// 各close処理
-			if (br != null)
-				br.close();
-			if (sr != null)
-				sr.close();
+			reader.close();
 		}
 	}
 
@@ -2,8 +2,6 @@ package jp.kt.text;
 
 import java.io.IOException;
 import java.text.ParseException;
-import java.util.ArrayList;
-import java.util.List;
 
 import jp.kt.tool.DateUtil;
 import jp.kt.tool.StringUtil;
@@ -12,7 +10,9 @@ import jp.kt.tool.Validator;
 /**
  * CSV形式のテキスト.
  * <p>
- * 改行コードは除去されます.
+ * 出力時、改行コードは除去されます.<br>
+ * {@link #setAllText(String)}と{@link TextReader}での読み込み時は、<br>
+ * ダブルクォートで囲まれた中の改行を値の一部として扱います.
  * </p>
  *
  * @author tatsuya.kumon
@@ -51,9 +51,7 @@ abstract class CsvBaseText extends BaseText {
 	abstract boolean isExcelMode();
 
 	@Override
-	public final String getLineText(int lineIndex) {
-		// 指定行のデータを取得
-		String[] lineData = super.getLineData(lineIndex);
+	final String formatLine(String[] lineData) {
 		// データを1つの文字列に変換
 		StringBuffer sb = new StringBuffer();
 		for (int i = 0; i < lineData.length; i++) {
@@ -112,65 +110,8 @@ abstract class CsvBaseText extends BaseText {
 	}
 
 	@Override
-	public void addLineText(String lineText) {
-		try {
-			// カンマ区切りでString配列にする
-			String[] lineData = lineText.split(DELIM, -1);
-			// ダブルクォートを考慮して再度配列を作り直す
-			List<String> list = new ArrayList<String>();
-			for (int i = 0; i < lineData.length; i++) {
-				if (lineData[i].startsWith(DOUBLE_QUOTE)) {
-					// ダブルクォートで始まっている場合
-					StringBuffer sb = new StringBuffer(lineData[i]);
-					// ダブルクォートが奇数の場合は次以降の単語とカンマで連結
-					if (!isDoubleQuoteCountEven(lineData[i])) {
-						sb.append(DELIM);
-						sb.append(lineData[++i]);
-						// これ以降はダブルクォートが偶数なら連結
-						while (isDoubleQuoteCountEven(lineData[i])) {
-							sb.append(DELIM);
-							sb.append(lineData[++i]);
-						}
-					}
-					// 前後のダブルクォートを除去
-					String word = sb.substring(1, sb.length() - 1);
-					// 連続ダブルクォートを1つにする
-					word = StringUtil.replaceAll(word, DOUBLE_QUOTE
-							+ DOUBLE_QUOTE, DOUBLE_QUOTE);
-					// リストにセット
-					list.add(word);
-				} else {
-					// ダブルクォートで始まっていない場合はそのままセット
-					list.add(lineData[i]);
-				}
-			}
-			// 配列に変換
-			lineData = new String[list.size()];
-			list.toArray(lineData);
-			// 行データとしてセットする
-			super.addLineData(lineData);
-		} catch (ArrayIndexOutOfBoundsException e) {
-			throw new TextFormatException(e);
-		}
-	}
-
-	/**
-	 * ダブルクォートの数が偶数個ならtrueを返す.
-	 *
-	 * @param text
-	 *            テキスト
-	 * @return ダブルクォートの数が偶数個ならtrue
-	 */
-	private boolean isDoubleQuoteCountEven(String text) {
-		// ダブルクォートの数をカウント
-		char[] cArray = text.toCharArray();
-		int count = 0;
-		for (int i = 0; i < cArray.length; i++) {
-			if (String.valueOf(cArray[i]).equals(DOUBLE_QUOTE)) {
-				count++;
-			}
-		}
-		// ダブルクォートが偶数ならtrue
-		return (count % 2 == 0);
+	final String[] parseLine(String lineText) {
+		// ダブルクォートを考慮して1文字ずつ走査して分割する
+		return CsvTokenizer.parseLine(lineText);
 	}
 }
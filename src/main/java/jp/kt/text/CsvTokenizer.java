@@ -0,0 +1,295 @@
+package jp.kt.text;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CSV形式（RFC 4180）のテキストを行データに分割するクラス.
+ * <p>
+ * 文字を1度だけ走査する状態遷移で、区切り文字、ダブルクォートによる囲み、<br>
+ * 連続したダブルクォートのエスケープを処理します.<br>
+ * Readerから読み込む場合は、ダブルクォートで囲まれた中の改行を値として扱い、<br>
+ * それ以外の改行（CR、LF、CRLF）を行の区切りとします.<br>
+ * <br>
+ * RFC 4180より緩やかに、囲まれていない値の中のダブルクォートと、<br>
+ * 閉じダブルクォートの後ろの文字はそのまま値とします.<br>
+ * ダブルクォートが閉じられずに終わった場合は{@link TextFormatException}が発生します.
+ * </p>
+ *
+ * @author tatsuya.kumon
+ */
+final class CsvTokenizer {
+	/** 区切り文字 */
+	private static final char DELIM = ',';
+
+	/** ダブルクォート */
+	private static final char QUOTE = '"';
+
+	/** 読み込みバッファのサイズ */
+	private static final int BUFFER_SIZE = 8192;
+
+	/** 値の先頭 */
+	private static final int FIELD_START = 0;
+
+	/** 囲まれていない値の中 */
+	private static final int UNQUOTED = 1;
+
+	/** 囲まれた値の中 */
+	private static final int QUOTED = 2;
+
+	/** 囲まれた値の中でダブルクォートを読んだ直後 */
+	private static final int QUOTE_IN_QUOTED = 3;
+
+	/** 読み込み元（文字列から分割する場合はnull） */
+	private final Reader reader;
+
+	/** 改行を行の区切りとするか */
+	private final boolean multiLine;
+
+	/** 読み込みバッファ */
+	private char[] buf;
+
+	/** バッファの読み込み位置 */
+	private int pos;
+
+	/** バッファの有効な文字数 */
+	private int limit;
+
+	/** 直前の行がCRで終わったか（続くLFを読み飛ばす） */
+	private boolean skipLf;
+
+	/** 値の組み立て用 */
+	private final StringBuilder field = new StringBuilder();
+
+	/** 組み立て中の値がバッファの連続した1区間のみの場合の値（{@link #field}は空） */
+	private String run;
+
+	/** 行データの組み立て用 */
+	private final List<String> fields = new ArrayList<String>();
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * @param reader
+	 *            読み込み元
+	 */
+	CsvTokenizer(Reader reader) {
+		this.reader = reader;
+		this.multiLine = true;
+		this.buf = new char[BUFFER_SIZE];
+	}
+
+	/**
+	 * 文字列から分割する場合のコンストラクタ.
+	 *
+	 * @param lineText
+	 *            行全体のテキスト
+	 */
+	private CsvTokenizer(String lineText) {
+		this.reader = null;
+		this.multiLine = false;
+		this.buf = lineText.toCharArray();
+		this.limit = buf.length;
+	}
+
+	/**
+	 * 1行分のテキストを行データに分割する.
+	 * <p>
+	 * 改行も値の一部として扱います.
+	 * </p>
+	 *
+	 * @param lineText
+	 *            行全体のテキスト
+	 * @return 行データ
+	 */
+	static String[] parseLine(String lineText) {
+		try {
+			return new CsvTokenizer(lineText).next();
+		} catch (IOException e) {
+			// 文字列からの分割では発生しない
+			throw new TextFormatException(e);
+		}
+	}
+
+	/**
+	 * 次の1行分の行データを読み込む.
+	 *
+	 * @return 行データ.<br>
+	 *         最後まで読み込んだ場合はnull.
+	 * @throws IOException
+	 *             読み込みに失敗した場合
+	 */
+	String[] next() throws IOException {
+		if (skipLf) {
+			skipLf = false;
+			if (fill() && buf[pos] == '\n') {
+				pos++;
+			}
+		}
+		if (!fill()) {
+			// 空文字列の分割は値が1つ
+			return (multiLine ? null : new String[] { "" });
+		}
+		fields.clear();
+		field.setLength(0);
+		int state = FIELD_START;
+		while (fill()) {
+			char c = buf[pos];
+			switch (state) {
+			case FIELD_START:
+				if (c == QUOTE) {
+					pos++;
+					state = QUOTED;
+				} else {
+					// 位置を進めずに、囲まれていない値として同じ文字から処理
+					state = UNQUOTED;
+				}
+				break;
+			case UNQUOTED:
+			case QUOTE_IN_QUOTED:
+				if (c == DELIM) {
+					pos++;
+					endField();
+					state = FIELD_START;
+				} else if (multiLine && (c == '\n' || c == '\r')) {
+					pos++;
+					skipLf = (c == '\r');
+					endField();
+					return toArray();
+				} else if (state == QUOTE_IN_QUOTED && c == QUOTE) {
+					// 連続したダブルクォートは1つのダブルクォート
+					pos++;
+					flushRun();
+					field.append(QUOTE);
+					state = QUOTED;
+				} else {
+					appendUnquoted();
+					state = UNQUOTED;
+				}
+				break;
+			default:
+				// QUOTED
+				if (c == QUOTE) {
+					pos++;
+					state = QUOTE_IN_QUOTED;
+				} else {
+					appendQuoted();
+				}
+				break;
+			}
+		}
+		if (state == QUOTED) {
+			throw new TextFormatException("ダブルクォートが閉じられていません");
+		}
+		endField();
+		return toArray();
+	}
+
+	/**
+	 * 囲まれていない値の文字を、区切り文字か改行の直前までまとめて追加する.
+	 */
+	private void appendUnquoted() {
+		int start = pos;
+		while (pos < limit) {
+			char c = buf[pos];
+			if (c == DELIM || (multiLine && (c == '\n' || c == '\r'))) {
+				break;
+			}
+			pos++;
+		}
+		append(start, pos - start);
+	}
+
+	/**
+	 * 囲まれた値の文字を、ダブルクォートの直前までまとめて追加する.
+	 */
+	private void appendQuoted() {
+		int start = pos;
+		while (pos < limit && buf[pos] != QUOTE) {
+			pos++;
+		}
+		append(start, pos - start);
+	}
+
+	/**
+	 * バッファの区間を組み立て中の値に追加する.
+	 * <p>
+	 * 値がバッファの1区間のみで済む場合は、StringBuilderを経由せずに文字列を生成します.
+	 * </p>
+	 *
+	 * @param start
+	 *            開始位置
+	 * @param length
+	 *            文字数
+	 */
+	private void append(int start, int length) {
+		if (run == null && field.length() == 0) {
+			run = new String(buf, start, length);
+			return;
+		}
+		flushRun();
+		field.append(buf, start, length);
+	}
+
+	/**
+	 * 1区間のみの値を組み立て用に移す.
+	 */
+	private void flushRun() {
+		if (run != null) {
+			field.append(run);
+			run = null;
+		}
+	}
+
+	/**
+	 * 組み立て中の値を行データに追加する.
+	 */
+	private void endField() {
+		if (run != null) {
+			fields.add(run);
+			run = null;
+		} else {
+			fields.add(field.toString());
+			field.setLength(0);
+		}
+	}
+
+	/**
+	 * 組み立てた行データを配列にする.
+	 *
+	 * @return 行データ
+	 */
+	private String[] toArray() {
+		return fields.toArray(new String[fields.size()]);
+	}
+
+	/**
+	 * 未処理の文字が無ければバッファに読み込む.
+	 *
+	 * @return 未処理の文字がある場合はtrue.<br>
+	 *         最後まで読み込んだ場合はfalse.
+	 * @throws IOException
+	 *             読み込みに失敗した場合
+	 */
+	private boolean fill() throws IOException {
+		if (pos < limit) {
+			return true;
+		}
+		if (reader == null) {
+			return false;
+		}
+		int n;
+		do {
+			n = reader.read(buf, 0, buf.length);
+		} while (n == 0);
+		if (n < 0) {
+			pos = limit = 0;
+			return false;
+		}
+		pos = 0;
+		limit = n;
+		return true;
+	}
+}
@@ -0,0 +1,606 @@
+package jp.kt.text;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jp.kt.logger.ApplicationLogger;
+
+/**
+ * メモリに収まらない件数のテキストをソートする.<br>
+ * 複数のソート条件を指定可能.
+ * <p>
+ * {@link TextReader}から1行ずつ読み込み、メモリ使用量の上限に達するごとに<br>
+ * その分をソートして一時ファイル（ラン）に書き出し、最後に全てのランをマージして{@link TextWriter}に出力します.<br>
+ * ソート条件は{@link Sort}と同じで、同じ値の行は読み込んだ順を保ちます.<br>
+ * 全件がメモリの上限に収まる場合は一時ファイルを使用しません.<br>
+ * 一時ファイルは、途中で例外が発生した場合も含めてソートの終了時に全て削除します.<br>
+ * <br>
+ * 1列目を昇順、3列目を降順でソートする場合は、以下のようになります.
+ * </p>
+ * <blockquote>
+ *
+ * <pre style="font-size:small;">
+ * ExternalSort sort = new ExternalSort();
+ * sort.addCondition(0, SortType.STRING, SortOrder.ASC);
+ * sort.addCondition(2, SortType.NUMBER, SortOrder.DESC);
+ * sort.setMemoryLimit(256L * 1024 * 1024);
+ * try (TextReader reader = new TextReader(new CsvText(), &quot;/var/sample/in.csv&quot;, null);
+ * 		TextWriter writer = new TextWriter(new CsvText(), &quot;/var/sample/out.csv&quot;, null)) {
+ * 	sort.sort(reader, writer);
+ * }
+ * </pre>
+ *
+ * </blockquote>
+ *
+ * @author tatsuya.kumon
+ */
+public class ExternalSort {
+	/** ログ出力用Logger名 */
+	private static final String LOGGER_NAME = "ktExternalSort";
+
+	/** メモリ使用量の上限のデフォルト値（バイト） */
+	private static final long DEFAULT_MEMORY_LIMIT = 64L * 1024 * 1024;
+
+	/** 1回にマージするランの最大数 */
+	private static final int MAX_MERGE_FILES = 64;
+
+	/** ソート条件リスト */
+	private final List<SortCondition> conditionList = new ArrayList<SortCondition>();
+
+	/** メモリ使用量の上限（バイト） */
+	private long memoryLimit = DEFAULT_MEMORY_LIMIT;
+
+	/** 一時ファイルのディレクトリ */
+	private Path tempDirectory;
+
+	/** ランのソートに使用するスレッド数 */
+	private int parallelism = 1;
+
+	/**
+	 * ソート条件を追加.
+	 * <p>
+	 * このメソッドを実行した順番がソートの優先順位となります.
+	 * </p>
+	 *
+	 * @param index
+	 *            ソート対象の項目インデックス（最初は0）
+	 * @param type
+	 *            ソートするデータ型
+	 * @param order
+	 *            ソート順（昇順/降順）
+	 */
+	public void addCondition(int index, SortType type, SortOrder order) {
+		conditionList.add(new SortCondition(index, type, order));
+	}
+
+	/**
+	 * メモリ使用量の上限を設定する.
+	 * <p>
+	 * 読み込んだ行データの推定サイズがこの値に達するごとにランを書き出します.<br>
+	 * 並列にソートする場合は、スレッド数+1個のランを同時に保持するため、<br>
+	 * 1つのランの上限はこの値をスレッド数+1で割った値になります.<br>
+	 * デフォルトは64MBです.
+	 * </p>
+	 *
+	 * @param memoryLimit
+	 *            メモリ使用量の上限（バイト）
+	 */
+	public void setMemoryLimit(long memoryLimit) {
+		this.memoryLimit = memoryLimit;
+	}
+
+	/**
+	 * 一時ファイルのディレクトリを設定する.
+	 * <p>
+	 * デフォルトはシステムの一時ディレクトリ（java.io.tmpdir）です.
+	 * </p>
+	 *
+	 * @param tempDirectory
+	 *            一時ファイルのディレクトリ
+	 */
+	public void setTempDirectory(Path tempDirectory) {
+		this.tempDirectory = tempDirectory;
+	}
+
+	/**
+	 * ランのソートに使用するスレッド数を設定する.
+	 * <p>
+	 * 2以上を指定すると、読み込みと並行して、書き出すランのソートを別スレッドで行います.<br>
+	 * デフォルトは1で、読み込みと同じスレッドでソートします.
+	 * </p>
+	 *
+	 * @param parallelism
+	 *            スレッド数
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * ソート実行.
+	 * <p>
+	 * readerとwriterのcloseは呼び出し側で行ってください.
+	 * </p>
+	 *
+	 * @param reader
+	 *            ソート対象データ
+	 * @param writer
+	 *            ソート結果の出力先
+	 * @return ソートした行数
+	 * @throws IOException
+	 *             読み込み、出力、一時ファイルの操作に失敗した場合
+	 */
+	public long sort(TextReader reader, TextWriter writer) throws IOException {
+		final StringArrayComparator comparator = new StringArrayComparator(
+				conditionList);
+		int threads = Math.max(parallelism, 1);
+		long runLimit = Math.max(memoryLimit / (threads > 1 ? threads + 1 : 1),
+				1);
+		// 生成した全ての一時ファイル（終了時に削除する）
+		List<Path> tempFiles = Collections
+				.synchronizedList(new ArrayList<Path>());
+		List<Path> runs = new ArrayList<Path>();
+		List<Future<Path>> futures = new ArrayList<Future<Path>>();
+		ExecutorService executor = (threads > 1 ? createExecutor(threads)
+				: null);
+		try {
+			long count = 0;
+			List<String[]> buffer = new ArrayList<String[]>();
+			long size = 0;
+			String[] lineData;
+			while ((lineData = reader.readLine()) != null) {
+				buffer.add(lineData);
+				size += estimateSize(lineData);
+				count++;
+				if (size >= runLimit) {
+					// ランの書き出し
+					if (executor == null) {
+						runs.add(writeRun(buffer, tempFiles));
+					} else {
+						if (futures.size() - countDone(futures) >= threads) {
+							// ソート中のランがスレッド数に達している場合は待機
+							waitOldest(futures);
+						}
+						futures.add(executor.submit(createRunTask(buffer,
+								tempFiles)));
+					}
+					buffer = new ArrayList<String[]>();
+					size = 0;
+				}
+			}
+			for (Future<Path> future : futures) {
+				runs.add(getResult(future));
+			}
+			if (runs.isEmpty()) {
+				// 全件がメモリに収まった場合
+				SortKeys.sort(buffer, conditionList);
+				for (String[] line : buffer) {
+					writer.writeLine(line);
+				}
+				return count;
+			}
+			if (!buffer.isEmpty()) {
+				runs.add(writeRun(buffer, tempFiles));
+				buffer = null;
+			}
+			// ランの数が多い場合は段階的にマージ
+			while (runs.size() > MAX_MERGE_FILES) {
+				List<Path> merged = new ArrayList<Path>();
+				for (int i = 0; i < runs.size(); i += MAX_MERGE_FILES) {
+					List<Path> group = runs.subList(i,
+							Math.min(i + MAX_MERGE_FILES, runs.size()));
+					Path file = createTempFile(tempFiles);
+					merged.add(file);
+					try (RunWriter out = new RunWriter(file)) {
+						merge(group, comparator, out, null);
+					}
+					deleteQuietly(group, tempFiles);
+				}
+				runs = merged;
+			}
+			merge(runs, comparator, null, writer);
+			return count;
+		} finally {
+			if (executor != null) {
+				executor.shutdownNow();
+				// 書き出し中のランの一時ファイルも削除するため、終了を待つ
+				awaitQuietly(futures);
+			}
+			deleteQuietly(new ArrayList<Path>(tempFiles), tempFiles);
+		}
+	}
+
+	/**
+	 * 行データのメモリ使用量を推定する.
+	 *
+	 * @param lineData
+	 *            行データ
+	 * @return 推定サイズ（バイト）
+	 */
+	private static long estimateSize(String[] lineData) {
+		// 配列とListの参照、各Stringのオブジェクトと文字配列
+		long size = 16 + 8 + 4L * lineData.length;
+		for (String s : lineData) {
+			size += 40 + 2L * s.length();
+		}
+		return size;
+	}
+
+	/**
+	 * ソートしたランを一時ファイルに書き出す.
+	 *
+	 * @param buffer
+	 *            ランの行データ
+	 * @param tempFiles
+	 *            生成した一時ファイルを追加するList
+	 * @return 一時ファイル
+	 * @throws IOException
+	 *             書き出しに失敗した場合
+	 */
+	private Path writeRun(List<String[]> buffer, List<Path> tempFiles)
+			throws IOException {
+		SortKeys.sort(buffer, conditionList);
+		Path file = createTempFile(tempFiles);
+		try (RunWriter out = new RunWriter(file)) {
+			for (String[] lineData : buffer) {
+				out.write(lineData);
+			}
+		}
+		return file;
+	}
+
+	/**
+	 * ランをソートして書き出す処理を生成する.
+	 *
+	 * @param buffer
+	 *            ランの行データ
+	 * @param tempFiles
+	 *            生成した一時ファイルを追加するList
+	 * @return 一時ファイルを返す{@link Callable}
+	 */
+	private Callable<Path> createRunTask(final List<String[]> buffer,
+			final List<Path> tempFiles) {
+		return new Callable<Path>() {
+			@Override
+			public Path call() throws Exception {
+				return writeRun(buffer, tempFiles);
+			}
+		};
+	}
+
+	/**
+	 * ランのソート用のスレッドプールを生成する.
+	 *
+	 * @param threads
+	 *            スレッド数
+	 * @return {@link ExecutorService}オブジェクト
+	 */
+	private static ExecutorService createExecutor(int threads) {
+		final AtomicInteger threadNo = new AtomicInteger();
+		return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "ktExternalSort-"
+						+ threadNo.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * 完了したランの数を数える.
+	 *
+	 * @param futures
+	 *            ランの書き出し処理
+	 * @return 完了した数
+	 */
+	private static int countDone(List<Future<Path>> futures) {
+		int done = 0;
+		for (Future<Path> future : futures) {
+			if (future.isDone()) {
+				done++;
+			}
+		}
+		return done;
+	}
+
+	/**
+	 * 完了していない最も古いランの書き出しを待つ.
+	 *
+	 * @param futures
+	 *            ランの書き出し処理
+	 * @throws IOException
+	 *             書き出しに失敗した場合
+	 */
+	private static void waitOldest(List<Future<Path>> futures)
+			throws IOException {
+		for (Future<Path> future : futures) {
+			if (!future.isDone()) {
+				getResult(future);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * 全てのランの書き出しの終了を待つ.
+	 * <p>
+	 * 書き出しの失敗は呼び出し元で既に処理しているため、警告ログを出力して無視します.
+	 * </p>
+	 *
+	 * @param futures
+	 *            ランの書き出し処理
+	 */
+	private static void awaitQuietly(List<Future<Path>> futures) {
+		for (Future<Path> future : futures) {
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				new ApplicationLogger(LOGGER_NAME, ExternalSort.class)
+						.warnLog("A082", "ランの書き出しの終了待ちで割り込まれました", e);
+				return;
+			} catch (ExecutionException e) {
+				new ApplicationLogger(LOGGER_NAME, ExternalSort.class)
+						.warnLog("A082", "ランの書き出しに失敗しました", e.getCause());
+			} catch (CancellationException e) {
+				// 開始前に中止された
+			}
+		}
+	}
+
+	/**
+	 * ランの書き出し結果を取得する.
+	 *
+	 * @param future
+	 *            ランの書き出し処理
+	 * @return 一時ファイル
+	 * @throws IOException
+	 *             書き出しに失敗した場合
+	 */
+	private static Path getResult(Future<Path> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("ランの書き出し待ちで割り込まれました", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("ランの書き出しに失敗しました", e.getCause());
+		}
+	}
+
+	/**
+	 * ランをマージする.
+	 * <p>
+	 * 同じ値の行は、先のランの行を先に出力します.
+	 * </p>
+	 *
+	 * @param runs
+	 *            ランの一時ファイル（読み込んだ順）
+	 * @param comparator
+	 *            Comparator
+	 * @param runOut
+	 *            出力先のラン.writerに出力する場合はnull.
+	 * @param writer
+	 *            出力先.ランに出力する場合はnull.
+	 * @throws IOException
+	 *             読み込み、出力に失敗した場合
+	 */
+	private static void merge(List<Path> runs,
+			final StringArrayComparator comparator, RunWriter runOut,
+			TextWriter writer) throws IOException {
+		PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>(
+				Math.max(runs.size(), 1), new Comparator<RunReader>() {
+					@Override
+					public int compare(RunReader o1, RunReader o2) {
+						int result = comparator.compare(o1.current, o2.current);
+						return (result != 0 ? result : o1.runNo - o2.runNo);
+					}
+				});
+		List<RunReader> readers = new ArrayList<RunReader>();
+		try {
+			for (int i = 0; i < runs.size(); i++) {
+				RunReader in = new RunReader(runs.get(i), i);
+				readers.add(in);
+				if (in.next()) {
+					queue.add(in);
+				}
+			}
+			RunReader in;
+			while ((in = queue.poll()) != null) {
+				if (runOut != null) {
+					runOut.write(in.current);
+				} else {
+					writer.writeLine(in.current);
+				}
+				if (in.next()) {
+					queue.add(in);
+				}
+			}
+		} finally {
+			for (RunReader reader : readers) {
+				reader.close();
+			}
+		}
+	}
+
+	/**
+	 * 一時ファイルを生成する.
+	 *
+	 * @param tempFiles
+	 *            生成した一時ファイルを追加するList
+	 * @return 一時ファイル
+	 * @throws IOException
+	 *             生成に失敗した場合
+	 */
+	private Path createTempFile(List<Path> tempFiles) throws IOException {
+		Path file;
+		if (tempDirectory == null) {
+			file = Files.createTempFile("ktsort", ".run");
+		} else {
+			file = Files.createTempFile(tempDirectory, "ktsort", ".run");
+		}
+		tempFiles.add(file);
+		return file;
+	}
+
+	/**
+	 * 例外を無視して一時ファイルを削除する.
+	 * <p>
+	 * 削除に失敗した場合は警告ログを出力します.
+	 * </p>
+	 *
+	 * @param files
+	 *            削除する一時ファイル
+	 * @param tempFiles
+	 *            削除した一時ファイルを除去するList
+	 */
+	private static void deleteQuietly(List<Path> files, List<Path> tempFiles) {
+		for (Path file : files) {
+			try {
+				Files.deleteIfExists(file);
+				tempFiles.remove(file);
+			} catch (IOException e) {
+				new ApplicationLogger(LOGGER_NAME, ExternalSort.class)
+						.warnLog("A082", "一時ファイルの削除に失敗しました [" + file + "]",
+								e);
+			}
+		}
+	}
+
+	/**
+	 * ランの一時ファイルへの書き出し.
+	 * <p>
+	 * 行ごとに項目数、項目ごとにUTF-8のバイト数とバイト列を書き出します.
+	 * </p>
+	 *
+	 * @author tatsuya.kumon
+	 */
+	private static final class RunWriter implements Closeable {
+		/** 出力先 */
+		private final DataOutputStream out;
+
+		/**
+		 * コンストラクタ.
+		 *
+		 * @param file
+		 *            一時ファイル
+		 * @throws IOException
+		 *             ファイルを開けなかった場合
+		 */
+		private RunWriter(Path file) throws IOException {
+			this.out = new DataOutputStream(new BufferedOutputStream(
+					Files.newOutputStream(file), 65536));
+		}
+
+		/**
+		 * 行データを書き出す.
+		 *
+		 * @param lineData
+		 *            行データ
+		 * @throws IOException
+		 *             書き出しに失敗した場合
+		 */
+		private void write(String[] lineData) throws IOException {
+			out.writeInt(lineData.length);
+			for (String s : lineData) {
+				byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			out.close();
+		}
+	}
+
+	/**
+	 * ランの一時ファイルからの読み込み.
+	 *
+	 * @author tatsuya.kumon
+	 */
+	private static final class RunReader implements Closeable {
+		/** 読み込み元 */
+		private final DataInputStream in;
+
+		/** ランの番号（読み込んだ順） */
+		private final int runNo;
+
+		/** 現在の行データ */
+		private String[] current;
+
+		/**
+		 * コンストラクタ.
+		 *
+		 * @param file
+		 *            一時ファイル
+		 * @param runNo
+		 *            ランの番号
+		 * @throws IOException
+		 *             ファイルを開けなかった場合
+		 */
+		private RunReader(Path file, int runNo) throws IOException {
+			this.in = new DataInputStream(new BufferedInputStream(
+					Files.newInputStream(file), 65536));
+			this.runNo = runNo;
+		}
+
+		/**
+		 * 次の行データを読み込む.
+		 *
+		 * @return 読み込んだ場合はtrue.<br>
+		 *         最後まで読み込んだ場合はfalse.
+		 * @throws IOException
+		 *             読み込みに失敗した場合
+		 */
+		private boolean next() throws IOException {
+			int length;
+			try {
+				length = in.readInt();
+			} catch (EOFException e) {
+				current = null;
+				return false;
+			}
+			String[] lineData = new String[length];
+			for (int i = 0; i < length; i++) {
+				byte[] bytes = new byte[in.readInt()];
+				in.readFully(bytes);
+				lineData[i] = new String(bytes, StandardCharsets.UTF_8);
+			}
+			current = lineData;
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+}
@@ -28,15 +28,12 @@ public final class PlainText extends BaseText {
 	}
 
 	@Override
-	public String getLineText(int lineIndex) {
-		// 指定行のデータを取得
-		String[] data = super.getLineData(lineIndex);
+	String formatLine(String[] data) {
 		return data[0];
 	}
 
 	@Override
-	public void addLineText(String lineText) {
-		// 行データとしてセットする
-		super.addLineData(new String[] { lineText });
+	String[] parseLine(String lineText) {
+		return new String[] { lineText };
 	}
 }
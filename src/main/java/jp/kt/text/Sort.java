@@ -1,8 +1,10 @@
 package jp.kt.text;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.PriorityQueue;
 
 /**
  * {@link BaseText}オブジェクト内のデータをソートする.<br>
@@ -71,6 +73,24 @@ import java.util.List;
  * "net","くもん","40"<br>
  * "sys","かとう","75"<br>
  * "sys","ふじた","70"<br>
+ * <hr style="border-style:dashed">
+ * <p>
+ * 【サンプル3：上位の行のみの取得】<br>
+ * <br>
+ * TSVファイル/var/sample/sample.tsvの3番目が大きい順に、上位100行のみ取得したい。<br>
+ * ファイル全体をメモリに読み込まずに、読み込みながら上位100行を保持します。<br>
+ * <blockquote>
+ *
+ * <pre style="font-size:small;">
+ * Sort sort = new Sort();
+ * sort.addCondition(2, SortType.NUMBER, SortOrder.DESC);
+ * List&lt;String[]&gt; top;
+ * try (TextReader reader = new TextReader(new TsvText(), &quot;/var/sample/sample.tsv&quot;, null)) {
+ * 	top = sort.top(reader, 100);
+ * }
+ * </pre>
+ *
+ * </blockquote> 既に{@link BaseText}に読み込んでいる場合は{@link #top(int)}を使用します。<br>
  *
  * @author tatsuya.kumon
  */
@@ -81,6 +101,17 @@ public class Sort {
 	/** ソート条件リスト */
 	private List<SortCondition> conditionList;
 
+	/**
+	 * コンストラクタ.
+	 * <p>
+	 * {@link #top(TextReader, int)}で読み込みながら上位の行を取得する場合に使用します.<br>
+	 * ソート対象データが無いため、{@link #sort()}と{@link #top(int)}は使用できません.
+	 * </p>
+	 */
+	public Sort() {
+		this(null);
+	}
+
 	/**
 	 * コンストラクタ.
 	 *
@@ -113,10 +144,160 @@ public class Sort {
 
 	/**
 	 * ソート実行.
+	 * <p>
+	 * ソートキーを行ごとに1度だけ取り出してからソートします.<br>
+	 * 件数が多い場合は複数のスレッドで並列にソートします.<br>
+	 * 同じ値の行は元の順を保ちます.
+	 * </p>
+	 *
+	 * @throws IllegalStateException
+	 *             ソート対象データを指定せずに生成した場合
 	 */
 	public void sort() {
-		StringArrayComparator comparator = new StringArrayComparator(
-				conditionList);
-		Collections.sort(text.getContent(), comparator);
+		SortKeys.sort(getContent(), conditionList);
+	}
+
+	/**
+	 * ソート順で上位の行を取得する.
+	 * <p>
+	 * 全件をソートせず、上位limit行のみを保持しながら探すため、件数が多い場合もソートより高速です.<br>
+	 * ソート対象データの並び順は変更しません.<br>
+	 * 同じ値の行は元の順を保ちます.
+	 * </p>
+	 *
+	 * @param limit
+	 *            取得する行数
+	 * @return 上位の行データのList（ソート順）
+	 * @throws IllegalStateException
+	 *             ソート対象データを指定せずに生成した場合
+	 */
+	public List<String[]> top(int limit) {
+		List<String[]> content = getContent();
+		if (limit >= content.size()) {
+			// 全件が対象の場合はソートと同じ
+			List<String[]> result = new ArrayList<String[]>(content);
+			SortKeys.sort(result, conditionList);
+			return result;
+		}
+		TopSelector selector = new TopSelector(conditionList, limit);
+		for (String[] lineData : content) {
+			selector.add(lineData);
+		}
+		return selector.getResult();
+	}
+
+	/**
+	 * 読み込みながらソート順で上位の行を取得する.
+	 * <p>
+	 * 上位limit行のみを保持するため、全件をメモリに読み込みません.<br>
+	 * 同じ値の行は先に読み込んだ行を上位とします.<br>
+	 * readerのcloseは呼び出し側で行ってください.
+	 * </p>
+	 *
+	 * @param reader
+	 *            ソート対象データ
+	 * @param limit
+	 *            取得する行数
+	 * @return 上位の行データのList（ソート順）
+	 * @throws IOException
+	 *             読み込みに失敗した場合
+	 */
+	public List<String[]> top(TextReader reader, int limit) throws IOException {
+		TopSelector selector = new TopSelector(conditionList, limit);
+		String[] lineData;
+		while ((lineData = reader.readLine()) != null) {
+			selector.add(lineData);
+		}
+		return selector.getResult();
+	}
+
+	/**
+	 * ソート対象データの行データのListを取得する.
+	 *
+	 * @return 行データのList
+	 * @throws IllegalStateException
+	 *             ソート対象データを指定せずに生成した場合
+	 */
+	private List<String[]> getContent() {
+		if (text == null) {
+			throw new IllegalStateException(
+					"ソート対象データが指定されていません.top(TextReader, int)以外はSort(BaseText)で生成してください");
+		}
+		return text.getContent();
+	}
+
+	/**
+	 * 上位の行の選択.
+	 * <p>
+	 * 上位limit行をヒープに保持し、ヒープの先頭には保持している中で最も下位の行を置きます.<br>
+	 * 追加した行がその行より上位の場合のみ入れ替えるため、O(n log limit)で選択できます.<br>
+	 * ソートキーは行を追加する時点で1度だけ抽出します（{@link SortKeys.RowComparator}）.
+	 * </p>
+	 *
+	 * @author tatsuya.kumon
+	 */
+	private static final class TopSelector {
+		/** ヒープの初期サイズの上限 */
+		private static final int INITIAL_CAPACITY = 1024;
+
+		/** 取得する行数 */
+		private final int limit;
+
+		/** 上位の行（先頭が最も下位） */
+		private final PriorityQueue<SortKeys.Row> heap;
+
+		/** 行の並び順（同じ値は追加した順） */
+		private final SortKeys.RowComparator comparator;
+
+		/**
+		 * コンストラクタ.
+		 *
+		 * @param conditionList
+		 *            {@link SortCondition}のList
+		 * @param limit
+		 *            取得する行数
+		 */
+		private TopSelector(List<SortCondition> conditionList, int limit) {
+			this.limit = limit;
+			this.comparator = new SortKeys.RowComparator(conditionList);
+			this.heap = new PriorityQueue<SortKeys.Row>(Math.max(
+					Math.min(limit, INITIAL_CAPACITY), 1),
+					Collections.reverseOrder(comparator));
+		}
+
+		/**
+		 * 行を追加する.
+		 *
+		 * @param lineData
+		 *            行データ
+		 */
+		private void add(String[] lineData) {
+			if (limit <= 0) {
+				return;
+			}
+			SortKeys.Row row = comparator.toRow(lineData);
+			if (heap.size() < limit) {
+				heap.add(row);
+			} else if (comparator.compare(row, heap.peek()) < 0) {
+				// 保持している最も下位の行より上位の場合のみ入れ替える
+				heap.poll();
+				heap.add(row);
+			}
+		}
+
+		/**
+		 * 選択した行を取得する.
+		 *
+		 * @return 上位の行データのList（ソート順）
+		 */
+		private List<String[]> getResult() {
+			List<SortKeys.Row> rows = new ArrayList<SortKeys.Row>(heap);
+			Collections.sort(rows, comparator);
+			List<String[]> result = new ArrayList<String[]>(rows.size());
+			for (SortKeys.Row row : rows) {
+				result.add(row.getLineData());
+			}
+			return result;
+		}
 	}
 }
@@ -0,0 +1,376 @@
+package jp.kt.text;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * ソートキーを事前に抽出してソートするクラス.
+ * <p>
+ * 行データからソート条件の項目を1度だけ取り出し、数値は double の配列、文字列は String の配列に保持します.<br>
+ * 比較のたびに数値を変換しないため、{@link StringArrayComparator}より高速です.<br>
+ * 行の番号を安定なマージソートで並べ替えてから、行データを並べ替えます.<br>
+ * 件数が多く、複数のCPUが使用できる場合は、{@link ForkJoinPool}で並列にソートします.<br>
+ * 並び順は{@link StringArrayComparator}と同じで、同じ値の行は元の順を保ちます.<br>
+ * 全行のListが無い場合（読み込みながら上位の行を選択する場合など）は、<br>
+ * {@link RowComparator}で1行ずつソートキーを抽出します.
+ * </p>
+ *
+ * @author tatsuya.kumon
+ */
+final class SortKeys {
+	/** 挿入ソートに切り替える件数 */
+	private static final int INSERTION_THRESHOLD = 16;
+
+	/** 並列ソートで分割をやめる件数 */
+	private static final int PARALLEL_THRESHOLD = 8192;
+
+	/** 条件ごとのソートキー（double[]かString[]） */
+	private final Object[] keys;
+
+	/** 条件ごとの昇順フラグ */
+	private final boolean[] asc;
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * @param rows
+	 *            行データのList
+	 * @param conditionList
+	 *            {@link SortCondition}のList
+	 */
+	private SortKeys(List<String[]> rows, List<SortCondition> conditionList) {
+		int size = rows.size();
+		keys = new Object[conditionList.size()];
+		asc = new boolean[conditionList.size()];
+		for (int i = 0; i < conditionList.size(); i++) {
+			SortCondition c = conditionList.get(i);
+			int index = c.getIndex();
+			if (c.getType().equals(SortType.NUMBER)) {
+				// 数値ソート
+				double[] values = new double[size];
+				for (int row = 0; row < size; row++) {
+					values[row] = Double.parseDouble(rows.get(row)[index]);
+				}
+				keys[i] = values;
+			} else {
+				// 文字列ソート
+				String[] values = new String[size];
+				for (int row = 0; row < size; row++) {
+					values[row] = rows.get(row)[index];
+				}
+				keys[i] = values;
+			}
+			asc[i] = c.getOrder().isAsk();
+		}
+	}
+
+	/**
+	 * 行データのListをソートする.
+	 *
+	 * @param rows
+	 *            行データのList
+	 * @param conditionList
+	 *            {@link SortCondition}のList
+	 */
+	static void sort(List<String[]> rows, List<SortCondition> conditionList) {
+		int size = rows.size();
+		if (size < 2 || conditionList.isEmpty()) {
+			return;
+		}
+		SortKeys sortKeys = new SortKeys(rows, conditionList);
+		int[] order = new int[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+		}
+		int[] work = new int[size];
+		if (size > PARALLEL_THRESHOLD
+				&& Runtime.getRuntime().availableProcessors() > 1) {
+			ForkJoinPool.commonPool().invoke(
+					sortKeys.new ParallelSort(order, work, 0, size));
+		} else {
+			sortKeys.mergeSort(order, work, 0, size);
+		}
+		// 並べ替えた行番号の順に行データを入れ替える
+		String[][] copy = rows.toArray(new String[size][]);
+		for (int i = 0; i < size; i++) {
+			rows.set(i, copy[order[i]]);
+		}
+	}
+
+	/**
+	 * 行の大小比較.
+	 *
+	 * @param row1
+	 *            比較対象の最初の行番号
+	 * @param row2
+	 *            比較対象の 2 番目の行番号
+	 * @return 最初の行が 2 番目の行より小さい場合は負の整数、両方が等しい場合は 0、最初の行が 2 番目の行より大きい場合は正の整数
+	 */
+	private int compare(int row1, int row2) {
+		for (int i = 0; i < keys.length; i++) {
+			int result;
+			if (keys[i] instanceof double[]) {
+				double[] values = (double[]) keys[i];
+				result = Double.compare(values[row1], values[row2]);
+			} else {
+				String[] values = (String[]) keys[i];
+				result = values[row1].compareTo(values[row2]);
+			}
+			if (result != 0) {
+				return (asc[i] ? result : result * -1);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * 行番号の配列の範囲をマージソートする.
+	 *
+	 * @param order
+	 *            行番号の配列
+	 * @param work
+	 *            作業用の配列
+	 * @param from
+	 *            範囲の開始位置
+	 * @param to
+	 *            範囲の終了位置（この位置は含まない）
+	 */
+	private void mergeSort(int[] order, int[] work, int from, int to) {
+		if (to - from <= INSERTION_THRESHOLD) {
+			insertionSort(order, from, to);
+			return;
+		}
+		int mid = (from + to) >>> 1;
+		mergeSort(order, work, from, mid);
+		mergeSort(order, work, mid, to);
+		merge(order, work, from, mid, to);
+	}
+
+	/**
+	 * 行番号の配列の範囲を挿入ソートする.
+	 *
+	 * @param order
+	 *            行番号の配列
+	 * @param from
+	 *            範囲の開始位置
+	 * @param to
+	 *            範囲の終了位置（この位置は含まない）
+	 */
+	private void insertionSort(int[] order, int from, int to) {
+		for (int i = from + 1; i < to; i++) {
+			int row = order[i];
+			int j = i - 1;
+			// 同じ値の行は越えないので安定
+			while (j >= from && compare(order[j], row) > 0) {
+				order[j + 1] = order[j];
+				j--;
+			}
+			order[j + 1] = row;
+		}
+	}
+
+	/**
+	 * ソート済みの2つの範囲をマージする.
+	 *
+	 * @param order
+	 *            行番号の配列
+	 * @param work
+	 *            作業用の配列
+	 * @param from
+	 *            前半の開始位置
+	 * @param mid
+	 *            後半の開始位置
+	 * @param to
+	 *            後半の終了位置（この位置は含まない）
+	 */
+	private void merge(int[] order, int[] work, int from, int mid, int to) {
+		if (compare(order[mid - 1], order[mid]) <= 0) {
+			// 既に並んでいる
+			return;
+		}
+		System.arraycopy(order, from, work, from, to - from);
+		int i = from;
+		int j = mid;
+		for (int k = from; k < to; k++) {
+			// 同じ値の場合は前半を先にして安定にする
+			if (j >= to || (i < mid && compare(work[i], work[j]) <= 0)) {
+				order[k] = work[i++];
+			} else {
+				order[k] = work[j++];
+			}
+		}
+	}
+
+	/**
+	 * ソートキーを抽出した行.
+	 *
+	 * @author tatsuya.kumon
+	 */
+	static final class Row {
+		/** 行データ */
+		private final String[] lineData;
+
+		/** 条件ごとの数値のソートキー（文字列の条件では未使用） */
+		private final double[] numbers;
+
+		/** 条件ごとの文字列のソートキー（数値の条件ではnull） */
+		private final String[] strings;
+
+		/** 抽出した順番 */
+		private final long sequence;
+
+		/**
+		 * コンストラクタ.
+		 *
+		 * @param lineData
+		 *            行データ
+		 * @param size
+		 *            条件の数
+		 * @param sequence
+		 *            抽出した順番
+		 */
+		private Row(String[] lineData, int size, long sequence) {
+			this.lineData = lineData;
+			this.numbers = new double[size];
+			this.strings = new String[size];
+			this.sequence = sequence;
+		}
+
+		/**
+		 * 行データを取得する.
+		 *
+		 * @return 行データ
+		 */
+		String[] getLineData() {
+			return lineData;
+		}
+	}
+
+	/**
+	 * 1行ずつソートキーを抽出し、{@link Row}を比較するクラス.
+	 * <p>
+	 * 数値は抽出時に1度だけ変換するため、比較のたびに変換しません.<br>
+	 * 同じ値の行は先に抽出した行を小さいとします.
+	 * </p>
+	 *
+	 * @author tatsuya.kumon
+	 */
+	static final class RowComparator implements Comparator<Row> {
+		/** 条件ごとの項目インデックス */
+		private final int[] indexes;
+
+		/** 条件ごとの数値フラグ */
+		private final boolean[] number;
+
+		/** 条件ごとの昇順フラグ */
+		private final boolean[] asc;
+
+		/** 抽出した行数 */
+		private long sequence;
+
+		/**
+		 * コンストラクタ.
+		 *
+		 * @param conditionList
+		 *            {@link SortCondition}のList
+		 */
+		RowComparator(List<SortCondition> conditionList) {
+			int size = conditionList.size();
+			indexes = new int[size];
+			number = new boolean[size];
+			asc = new boolean[size];
+			for (int i = 0; i < size; i++) {
+				SortCondition c = conditionList.get(i);
+				indexes[i] = c.getIndex();
+				number[i] = c.getType().equals(SortType.NUMBER);
+				asc[i] = c.getOrder().isAsk();
+			}
+		}
+
+		/**
+		 * 行データからソートキーを抽出する.
+		 *
+		 * @param lineData
+		 *            行データ
+		 * @return {@link Row}オブジェクト
+		 */
+		Row toRow(String[] lineData) {
+			Row row = new Row(lineData, indexes.length, sequence++);
+			for (int i = 0; i < indexes.length; i++) {
+				if (number[i]) {
+					row.numbers[i] = Double.parseDouble(lineData[indexes[i]]);
+				} else {
+					row.strings[i] = lineData[indexes[i]];
+				}
+			}
+			return row;
+		}
+
+		@Override
+		public int compare(Row row1, Row row2) {
+			for (int i = 0; i < indexes.length; i++) {
+				int result = (number[i] ? Double.compare(row1.numbers[i],
+						row2.numbers[i]) : row1.strings[i]
+						.compareTo(row2.strings[i]));
+				if (result != 0) {
+					return (asc[i] ? result : result * -1);
+				}
+			}
+			return Long.compare(row1.sequence, row2.sequence);
+		}
+	}
+
+	/**
+	 * 並列のマージソート.
+	 *
+	 * @author tatsuya.kumon
+	 */
+	private final class ParallelSort extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		/** 行番号の配列 */
+		private final int[] order;
+
+		/** 作業用の配列 */
+		private final int[] work;
+
+		/** 範囲の開始位置 */
+		private final int from;
+
+		/** 範囲の終了位置（この位置は含まない） */
+		private final int to;
+
+		/**
+		 * コンストラクタ.
+		 *
+		 * @param order
+		 *            行番号の配列
+		 * @param work
+		 *            作業用の配列
+		 * @param from
+		 *            範囲の開始位置
+		 * @param to
+		 *            範囲の終了位置（この位置は含まない）
+		 */
+		private ParallelSort(int[] order, int[] work, int from, int to) {
+			this.order = order;
+			this.work = work;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= PARALLEL_THRESHOLD) {
+				mergeSort(order, work, from, to);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new ParallelSort(order, work, from, mid),
+					new ParallelSort(order, work, mid, to));
+			merge(order, work, from, mid, to);
+		}
+	}
+}
@@ -40,8 +40,8 @@ class StringArrayComparator implements Comparator<String[]> {
 				result = o1[c.getIndex()].compareTo(o2[c.getIndex()]);
 			} else if (c.getType().equals(SortType.NUMBER)) {
 				// 数値ソート
-				result = new Double(o1[c.getIndex()]).compareTo(new Double(o2[c
-						.getIndex()]));
+				result = Double.compare(Double.parseDouble(o1[c.getIndex()]),
+						Double.parseDouble(o2[c.getIndex()]));
 			}
 			result = (c.getOrder().isAsk() ? result : result * -1);
 		}
@@ -21,4 +21,14 @@ public class TextFormatException extends RuntimeException {
 	public TextFormatException(Exception e) {
 		super(e);
 	}
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * @param message
+	 *            詳細メッセージ
+	 */
+	public TextFormatException(String message) {
+		super(message);
+	}
 }
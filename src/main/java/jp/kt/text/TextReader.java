@@ -0,0 +1,170 @@
+package jp.kt.text;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * テキストを1行ずつ読み込むクラス.
+ * <p>
+ * {@link BaseText}の子クラスと同じ形式で、読み込み元から行データを直接読み込みます.<br>
+ * 全行をメモリに保持しないため、大量件数の読み込みでもメモリ使用量は一定です.<br>
+ * 読み込み元はReader、InputStream、ファイルのいずれかで、<br>
+ * 読み込み形式は{@link CsvText}、{@link CsvForExcelText}、{@link TsvText}、{@link PlainText}
+ * のインスタンスで指定します.<br>
+ * <br>
+ * try (TextReader reader = new TextReader(new CsvText(), "/tmp/in.csv",
+ * "MS932")) {<br>
+ * &nbsp;&nbsp;String[] lineData;<br>
+ * &nbsp;&nbsp;while ((lineData = reader.readLine()) != null) {<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;…<br>
+ * &nbsp;&nbsp;}<br>
+ * }<br>
+ * <br>
+ * 行の区切りは改行コードです.<br>
+ * CSV形式の場合、ダブルクォートで囲まれた中の改行は値の一部として扱います.
+ * </p>
+ *
+ * @author tatsuya.kumon
+ */
+public final class TextReader implements Closeable {
+	/** 読み込み形式 */
+	private final BaseText format;
+
+	/** 読み込み元 */
+	private final Reader reader;
+
+	/** 1行ずつの読み込み（CSV形式以外） */
+	private final BufferedReader lineReader;
+
+	/** CSV形式の分割（CSV形式の場合のみ） */
+	private final CsvTokenizer tokenizer;
+
+	/** 読み込んだ行数 */
+	private int lineCount;
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * @param format
+	 *            読み込み形式（{@link CsvText}などのインスタンス）
+	 * @param reader
+	 *            読み込み元
+	 */
+	public TextReader(BaseText format, Reader reader) {
+		this.format = format;
+		this.reader = reader;
+		if (format instanceof CsvBaseText) {
+			// ダブルクォートで囲まれた改行を考慮するため、改行ではなくCSVとして区切る
+			this.lineReader = null;
+			this.tokenizer = new CsvTokenizer(reader);
+		} else {
+			this.lineReader = (reader instanceof BufferedReader ? (BufferedReader) reader
+					: new BufferedReader(reader));
+			this.tokenizer = null;
+		}
+	}
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * @param format
+	 *            読み込み形式（{@link CsvText}などのインスタンス）
+	 * @param filePath
+	 *            読み込むファイルのパス
+	 * @param charset
+	 *            文字コード（MS932など）.未指定の場合はkt.propertiesのデフォルト文字コード.
+	 * @throws IOException
+	 *             ファイルを開けなかった場合
+	 */
+	public TextReader(BaseText format, String filePath, String charset)
+			throws IOException {
+		this(format, new FileInputStream(filePath), charset);
+	}
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * @param format
+	 *            読み込み形式（{@link CsvText}などのインスタンス）
+	 * @param path
+	 *            読み込むファイルのパス
+	 * @param charset
+	 *            文字コード（MS932など）.未指定の場合はkt.propertiesのデフォルト文字コード.
+	 * @throws IOException
+	 *             ファイルを開けなかった場合
+	 */
+	public TextReader(BaseText format, Path path, String charset)
+			throws IOException {
+		this(format, Files.newInputStream(path), charset);
+	}
+
+	/**
+	 * コンストラクタ.
+	 * <p>
+	 * closeするとInputStreamもcloseします.
+	 * </p>
+	 *
+	 * @param format
+	 *            読み込み形式（{@link CsvText}などのインスタンス）
+	 * @param in
+	 *            読み込み元
+	 * @param charset
+	 *            文字コード（MS932など）.未指定の場合はkt.propertiesのデフォルト文字コード.
+	 * @throws UnsupportedEncodingException
+	 *             文字コードが不正な場合
+	 */
+	public TextReader(BaseText format, InputStream in, String charset)
+			throws UnsupportedEncodingException {
+		this(format, new InputStreamReader(in, TextWriter.toCharset(charset)));
+	}
+
+	/**
+	 * 1行分の行データを読み込む.
+	 * <p>
+	 * テキスト形式によっては、不正な行を読み込むと{@link TextFormatException}が発生する可能性があります.
+	 * </p>
+	 *
+	 * @return 行データ.<br>
+	 *         最後まで読み込んだ場合はnull.
+	 * @throws IOException
+	 *             読み込みに失敗した場合
+	 */
+	public String[] readLine() throws IOException {
+		String[] lineData;
+		if (tokenizer != null) {
+			lineData = tokenizer.next();
+		} else {
+			String line = lineReader.readLine();
+			lineData = (line == null ? null : format.parseLine(line));
+		}
+		if (lineData != null) {
+			lineCount++;
+		}
+		return lineData;
+	}
+
+	/**
+	 * 読み込んだ行数を取得する.
+	 * <p>
+	 * CSV形式で値に改行を含む場合も、行データ1つを1行と数えます.
+	 * </p>
+	 *
+	 * @return 読み込んだ行数
+	 */
+	public int getLineCount() {
+		return lineCount;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+}
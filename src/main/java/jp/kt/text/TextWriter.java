@@ -0,0 +1,175 @@
+package jp.kt.text;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import jp.kt.prop.KtProperties;
+import jp.kt.tool.Validator;
+
+/**
+ * テキストを1行ずつ出力するクラス.
+ * <p>
+ * {@link BaseText}の子クラスと同じ形式で、行データをWriter、OutputStream、ファイルに直接出力します.<br>
+ * 全行をメモリに保持しないため、大量件数の出力でもメモリ使用量は一定です.<br>
+ * 出力形式は{@link CsvText}、{@link CsvForExcelText}、{@link TsvText}、{@link PlainText}
+ * のインスタンスで指定します.<br>
+ * <br>
+ * try (TextWriter writer = new TextWriter(new CsvText(), "/tmp/out.csv",
+ * "MS932")) {<br>
+ * &nbsp;&nbsp;writer.writeLine(new Object[] { "ID", "NAME" });<br>
+ * }<br>
+ * <br>
+ * 出力内容は{@link BaseText#getAllText()}と同じく、最終行には改行は付きません.
+ * </p>
+ *
+ * @author tatsuya.kumon
+ */
+public final class TextWriter implements Closeable, Flushable {
+	/** 出力形式 */
+	private final BaseText format;
+
+	/** 出力先 */
+	private final Writer writer;
+
+	/** 改行コード */
+	private final String lineSeparator = System.getProperty("line.separator");
+
+	/** 出力した行数 */
+	private int lineCount;
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * @param format
+	 *            出力形式（{@link CsvText}などのインスタンス）
+	 * @param writer
+	 *            出力先
+	 */
+	public TextWriter(BaseText format, Writer writer) {
+		this.format = format;
+		this.writer = (writer instanceof BufferedWriter ? writer
+				: new BufferedWriter(writer));
+	}
+
+	/**
+	 * コンストラクタ.
+	 * <p>
+	 * 既にファイルが存在する場合は上書きします.
+	 * </p>
+	 *
+	 * @param format
+	 *            出力形式（{@link CsvText}などのインスタンス）
+	 * @param filePath
+	 *            出力ファイルのパス
+	 * @param charset
+	 *            文字コード（MS932など）.未指定の場合はkt.propertiesのデフォルト文字コード.
+	 * @throws IOException
+	 *             ファイルを開けなかった場合
+	 */
+	public TextWriter(BaseText format, String filePath, String charset)
+			throws IOException {
+		this(format, new FileOutputStream(filePath), charset);
+	}
+
+	/**
+	 * コンストラクタ.
+	 * <p>
+	 * 既にファイルが存在する場合は上書きします.
+	 * </p>
+	 *
+	 * @param format
+	 *            出力形式（{@link CsvText}などのインスタンス）
+	 * @param path
+	 *            出力ファイルのパス
+	 * @param charset
+	 *            文字コード（MS932など）.未指定の場合はkt.propertiesのデフォルト文字コード.
+	 * @throws IOException
+	 *             ファイルを開けなかった場合
+	 */
+	public TextWriter(BaseText format, Path path, String charset)
+			throws IOException {
+		this(format, Files.newOutputStream(path), charset);
+	}
+
+	/**
+	 * コンストラクタ.
+	 * <p>
+	 * closeするとOutputStreamもcloseします.
+	 * </p>
+	 *
+	 * @param format
+	 *            出力形式（{@link CsvText}などのインスタンス）
+	 * @param out
+	 *            出力先
+	 * @param charset
+	 *            文字コード（MS932など）.未指定の場合はkt.propertiesのデフォルト文字コード.
+	 * @throws UnsupportedEncodingException
+	 *             文字コードが不正な場合
+	 */
+	public TextWriter(BaseText format, OutputStream out, String charset)
+			throws UnsupportedEncodingException {
+		this(format, new OutputStreamWriter(out, toCharset(charset)));
+	}
+
+	/**
+	 * 文字コードが未指定の場合はデフォルト文字コードにする.
+	 *
+	 * @param charset
+	 *            文字コード
+	 * @return 文字コード
+	 */
+	static String toCharset(String charset) {
+		if (Validator.isEmpty(charset)) {
+			return KtProperties.getInstance().getDefaultCharset();
+		}
+		return charset;
+	}
+
+	/**
+	 * 行データを出力する.
+	 * <p>
+	 * nullは空文字として出力します.
+	 * </p>
+	 *
+	 * @param lineData
+	 *            行データ
+	 * @throws IOException
+	 *             出力に失敗した場合
+	 */
+	public void writeLine(Object[] lineData) throws IOException {
+		// 最終行に改行を付けないよう、2行目以降は前に改行を付ける
+		if (lineCount > 0) {
+			writer.write(lineSeparator);
+		}
+		writer.write(format.formatLine(BaseText.toLineData(lineData)));
+		lineCount++;
+	}
+
+	/**
+	 * 出力した行数を取得する.
+	 *
+	 * @return 出力した行数
+	 */
+	public int getLineCount() {
+		return lineCount;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		writer.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		writer.close();
+	}
+}
@@ -36,9 +36,7 @@ public final class TsvText extends BaseText {
 	}
 
 	@Override
-	public String getLineText(int lineIndex) {
-		// 指定行のデータを取得
-		String[] data = super.getLineData(lineIndex);
+	String formatLine(String[] data) {
 		// データを1つの文字列に変換
 		StringBuffer sb = new StringBuffer();
 		for (int i = 0; i < data.length; i++) {
@@ -57,10 +55,8 @@ public final class TsvText extends BaseText {
 	}
 
 	@Override
-	public void addLineText(String lineText) {
+	String[] parseLine(String lineText) {
 		// タブ区切りでString配列にする
-		String[] lineData = lineText.split(DELIM, -1);
-		// 行データとしてセットする
-		super.addLineData(lineData);
+		return lineText.split(DELIM, -1);
 	}
 }
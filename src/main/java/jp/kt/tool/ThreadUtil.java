@@ -30,6 +30,48 @@ public final class ThreadUtil {
 		return createText(ste);
 	}
 
+	/**
+	 * 指定クラス以外で、このメソッドを呼び出したメソッドまでを最初に呼び出したクラス名、メソッド名、ファイル名、行数の情報を取得します。
+	 * <p>
+	 * 呼び出し元を遡り、指定クラス（内部クラスを含む）のメソッドではない最初の呼び出し元を返します.<br>
+	 * 共通処理の中から、共通処理を呼び出した業務側の位置を取得する場合に使用します.
+	 * </p>
+	 *
+	 * @param excludeClasses
+	 *            呼び出し元から除外するクラス
+	 * @return メソッド名、ファイル名、行数の情報文字列
+	 */
+	public static String calledFrom(Class<?>... excludeClasses) {
+		StackTraceElement[] steArray = Thread.currentThread().getStackTrace();
+		// 0:getStackTrace、1:このメソッド、2以降:呼び出し元
+		for (int i = 2; i < steArray.length; i++) {
+			if (!isExcluded(steArray[i].getClassName(), excludeClasses)) {
+				return createText(steArray[i]);
+			}
+		}
+		return "";
+	}
+
+	/**
+	 * 除外するクラスか判定する.
+	 *
+	 * @param className
+	 *            クラス名
+	 * @param excludeClasses
+	 *            除外するクラス
+	 * @return 除外するクラスもしくはその内部クラスであればtrue
+	 */
+	private static boolean isExcluded(String className,
+			Class<?>[] excludeClasses) {
+		for (Class<?> c : excludeClasses) {
+			if (className.equals(c.getName())
+					|| className.startsWith(c.getName() + "$")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * {@link StackTraceElement}から文字列を生成する.
 	 * 
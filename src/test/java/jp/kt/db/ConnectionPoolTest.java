@@ -0,0 +1,161 @@
+package jp.kt.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * {@link ConnectionPool}のテスト.
+ *
+ * @author tatsuya.kumon
+ */
+public class ConnectionPoolTest {
+	/** 接続Driver */
+	private static final String DRIVER = "org.h2.Driver";
+
+	/** 接続URL */
+	private static final String URL = "jdbc:h2:mem:pool_test;DB_CLOSE_DELAY=-1";
+
+	/** 通知されたイベント */
+	private static final List<String> EVENTS = Collections
+			.synchronizedList(new ArrayList<String>());
+
+	static {
+		ConnectionEvents.addListener(new ConnectionListener() {
+			@Override
+			public void committed(Connection con) {
+				EVENTS.add("commit");
+			}
+
+			@Override
+			public void rolledBack(Connection con) {
+				EVENTS.add("rollback");
+			}
+
+			@Override
+			public void closing(Connection con) {
+				EVENTS.add("close");
+			}
+
+			@Override
+			public void physicalClosing(Object physicalKey) {
+				EVENTS.add("physicalClose:"
+						+ System.identityHashCode(physicalKey));
+			}
+		});
+	}
+
+	/** テスト対象のプール */
+	private ConnectionPool pool;
+
+	/**
+	 * 最大接続数1のプールを生成する.
+	 *
+	 * @throws Exception
+	 *             接続Driverが見つからない場合
+	 */
+	@Before
+	public void setUp() throws Exception {
+		pool = new ConnectionPool(DRIVER, URL, "sa", "", 0, 1);
+		EVENTS.clear();
+	}
+
+	/**
+	 * プールをクローズする.
+	 */
+	@After
+	public void tearDown() {
+		pool.close();
+		DbConnectManager.closeConnectionPools();
+	}
+
+	/**
+	 * unwrapで物理接続を返さないこと.
+	 *
+	 * @throws Exception
+	 *             DB接続時に例外発生した場合
+	 */
+	@Test
+	public void unwrapDoesNotExposePhysical() throws Exception {
+		Connection con = pool.getConnection();
+		try {
+			assertTrue(con.isWrapperFor(Connection.class));
+			assertSame(con, con.unwrap(Connection.class));
+		} finally {
+			con.close();
+		}
+	}
+
+	/**
+	 * 返却して再取得しても、同じ物理接続であれば同じキーとなること.
+	 *
+	 * @throws Exception
+	 *             DB接続時に例外発生した場合
+	 */
+	@Test
+	public void physicalKey() throws Exception {
+		Connection con1 = pool.getConnection();
+		Object key = ConnectionEvents.getPhysicalKey(con1);
+		assertNotSame(con1, key);
+		con1.close();
+
+		Connection con2 = pool.getConnection();
+		try {
+			assertNotSame(con1, con2);
+			assertSame(key, ConnectionEvents.getPhysicalKey(con2));
+		} finally {
+			con2.close();
+		}
+	}
+
+	/**
+	 * commit、rollback、close、物理接続のクローズが通知されること.
+	 *
+	 * @throws Exception
+	 *             DB接続時に例外発生した場合
+	 */
+	@Test
+	public void events() throws Exception {
+		Connection con = pool.getConnection();
+		Object key = ConnectionEvents.getPhysicalKey(con);
+		con.commit();
+		con.rollback(con.setSavepoint());
+		con.rollback();
+		con.close();
+		con.close();
+		pool.close();
+
+		List<String> expected = new ArrayList<String>();
+		expected.add("commit");
+		expected.add("rollback");
+		expected.add("close");
+		expected.add("physicalClose:" + System.identityHashCode(key));
+		assertEquals(expected, EVENTS);
+	}
+
+	/**
+	 * パスワードが異なる場合は別のプールとなること.
+	 *
+	 * @throws Exception
+	 *             接続Driverが見つからない場合
+	 */
+	@Test
+	public void poolPerPassword() throws Exception {
+		ConnectionPool pool1 = DbConnectManager.getConnectionPool(DRIVER, URL,
+				"sa", "");
+		assertSame(pool1,
+				DbConnectManager.getConnectionPool(DRIVER, URL, "sa", ""));
+		assertNotSame(pool1,
+				DbConnectManager.getConnectionPool(DRIVER, URL, "sa", "other"));
+	}
+}
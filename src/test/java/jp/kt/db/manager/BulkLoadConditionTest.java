@@ -0,0 +1,48 @@
+package jp.kt.db.manager;
+
+import static org.junit.Assert.assertEquals;
+
+import jp.kt.db.manager.BaseManager.NullData;
+
+import org.junit.Test;
+
+/**
+ * {@link BulkLoadCondition}のテスト.
+ *
+ * @author tatsuya.kumon
+ */
+public class BulkLoadConditionTest {
+	/**
+	 * 日時の形式がnullの場合、{@link IllegalArgumentException}になること.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void timestampWithoutPattern() {
+		new BulkLoadCondition().addColumn(0, NullData.TIMESTAMP, null);
+	}
+
+	/**
+	 * 日時の形式が不正な場合、{@link IllegalArgumentException}になること.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void timestampWithInvalidPattern() {
+		new BulkLoadCondition().addColumn(0, NullData.TIMESTAMP, "yyyy/MM/dd q");
+	}
+
+	/**
+	 * チャンクサイズが0以下の場合、{@link IllegalArgumentException}になること.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void zeroChunkSize() {
+		new BulkLoadCondition(0);
+	}
+
+	/**
+	 * どちらのコンストラクタでも進捗のログ出力間隔が初期化されること.
+	 */
+	@Test
+	public void progressInterval() {
+		int expected = new BulkLoadCondition().getProgressInterval();
+		assertEquals(expected, new BulkLoadCondition(10).getProgressInterval());
+		assertEquals(true, expected > 0);
+	}
+}
@@ -0,0 +1,312 @@
+package jp.kt.db.manager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+
+import jp.kt.db.entity.BaseEntity;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * {@link EntityRowMapper}のテスト.
+ *
+ * @author tatsuya.kumon
+ */
+public class EntityRowMapperTest {
+	/** DB接続 */
+	private Connection con;
+
+	/** Statement */
+	private Statement stmt;
+
+	/**
+	 * DB接続を作成する.
+	 *
+	 * @throws SQLException
+	 *             DB接続に失敗した場合
+	 */
+	@Before
+	public void setUp() throws SQLException {
+		con = DriverManager.getConnection("jdbc:h2:mem:entity_row_mapper");
+		stmt = con.createStatement();
+	}
+
+	/**
+	 * DB接続をクローズする.
+	 *
+	 * @throws SQLException
+	 *             クローズに失敗した場合
+	 */
+	@After
+	public void tearDown() throws SQLException {
+		stmt.close();
+		con.close();
+	}
+
+	/**
+	 * プリミティブ型のsetter、ラッパー型、setterの無いフィールドに格納すること.
+	 *
+	 * @throws SQLException
+	 *             SQL実行時に例外発生した場合
+	 */
+	@Test
+	public void primitiveSetters() throws SQLException {
+		ResultSet rs = stmt
+				.executeQuery("SELECT CAST(12345678901 AS BIGINT) AS USER_ID, 30 AS AGE, 1.5 AS RATE, TRUE AS ACTIVE,"
+						+ " CAST(7 AS SMALLINT) AS LEVEL, 'x' AS GRADE, 80 AS SCORE, 'kumon' AS NAME,"
+						+ " TIMESTAMP '2020-01-02 03:04:05' AS CREATED, 'ignored' AS UNKNOWN_COLUMN");
+		try {
+			assertTrue(rs.next());
+			User user = EntityRowMapper.getInstance(User.class).map(rs);
+			assertEquals(12345678901L, user.userId);
+			assertEquals(30, user.age);
+			assertEquals(1.5, user.rate, 0.0);
+			assertTrue(user.active);
+			assertEquals(7, user.level);
+			assertEquals('x', user.grade);
+			assertEquals(Integer.valueOf(80), user.score);
+			assertEquals("kumon", user.name);
+			assertEquals(LocalDateTime.of(2020, 1, 2, 3, 4, 5), user.created);
+		} finally {
+			rs.close();
+		}
+	}
+
+	/**
+	 * NULLはプリミティブ型には格納せず、参照型にはnullを格納すること.
+	 *
+	 * @throws SQLException
+	 *             SQL実行時に例外発生した場合
+	 */
+	@Test
+	public void nullValues() throws SQLException {
+		ResultSet rs = stmt
+				.executeQuery("SELECT CAST(NULL AS BIGINT) AS USER_ID, CAST(NULL AS INT) AS AGE, CAST(NULL AS DOUBLE) AS RATE,"
+						+ " CAST(NULL AS BOOLEAN) AS ACTIVE, CAST(NULL AS SMALLINT) AS LEVEL, CAST(NULL AS VARCHAR) AS GRADE,"
+						+ " CAST(NULL AS INT) AS SCORE, CAST(NULL AS VARCHAR) AS NAME, CAST(NULL AS TIMESTAMP) AS CREATED");
+		try {
+			assertTrue(rs.next());
+			User user = EntityRowMapper.getInstance(User.class).map(rs);
+			// プリミティブ型は初期値のまま
+			assertEquals(-1L, user.userId);
+			assertEquals(-1, user.age);
+			assertEquals(-1.0, user.rate, 0.0);
+			assertTrue(user.active);
+			assertEquals(-1, user.level);
+			assertEquals('-', user.grade);
+			assertNull(user.score);
+			assertNull(user.name);
+			assertNull(user.created);
+		} finally {
+			rs.close();
+		}
+	}
+
+	/**
+	 * オーバーロードされたsetterは、getterの戻り値の型、フィールドの型、引数の型のクラス名の順に選択すること.
+	 *
+	 * @throws SQLException
+	 *             SQL実行時に例外発生した場合
+	 */
+	@Test
+	public void overloadedSetters() throws SQLException {
+		ResultSet rs = stmt
+				.executeQuery("SELECT '10' AS BY_GETTER, 20 AS BY_FIELD, 30 AS BY_NAME");
+		try {
+			assertTrue(rs.next());
+			Overload entity = EntityRowMapper.getInstance(Overload.class).map(
+					rs);
+			assertEquals("String:10", entity.byGetterCalled);
+			assertEquals("String:20", entity.byFieldCalled);
+			// java.lang.Integer < java.lang.String
+			assertEquals("Integer:30", entity.byNameCalled);
+		} finally {
+			rs.close();
+		}
+	}
+
+	/**
+	 * プリミティブ型、ラッパー型、setterの無いフィールドを持つentity.
+	 */
+	public static final class User implements BaseEntity {
+		/** serialVersionUID */
+		private static final long serialVersionUID = 1L;
+
+		/** ユーザID */
+		private long userId = -1L;
+
+		/** 年齢 */
+		private int age = -1;
+
+		/** 比率 */
+		private double rate = -1.0;
+
+		/** 有効フラグ */
+		private boolean active = true;
+
+		/** レベル */
+		private short level = -1;
+
+		/** 等級 */
+		private char grade = '-';
+
+		/** 点数 */
+		private Integer score = Integer.valueOf(-1);
+
+		/** 名前 */
+		private String name = "-";
+
+		/** 作成日時（setter無し） */
+		private LocalDateTime created = LocalDateTime.MIN;
+
+		/**
+		 * @param userId
+		 *            ユーザID
+		 */
+		public void setUserId(long userId) {
+			this.userId = userId;
+		}
+
+		/**
+		 * @param age
+		 *            年齢
+		 */
+		public void setAge(int age) {
+			this.age = age;
+		}
+
+		/**
+		 * @param rate
+		 *            比率
+		 */
+		public void setRate(double rate) {
+			this.rate = rate;
+		}
+
+		/**
+		 * @param active
+		 *            有効フラグ
+		 */
+		public void setActive(boolean active) {
+			this.active = active;
+		}
+
+		/**
+		 * @param level
+		 *            レベル
+		 */
+		public void setLevel(short level) {
+			this.level = level;
+		}
+
+		/**
+		 * @param grade
+		 *            等級
+		 */
+		public void setGrade(char grade) {
+			this.grade = grade;
+		}
+
+		/**
+		 * @param score
+		 *            点数
+		 */
+		public void setScore(Integer score) {
+			this.score = score;
+		}
+
+		/**
+		 * @param name
+		 *            名前
+		 */
+		public void setName(String name) {
+			this.name = name;
+		}
+	}
+
+	/**
+	 * オーバーロードされたsetterを持つentity.
+	 */
+	public static final class Overload implements BaseEntity {
+		/** serialVersionUID */
+		private static final long serialVersionUID = 1L;
+
+		/** getterの型で選択されるプロパティに呼ばれたsetter */
+		private String byGetterCalled;
+
+		/** フィールドの型で選択されるプロパティ */
+		private String byField;
+
+		/** フィールドの型で選択されるプロパティに呼ばれたsetter */
+		private String byFieldCalled;
+
+		/** 引数の型のクラス名で選択されるプロパティに呼ばれたsetter */
+		private String byNameCalled;
+
+		/**
+		 * @return 値（setterの選択に使用する）
+		 */
+		public String getByGetter() {
+			return null;
+		}
+
+		/**
+		 * @param value
+		 *            値
+		 */
+		public void setByGetter(Integer value) {
+			byGetterCalled = "Integer:" + value;
+		}
+
+		/**
+		 * @param value
+		 *            値
+		 */
+		public void setByGetter(String value) {
+			byGetterCalled = "String:" + value;
+		}
+
+		/**
+		 * @param value
+		 *            値
+		 */
+		public void setByField(Integer value) {
+			byFieldCalled = "Integer:" + value;
+		}
+
+		/**
+		 * @param value
+		 *            値
+		 */
+		public void setByField(String value) {
+			byField = value;
+			byFieldCalled = "String:" + value;
+		}
+
+		/**
+		 * @param value
+		 *            値
+		 */
+		public void setByName(String value) {
+			byNameCalled = "String:" + value;
+		}
+
+		/**
+		 * @param value
+		 *            値
+		 */
+		public void setByName(Integer value) {
+			byNameCalled = "Integer:" + value;
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package jp.kt.db.manager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import jp.kt.db.entity.BaseEntity;
+
+import org.junit.Test;
+
+/**
+ * {@link LruEntityCache}のテスト.
+ *
+ * @author tatsuya.kumon
+ */
+public class LruEntityCacheTest {
+	/**
+	 * 同じキーを2回登録しても、entityクラスの破棄で破棄されること.
+	 */
+	@Test
+	public void removeAllAfterPutTwice() {
+		LruEntityCache cache = new LruEntityCache(10, 0);
+		EntityKey key = new EntityKey(User.class, 1);
+		cache.put(key, new User("old"));
+		cache.put(key, new User("new"));
+		assertEquals("new", ((User) cache.get(key)).name);
+
+		cache.removeAll(User.class);
+		assertNull(cache.get(key));
+		assertEquals(0, cache.size());
+	}
+
+	/**
+	 * 最大件数を超えた場合、最も長く参照されていないものが追い出されること.
+	 */
+	@Test
+	public void evictEldest() {
+		LruEntityCache cache = new LruEntityCache(2, 0);
+		EntityKey key1 = new EntityKey(User.class, 1);
+		EntityKey key2 = new EntityKey(User.class, 2);
+		EntityKey key3 = new EntityKey(User.class, 3);
+		cache.put(key1, new User("1"));
+		cache.put(key2, new User("2"));
+		cache.get(key1);
+		cache.put(key3, new User("3"));
+
+		assertNull(cache.get(key2));
+		assertEquals("1", ((User) cache.get(key1)).name);
+		assertEquals("3", ((User) cache.get(key3)).name);
+		cache.removeAll(User.class);
+		assertEquals(0, cache.size());
+	}
+
+	/**
+	 * 取得するたびに新しいインスタンスを返すこと.
+	 */
+	@Test
+	public void getReturnsCopy() {
+		LruEntityCache cache = new LruEntityCache(10, 0);
+		EntityKey key = new EntityKey(User.class, 1);
+		User user = new User("a");
+		cache.put(key, user);
+		user.name = "changed";
+
+		User first = (User) cache.get(key);
+		assertEquals("a", first.name);
+		first.name = "changed";
+		User second = (User) cache.get(key);
+		assertNotSame(first, second);
+		assertEquals("a", second.name);
+	}
+
+	/**
+	 * テスト用entity.
+	 */
+	public static class User implements BaseEntity {
+		/** serialVersionUID */
+		private static final long serialVersionUID = 1L;
+
+		/** 名前 */
+		private String name;
+
+		/**
+		 * コンストラクタ.
+		 *
+		 * @param name
+		 *            名前
+		 */
+		public User(String name) {
+			this.name = name;
+		}
+	}
+}
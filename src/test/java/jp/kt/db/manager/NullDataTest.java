@@ -0,0 +1,142 @@
+package jp.kt.db.manager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import jp.kt.db.entity.BaseEntity;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * {@link BaseManager.NullData}によるnull値のセットのテスト.
+ *
+ * @author tatsuya.kumon
+ */
+public class NullDataTest {
+	/** DB接続 */
+	private Connection con;
+
+	/**
+	 * テーブルを作成する.
+	 *
+	 * @throws SQLException
+	 *             DB操作に失敗した場合
+	 */
+	@Before
+	public void setUp() throws SQLException {
+		con = DriverManager.getConnection("jdbc:h2:mem:null_data");
+		Statement stmt = con.createStatement();
+		try {
+			stmt.execute("CREATE TABLE LOB_DATA (ID INT PRIMARY KEY, TXT CLOB, BIN VARBINARY(10), BL BLOB)");
+		} finally {
+			stmt.close();
+		}
+		con.setAutoCommit(false);
+	}
+
+	/**
+	 * DB接続をクローズする.
+	 *
+	 * @throws SQLException
+	 *             クローズに失敗した場合
+	 */
+	@After
+	public void tearDown() throws SQLException {
+		con.close();
+	}
+
+	/**
+	 * CLOB、BINARYのnull値を登録できること.
+	 *
+	 * @throws Exception
+	 *             SQL実行時に例外発生した場合
+	 */
+	@Test
+	public void lobNull() throws Exception {
+		LobManager manager = new LobManager(con);
+		assertEquals(1, manager.insert(new Object[] { 1,
+				BaseManager.NullData.CLOB, BaseManager.NullData.BINARY,
+				BaseManager.NullData.BINARY }));
+
+		List<Lob> list = manager.findAll();
+		assertEquals(1, list.size());
+		assertNull(list.get(0).txt);
+		assertNull(list.get(0).bin);
+		assertNull(list.get(0).bl);
+	}
+
+	/**
+	 * テスト用Manager.
+	 */
+	private static final class LobManager extends BaseManager<Lob> {
+		/**
+		 * コンストラクタ.
+		 *
+		 * @param con
+		 *            DB接続
+		 */
+		private LobManager(Connection con) {
+			super(con);
+		}
+
+		/**
+		 * 登録する.
+		 *
+		 * @param values
+		 *            プレースホルダーの値
+		 * @return 登録件数
+		 * @throws Exception
+		 *             SQL実行時に例外発生した場合
+		 */
+		private int insert(Object[] values) throws Exception {
+			return executeUpdate("INSERT INTO LOB_DATA VALUES (?, ?, ?, ?)",
+					values);
+		}
+
+		/**
+		 * 全件取得する.
+		 *
+		 * @return 全件
+		 * @throws Exception
+		 *             SQL実行時に例外発生した場合
+		 */
+		private List<Lob> findAll() throws Exception {
+			return executeQuery("SELECT TXT, BIN, BL FROM LOB_DATA");
+		}
+
+		@Override
+		protected Lob createEntity(ResultSet rs) throws SQLException {
+			Lob lob = new Lob();
+			lob.txt = rs.getString("TXT");
+			lob.bin = rs.getBytes("BIN");
+			lob.bl = rs.getBytes("BL");
+			return lob;
+		}
+	}
+
+	/**
+	 * テスト用entity.
+	 */
+	private static final class Lob implements BaseEntity {
+		/** serialVersionUID */
+		private static final long serialVersionUID = 1L;
+
+		/** CLOB */
+		private String txt;
+
+		/** VARBINARY */
+		private byte[] bin;
+
+		/** BLOB */
+		private byte[] bl;
+	}
+}
@@ -0,0 +1,118 @@
+package jp.kt.db.manager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * {@link QueryResultCache}のテスト.
+ *
+ * @author tatsuya.kumon
+ */
+public class QueryResultCacheTest {
+	/** SELECT文 */
+	private static final String SELECT_SQL = "SELECT ID, NAME FROM USERS WHERE ID = ?";
+
+	/** キャッシュ */
+	private final QueryResultCache cache = QueryResultCache.getInstance();
+
+	/**
+	 * キャッシュを空に戻す.
+	 */
+	@After
+	public void tearDown() {
+		cache.clear();
+	}
+
+	/**
+	 * 同じキーを2回登録しても、テーブルの更新で破棄されること.
+	 */
+	@Test
+	public void invalidateAfterPutTwice() {
+		QueryResultCache.Key key = cache.createKey(getClass(), SELECT_SQL,
+				new Object[] { 1 });
+		// 同じSELECTを2つのスレッドが同時にミスした場合と同じ順序
+		long generation = cache.getGeneration(key);
+		cache.put(key, list("old"), -1, generation);
+		cache.put(key, list("old"), -1, generation);
+		assertEquals(list("old"), cache.get(key));
+
+		cache.invalidate("UPDATE USERS SET NAME = ? WHERE ID = ?");
+		assertNull(cache.get(key));
+		assertEquals(0, cache.size());
+	}
+
+	/**
+	 * 別のテーブルの更新では破棄されないこと.
+	 */
+	@Test
+	public void invalidateOtherTable() {
+		QueryResultCache.Key key = cache.createKey(getClass(), SELECT_SQL,
+				new Object[] { 1 });
+		cache.put(key, list("a"), -1, cache.getGeneration(key));
+
+		cache.invalidate("DELETE FROM ORDERS WHERE USER_ID = ?");
+		assertEquals(list("a"), cache.get(key));
+	}
+
+	/**
+	 * SELECT実行中に破棄された結果は登録されないこと.
+	 */
+	@Test
+	public void putAfterInvalidate() {
+		QueryResultCache.Key key = cache.createKey(getClass(), SELECT_SQL,
+				new Object[] { 1 });
+		long generation = cache.getGeneration(key);
+		cache.invalidate("UPDATE USERS SET NAME = ?");
+		cache.put(key, list("stale"), -1, generation);
+		assertNull(cache.get(key));
+	}
+
+	/**
+	 * SELECT実行中に別のテーブルが更新されても登録されること.
+	 */
+	@Test
+	public void putAfterInvalidateOtherTable() {
+		QueryResultCache.Key key = cache.createKey(getClass(), SELECT_SQL,
+				new Object[] { 1 });
+		long generation = cache.getGeneration(key);
+		cache.invalidate("INSERT INTO ORDERS (ID) VALUES (?)");
+		cache.put(key, list("a"), -1, generation);
+		assertEquals(list("a"), cache.get(key));
+	}
+
+	/**
+	 * 取得するたびに新しいインスタンスを返すこと.
+	 */
+	@Test
+	@SuppressWarnings("unchecked")
+	public void getReturnsCopy() {
+		QueryResultCache.Key key = cache.createKey(getClass(), SELECT_SQL,
+				new Object[] { 1 });
+		cache.put(key, list("a"), -1, cache.getGeneration(key));
+
+		List<String> first = (List<String>) cache.get(key);
+		first.set(0, "changed");
+		List<String> second = (List<String>) cache.get(key);
+		assertNotSame(first, second);
+		assertEquals(list("a"), second);
+	}
+
+	/**
+	 * Listを生成する.
+	 *
+	 * @param values
+	 *            要素
+	 * @return List
+	 */
+	private static List<String> list(String... values) {
+		return new ArrayList<String>(Arrays.asList(values));
+	}
+}
@@ -0,0 +1,271 @@
+package jp.kt.db.manager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import jp.kt.db.ConnectionProvider;
+import jp.kt.db.entity.BaseEntity;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * {@link BaseManager#setReadConnectionProvider(ConnectionProvider)}によるレプリカへの振り分けのテスト.
+ * <p>
+ * プライマリとレプリカを別々の組み込みDBとし、同じ行に別の値を入れておくことで、<br>
+ * どちらでSELECTが実行されたかを判定します.
+ * </p>
+ *
+ * @author tatsuya.kumon
+ */
+public class ReadReplicaRoutingTest {
+	/** プライマリのURL */
+	private static final String PRIMARY_URL = "jdbc:h2:mem:routing_primary;DB_CLOSE_DELAY=-1";
+
+	/** レプリカのURL */
+	private static final String REPLICA_URL = "jdbc:h2:mem:routing_replica;DB_CLOSE_DELAY=-1";
+
+	/** プライマリのDB接続 */
+	private Connection primary;
+
+	/** レプリカから取得したDB接続 */
+	private final List<Connection> replicas = new ArrayList<Connection>();
+
+	/** レプリカのプロバイダ */
+	private final ConnectionProvider replicaProvider = new ConnectionProvider() {
+		@Override
+		public Connection getConnection() throws Exception {
+			Connection con = DriverManager.getConnection(REPLICA_URL);
+			con.setAutoCommit(false);
+			replicas.add(con);
+			return con;
+		}
+	};
+
+	/**
+	 * プライマリとレプリカに別の値の行を作成する.
+	 *
+	 * @throws SQLException
+	 *             DB操作に失敗した場合
+	 */
+	@Before
+	public void setUp() throws SQLException {
+		createTable(PRIMARY_URL, "primary");
+		createTable(REPLICA_URL, "replica");
+		primary = DriverManager.getConnection(PRIMARY_URL);
+		primary.setAutoCommit(false);
+	}
+
+	/**
+	 * DB接続をクローズする.
+	 *
+	 * @throws SQLException
+	 *             クローズに失敗した場合
+	 */
+	@After
+	public void tearDown() throws SQLException {
+		TransactionState.close(primary);
+		primary.close();
+	}
+
+	/**
+	 * 更新していなければレプリカでSELECTし、コミットでレプリカの接続を解放すること.
+	 *
+	 * @throws Exception
+	 *             SQL実行時に例外発生した場合
+	 */
+	@Test
+	public void selectOnReplica() throws Exception {
+		ItemManager manager = new ItemManager(primary);
+		manager.setReadConnectionProvider(replicaProvider);
+		assertEquals("replica", manager.findName());
+		assertEquals("replica", manager.findName());
+		assertEquals(1, replicas.size());
+		assertFalse(replicas.get(0).isClosed());
+
+		manager.commit();
+		assertTrue(replicas.get(0).isClosed());
+		assertEquals("replica", manager.findName());
+		assertEquals(2, replicas.size());
+	}
+
+	/**
+	 * 更新後はコミットまでプライマリでSELECTすること.
+	 *
+	 * @throws Exception
+	 *             SQL実行時に例外発生した場合
+	 */
+	@Test
+	public void selectOnPrimaryAfterUpdate() throws Exception {
+		ItemManager manager = new ItemManager(primary);
+		manager.setReadConnectionProvider(replicaProvider);
+		assertEquals("replica", manager.findName());
+		manager.updateName("updated");
+		assertEquals("updated", manager.findName());
+
+		manager.commit();
+		assertTrue(replicas.get(0).isClosed());
+		assertEquals("replica", manager.findName());
+	}
+
+	/**
+	 * ロールバックでもプライマリでのSELECTを終え、レプリカの接続を解放すること.
+	 *
+	 * @throws Exception
+	 *             SQL実行時に例外発生した場合
+	 */
+	@Test
+	public void rollback() throws Exception {
+		ItemManager manager = new ItemManager(primary);
+		manager.setReadConnectionProvider(replicaProvider);
+		assertEquals("replica", manager.findName());
+		manager.updateName("updated");
+
+		manager.rollback();
+		assertTrue(replicas.get(0).isClosed());
+		assertEquals("replica", manager.findName());
+	}
+
+	/**
+	 * ロック付きのSELECTと、その後のSELECTはプライマリで実行すること.
+	 *
+	 * @throws Exception
+	 *             SQL実行時に例外発生した場合
+	 */
+	@Test
+	public void lockingRead() throws Exception {
+		ItemManager manager = new ItemManager(primary);
+		manager.setReadConnectionProvider(replicaProvider);
+		assertEquals("primary", manager.findNameForUpdate());
+		assertEquals("primary", manager.findName());
+		assertTrue(replicas.isEmpty());
+
+		manager.commit();
+		assertEquals("replica", manager.findName());
+	}
+
+	/**
+	 * オートコミットONの更新後は、一定時間のみプライマリでSELECTすること.
+	 *
+	 * @throws Exception
+	 *             SQL実行時に例外発生した場合
+	 */
+	@Test
+	public void autoCommitUpdate() throws Exception {
+		primary.setAutoCommit(true);
+		ItemManager manager = new ItemManager(primary);
+		manager.setReadConnectionProvider(replicaProvider);
+		manager.updateName("updated");
+		assertEquals("updated", manager.findName());
+
+		// kt.core.sql.replica.autocommit.primary.millisec を過ぎるまで待つ
+		Thread.sleep(1100);
+		assertEquals("replica", manager.findName());
+	}
+
+	/**
+	 * テーブルを作成して1行登録する.
+	 *
+	 * @param url
+	 *            URL
+	 * @param name
+	 *            登録する値
+	 * @throws SQLException
+	 *             DB操作に失敗した場合
+	 */
+	private static void createTable(String url, String name)
+			throws SQLException {
+		Connection con = DriverManager.getConnection(url);
+		try {
+			Statement stmt = con.createStatement();
+			try {
+				stmt.execute("DROP TABLE IF EXISTS ITEM");
+				stmt.execute("CREATE TABLE ITEM (ID INT PRIMARY KEY, NAME VARCHAR(20))");
+				stmt.execute("INSERT INTO ITEM VALUES (1, '" + name + "')");
+			} finally {
+				stmt.close();
+			}
+		} finally {
+			con.close();
+		}
+	}
+
+	/**
+	 * テスト用Manager.
+	 */
+	private static final class ItemManager extends BaseManager<Item> {
+		/**
+		 * コンストラクタ.
+		 *
+		 * @param con
+		 *            DB接続
+		 */
+		private ItemManager(Connection con) {
+			super(con);
+		}
+
+		/**
+		 * 名前を取得する.
+		 *
+		 * @return 名前
+		 * @throws Exception
+		 *             SQL実行時に例外発生した場合
+		 */
+		private String findName() throws Exception {
+			return executeQuery("SELECT NAME FROM ITEM WHERE ID = 1").get(0).name;
+		}
+
+		/**
+		 * ロック付きで名前を取得する.
+		 *
+		 * @return 名前
+		 * @throws Exception
+		 *             SQL実行時に例外発生した場合
+		 */
+		private String findNameForUpdate() throws Exception {
+			return executeQuery("SELECT NAME FROM ITEM WHERE ID = 1 FOR UPDATE")
+					.get(0).name;
+		}
+
+		/**
+		 * 名前を更新する.
+		 *
+		 * @param name
+		 *            名前
+		 * @throws Exception
+		 *             SQL実行時に例外発生した場合
+		 */
+		private void updateName(String name) throws Exception {
+			executeUpdate("UPDATE ITEM SET NAME = ? WHERE ID = 1",
+					new Object[] { name });
+		}
+
+		@Override
+		protected Item createEntity(ResultSet rs) throws SQLException {
+			Item item = new Item();
+			item.name = rs.getString("NAME");
+			return item;
+		}
+	}
+
+	/**
+	 * テスト用entity.
+	 */
+	private static final class Item implements BaseEntity {
+		/** serialVersionUID */
+		private static final long serialVersionUID = 1L;
+
+		/** 名前 */
+		private String name;
+	}
+}
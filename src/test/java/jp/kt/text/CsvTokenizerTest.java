@@ -0,0 +1,162 @@
+package jp.kt.text;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * {@link CsvTokenizer}のテスト.
+ *
+ * @author tatsuya.kumon
+ */
+public class CsvTokenizerTest {
+	/**
+	 * 囲まれていない値を区切り文字で分割すること.
+	 */
+	@Test
+	public void unquoted() {
+		assertArrayEquals(new String[] { "a", "b", "", "c", "" },
+				CsvTokenizer.parseLine("a,b,,c,"));
+		assertArrayEquals(new String[] { "" }, CsvTokenizer.parseLine(""));
+	}
+
+	/**
+	 * 囲まれた値の中の区切り文字と連続したダブルクォートを処理すること.
+	 */
+	@Test
+	public void quoted() {
+		assertArrayEquals(new String[] { "a,b", "say \"hi\"", "", "\"" },
+				CsvTokenizer
+						.parseLine("\"a,b\",\"say \"\"hi\"\"\",\"\",\"\"\"\""));
+	}
+
+	/**
+	 * 1行分のテキストの分割では、改行も値の一部とすること.
+	 */
+	@Test
+	public void parseLineKeepsLineBreak() {
+		assertArrayEquals(new String[] { "a\r\nb", "c\n" },
+				CsvTokenizer.parseLine("a\r\nb,\"c\n\""));
+	}
+
+	/**
+	 * 囲まれていない値の中のダブルクォートと、閉じダブルクォートの後ろの文字はそのまま値とすること.
+	 */
+	@Test
+	public void lenientQuote() {
+		assertArrayEquals(new String[] { "a\"b", "cd", "e" },
+				CsvTokenizer.parseLine("a\"b,\"c\"d,e"));
+	}
+
+	/**
+	 * ダブルクォートが閉じられずに終わった場合は例外が発生すること.
+	 */
+	@Test(expected = TextFormatException.class)
+	public void unclosedQuote() {
+		CsvTokenizer.parseLine("a,\"b,c");
+	}
+
+	/**
+	 * Readerからの読み込みで、閉じられていないダブルクォートは例外が発生すること.
+	 *
+	 * @throws IOException
+	 *             読み込みに失敗した場合
+	 */
+	@Test(expected = TextFormatException.class)
+	public void unclosedQuoteInReader() throws IOException {
+		CsvTokenizer tokenizer = new CsvTokenizer(new StringReader(
+				"a,b\r\n\"c,d\r\ne,f\r\n"));
+		assertArrayEquals(new String[] { "a", "b" }, tokenizer.next());
+		tokenizer.next();
+	}
+
+	/**
+	 * Readerからの読み込みで、CR、LF、CRLFを行の区切りとし、囲まれた中の改行は値とすること.
+	 *
+	 * @throws IOException
+	 *             読み込みに失敗した場合
+	 */
+	@Test
+	public void readLines() throws IOException {
+		String text = "a,b\r\n\"c\r\nd\",\"e\"\"\nf\"\rg\n\n";
+		String[][] expected = { { "a", "b" }, { "c\r\nd", "e\"\nf" },
+				{ "g" }, { "" } };
+		assertLines(expected, new StringReader(text));
+		// バッファの境界（CRとLFの間など）で分割されても同じ結果になること
+		assertLines(expected, new OneCharReader(text));
+	}
+
+	/**
+	 * バッファより長い値を読み込めること.
+	 *
+	 * @throws IOException
+	 *             読み込みに失敗した場合
+	 */
+	@Test
+	public void longField() throws IOException {
+		char[] chars = new char[20000];
+		Arrays.fill(chars, 'x');
+		String value = new String(chars);
+		assertLines(new String[][] { { value, "a,\r\n" + value } },
+				new StringReader(value + ",\"a,\r\n" + value + "\"\r\n"));
+	}
+
+	/**
+	 * Readerから全行読み込み、期待値と比較する.
+	 *
+	 * @param expected
+	 *            期待する行データ
+	 * @param reader
+	 *            読み込み元
+	 * @throws IOException
+	 *             読み込みに失敗した場合
+	 */
+	private static void assertLines(String[][] expected, Reader reader)
+			throws IOException {
+		CsvTokenizer tokenizer = new CsvTokenizer(reader);
+		for (String[] line : expected) {
+			assertArrayEquals(line, tokenizer.next());
+		}
+		assertNull(tokenizer.next());
+	}
+
+	/**
+	 * 1回の読み込みで1文字のみ返すReader.
+	 */
+	private static final class OneCharReader extends Reader {
+		/** 読み込み元 */
+		private final String text;
+
+		/** 読み込み位置 */
+		private int pos;
+
+		/**
+		 * コンストラクタ.
+		 *
+		 * @param text
+		 *            読み込み元
+		 */
+		private OneCharReader(String text) {
+			this.text = text;
+		}
+
+		@Override
+		public int read(char[] cbuf, int off, int len) {
+			if (pos >= text.length()) {
+				return -1;
+			}
+			cbuf[off] = text.charAt(pos++);
+			return 1;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
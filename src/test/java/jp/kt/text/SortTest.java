@@ -0,0 +1,92 @@
+package jp.kt.text;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * {@link Sort}のテスト.
+ *
+ * @author tatsuya.kumon
+ */
+public class SortTest {
+	/** テストデータ */
+	private static final String DATA = "net,a,40\r\nsys,b,70\r\nnet,c,90\r\nnet,d,9\r\nsys,e,75\r\nnet,f,40\r\n";
+
+	/**
+	 * 読み込みながら取得した上位の行が、全体をソートした先頭の行と一致すること.
+	 *
+	 * @throws IOException
+	 *             入出力エラー
+	 */
+	@Test
+	public void topFromReader() throws IOException {
+		CsvText text = new CsvText();
+		text.setAllText(DATA);
+		Sort all = new Sort(text);
+		all.addCondition(0, SortType.STRING, SortOrder.ASC);
+		all.addCondition(2, SortType.NUMBER, SortOrder.DESC);
+		all.sort();
+
+		Sort sort = new Sort();
+		sort.addCondition(0, SortType.STRING, SortOrder.ASC);
+		sort.addCondition(2, SortType.NUMBER, SortOrder.DESC);
+		List<String[]> top;
+		TextReader reader = new TextReader(new CsvText(), new StringReader(
+				DATA));
+		try {
+			top = sort.top(reader, 4);
+		} finally {
+			reader.close();
+		}
+		assertEquals(4, top.size());
+		for (int i = 0; i < top.size(); i++) {
+			assertEquals(join(text.getLineData(i)), join(top.get(i)));
+		}
+		// 数値として比較し、同じ値は元の順を保つ
+		assertEquals("net,c,90", join(top.get(0)));
+		assertEquals("net,a,40", join(top.get(1)));
+		assertEquals("net,f,40", join(top.get(2)));
+		assertEquals("net,d,9", join(top.get(3)));
+	}
+
+	/**
+	 * ソート対象データを指定せずに生成した場合、{@link Sort#sort()}は{@link IllegalStateException}になること.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void sortWithoutText() {
+		Sort sort = new Sort();
+		sort.addCondition(0, SortType.STRING, SortOrder.ASC);
+		sort.sort();
+	}
+
+	/**
+	 * ソート対象データを指定せずに生成した場合、{@link Sort#top(int)}は{@link IllegalStateException}になること.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void topWithoutText() {
+		Sort sort = new Sort();
+		sort.addCondition(0, SortType.STRING, SortOrder.ASC);
+		sort.top(1);
+	}
+
+	/**
+	 * 行データをカンマで連結する.
+	 *
+	 * @param lineData
+	 *            行データ
+	 * @return 連結した文字列
+	 */
+	private static String join(String[] lineData) {
+		List<String> list = new ArrayList<String>();
+		for (String s : lineData) {
+			list.add(s);
+		}
+		return String.join(",", list);
+	}
+}